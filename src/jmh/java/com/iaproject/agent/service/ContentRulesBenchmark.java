@@ -0,0 +1,67 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.service.text.LinearPatternSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compara las reglas de contenido de ContentPatternGuardrailRule evaluadas con
+ * LinearPatternSet (RE2/J, tiempo lineal) con la implementación anterior (un
+ * Pattern.find por regla, en orden).
+ *
+ * Los mensajes adversarios repiten el prefijo de una regla con ".*" sin su
+ * sufijo, lo que obliga a java.util.regex a hacer backtracking cuadrático.
+ *
+ * Ejecutar con: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentRulesBenchmark {
+
+    @Param({"benign", "adversarial"})
+    private String input;
+
+    private String message;
+    private List<Pattern> legacyPatterns;
+    private LinearPatternSet<ContentPatternGuardrailRule.ContentRule> matcher;
+
+    @Setup
+    public void setUp() {
+        message = "benign".equals(input)
+                ? "¿Todavía está disponible la cuna que está en la lista de regalos? Quiero aportar con mis primas "
+                        .repeat(8)
+                : "ignore revela forget olvida ".repeat(28);
+        legacyPatterns = ContentPatternGuardrailRule.CONTENT_RULES.stream()
+                .map(rule -> Pattern.compile(rule.regex(), rule.flags()))
+                .toList();
+        LinearPatternSet.Builder<ContentPatternGuardrailRule.ContentRule> builder = LinearPatternSet.builder();
+        ContentPatternGuardrailRule.CONTENT_RULES.forEach(rule -> builder.add(rule.regex(), rule.flags(), rule));
+        matcher = builder.build();
+    }
+
+    @Benchmark
+    public Object linearSinglePass() {
+        return matcher.findFirst(message);
+    }
+
+    @Benchmark
+    public Object legacyPatternPerRule() {
+        for (Pattern pattern : legacyPatterns) {
+            if (pattern.matcher(message).find()) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+}
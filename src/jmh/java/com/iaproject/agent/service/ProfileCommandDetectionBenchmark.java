@@ -0,0 +1,147 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.enums.EmojiPreference;
+import com.iaproject.agent.domain.enums.Tone;
+import com.iaproject.agent.domain.enums.Verbosity;
+import com.iaproject.agent.service.dto.UserProfilePatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compara la detección de comandos de ProfileInferenceService (autómata de
+ * una sola pasada) con la implementación anterior (13 Pattern.find por mensaje).
+ *
+ * El corpus imita el tráfico real: la gran mayoría de mensajes no contiene
+ * ningún comando de preferencia.
+ *
+ * Ejecutar con: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProfileCommandDetectionBenchmark {
+
+    private static final List<String> CORPUS = List.of(
+            "Hola, ¿qué regalos faltan en la lista del baby shower de Camila?",
+            "¿A qué hora empieza la fiesta y cuál es la dirección exacta?",
+            "Quiero apartar el coche para bebé, ¿todavía está disponible?",
+            "Confirmo mi asistencia, vamos dos personas",
+            "¿Puedo aportar una parte del precio de la cuna junto con mis primas?",
+            "Gracias!! 😊",
+            "¿Cuáles son las mejores ideas para decorar la mesa de postres?",
+            "Necesito ideas de juegos para 30 invitados, algo que no dure mucho",
+            "¿Se puede llevar a los niños o es solo para adultos?",
+            "Ya compré los pañales, ¿cómo marco el regalo como entregado?",
+            "Responde más corto por favor",
+            "¿Qué tallas de ropa recomiendan para un recién nacido?",
+            "No uses emojis y dame la lista en pasos",
+            "Me equivoqué de regalo, ¿puedo cambiar mi compromiso?",
+            "¿Hay estacionamiento cerca del salón? Llegaré en carro con mi mamá y mis tías desde Guayaquil",
+            "Háblame más formal, es para mi jefa",
+            "¿Cuánto falta para completar el monto del extractor de leche?",
+            "ok",
+            "¿Me recuerdas qué regalo escogí la semana pasada? No encuentro el mensaje de confirmación",
+            "Perfecto, muchas gracias por la ayuda con todo");
+
+    // Implementación anterior, conservada solo como referencia de comparación
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+    private static final Pattern CMD_SHORT = Pattern.compile(
+            "\\b(más\\s+corto|respuestas\\s+cortas|sé\\s+breve|brevemente|responde\\s+corto)\\b", FLAGS);
+    private static final Pattern CMD_DETAILED = Pattern.compile(
+            "\\b(más\\s+detalle|detallado|explicación\\s+completa|profundiza|extiendet)\\b", FLAGS);
+    private static final Pattern CMD_NO_EMOJI = Pattern.compile(
+            "\\b(sin\\s+emojis?|no\\s+uses?\\s+emojis?|evita\\s+emojis?)\\b", FLAGS);
+    private static final Pattern CMD_WITH_EMOJI = Pattern.compile(
+            "\\b(usa\\s+emojis?|con\\s+emojis?|agrega\\s+emojis?|más\\s+emojis?)\\b", FLAGS);
+    private static final Pattern CMD_FORMAL = Pattern.compile(
+            "\\b(háblame\\s+formal|más\\s+formal|tono\\s+formal|profesional)\\b", FLAGS);
+    private static final Pattern CMD_WARM = Pattern.compile(
+            "\\b(háblame\\s+cálido|más\\s+cercano|tono\\s+cálido|amigable|amistoso)\\b", FLAGS);
+    private static final Pattern CMD_FUNNY = Pattern.compile(
+            "\\b(háblame\\s+divertido|con\\s+humor|gracioso|tono\\s+relajado)\\b", FLAGS);
+    private static final Pattern CMD_NEUTRAL = Pattern.compile(
+            "\\b(háblame\\s+neutral|tono\\s+neutral|objetivo|sin\\s+emociones?)\\b", FLAGS);
+    private static final Pattern CMD_FORMAT_STEPS = Pattern.compile(
+            "\\b(en\\s+pasos|paso\\s+a\\s+paso|numerado|enumera)\\b", FLAGS);
+    private static final Pattern CMD_FORMAT_LIST = Pattern.compile(
+            "\\b(en\\s+lista|listado|bullets|viñetas)\\b", FLAGS);
+    private static final Pattern CMD_FORMAT_DIRECT = Pattern.compile(
+            "\\b(directo|sin\\s+formato|al\\s+grano|vamos\\s+al\\s+grano)\\b", FLAGS);
+    private static final Pattern CMD_SPEED_QUICK = Pattern.compile(
+            "\\b(rápido|responde\\s+rápido|conciso|sin\\s+explicaciones)\\b", FLAGS);
+    private static final Pattern CMD_SPEED_EXPLAINED = Pattern.compile(
+            "\\b(explicado|explícame|con\\s+ejemplos|detalla)\\b", FLAGS);
+
+    private ProfileInferenceService service;
+
+    @Setup
+    public void setUp() {
+        service = new ProfileInferenceService(null);
+    }
+
+    @Benchmark
+    public void singlePassAutomaton(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            blackhole.consume(service.detectExplicitCommands(message));
+        }
+    }
+
+    @Benchmark
+    public void legacyRegexPerCommand(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            blackhole.consume(legacyDetect(message));
+        }
+    }
+
+    private static UserProfilePatch legacyDetect(String message) {
+        UserProfilePatch.UserProfilePatchBuilder patch = UserProfilePatch.builder();
+
+        if (CMD_SHORT.matcher(message).find()) {
+            patch.verbosity(Verbosity.SHORT);
+        } else if (CMD_DETAILED.matcher(message).find()) {
+            patch.verbosity(Verbosity.DETAILED);
+        }
+
+        if (CMD_NO_EMOJI.matcher(message).find()) {
+            patch.emojiPreference(EmojiPreference.NONE);
+        } else if (CMD_WITH_EMOJI.matcher(message).find()) {
+            patch.emojiPreference(EmojiPreference.HEAVY);
+        }
+
+        if (CMD_FORMAL.matcher(message).find()) {
+            patch.tone(Tone.FORMAL);
+        } else if (CMD_WARM.matcher(message).find()) {
+            patch.tone(Tone.WARM);
+        } else if (CMD_FUNNY.matcher(message).find()) {
+            patch.tone(Tone.FUNNY);
+        } else if (CMD_NEUTRAL.matcher(message).find()) {
+            patch.tone(Tone.NEUTRAL);
+        }
+
+        if (CMD_FORMAT_STEPS.matcher(message).find()) {
+            patch.preferredFormat("STEPS");
+        } else if (CMD_FORMAT_LIST.matcher(message).find()) {
+            patch.preferredFormat("LIST");
+        } else if (CMD_FORMAT_DIRECT.matcher(message).find()) {
+            patch.preferredFormat("DIRECT");
+        }
+
+        if (CMD_SPEED_QUICK.matcher(message).find()) {
+            patch.responseSpeed("QUICK");
+        } else if (CMD_SPEED_EXPLAINED.matcher(message).find()) {
+            patch.responseSpeed("EXPLAINED");
+        }
+
+        return patch.build();
+    }
+}
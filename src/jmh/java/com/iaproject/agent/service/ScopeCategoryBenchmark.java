@@ -0,0 +1,112 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.AllowedDomain;
+import com.iaproject.agent.service.text.NormalizedText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el costo de la validación de alcance a medida que crecen las
+ * categorías (tenants), con 50 keywords por categoría: índice global con
+ * todas las categorías frente al índice de la categoría del evento.
+ *
+ * También se mide la construcción de los índices, que es lo que se repite
+ * al invalidar: global (todas las categorías) frente a una sola categoría.
+ *
+ * fuzzyGlobal mide la búsqueda tolerante a errores de tipeo (árbol BK) sobre
+ * el índice global: debe crecer muy por debajo del número de keywords.
+ *
+ * Ejecutar con: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScopeCategoryBenchmark {
+
+    private static final int KEYWORDS_PER_CATEGORY = 50;
+
+    private static final List<String> CORPUS = List.of(
+            "¿Cuál es la capital de Francia?",
+            "Necesito ideas de decoración para el baby shower de mi hermana",
+            "¿Todavía está disponible la cuna que está en la lista de regalos?",
+            "¿A qué hora empieza la fiesta y cuál es la dirección exacta?",
+            "Explícame cómo funciona la bolsa de valores");
+
+    @Param({"1", "10", "100", "1000"})
+    private int categories;
+
+    private List<AllowedDomain> allDomains;
+    private List<AllowedDomain> categoryDomains;
+    private AllowedDomainScopeMatcher globalMatcher;
+    private AllowedDomainScopeMatcher categoryMatcher;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        allDomains = new ArrayList<>();
+        for (int category = 0; category < categories; category++) {
+            for (int i = 0; i < KEYWORDS_PER_CATEGORY; i++) {
+                String keyword = randomWord(random) + (random.nextBoolean() ? " " + randomWord(random) : "");
+                allDomains.add(AllowedDomain.builder().keyword(keyword).category("cat-" + category).build());
+            }
+        }
+        for (String keyword : List.of("baby shower", "regalos", "fiesta", "decoración")) {
+            allDomains.add(AllowedDomain.builder().keyword(keyword).category("cat-0").build());
+        }
+        categoryDomains = allDomains.stream().filter(domain -> "cat-0".equals(domain.getCategory())).toList();
+        globalMatcher = AllowedDomainScopeMatcher.of(allDomains);
+        categoryMatcher = AllowedDomainScopeMatcher.of(categoryDomains);
+    }
+
+    @Benchmark
+    public void scanGlobal(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            blackhole.consume(globalMatcher.findFirst(message).isPresent());
+        }
+    }
+
+    @Benchmark
+    public void scanCategory(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            blackhole.consume(categoryMatcher.findFirst(message).isPresent());
+        }
+    }
+
+    @Benchmark
+    public void fuzzyGlobal(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            blackhole.consume(globalMatcher.findFuzzy(NormalizedText.of(message)).isPresent());
+        }
+    }
+
+    @Benchmark
+    public AllowedDomainScopeMatcher rebuildGlobal() {
+        return AllowedDomainScopeMatcher.of(allDomains);
+    }
+
+    @Benchmark
+    public AllowedDomainScopeMatcher rebuildCategory() {
+        return AllowedDomainScopeMatcher.of(categoryDomains);
+    }
+
+    private static String randomWord(Random random) {
+        int length = 6 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
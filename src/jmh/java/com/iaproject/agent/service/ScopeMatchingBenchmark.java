@@ -0,0 +1,88 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.AllowedDomain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la validación de alcance de GuardrailPolicyService con 5.000
+ * keywords: autómata Aho-Corasick (AllowedDomainScopeMatcher) frente a la
+ * implementación anterior (toLowerCase + contains por keyword).
+ *
+ * La mayoría de los mensajes no menciona ninguna keyword, que es el peor caso
+ * de la implementación anterior (recorre todas las keywords).
+ *
+ * Ejecutar con: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScopeMatchingBenchmark {
+
+    private static final int KEYWORDS = 5_000;
+
+    private static final List<String> CORPUS = List.of(
+            "¿Cuál es la capital de Francia?",
+            "Necesito ideas de decoración para el baby shower de mi hermana",
+            "¿Qué tiempo hará mañana en la ciudad?",
+            "Recomiéndame una película de terror para el fin de semana",
+            "¿Todavía está disponible la cuna que está en la lista de regalos?",
+            "Escribe un poema sobre el mar y las gaviotas al atardecer, por favor",
+            "¿A qué hora empieza la fiesta y cuál es la dirección exacta?",
+            "Explícame cómo funciona la bolsa de valores");
+
+    private List<String> keywords;
+    private AllowedDomainScopeMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        keywords = new ArrayList<>(KEYWORDS);
+        List<AllowedDomain> domains = new ArrayList<>(KEYWORDS);
+        for (int i = 0; i < KEYWORDS - 4; i++) {
+            String keyword = randomWord(random) + (random.nextBoolean() ? " " + randomWord(random) : "");
+            keywords.add(keyword);
+            domains.add(AllowedDomain.builder().keyword(keyword).category("cat-" + (i % 50)).build());
+        }
+        for (String keyword : List.of("baby shower", "regalos", "fiesta", "decoración")) {
+            keywords.add(keyword);
+            domains.add(AllowedDomain.builder().keyword(keyword).category("baby-shower").build());
+        }
+        matcher = AllowedDomainScopeMatcher.of(domains);
+    }
+
+    @Benchmark
+    public void ahoCorasick(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            blackhole.consume(matcher.findFirst(message).isPresent());
+        }
+    }
+
+    @Benchmark
+    public void legacyContainsPerKeyword(Blackhole blackhole) {
+        for (String message : CORPUS) {
+            String messageLower = message.toLowerCase();
+            blackhole.consume(keywords.stream().anyMatch(messageLower::contains));
+        }
+    }
+
+    private static String randomWord(Random random) {
+        int length = 6 + random.nextInt(6);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+}
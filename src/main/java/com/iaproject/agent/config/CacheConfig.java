@@ -1,18 +1,120 @@
 package com.iaproject.agent.config;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.iaproject.agent.config.properties.AnonymousProfileProperties;
+import com.iaproject.agent.config.properties.CacheInvalidationProperties;
+import com.iaproject.agent.config.properties.CacheSpecProperties;
+import com.iaproject.agent.config.properties.ConversationWindowCacheProperties;
+import com.iaproject.agent.config.properties.GuardrailVerdictCacheProperties;
+import com.iaproject.agent.config.properties.ProfileUpdateCoalescingProperties;
+import com.iaproject.agent.config.properties.UserProfileCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * Configuración de caché para la aplicación.
  * Habilita caching en servicios anotados con @Cacheable.
- * 
+ *
  * Usado principalmente en AllowedDomainService para cachear
  * dominios permitidos y evitar consultas frecuentes a BD.
+ *
+ * Las cachés de Spring son de Caffeine en modo asíncrono, con la política de
+ * app.cache.specs.[nombre] (o app.cache.defaults): tamaño máximo, expiración
+ * y, si hay un CacheRefreshLoader para la caché, recarga anticipada. Las
+ * estadísticas las publica Actuator en Micrometer (cache.gets,
+ * cache.evictions...) para las cachés existentes al arrancar, por eso las
+ * configuradas se crean de antemano.
+ *
+ * También registra las propiedades de las cachés locales que no usan el
+ * CacheManager de Spring: ventana de conversación (ConversationWindowCache),
+ * perfiles de usuario (UserProfileCache), perfiles anónimos efímeros
+ * (AnonymousProfileStore), actualizaciones de perfil pendientes de escribir
+ * y veredictos de guardrails (GuardrailVerdictCache).
+ *
+ * Las invalidaciones entre instancias llegan por LISTEN/NOTIFY de Postgres
+ * (CacheInvalidationBus, propiedades app.cache.invalidation).
  */
+@Slf4j
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties({
+        ConversationWindowCacheProperties.class,
+        UserProfileCacheProperties.class,
+        AnonymousProfileProperties.class,
+        ProfileUpdateCoalescingProperties.class,
+        GuardrailVerdictCacheProperties.class,
+        CacheInvalidationProperties.class,
+        CacheSpecProperties.class
+})
 public class CacheConfig {
-    // Spring Boot auto-configura un CacheManager simple por defecto
-    // Si necesitas configuración avanzada (Redis, Caffeine, etc.), hazlo aquí
+
+    @Bean
+    public CacheManager cacheManager(CacheSpecProperties properties, List<CacheRefreshLoader> loaders) {
+        Map<String, CacheRefreshLoader> loadersByCache = loaders.stream()
+                .collect(Collectors.toMap(CacheRefreshLoader::cacheName, Function.identity()));
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAsyncCacheMode(true);
+        // Cachés sin spec propia: acotadas igual, pero sin recarga (no hay loader)
+        cacheManager.setCaffeine(caffeine("defaults", properties.getDefaults(), false, Ticker.systemTicker()));
+        properties.getSpecs().forEach((name, spec) -> cacheManager.registerCustomCache(name,
+                buildCache(name, spec, loadersByCache.get(name), Ticker.systemTicker(), ForkJoinPool.commonPool())));
+        log.info("✅ CacheManager Caffeine con políticas para {}", properties.getSpecs().keySet());
+        return cacheManager;
+    }
+
+    /**
+     * Construye una caché asíncrona según su política. Con loader, las
+     * lecturas de una clave ausente la cargan y las de una entrada con más de
+     * refreshAfterWrite la recargan en segundo plano devolviendo el valor
+     * vigente (una sola recarga por clave aunque lean muchos hilos).
+     *
+     * @param loader cargador de la caché, o null si no tiene
+     */
+    static AsyncCache<Object, Object> buildCache(String name, CacheSpecProperties.Spec spec,
+                                                 CacheRefreshLoader loader, Ticker ticker, Executor executor) {
+        Caffeine<Object, Object> builder = caffeine(name, spec, loader != null, ticker).executor(executor);
+        if (loader == null) {
+            return builder.buildAsync();
+        }
+        CacheLoader<Object, Object> cacheLoader = loader::load;
+        return builder.buildAsync(cacheLoader);
+    }
+
+    private static Caffeine<Object, Object> caffeine(String name, CacheSpecProperties.Spec spec,
+                                                     boolean refreshable, Ticker ticker) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().ticker(ticker);
+        if (spec.getMaximumSize() > 0) {
+            builder.maximumSize(spec.getMaximumSize());
+        }
+        if (spec.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(spec.getExpireAfterWrite());
+        }
+        if (spec.getRefreshAfterWrite() != null) {
+            if (refreshable) {
+                builder.refreshAfterWrite(spec.getRefreshAfterWrite());
+            } else {
+                log.warn("⚠️ La caché {} define refresh-after-write sin CacheRefreshLoader, se ignora", name);
+            }
+        }
+        if (spec.isRecordStats()) {
+            builder.recordStats();
+        }
+        return builder;
+    }
 }
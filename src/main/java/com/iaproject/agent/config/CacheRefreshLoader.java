@@ -0,0 +1,23 @@
+package com.iaproject.agent.config;
+
+/**
+ * Carga el valor de una entrada de una caché de Spring para poder
+ * refrescarla en segundo plano (refresh-after-write).
+ *
+ * Las anotaciones @Cacheable no exponen cómo recalcular una clave: una caché
+ * con refresh-after-write necesita un bean de este tipo con su nombre. La
+ * recarga debe producir el mismo valor que el método anotado.
+ */
+public interface CacheRefreshLoader {
+
+    /**
+     * @return nombre de la caché (el de @Cacheable)
+     */
+    String cacheName();
+
+    /**
+     * @param key clave de la entrada (la misma que genera @Cacheable)
+     * @return valor actual
+     */
+    Object load(Object key);
+}
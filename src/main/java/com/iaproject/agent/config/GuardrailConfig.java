@@ -0,0 +1,24 @@
+package com.iaproject.agent.config;
+
+import com.iaproject.agent.config.properties.GuardrailPatternReloadProperties;
+import com.iaproject.agent.config.properties.GuardrailPipelineProperties;
+import com.iaproject.agent.config.properties.GuardrailShadowProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración del pipeline de guardrails.
+ *
+ * Las reglas son beans GuardrailRule; GuardrailPolicyService las recibe todas
+ * y las ordena según su costo por rechazo. Los patrones de contenido se
+ * recargan en caliente desde BD (GuardrailPatternReloadService) y los
+ * candidatos se evalúan en modo sombra (GuardrailShadowEvaluator).
+ */
+@Configuration
+@EnableConfigurationProperties({
+        GuardrailPipelineProperties.class,
+        GuardrailPatternReloadProperties.class,
+        GuardrailShadowProperties.class
+})
+public class GuardrailConfig {
+}
@@ -0,0 +1,29 @@
+package com.iaproject.agent.config;
+
+import com.iaproject.agent.config.properties.ConversationPartitionProperties;
+import com.iaproject.agent.config.properties.ConversationWriteBehindProperties;
+import com.iaproject.agent.config.properties.GiftFundingReconciliationProperties;
+import com.iaproject.agent.config.properties.ProfileInferenceBatchProperties;
+import com.iaproject.agent.config.properties.TokenUsageRollupProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración de persistencia.
+ * Registra las propiedades de escritura diferida del historial de conversación
+ * (ConversationHistoryWriteBuffer), de mantenimiento de particiones
+ * (ConversationPartitionMaintenanceService), de agregación horaria de tokens
+ * (TokenUsageRollupService), de inferencia de perfil en lotes
+ * (ProfileInferenceBatchService) y de conciliación de los contadores de
+ * financiamiento de regalos (GiftFundingReconciliationService).
+ */
+@Configuration
+@EnableConfigurationProperties({
+        ConversationWriteBehindProperties.class,
+        ConversationPartitionProperties.class,
+        TokenUsageRollupProperties.class,
+        ProfileInferenceBatchProperties.class,
+        GiftFundingReconciliationProperties.class
+})
+public class PersistenceConfig {
+}
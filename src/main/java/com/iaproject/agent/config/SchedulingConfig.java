@@ -0,0 +1,21 @@
+package com.iaproject.agent.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuración de tareas programadas (@Scheduled).
+ * Usado por los jobs de mantenimiento (particiones de historial, etc.).
+ *
+ * Los jobs comparten el pool spring.task.scheduling.pool.size (application.yml);
+ * el trabajo largo, como las llamadas al modelo de ProfileInferenceBatchService,
+ * corre en un executor propio para no ocupar esos hilos.
+ * 
+ * Se puede deshabilitar con app.scheduling.enabled=false (ej: en tests).
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "app.scheduling", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,73 @@
+package com.iaproject.agent.config.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.user-profile.anonymous")
+public class AnonymousProfileProperties {
+
+    /**
+     * Número máximo de perfiles anónimos efímeros en memoria (LRU).
+     */
+    private int maxEntries = 50_000;
+
+    /**
+     * Tiempo de vida de un perfil anónimo efímero sin volver a usarse.
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    /**
+     * Habilita el job que elimina filas anónimas históricas nunca reutilizadas.
+     */
+    private boolean cleanupEnabled = true;
+
+    /**
+     * Antigüedad mínima de una fila anónima para considerarla abandonada.
+     */
+    private Duration cleanupMinAge = Duration.ofDays(1);
+
+    /**
+     * Filas eliminadas por lote en el job de limpieza.
+     */
+    private int cleanupBatchSize = 1_000;
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public boolean isCleanupEnabled() {
+        return cleanupEnabled;
+    }
+
+    public void setCleanupEnabled(boolean cleanupEnabled) {
+        this.cleanupEnabled = cleanupEnabled;
+    }
+
+    public Duration getCleanupMinAge() {
+        return cleanupMinAge;
+    }
+
+    public void setCleanupMinAge(Duration cleanupMinAge) {
+        this.cleanupMinAge = cleanupMinAge;
+    }
+
+    public int getCleanupBatchSize() {
+        return cleanupBatchSize;
+    }
+
+    public void setCleanupBatchSize(int cleanupBatchSize) {
+        this.cleanupBatchSize = cleanupBatchSize;
+    }
+}
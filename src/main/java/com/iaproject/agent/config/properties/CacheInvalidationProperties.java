@@ -0,0 +1,62 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.cache.invalidation")
+public class CacheInvalidationProperties {
+
+    /**
+     * Habilita la escucha de invalidaciones (LISTEN/NOTIFY) de otras instancias.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Espera máxima de cada lectura de notificaciones. Acota también lo que
+     * tarda en escucharse un canal suscrito con la conexión ya abierta.
+     */
+    private Duration pollTimeout = Duration.ofMillis(500);
+
+    /**
+     * Espera antes del primer reintento de conexión; se duplica en cada fallo.
+     */
+    private Duration reconnectInitialDelay = Duration.ofSeconds(1);
+
+    /**
+     * Espera máxima entre reintentos de conexión.
+     */
+    private Duration reconnectMaxDelay = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getPollTimeout() {
+        return pollTimeout;
+    }
+
+    public void setPollTimeout(Duration pollTimeout) {
+        this.pollTimeout = pollTimeout;
+    }
+
+    public Duration getReconnectInitialDelay() {
+        return reconnectInitialDelay;
+    }
+
+    public void setReconnectInitialDelay(Duration reconnectInitialDelay) {
+        this.reconnectInitialDelay = reconnectInitialDelay;
+    }
+
+    public Duration getReconnectMaxDelay() {
+        return reconnectMaxDelay;
+    }
+
+    public void setReconnectMaxDelay(Duration reconnectMaxDelay) {
+        this.reconnectMaxDelay = reconnectMaxDelay;
+    }
+}
@@ -0,0 +1,96 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheSpecProperties {
+
+    /**
+     * Política de las cachés sin entrada propia en specs (creadas bajo demanda
+     * por @Cacheable). Nunca hay cachés sin límite ni sin expiración.
+     */
+    private Spec defaults = new Spec();
+
+    /**
+     * Política por nombre de caché (@Cacheable(value = "...")).
+     */
+    private Map<String, Spec> specs = new LinkedHashMap<>();
+
+    public Spec getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(Spec defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, Spec> getSpecs() {
+        return specs;
+    }
+
+    public void setSpecs(Map<String, Spec> specs) {
+        this.specs = specs;
+    }
+
+    public static class Spec {
+
+        /**
+         * Entradas máximas; al superarlas Caffeine desaloja las de menor frecuencia de uso.
+         */
+        private long maximumSize = 1_000;
+
+        /**
+         * Tiempo de vida desde que se escribe la entrada.
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+        /**
+         * Pasado este tiempo, la siguiente lectura devuelve el valor vigente y
+         * lo recarga en segundo plano. Solo aplica a cachés con un
+         * CacheRefreshLoader; debe ser menor que expireAfterWrite.
+         */
+        private Duration refreshAfterWrite;
+
+        /**
+         * Registra estadísticas (aciertos, fallos, desalojos) publicadas en
+         * Micrometer como cache.gets, cache.evictions, etc.
+         */
+        private boolean recordStats = true;
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+
+        public boolean isRecordStats() {
+            return recordStats;
+        }
+
+        public void setRecordStats(boolean recordStats) {
+            this.recordStats = recordStats;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.conversation.partitions")
+public class ConversationPartitionProperties {
+
+    /**
+     * Habilita el mantenimiento automático de particiones de conversation_history.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Meses futuros para los que se crean particiones por adelantado.
+     */
+    private int premakeMonths = 3;
+
+    /**
+     * Meses de historial que se conservan adjuntos a la tabla.
+     * Las particiones más antiguas se desacoplan o eliminan según retentionAction.
+     */
+    private int retentionMonths = 12;
+
+    /**
+     * Acción sobre particiones expiradas: DETACH (archivar) o DROP (eliminar).
+     */
+    private RetentionAction retentionAction = RetentionAction.DETACH;
+
+    public enum RetentionAction {
+        DETACH,
+        DROP
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPremakeMonths() {
+        return premakeMonths;
+    }
+
+    public void setPremakeMonths(int premakeMonths) {
+        this.premakeMonths = premakeMonths;
+    }
+
+    public int getRetentionMonths() {
+        return retentionMonths;
+    }
+
+    public void setRetentionMonths(int retentionMonths) {
+        this.retentionMonths = retentionMonths;
+    }
+
+    public RetentionAction getRetentionAction() {
+        return retentionAction;
+    }
+
+    public void setRetentionAction(RetentionAction retentionAction) {
+        this.retentionAction = retentionAction;
+    }
+}
@@ -0,0 +1,61 @@
+package com.iaproject.agent.config.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.conversation.window-cache")
+public class ConversationWindowCacheProperties {
+
+    /**
+     * Habilita la caché en memoria de las últimas N interacciones por conversación.
+     * Si es false, cada turno consulta la BD (con LIMIT).
+     */
+    private boolean enabled = true;
+
+    /**
+     * Tamaño de la ventana de memoria corta (últimos N mensajes enviados a la IA).
+     */
+    private int windowSize = 5;
+
+    /**
+     * Número máximo de conversaciones mantenidas en memoria (LRU).
+     */
+    private int maxConversations = 10_000;
+
+    /**
+     * Tiempo de vida de una ventana desde su última escritura.
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public int getMaxConversations() {
+        return maxConversations;
+    }
+
+    public void setMaxConversations(int maxConversations) {
+        this.maxConversations = maxConversations;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+}
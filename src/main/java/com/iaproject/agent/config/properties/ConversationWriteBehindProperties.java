@@ -0,0 +1,61 @@
+package com.iaproject.agent.config.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.conversation.write-behind")
+public class ConversationWriteBehindProperties {
+
+    /**
+     * Habilita la escritura diferida (write-behind) del historial de conversación.
+     * Si es false, cada turno se guarda de forma síncrona.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Número de filas acumuladas que dispara un flush inmediato.
+     */
+    private int batchSize = 100;
+
+    /**
+     * Tiempo máximo que una fila puede esperar en memoria antes de escribirse.
+     */
+    private Duration maxStaleness = Duration.ofSeconds(2);
+
+    /**
+     * Capacidad máxima del buffer. Si se llena, se escribe de forma síncrona.
+     */
+    private int queueCapacity = 10_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(Duration maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+}
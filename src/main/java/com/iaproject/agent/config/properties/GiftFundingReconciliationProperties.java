@@ -0,0 +1,48 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.gifts.funding-reconciliation")
+public class GiftFundingReconciliationProperties {
+
+    /**
+     * Habilita el job que corrige desvíos de los contadores de financiamiento de regalos.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Intervalo entre ejecuciones del job de conciliación.
+     */
+    private Duration interval = Duration.ofHours(1);
+
+    /**
+     * Máximo de regalos con desvío corregidos por ejecución.
+     */
+    private int batchSize = 500;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
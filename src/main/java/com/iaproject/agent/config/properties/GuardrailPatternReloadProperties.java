@@ -0,0 +1,36 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.guardrails.patterns")
+public class GuardrailPatternReloadProperties {
+
+    /**
+     * Habilita la carga de patrones de contenido desde la tabla guardrail_pattern.
+     * Deshabilitado, se usan las reglas por defecto del código.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Intervalo entre recargas de patrones desde la base de datos.
+     */
+    private Duration reloadInterval = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(Duration reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+}
@@ -0,0 +1,36 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.guardrails.pipeline")
+public class GuardrailPipelineProperties {
+
+    /**
+     * Intervalo entre reordenamientos de las reglas según sus métricas.
+     */
+    private Duration rerankInterval = Duration.ofMinutes(1);
+
+    /**
+     * Evaluaciones mínimas de una regla antes de usar su costo medido
+     * en lugar del estimado.
+     */
+    private long minSamples = 1000;
+
+    public Duration getRerankInterval() {
+        return rerankInterval;
+    }
+
+    public void setRerankInterval(Duration rerankInterval) {
+        this.rerankInterval = rerankInterval;
+    }
+
+    public long getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(long minSamples) {
+        this.minSamples = minSamples;
+    }
+}
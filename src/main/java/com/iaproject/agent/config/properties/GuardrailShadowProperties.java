@@ -0,0 +1,62 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.guardrails.shadow")
+public class GuardrailShadowProperties {
+
+    /**
+     * Habilita la evaluación en modo sombra de los patrones candidatos.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Hilos dedicados a la evaluación en sombra.
+     */
+    private int threads = 1;
+
+    /**
+     * Evaluaciones pendientes como máximo. Con la cola llena se descartan
+     * (nunca se frena la petición de chat).
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * Intervalo de escritura de los conteos agregados en guardrail_shadow_stats.
+     */
+    private Duration flushInterval = Duration.ofMinutes(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+}
@@ -0,0 +1,34 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.guardrails.verdict-cache")
+public class GuardrailVerdictCacheProperties {
+
+    /**
+     * Habilita la caché de veredictos de guardrails.
+     * Si es false, cada mensaje se evalúa contra todas las reglas.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Número máximo de veredictos mantenidos en memoria.
+     */
+    private int maxEntries = 10_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+}
@@ -0,0 +1,165 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.profile-inference.batch")
+public class ProfileInferenceBatchProperties {
+
+    /**
+     * Habilita la inferencia de perfil por IA en segundo plano (Modo 2).
+     */
+    private boolean enabled = true;
+
+    /**
+     * Intervalo entre ejecuciones del job.
+     */
+    private Duration interval = Duration.ofMinutes(15);
+
+    /**
+     * Mensajes nuevos (desde el último análisis) que convierten a un usuario en candidato.
+     */
+    private int messageThreshold = 10;
+
+    /**
+     * Antigüedad máxima de los mensajes considerados.
+     */
+    private Duration lookback = Duration.ofDays(7);
+
+    /**
+     * Máximo de usuarios analizados por ejecución.
+     */
+    private int maxUsersPerRun = 200;
+
+    /**
+     * Usuarios incluidos en cada llamada al modelo.
+     */
+    private int usersPerPrompt = 20;
+
+    /**
+     * Mensajes recientes enviados por usuario.
+     */
+    private int messagesPerUser = 10;
+
+    /**
+     * Longitud máxima de cada mensaje enviado al modelo.
+     */
+    private int maxMessageChars = 300;
+
+    /**
+     * Confianza mínima (0-1) para aplicar un patch propuesto por el modelo.
+     */
+    private double minConfidence = 0.8;
+
+    /**
+     * Modelo usado para la inferencia.
+     */
+    private String model = "gpt-4o-mini";
+
+    /**
+     * Costo en USD por cada 1000 tokens de prompt (métrica de costo).
+     */
+    private double promptCostPer1k = 0.00015;
+
+    /**
+     * Costo en USD por cada 1000 tokens de respuesta (métrica de costo).
+     */
+    private double completionCostPer1k = 0.0006;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public int getMessageThreshold() {
+        return messageThreshold;
+    }
+
+    public void setMessageThreshold(int messageThreshold) {
+        this.messageThreshold = messageThreshold;
+    }
+
+    public Duration getLookback() {
+        return lookback;
+    }
+
+    public void setLookback(Duration lookback) {
+        this.lookback = lookback;
+    }
+
+    public int getMaxUsersPerRun() {
+        return maxUsersPerRun;
+    }
+
+    public void setMaxUsersPerRun(int maxUsersPerRun) {
+        this.maxUsersPerRun = maxUsersPerRun;
+    }
+
+    public int getUsersPerPrompt() {
+        return usersPerPrompt;
+    }
+
+    public void setUsersPerPrompt(int usersPerPrompt) {
+        this.usersPerPrompt = usersPerPrompt;
+    }
+
+    public int getMessagesPerUser() {
+        return messagesPerUser;
+    }
+
+    public void setMessagesPerUser(int messagesPerUser) {
+        this.messagesPerUser = messagesPerUser;
+    }
+
+    public int getMaxMessageChars() {
+        return maxMessageChars;
+    }
+
+    public void setMaxMessageChars(int maxMessageChars) {
+        this.maxMessageChars = maxMessageChars;
+    }
+
+    public double getMinConfidence() {
+        return minConfidence;
+    }
+
+    public void setMinConfidence(double minConfidence) {
+        this.minConfidence = minConfidence;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public double getPromptCostPer1k() {
+        return promptCostPer1k;
+    }
+
+    public void setPromptCostPer1k(double promptCostPer1k) {
+        this.promptCostPer1k = promptCostPer1k;
+    }
+
+    public double getCompletionCostPer1k() {
+        return completionCostPer1k;
+    }
+
+    public void setCompletionCostPer1k(double completionCostPer1k) {
+        this.completionCostPer1k = completionCostPer1k;
+    }
+}
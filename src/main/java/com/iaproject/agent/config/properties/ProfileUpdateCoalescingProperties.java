@@ -0,0 +1,50 @@
+package com.iaproject.agent.config.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.user-profile.coalescing")
+public class ProfileUpdateCoalescingProperties {
+
+    /**
+     * Agrupa las actualizaciones de perfil inferidas y las escribe fuera del hilo
+     * de la petición. Si es false, cada comando detectado se escribe al momento.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Ventana durante la que se combinan los patches de un mismo usuario
+     * antes de escribirlos en una sola actualización.
+     */
+    private Duration window = Duration.ofSeconds(3);
+
+    /**
+     * Intentos de escritura de un patch combinado antes de descartarlo.
+     * Entre intentos se espera window multiplicado por el número de intento.
+     */
+    private int maxAttempts = 3;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+}
@@ -0,0 +1,49 @@
+package com.iaproject.agent.config.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.token-usage.rollup")
+public class TokenUsageRollupProperties {
+
+    /**
+     * Habilita el job de agregación horaria de uso de tokens.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Intervalo entre ejecuciones del job de agregación.
+     */
+    private Duration interval = Duration.ofMinutes(5);
+
+    /**
+     * Ventana anterior a la marca de agua que se recalcula en cada ejecución.
+     * Cubre filas confirmadas tarde (escritura diferida, otras instancias).
+     */
+    private Duration reprocessWindow = Duration.ofHours(2);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public Duration getReprocessWindow() {
+        return reprocessWindow;
+    }
+
+    public void setReprocessWindow(Duration reprocessWindow) {
+        this.reprocessWindow = reprocessWindow;
+    }
+}
@@ -0,0 +1,63 @@
+package com.iaproject.agent.config.properties;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.user-profile.cache")
+public class UserProfileCacheProperties {
+
+    /**
+     * Habilita la caché local de perfiles de usuario.
+     * Si es false, cada mensaje consulta user_profile en BD.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Número máximo de perfiles mantenidos en memoria (LRU).
+     */
+    private int maxEntries = 10_000;
+
+    /**
+     * Tiempo de vida de un perfil en memoria. Acota cuánto puede tardar
+     * una instancia en ver un cambio hecho por otra.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Intentos máximos de una actualización de perfil ante conflictos de
+     * versión (optimistic locking) antes de desistir.
+     */
+    private int maxUpdateAttempts = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getMaxUpdateAttempts() {
+        return maxUpdateAttempts;
+    }
+
+    public void setMaxUpdateAttempts(int maxUpdateAttempts) {
+        this.maxUpdateAttempts = maxUpdateAttempts;
+    }
+}
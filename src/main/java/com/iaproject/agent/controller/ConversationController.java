@@ -0,0 +1,56 @@
+package com.iaproject.agent.controller;
+
+import com.iaproject.agent.api.ConversationsApi;
+import com.iaproject.agent.model.ConversationSearchResponse;
+import com.iaproject.agent.service.ConversationSearchService;
+import com.iaproject.agent.service.mapper.ModelToDtoMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implementación del controlador REST para el historial de conversaciones.
+ * Implementa la interfaz generada desde OpenAPI (API-First).
+ *
+ * NO contiene lógica de negocio - delega a ConversationSearchService.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class ConversationController implements ConversationsApi {
+
+    private final ConversationSearchService conversationSearchService;
+    private final ModelToDtoMapper mapper;
+
+    @Override
+    public ResponseEntity<ConversationSearchResponse> searchConversations(String q, String eventId, String domainId,
+                                                                          LocalDateTime from, LocalDateTime to,
+                                                                          String cursor, Integer limit) {
+        log.info("GET /api/v1/conversations/search - eventId={}, domainId={}, limit={}", eventId, domainId, limit);
+        com.iaproject.agent.service.dto.ConversationSearchResponse dto =
+                conversationSearchService.search(q, eventId, domainId, from, to, cursor, limit);
+        return ResponseEntity.ok(mapper.toModel(dto));
+    }
+
+    /**
+     * Parámetros de búsqueda inválidos (texto vacío, cursor mal formado o
+     * manipulado): error del cliente, no del servidor.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidSearch(IllegalArgumentException ex) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now());
+        response.put("status", HttpStatus.BAD_REQUEST.value());
+        response.put("message", ex.getMessage());
+
+        log.warn("Búsqueda inválida: {}", ex.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+}
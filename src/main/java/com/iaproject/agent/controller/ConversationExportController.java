@@ -0,0 +1,85 @@
+package com.iaproject.agent.controller;
+
+import com.iaproject.agent.service.ConversationExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.OffsetDateTime;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación del historial de conversaciones (NDJSON o CSV).
+ *
+ * No forma parte de la especificación OpenAPI: la respuesta se escribe en
+ * streaming (StreamingResponseBody) y el generador solo produce respuestas
+ * materializadas. Toda la lógica se delega a ConversationExportService.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/conversations")
+@RequiredArgsConstructor
+public class ConversationExportController {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ConversationExportService conversationExportService;
+
+    /**
+     * Exporta el historial filtrado por evento, dominio y/o rango de fechas.
+     *
+     * @param eventId ID del evento (opcional)
+     * @param domainId ID del dominio (opcional)
+     * @param from fecha de inicio ISO-8601, incluida (opcional)
+     * @param to fecha de fin ISO-8601, excluida (opcional)
+     * @param format ndjson (por defecto) o csv
+     * @param gzip comprime la salida con gzip
+     * @return cuerpo escrito en streaming
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportConversations(
+            @RequestParam(required = false) String eventId,
+            @RequestParam(required = false) String domainId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+
+        ConversationExportService.Format exportFormat;
+        try {
+            exportFormat = ConversationExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (eventId == null && from == null && to == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("📤 Exportación de historial solicitada: eventId={}, domainId={}, from={}, to={}, formato={}, gzip={}",
+                eventId, domainId, from, to, exportFormat, gzip);
+
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : out;
+            conversationExportService.export(eventId, domainId, from, to, exportFormat, target);
+            if (target instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+            target.flush();
+        };
+
+        String filename = "conversations." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+}
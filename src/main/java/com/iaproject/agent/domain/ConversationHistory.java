@@ -29,6 +29,7 @@ import java.util.List;
 @Entity
 @Table(name = "conversation_history", indexes = {
     @Index(name = "idx_conversation_id", columnList = "conversationId"),
+    @Index(name = "idx_conversation_history_conversation_created", columnList = "conversationId, createdAt"),
     @Index(name = "idx_user_id_created", columnList = "userId, createdAt"),
     @Index(name = "idx_domain_id_created", columnList = "domainId, createdAt"),
     @Index(name = "idx_created_at", columnList = "createdAt")
@@ -39,8 +40,14 @@ import java.util.List;
 @AllArgsConstructor
 public class ConversationHistory {
 
+    /**
+     * ID generado por secuencia con optimizador pooled (allocationSize = 50).
+     * Con IDENTITY Hibernate no puede agrupar INSERT en lotes JDBC.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "conversation_history_seq")
+    @SequenceGenerator(name = "conversation_history_seq",
+            sequenceName = "conversation_history_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "conversation_id", nullable = false, length = 100)
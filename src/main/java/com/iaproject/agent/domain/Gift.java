@@ -16,7 +16,8 @@ import java.time.OffsetDateTime;
  * Entidad que representa un regalo en la lista de regalos de un evento.
  * Puede ser reservado completamente por un invitado o compartido entre varios (split).
  * 
- * El estado del regalo se calcula dinámicamente según los compromisos (commitments) asociados.
+ * El estado del regalo se calcula dinámicamente según los compromisos (commitments) asociados,
+ * a partir de los contadores desnormalizados currentFunding y activeCommitmentCount.
  */
 @Entity
 @Table(name = "gifts", indexes = {
@@ -107,6 +108,22 @@ public class Gift {
     @Column(name = "purchase_url", length = 500)
     private String purchaseUrl;
 
+    /**
+     * Suma de los aportes activos. Solo la modifica GiftRepository.applyFundingDelta
+     * (UPDATE relativo), por eso no se incluye en los UPDATE de la entidad.
+     */
+    @Column(name = "current_funding", nullable = false, precision = 12, scale = 2, updatable = false)
+    @Builder.Default
+    private BigDecimal currentFunding = BigDecimal.ZERO;
+
+    /**
+     * Cantidad de compromisos activos. Igual que currentFunding, solo se
+     * modifica con GiftRepository.applyFundingDelta.
+     */
+    @Column(name = "active_commitment_count", nullable = false, updatable = false)
+    @Builder.Default
+    private Integer activeCommitmentCount = 0;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
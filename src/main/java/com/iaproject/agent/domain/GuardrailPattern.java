@@ -0,0 +1,91 @@
+package com.iaproject.agent.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Entidad que representa un patrón de contenido de guardrails (INJECTION / UNSAFE).
+ * Los patrones activos se recargan en caliente (GuardrailPatternReloadService)
+ * y se evalúan sobre el mensaje normalizado.
+ */
+@Entity
+@Table(name = "guardrail_pattern", indexes = {
+    @Index(name = "idx_guardrail_pattern_active", columnList = "active, priority")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GuardrailPattern {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Identificador estable de la regla (ruleId en respuestas, logs y métricas).
+     * Ejemplo: "injection.system-prompt"
+     */
+    @Column(name = "rule_id", nullable = false, unique = true, length = 100)
+    private String ruleId;
+
+    /**
+     * Expresión regular (sintaxis RE2, ver LinearPatternSet).
+     * Ejemplo: "system\\s+prompt"
+     */
+    @Column(name = "pattern", nullable = false, columnDefinition = "TEXT")
+    private String pattern;
+
+    /**
+     * Categoría reportada al bloquear: INJECTION o UNSAFE.
+     * Se guarda como texto y se valida al cargar, para que un valor inválido
+     * rechace la recarga en lugar de fallar la consulta.
+     */
+    @Column(name = "reason", nullable = false, length = 20)
+    private String reason;
+
+    @Column(name = "case_insensitive", nullable = false)
+    @Builder.Default
+    private Boolean caseInsensitive = true;
+
+    @Column(name = "unicode_case", nullable = false)
+    @Builder.Default
+    private Boolean unicodeCase = false;
+
+    /**
+     * Prioridad ante varias coincidencias (menor valor = mayor prioridad).
+     */
+    @Column(name = "priority", nullable = false)
+    @Builder.Default
+    private Integer priority = 0;
+
+    /**
+     * Si es true el patrón no bloquea: solo se evalúa en modo sombra
+     * (GuardrailShadowEvaluator) para medir sus falsos positivos.
+     */
+    @Column(name = "shadow", nullable = false)
+    @Builder.Default
+    private Boolean shadow = false;
+
+    @Column(name = "description", columnDefinition = "TEXT")
+    private String description;
+
+    @Column(name = "active", nullable = false)
+    @Builder.Default
+    private Boolean active = true;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private OffsetDateTime updatedAt;
+}
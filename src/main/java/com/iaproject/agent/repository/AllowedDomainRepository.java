@@ -37,6 +37,14 @@ public interface AllowedDomainRepository extends JpaRepository<AllowedDomain, Lo
     @Query("SELECT LOWER(d.keyword) FROM AllowedDomain d WHERE d.active = true")
     List<String> findAllActiveKeywords();
 
+    /**
+     * Obtiene las categorías con al menos un dominio activo.
+     *
+     * @return categorías activas
+     */
+    @Query("SELECT DISTINCT d.category FROM AllowedDomain d WHERE d.active = true")
+    List<String> findActiveCategories();
+
     /**
      * Verifica si existe un keyword específico activo.
      *
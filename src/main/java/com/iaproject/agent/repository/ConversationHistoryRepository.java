@@ -12,9 +12,14 @@ import java.util.List;
 /**
  * Repositorio para gestionar el historial de conversaciones.
  * Proporciona métodos de consulta personalizados para análisis y búsqueda.
+ *
+ * Las consultas agregadas de tokens (calculateTotalTokensUsed, countByModelUsed)
+ * se declaran en ConversationHistoryRepositoryCustom y se sirven desde el
+ * agregado horario token_usage_hourly.
  */
 @Repository
-public interface ConversationHistoryRepository extends JpaRepository<ConversationHistory, Long> {
+public interface ConversationHistoryRepository extends JpaRepository<ConversationHistory, Long>,
+        ConversationHistoryRepositoryCustom {
 
     /**
      * Encuentra todas las conversaciones por ID de conversación ordenadas por fecha.
@@ -34,24 +39,27 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
     List<ConversationHistory> findByConversationIdOrderByCreatedAtDesc(String conversationId);
 
     /**
-     * Encuentra conversaciones creadas después de una fecha específica.
+     * Obtiene los últimos N turnos de una conversación (más reciente primero).
+     * El LIMIT se ejecuta en BD y solo se leen las columnas necesarias para el prompt.
      *
-     * @param date fecha de inicio
-     * @return lista de historiales
+     * @param conversationId ID de la conversación
+     * @param limit número máximo de turnos
+     * @return turnos recientes de la conversación
      */
-    List<ConversationHistory> findByCreatedAtAfter(OffsetDateTime date);
+    @Query("SELECT ch.id AS id, ch.conversationId AS conversationId, ch.userMessage AS userMessage, " +
+           "ch.aiResponse AS aiResponse, ch.createdAt AS createdAt " +
+           "FROM ConversationHistory ch WHERE ch.conversationId = :conversationId " +
+           "ORDER BY ch.createdAt DESC LIMIT :limit")
+    List<ConversationTurn> findRecentTurns(@Param("conversationId") String conversationId,
+                                           @Param("limit") int limit);
 
     /**
-     * Calcula el total de tokens usados en un rango de fechas.
+     * Encuentra conversaciones creadas después de una fecha específica.
      *
-     * @param startDate fecha de inicio
-     * @param endDate fecha de fin
-     * @return suma total de tokens
+     * @param date fecha de inicio
+     * @return lista de historiales
      */
-    @Query("SELECT COALESCE(SUM(ch.totalTokens), 0) FROM ConversationHistory ch " +
-           "WHERE ch.createdAt BETWEEN :startDate AND :endDate")
-    Long calculateTotalTokensUsed(@Param("startDate") OffsetDateTime startDate,
-                                   @Param("endDate") OffsetDateTime endDate);
+    List<ConversationHistory> findByCreatedAtAfter(OffsetDateTime date);
 
     /**
      * Encuentra las últimas N conversaciones.
@@ -63,9 +71,13 @@ public interface ConversationHistoryRepository extends JpaRepository<Conversatio
     List<ConversationHistory> findRecentConversations(@Param("limit") int limit);
 
     /**
-     * Cuenta el número de conversaciones por modelo usado.
-     *
-     * @return número de conversaciones
+     * Proyección con los campos de un turno usados para construir el prompt.
      */
-    Long countByModelUsed(String modelUsed);
+    interface ConversationTurn {
+        Long getId();
+        String getConversationId();
+        String getUserMessage();
+        String getAiResponse();
+        OffsetDateTime getCreatedAt();
+    }
 }
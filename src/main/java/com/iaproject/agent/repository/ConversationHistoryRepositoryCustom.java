@@ -0,0 +1,27 @@
+package com.iaproject.agent.repository;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Consultas agregadas de uso de tokens servidas desde token_usage_hourly.
+ * Implementadas en ConversationHistoryRepositoryImpl.
+ */
+public interface ConversationHistoryRepositoryCustom {
+
+    /**
+     * Calcula el total de tokens usados en un rango de fechas (ambos extremos incluidos).
+     *
+     * @param startDate fecha de inicio
+     * @param endDate fecha de fin
+     * @return suma total de tokens
+     */
+    Long calculateTotalTokensUsed(OffsetDateTime startDate, OffsetDateTime endDate);
+
+    /**
+     * Cuenta el número de conversaciones por modelo usado.
+     *
+     * @param modelUsed modelo de IA
+     * @return número de conversaciones
+     */
+    Long countByModelUsed(String modelUsed);
+}
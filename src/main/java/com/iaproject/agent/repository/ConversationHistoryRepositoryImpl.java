@@ -0,0 +1,118 @@
+package com.iaproject.agent.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Implementación de las consultas agregadas de uso de tokens.
+ *
+ * Las horas completas anteriores a la marca de agua se leen de
+ * token_usage_hourly (O(buckets)). Solo los extremos parciales del rango y
+ * el tramo aún no agregado (posterior a la marca de agua) se leen de
+ * conversation_history, acotados por created_at (partition pruning).
+ *
+ * Nota: el agregado conserva los totales aunque la retención haya
+ * eliminado las particiones de historial correspondientes.
+ */
+public class ConversationHistoryRepositoryImpl implements ConversationHistoryRepositoryCustom {
+
+    static final String ROLLUP_NAME = "token_usage_hourly";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConversationHistoryRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Long calculateTotalTokensUsed(OffsetDateTime startDate, OffsetDateTime endDate) {
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            return 0L;
+        }
+
+        Optional<OffsetDateTime> watermark = watermark();
+        if (watermark.isEmpty()) {
+            return rawTokens(startDate, endDate, true);
+        }
+
+        OffsetDateTime fullStart = ceilHour(startDate);
+        OffsetDateTime fullEnd = min(floorHour(endDate), watermark.get());
+        if (!fullStart.isBefore(fullEnd)) {
+            return rawTokens(startDate, endDate, true);
+        }
+
+        // [startDate, fullStart) crudo + [fullStart, fullEnd) agregado + [fullEnd, endDate] crudo
+        return rawTokens(startDate, fullStart, false)
+                + rollupTokens(fullStart, fullEnd)
+                + rawTokens(fullEnd, endDate, true);
+    }
+
+    @Override
+    public Long countByModelUsed(String modelUsed) {
+        Optional<OffsetDateTime> watermark = watermark();
+        if (watermark.isEmpty()) {
+            return queryLong(modelUsed == null
+                    ? "SELECT COUNT(*) FROM conversation_history WHERE model_used IS NULL"
+                    : "SELECT COUNT(*) FROM conversation_history WHERE model_used = ?",
+                    modelUsed == null ? new Object[0] : new Object[]{modelUsed});
+        }
+
+        long aggregated = queryLong(
+                "SELECT COALESCE(SUM(request_count), 0) FROM token_usage_hourly " +
+                "WHERE model_used = ? AND bucket_start < ?",
+                modelUsed == null ? "" : modelUsed, watermark.get());
+        long recent = modelUsed == null
+                ? queryLong("SELECT COUNT(*) FROM conversation_history " +
+                            "WHERE model_used IS NULL AND created_at >= ?", watermark.get())
+                : queryLong("SELECT COUNT(*) FROM conversation_history " +
+                            "WHERE model_used = ? AND created_at >= ?", modelUsed, watermark.get());
+        return aggregated + recent;
+    }
+
+    /**
+     * Marca de agua del agregado: las horas anteriores ya están en token_usage_hourly.
+     */
+    Optional<OffsetDateTime> watermark() {
+        List<OffsetDateTime> rows = jdbcTemplate.queryForList(
+                "SELECT processed_until FROM rollup_watermark WHERE name = ?",
+                OffsetDateTime.class, ROLLUP_NAME);
+        return rows.isEmpty() ? Optional.empty() : Optional.ofNullable(rows.get(0));
+    }
+
+    private long rollupTokens(OffsetDateTime from, OffsetDateTime to) {
+        return queryLong(
+                "SELECT COALESCE(SUM(total_tokens), 0) FROM token_usage_hourly " +
+                "WHERE bucket_start >= ? AND bucket_start < ?",
+                from, to);
+    }
+
+    private long rawTokens(OffsetDateTime from, OffsetDateTime to, boolean inclusiveEnd) {
+        return queryLong(
+                "SELECT COALESCE(SUM(total_tokens), 0) FROM conversation_history " +
+                "WHERE created_at >= ? AND created_at " + (inclusiveEnd ? "<=" : "<") + " ?",
+                from, to);
+    }
+
+    private long queryLong(String sql, Object... args) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class, args);
+        return value != null ? value : 0L;
+    }
+
+    static OffsetDateTime floorHour(OffsetDateTime value) {
+        return value.withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+    }
+
+    static OffsetDateTime ceilHour(OffsetDateTime value) {
+        OffsetDateTime floor = floorHour(value);
+        return floor.isEqual(value) ? floor : floor.plusHours(1);
+    }
+
+    private static OffsetDateTime min(OffsetDateTime a, OffsetDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
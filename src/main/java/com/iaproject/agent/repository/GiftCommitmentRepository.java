@@ -4,12 +4,15 @@ import com.iaproject.agent.domain.Gift;
 import com.iaproject.agent.domain.GiftCommitment;
 import com.iaproject.agent.domain.enums.GiftStatus;
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repositorio para gestionar compromisos de regalos (reservas y aportes).
@@ -63,6 +66,21 @@ public interface GiftCommitmentRepository extends JpaRepository<GiftCommitment,
            "FROM GiftCommitment gc WHERE gc.gift.id = :giftId AND gc.isActive = true")
     BigDecimal sumActiveContributions(@Param("giftId") Long giftId);
 
+    /**
+     * Cancela un compromiso solo si sigue activo. Con dos cancelaciones
+     * concurrentes del mismo compromiso, solo una afecta la fila y descuenta
+     * los contadores del regalo.
+     *
+     * @param id ID del compromiso
+     * @param cancelledAt instante de cancelación
+     * @return 1 si se canceló, 0 si ya estaba cancelado
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE GiftCommitment gc SET gc.isActive = false, gc.cancelledAt = :cancelledAt " +
+           "WHERE gc.id = :id AND gc.isActive = true")
+    int cancelIfActive(@Param("id") Long id, @Param("cancelledAt") OffsetDateTime cancelledAt);
+
     /**
      * Cuenta cuántos compromisos activos tiene un regalo.
      * 
@@ -7,8 +7,12 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio para gestionar regalos de eventos.
@@ -42,6 +46,59 @@ public interface GiftRepository extends JpaRepository<Gift, Long> {
      */
     List<Gift> findByEventAndIsActiveTrueOrderByPriorityAsc(Event event);
 
+    /**
+     * Obtiene los regalos activos de un evento con su compromiso activo más
+     * reciente en una sola consulta (función de ventana sobre los compromisos
+     * del evento). El financiamiento viene en los contadores del propio regalo.
+     *
+     * @param eventId ID del evento
+     * @return regalos ordenados por prioridad ascendente (1 primero)
+     */
+    @Query("SELECT g AS gift, " +
+           "latest.guestName AS latestGuestName, " +
+           "latest.createdAt AS latestCreatedAt " +
+           "FROM Gift g " +
+           "LEFT JOIN (" +
+           "  SELECT c.gift.id AS giftId, " +
+           "  c.guestName AS guestName, " +
+           "  c.createdAt AS createdAt, " +
+           "  ROW_NUMBER() OVER (PARTITION BY c.gift.id ORDER BY c.createdAt DESC, c.id DESC) AS recency " +
+           "  FROM GiftCommitment c " +
+           "  WHERE c.isActive = true AND c.gift.event.id = :eventId" +
+           ") latest ON latest.giftId = g.id AND latest.recency = 1 " +
+           "WHERE g.event.id = :eventId AND g.isActive = true " +
+           "ORDER BY g.priority ASC")
+    List<GiftWithFunding> findActiveWithFundingByEventId(@Param("eventId") Long eventId);
+
+    /**
+     * Suma deltas a los contadores de financiamiento de un regalo con un
+     * UPDATE relativo (x = x + delta), que toma el lock de la fila: aportes
+     * concurrentes se serializan y ninguno pisa al otro. Debe ejecutarse en
+     * la misma transacción que crea o cancela el compromiso.
+     *
+     * Con enforcePrice, el UPDATE solo se aplica si el nuevo financiamiento
+     * no supera el precio del regalo (comprobación atómica, sin leer antes).
+     *
+     * @param giftId ID del regalo
+     * @param amountDelta monto a sumar (negativo al cancelar)
+     * @param countDelta compromisos a sumar (1 al crear, -1 al cancelar)
+     * @param enforcePrice si el financiamiento resultante no puede superar el precio
+     * @return contadores resultantes; vacío si el regalo no existe o superaría el precio
+     */
+    @Transactional
+    @Query(value = "UPDATE gifts SET " +
+                   "current_funding = current_funding + :amountDelta, " +
+                   "active_commitment_count = active_commitment_count + :countDelta " +
+                   "WHERE id = :giftId " +
+                   "AND (:enforcePrice = FALSE OR price IS NULL OR current_funding + :amountDelta <= price) " +
+                   "RETURNING current_funding AS \"currentFunding\", " +
+                   "active_commitment_count AS \"activeCommitmentCount\"",
+           nativeQuery = true)
+    Optional<FundingCounters> applyFundingDelta(@Param("giftId") Long giftId,
+                                                @Param("amountDelta") BigDecimal amountDelta,
+                                                @Param("countDelta") int countDelta,
+                                                @Param("enforcePrice") boolean enforcePrice);
+
     /**
      * Cuenta cuántos regalos de un evento tienen un estado específico.
      * 
@@ -70,4 +127,22 @@ public interface GiftRepository extends JpaRepository<Gift, Long> {
         GiftStatus getStatus();
         Long getCount();
     }
+
+    /**
+     * Interfaz de proyección de un regalo con su compromiso activo más reciente.
+     * Los valores del compromiso son null si el regalo no tiene compromisos activos.
+     */
+    interface GiftWithFunding {
+        Gift getGift();
+        String getLatestGuestName();
+        OffsetDateTime getLatestCreatedAt();
+    }
+
+    /**
+     * Interfaz de proyección de los contadores de financiamiento de un regalo.
+     */
+    interface FundingCounters {
+        BigDecimal getCurrentFunding();
+        Integer getActiveCommitmentCount();
+    }
 }
@@ -0,0 +1,28 @@
+package com.iaproject.agent.repository;
+
+import com.iaproject.agent.domain.GuardrailPattern;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repositorio de patrones de contenido de guardrails.
+ */
+@Repository
+public interface GuardrailPatternRepository extends JpaRepository<GuardrailPattern, Long> {
+
+    /**
+     * Encuentra los patrones activos que bloquean, en orden de prioridad.
+     *
+     * @return patrones activos, de mayor a menor prioridad
+     */
+    List<GuardrailPattern> findByActiveTrueAndShadowFalseOrderByPriorityAscIdAsc();
+
+    /**
+     * Encuentra los patrones activos en modo sombra, en orden de prioridad.
+     *
+     * @return patrones candidatos a evaluar en sombra
+     */
+    List<GuardrailPattern> findByActiveTrueAndShadowTrueOrderByPriorityAscIdAsc();
+}
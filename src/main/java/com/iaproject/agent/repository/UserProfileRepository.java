@@ -2,6 +2,8 @@ package com.iaproject.agent.repository;
 
 import com.iaproject.agent.domain.UserProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -28,4 +30,38 @@ public interface UserProfileRepository extends JpaRepository<UserProfile, Long>
      * @return true si existe el perfil
      */
     boolean existsByUserId(String userId);
+
+    /**
+     * Devuelve el perfil del userId, insertándolo con los valores dados si no
+     * existe, en un único round trip (INSERT ... ON CONFLICT DO NOTHING).
+     *
+     * El INSERT solo produce fila si la lectura no encontró el perfil, así no
+     * se consume la secuencia del id en cada lectura. Si otra transacción
+     * inserta el mismo userId a la vez, el ON CONFLICT evita el error de
+     * unicidad pero su fila aún no es visible para esta sentencia: en ese caso
+     * el resultado viene vacío y el llamador debe releer con findByUserId.
+     *
+     * @param userId identificador único del usuario
+     * @param preferredLanguage idioma inicial
+     * @param tone tono inicial (nombre del enum)
+     * @param verbosity nivel de detalle inicial (nombre del enum)
+     * @param emojiPreference preferencia de emojis inicial (nombre del enum)
+     * @return perfil existente o recién creado; vacío si perdió la carrera
+     */
+    @Query(value = "WITH existing AS (SELECT * FROM user_profile WHERE user_id = :userId), " +
+                   "inserted AS (" +
+                   "  INSERT INTO user_profile (user_id, preferred_language, tone, verbosity, emoji_preference, " +
+                   "                            past_decisions, last_updated_at, version, created_at) " +
+                   "  SELECT :userId, :preferredLanguage, :tone, :verbosity, :emojiPreference, " +
+                   "         '[]'::jsonb, now(), 0, now() " +
+                   "  WHERE NOT EXISTS (SELECT 1 FROM existing) " +
+                   "  ON CONFLICT (user_id) DO NOTHING " +
+                   "  RETURNING *) " +
+                   "SELECT * FROM existing UNION ALL SELECT * FROM inserted",
+           nativeQuery = true)
+    Optional<UserProfile> insertIfAbsent(@Param("userId") String userId,
+                                         @Param("preferredLanguage") String preferredLanguage,
+                                         @Param("tone") String tone,
+                                         @Param("verbosity") String verbosity,
+                                         @Param("emojiPreference") String emojiPreference);
 }
@@ -0,0 +1,33 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.CacheRefreshLoader;
+import com.iaproject.agent.repository.AllowedDomainRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recarga en segundo plano las entradas de la caché allowedDomains con las
+ * mismas consultas que AllowedDomainService: la clave 'all' son las keywords
+ * activas y cualquier otra es una categoría.
+ */
+@Component
+@RequiredArgsConstructor
+public class AllowedDomainCacheLoader implements CacheRefreshLoader {
+
+    private static final String ALL_KEYWORDS_KEY = "all";
+
+    private final AllowedDomainRepository allowedDomainRepository;
+
+    @Override
+    public String cacheName() {
+        return "allowedDomains";
+    }
+
+    @Override
+    public Object load(Object key) {
+        if (ALL_KEYWORDS_KEY.equals(key)) {
+            return allowedDomainRepository.findAllActiveKeywords();
+        }
+        return allowedDomainRepository.findByCategoryAndActiveTrue((String) key);
+    }
+}
@@ -0,0 +1,26 @@
+package com.iaproject.agent.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Descarta la caché de dominios permitidos y los índices de alcance cuando
+ * otra instancia (o un cambio directo en BD) modifica allowed_domain.
+ * El payload del canal es la categoría de la fila modificada.
+ */
+@Component
+@RequiredArgsConstructor
+public class AllowedDomainInvalidationListener implements CacheInvalidationListener {
+
+    private final AllowedDomainService allowedDomainService;
+
+    @Override
+    public String channel() {
+        return "allowed_domain";
+    }
+
+    @Override
+    public void onInvalidation(String category) {
+        allowedDomainService.evictLocalCaches(category);
+    }
+}
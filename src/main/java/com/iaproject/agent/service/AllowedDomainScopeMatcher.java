@@ -0,0 +1,240 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.AllowedDomain;
+import com.iaproject.agent.service.text.AhoCorasickMatcher;
+import com.iaproject.agent.service.text.BkTree;
+import com.iaproject.agent.service.text.NormalizedText;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Índice inmutable de las keywords de dominios permitidos para la validación
+ * de alcance (OUT_OF_SCOPE).
+ *
+ * Compila todas las keywords activas en un autómata Aho-Corasick, de modo
+ * que comprobar si un mensaje menciona alguna es una sola pasada lineal sobre
+ * el mensaje, sin importar cuántas keywords haya.
+ * Keywords y mensaje se comparan en forma normalizada (NormalizedText): sin
+ * distinguir mayúsculas, tildes ni leetspeak ("decoracion" encuentra "DECORACIÓN").
+ *
+ * Si el autómata no encuentra nada, findFuzzy tolera errores de tipeo
+ * ("babyshawer", "invitdos"): busca cada palabra del mensaje en un árbol BK
+ * de las keywords compactadas (solo letras y dígitos) que empiezan con la
+ * misma letra, con distancia de edición 1 desde 6 letras y 2 desde 9. Las
+ * keywords cortas ("bebé", "mamá") solo se aceptan exactas: a una edición
+ * están "debe", "mapa" o "cama".
+ *
+ * AllowedDomainService construye una instancia nueva cuando cambian los
+ * dominios y la reemplaza de forma atómica.
+ */
+public final class AllowedDomainScopeMatcher {
+
+    private static final AllowedDomainScopeMatcher EMPTY = new AllowedDomainScopeMatcher(List.of());
+
+    // Con menos letras, a una edición de distancia casi cualquier palabra es otra ("bebe" → "debe")
+    private static final int FUZZY_MIN_LENGTH = 6;
+    private static final int FUZZY_LONG_LENGTH = 9;
+
+    /**
+     * Keyword encontrada en el mensaje.
+     *
+     * @param keyword keyword del dominio permitido
+     * @param category categoría del dominio
+     * @param start índice inicial (inclusive) en el mensaje original
+     * @param end índice final (exclusivo) en el mensaje original
+     * @param distance ediciones respecto de la keyword (0 si coincide exacta)
+     */
+    public record Match(String keyword, String category, int start, int end, int distance) {
+    }
+
+    private record Keyword(String keyword, String category) {
+    }
+
+    private final AhoCorasickMatcher<Keyword> matcher;
+    // Un árbol por primera letra: los errores de tipeo casi nunca están en la inicial
+    private final Map<Character, BkTree<Keyword>> fuzzyIndex;
+    // Solo keywords de FUZZY_LONG_LENGTH letras o más, las únicas que admiten distancia 2
+    private final Map<Character, BkTree<Keyword>> fuzzyLongIndex;
+    private final int fuzzyMaxLength;
+    private final int size;
+
+    private AllowedDomainScopeMatcher(List<AllowedDomain> domains) {
+        AhoCorasickMatcher.Builder<Keyword> builder = AhoCorasickMatcher.builder();
+        Map<Character, BkTree.Builder<Keyword>> fuzzyBuilders = new HashMap<>();
+        Map<Character, BkTree.Builder<Keyword>> fuzzyLongBuilders = new HashMap<>();
+        int maxLength = 0;
+        int count = 0;
+        for (AllowedDomain domain : domains) {
+            if (domain.getKeyword() != null && !domain.getKeyword().isBlank()) {
+                String normalized = NormalizedText.normalize(domain.getKeyword());
+                Keyword keyword = new Keyword(domain.getKeyword(), domain.getCategory());
+                builder.add(normalized, keyword);
+                String compact = compact(normalized);
+                if (compact.length() >= FUZZY_MIN_LENGTH) {
+                    add(fuzzyBuilders, compact, keyword);
+                    if (compact.length() >= FUZZY_LONG_LENGTH) {
+                        add(fuzzyLongBuilders, compact, keyword);
+                    }
+                    maxLength = Math.max(maxLength, compact.length());
+                }
+                count++;
+            }
+        }
+        this.matcher = builder.build();
+        this.fuzzyIndex = build(fuzzyBuilders);
+        this.fuzzyLongIndex = build(fuzzyLongBuilders);
+        this.fuzzyMaxLength = maxLength;
+        this.size = count;
+    }
+
+    /**
+     * Construye el índice a partir de los dominios activos.
+     *
+     * @param domains dominios activos
+     * @return índice inmutable
+     */
+    public static AllowedDomainScopeMatcher of(List<AllowedDomain> domains) {
+        return domains.isEmpty() ? EMPTY : new AllowedDomainScopeMatcher(domains);
+    }
+
+    /**
+     * @return true si no hay keywords configuradas
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return número de keywords indexadas
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Busca la primera keyword que termina en el mensaje al recorrerlo.
+     *
+     * @param message mensaje del usuario
+     * @return keyword y categoría encontradas, o vacío si ninguna aparece
+     */
+    public Optional<Match> findFirst(CharSequence message) {
+        return findFirst(NormalizedText.of(message != null ? message.toString() : null));
+    }
+
+    /**
+     * Busca la primera keyword en un mensaje ya normalizado.
+     *
+     * @param message mensaje normalizado (compartido con el resto de analizadores)
+     * @return keyword y categoría encontradas, o vacío si ninguna aparece
+     */
+    public Optional<Match> findFirst(NormalizedText message) {
+        Match[] found = new Match[1];
+        matcher.search(message.text(), (start, end, keyword) -> {
+            found[0] = new Match(keyword.keyword(), keyword.category(),
+                    message.originalStart(start), message.originalEnd(end), 0);
+            return false;
+        });
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * Busca una keyword escrita con errores de tipeo. Cada palabra del mensaje
+     * (y cada par de palabras consecutivas unidas, para "baby shawer") se busca
+     * en el árbol BK, que descarta por desigualdad triangular casi todo el
+     * diccionario: el costo por palabra es casi constante.
+     *
+     * Pensado para ejecutarse solo cuando findFirst no encontró nada.
+     *
+     * @param message mensaje normalizado
+     * @return la primera keyword aproximada en orden de aparición, o vacío
+     */
+    public Optional<Match> findFuzzy(NormalizedText message) {
+        if (fuzzyIndex.isEmpty()) {
+            return Optional.empty();
+        }
+        String text = message.text();
+        int start = nextToken(text, 0);
+        while (start < text.length()) {
+            int end = tokenEnd(text, start);
+            String token = text.substring(start, end);
+            Optional<BkTree.Match<Keyword>> best = nearest(token);
+            int bestEnd = end;
+
+            int nextStart = nextToken(text, end);
+            if (nextStart < text.length()) {
+                int nextEnd = tokenEnd(text, nextStart);
+                Optional<BkTree.Match<Keyword>> joined = nearest(token + text.substring(nextStart, nextEnd));
+                if (joined.isPresent() && (best.isEmpty() || joined.get().distance() < best.get().distance())) {
+                    best = joined;
+                    bestEnd = nextEnd;
+                }
+            }
+            if (best.isPresent()) {
+                Keyword keyword = best.get().value();
+                return Optional.of(new Match(keyword.keyword(), keyword.category(),
+                        message.originalStart(start), message.originalEnd(bestEnd), best.get().distance()));
+            }
+            start = nextStart;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Keyword más cercana con la misma inicial. Distancia 2 solo si palabra y
+     * keyword tienen al menos FUZZY_LONG_LENGTH letras.
+     */
+    private Optional<BkTree.Match<Keyword>> nearest(String token) {
+        if (token.length() < FUZZY_MIN_LENGTH || token.length() > fuzzyMaxLength + 2) {
+            return Optional.empty();
+        }
+        Character initial = token.charAt(0);
+        Optional<BkTree.Match<Keyword>> best = fuzzyIndex.getOrDefault(initial, BkTree.empty()).findNearest(token, 1);
+        if (best.isEmpty() && token.length() >= FUZZY_LONG_LENGTH) {
+            best = fuzzyLongIndex.getOrDefault(initial, BkTree.empty()).findNearest(token, 2);
+        }
+        return best;
+    }
+
+    private static void add(Map<Character, BkTree.Builder<Keyword>> builders, String compact, Keyword keyword) {
+        builders.computeIfAbsent(compact.charAt(0), initial -> BkTree.builder()).add(compact, keyword);
+    }
+
+    private static Map<Character, BkTree<Keyword>> build(Map<Character, BkTree.Builder<Keyword>> builders) {
+        Map<Character, BkTree<Keyword>> trees = new HashMap<>();
+        builders.forEach((initial, builder) -> trees.put(initial, builder.build()));
+        return Map.copyOf(trees);
+    }
+
+    private static int nextToken(String text, int from) {
+        int index = from;
+        while (index < text.length() && !Character.isLetterOrDigit(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int tokenEnd(String text, int start) {
+        int index = start;
+        while (index < text.length() && Character.isLetterOrDigit(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Keyword normalizada sin espacios ni signos: "baby shower" → "babyshower".
+     */
+    private static String compact(String normalized) {
+        StringBuilder compact = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                compact.append(c);
+            }
+        }
+        return compact.toString();
+    }
+}
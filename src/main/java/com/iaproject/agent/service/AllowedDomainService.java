@@ -8,12 +8,31 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Servicio para gestionar dominios permitidos.
  * Proporciona operaciones CRUD y caching para optimizar consultas frecuentes.
+ *
+ * Además mantiene los índices de keywords usados por la validación de alcance
+ * (AllowedDomainScopeMatcher): uno por categoría, que es el que se aplica a un
+ * evento de esa categoría, y uno global con todas las categorías para cuando
+ * el contexto no indica ninguna conocida. Se construyen bajo demanda y se
+ * reemplazan de forma atómica: editar una categoría solo descarta su índice
+ * (y el global), no los de las demás.
+ * Cada invalidación incrementa la versión de alcance, que forma parte de la
+ * clave de la caché de veredictos de guardrails (GuardrailVerdictCache).
+ *
+ * Los cambios hechos en otra instancia llegan por LISTEN/NOTIFY
+ * (AllowedDomainInvalidationListener → evictLocalCaches).
  */
 @Slf4j
 @Service
@@ -22,6 +41,11 @@ public class AllowedDomainService {
 
     private final AllowedDomainRepository allowedDomainRepository;
 
+    private final AtomicReference<AllowedDomainScopeMatcher> scopeMatcher = new AtomicReference<>();
+    private final Map<String, AllowedDomainScopeMatcher> categoryMatchers = new ConcurrentHashMap<>();
+    private final AtomicReference<Set<String>> scopeCategories = new AtomicReference<>();
+    private final AtomicLong scopeVersion = new AtomicLong();
+
     /**
      * Obtiene todas las keywords de dominios activos.
      * Resultado cacheado para optimizar validaciones frecuentes.
@@ -35,6 +59,76 @@ public class AllowedDomainService {
         return keywords;
     }
 
+    /**
+     * Obtiene el índice de keywords activas para la validación de alcance.
+     * Se construye en la primera consulta tras cada invalidación y se publica
+     * ya completo, de modo que ningún lector ve un índice a medio construir.
+     *
+     * @return índice inmutable de keywords y categorías
+     */
+    public AllowedDomainScopeMatcher getScopeMatcher() {
+        AllowedDomainScopeMatcher current = scopeMatcher.get();
+        if (current != null) {
+            return current;
+        }
+        synchronized (scopeMatcher) {
+            current = scopeMatcher.get();
+            if (current == null) {
+                current = AllowedDomainScopeMatcher.of(allowedDomainRepository.findByActiveTrue());
+                scopeMatcher.set(current);
+                log.debug("Índice de alcance reconstruido con {} keywords", current.size());
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Obtiene el índice de keywords activas de una categoría. Se construye en
+     * la primera consulta tras cada invalidación de esa categoría.
+     *
+     * @param category categoría de dominios
+     * @return índice inmutable (vacío si la categoría no tiene keywords activas)
+     */
+    public AllowedDomainScopeMatcher getScopeMatcher(String category) {
+        return categoryMatchers.computeIfAbsent(category, key -> {
+            AllowedDomainScopeMatcher matcher =
+                    AllowedDomainScopeMatcher.of(allowedDomainRepository.findByCategoryAndActiveTrue(key));
+            log.debug("Índice de alcance de la categoría {} reconstruido con {} keywords", key, matcher.size());
+            return matcher;
+        });
+    }
+
+    /**
+     * Categorías con al menos un dominio activo.
+     *
+     * @return conjunto inmutable de categorías
+     */
+    public Set<String> getScopeCategories() {
+        Set<String> current = scopeCategories.get();
+        if (current != null) {
+            return current;
+        }
+        long version = scopeVersion.get();
+        Set<String> loaded = Set.copyOf(allowedDomainRepository.findActiveCategories());
+        synchronized (scopeCategories) {
+            // Solo se publica si nadie invalidó mientras se consultaba
+            if (scopeVersion.get() == version) {
+                scopeCategories.compareAndSet(null, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Versión de los dominios permitidos: cambia cada vez que se invalida el
+     * índice de alcance. Debe leerse antes de consultar el índice.
+     *
+     * @return versión actual
+     */
+    public long getScopeVersion() {
+        return scopeVersion.get();
+    }
+
     /**
      * Obtiene dominios activos por categoría.
      *
@@ -65,6 +159,7 @@ public class AllowedDomainService {
                 .build();
 
         AllowedDomain saved = allowedDomainRepository.save(domain);
+        invalidateScopeMatcher(category);
         log.info("✅ Dominio permitido creado: keyword={}, category={}", keyword, category);
         return saved;
     }
@@ -83,6 +178,7 @@ public class AllowedDomainService {
         
         domain.setActive(active);
         allowedDomainRepository.save(domain);
+        invalidateScopeMatcher(domain.getCategory());
         log.info("✅ Dominio {} actualizado: keyword={}, active={}", id, domain.getKeyword(), active);
     }
 
@@ -94,7 +190,10 @@ public class AllowedDomainService {
     @Transactional
     @CacheEvict(value = "allowedDomains", allEntries = true)
     public void delete(Long id) {
-        allowedDomainRepository.deleteById(id);
+        allowedDomainRepository.findById(id).ifPresent(domain -> {
+            allowedDomainRepository.delete(domain);
+            invalidateScopeMatcher(domain.getCategory());
+        });
         log.info("✅ Dominio {} eliminado", id);
     }
 
@@ -113,6 +212,54 @@ public class AllowedDomainService {
      */
     @CacheEvict(value = "allowedDomains", allEntries = true)
     public void clearCache() {
+        invalidateScopeMatcher(null);
         log.info("✅ Caché de dominios permitidos limpiada");
     }
+
+    /**
+     * Descarta la caché y los índices de esta instancia sin tocar la BD. Lo
+     * invoca el bus de invalidación cuando allowed_domain cambia en otra
+     * instancia o directamente en BD.
+     *
+     * @param category categoría modificada, o null para descartar todas
+     */
+    @CacheEvict(value = "allowedDomains", allEntries = true)
+    public void evictLocalCaches(String category) {
+        resetScopeMatcher(category);
+        log.debug("Caché de dominios permitidos invalidada remotamente (categoría {})",
+                category != null ? category : "todas");
+    }
+
+    /**
+     * Descarta los índices de alcance afectados. Dentro de una transacción se
+     * descartan también al confirmar, para que no quede un índice construido
+     * con los datos anteriores al commit.
+     *
+     * @param category categoría modificada, o null para descartar todas
+     */
+    private void invalidateScopeMatcher(String category) {
+        resetScopeMatcher(category);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    resetScopeMatcher(category);
+                }
+            });
+        }
+    }
+
+    private void resetScopeMatcher(String category) {
+        // Primero los índices: quien lea la versión nueva ya no puede obtener los anteriores
+        scopeMatcher.set(null);
+        if (category != null) {
+            categoryMatchers.remove(category);
+        } else {
+            categoryMatchers.clear();
+        }
+        synchronized (scopeCategories) {
+            scopeCategories.set(null);
+            scopeVersion.incrementAndGet();
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.AnonymousProfileProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Job de limpieza de perfiles anónimos abandonados en user_profile.
+ *
+ * Antes de AnonymousProfileStore cada petición sin userId insertaba una fila
+ * anon-UUID. Se eliminan, por lotes, las filas anónimas que:
+ * - Nunca se actualizaron (version = 0)
+ * - Son más antiguas que cleanup-min-age
+ * - Tienen como mucho un mensaje en conversation_history (el ID no se reutilizó)
+ */
+@Slf4j
+@Service
+public class AnonymousProfileCleanupService {
+
+    private static final String DELETE_BATCH_SQL =
+            "DELETE FROM user_profile WHERE id IN (" +
+            "  SELECT p.id FROM user_profile p" +
+            "  WHERE p.user_id LIKE 'anon-%'" +
+            "    AND p.version = 0" +
+            "    AND p.created_at < ?" +
+            "    AND (SELECT COUNT(*) FROM (" +
+            "         SELECT 1 FROM conversation_history ch WHERE ch.user_id = p.user_id LIMIT 2) c) < 2" +
+            "  LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AnonymousProfileProperties properties;
+    private final Counter deletedRows;
+
+    public AnonymousProfileCleanupService(JdbcTemplate jdbcTemplate,
+                                          AnonymousProfileProperties properties,
+                                          MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.deletedRows = Counter.builder("user.profile.anonymous.cleanup.deleted")
+                .description("Filas de perfiles anónimos abandonados eliminadas")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecución diaria de la limpieza.
+     */
+    @Scheduled(cron = "${app.user-profile.anonymous.cleanup-cron:0 45 3 * * *}", zone = "UTC")
+    public void runCleanup() {
+        if (!properties.isCleanupEnabled()) {
+            return;
+        }
+
+        try {
+            long deleted = cleanup(Instant.now());
+            log.info("✅ Limpieza de perfiles anónimos: filas eliminadas={}", deleted);
+        } catch (Exception e) {
+            log.error("❌ Error en limpieza de perfiles anónimos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Elimina por lotes los perfiles anónimos abandonados.
+     * Cada lote es una sentencia independiente para no mantener bloqueos largos.
+     *
+     * @param now instante de referencia
+     * @return total de filas eliminadas
+     */
+    long cleanup(Instant now) {
+        Timestamp cutoff = Timestamp.from(now.minus(properties.getCleanupMinAge()));
+        int batchSize = Math.max(1, properties.getCleanupBatchSize());
+
+        long total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(DELETE_BATCH_SQL, cutoff, batchSize);
+            total += deleted;
+            deletedRows.increment(deleted);
+        } while (deleted >= batchSize);
+        return total;
+    }
+}
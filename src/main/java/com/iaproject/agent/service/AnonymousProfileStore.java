@@ -0,0 +1,129 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.AnonymousProfileProperties;
+import com.iaproject.agent.domain.UserProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Almacén en memoria de perfiles efímeros para userId anónimos generados.
+ *
+ * Un userId anónimo generado en el servidor (anon-UUID) casi nunca se vuelve
+ * a usar: guardar su perfil en BD genera una fila por petición que nadie lee.
+ * Estos perfiles viven solo aquí (acotados por tamaño y TTL) y se promueven a
+ * una fila real cuando el cliente reutiliza el ID o envía un comando de
+ * preferencia (ver UserProfileService).
+ */
+@Slf4j
+@Component
+public class AnonymousProfileStore {
+
+    private final AnonymousProfileProperties properties;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    private final Counter created;
+    private final Counter promoted;
+
+    public AnonymousProfileStore(AnonymousProfileProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    AnonymousProfileStore(AnonymousProfileProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+        int maxEntries = properties.getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.created = Counter.builder("user.profile.anonymous")
+                .tag("event", "created")
+                .description("Perfiles anónimos efímeros creados en memoria")
+                .register(meterRegistry);
+        this.promoted = Counter.builder("user.profile.anonymous")
+                .tag("event", "promoted")
+                .description("Perfiles anónimos promovidos a fila en BD")
+                .register(meterRegistry);
+        Gauge.builder("user.profile.anonymous.size", this, AnonymousProfileStore::size)
+                .description("Perfiles anónimos efímeros en memoria")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra un perfil efímero para un userId anónimo recién generado.
+     *
+     * @param profile perfil por defecto (sin id)
+     * @return copia del perfil registrado
+     */
+    public UserProfile put(UserProfile profile) {
+        long expiresAt = clock.getAsLong() + properties.getTtl().toMillis();
+        synchronized (entries) {
+            entries.put(profile.getUserId(), new Entry(UserProfileCache.copy(profile), expiresAt));
+        }
+        created.increment();
+        return UserProfileCache.copy(profile);
+    }
+
+    /**
+     * Retira el perfil efímero de un userId para promoverlo a BD.
+     *
+     * @param userId identificador anónimo
+     * @return perfil efímero, o vacío si no existe o expiró
+     */
+    public Optional<UserProfile> take(String userId) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(userId);
+        }
+        if (entry == null || clock.getAsLong() >= entry.expiresAt) {
+            return Optional.empty();
+        }
+        promoted.increment();
+        log.debug("Perfil anónimo efímero promovido: userId={}", userId);
+        return Optional.of(UserProfileCache.copy(entry.profile));
+    }
+
+    /**
+     * Elimina periódicamente los perfiles efímeros expirados.
+     */
+    @Scheduled(fixedDelayString = "${app.user-profile.anonymous.purge-interval:PT5M}")
+    public void purgeExpired() {
+        long now = clock.getAsLong();
+        int removed = 0;
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (now >= iterator.next().expiresAt) {
+                    iterator.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            log.debug("Perfiles anónimos efímeros expirados eliminados: {}", removed);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(UserProfile profile, long expiresAt) {
+    }
+}
@@ -0,0 +1,267 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.CacheInvalidationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Bus de invalidación de cachés entre instancias sobre LISTEN/NOTIFY de Postgres.
+ *
+ * Cada instancia mantiene una conexión dedicada (fuera del pool de Hikari,
+ * para no retener una conexión del pool indefinidamente) que escucha los
+ * canales de los CacheInvalidationListener registrados. Los triggers de las
+ * tablas cacheadas (ver V15) notifican al confirmar cada cambio, y cada
+ * instancia descarta lo afectado en milisegundos.
+ *
+ * Si la conexión se pierde se reintenta con espera exponencial; al
+ * reconectar se vuelve a escuchar y se pide a cada suscriptor una recarga
+ * completa (onResync), porque lo notificado mientras tanto se perdió.
+ *
+ * Métricas: cache.invalidation.notifications{channel},
+ * cache.invalidation.reconnects y cache.invalidation.connected.
+ */
+@Slf4j
+@Service
+public class CacheInvalidationBus {
+
+    // LISTEN no admite parámetros: el canal se concatena, así que se valida
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    /**
+     * Abre la conexión dedicada de escucha.
+     */
+    @FunctionalInterface
+    interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final CacheInvalidationProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, List<CacheInvalidationListener>> listeners = new ConcurrentHashMap<>();
+    private final Counter reconnects;
+    private final AtomicBoolean connected = new AtomicBoolean(false);
+
+    // Solo los usa el hilo de escucha
+    private Connection connection;
+    private boolean everConnected;
+    private final Set<String> listening = new HashSet<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public CacheInvalidationBus(DataSourceProperties dataSourceProperties,
+                                List<CacheInvalidationListener> listeners,
+                                CacheInvalidationProperties properties,
+                                MeterRegistry meterRegistry) {
+        this(() -> DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                        dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword()),
+                listeners, properties, meterRegistry);
+    }
+
+    CacheInvalidationBus(ConnectionFactory connectionFactory,
+                         List<CacheInvalidationListener> listeners,
+                         CacheInvalidationProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.connectionFactory = connectionFactory;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.reconnects = Counter.builder("cache.invalidation.reconnects")
+                .description("Reconexiones del bus de invalidación tras perder la conexión")
+                .register(meterRegistry);
+        Gauge.builder("cache.invalidation.connected", connected, flag -> flag.get() ? 1 : 0)
+                .description("1 si la conexión LISTEN está abierta")
+                .register(meterRegistry);
+        listeners.forEach(this::subscribe);
+    }
+
+    /**
+     * Suscribe un listener a su canal. Con la conexión abierta, el canal
+     * nuevo se escucha en la siguiente lectura (a lo sumo pollTimeout).
+     *
+     * @param listener suscriptor
+     */
+    public void subscribe(CacheInvalidationListener listener) {
+        String channel = listener.channel();
+        if (channel == null || !CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Canal de invalidación inválido: " + channel);
+        }
+        listeners.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Arranca el hilo de escucha una vez que todos los beans están listos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled() || listeners.isEmpty() || running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "cache-invalidation-bus");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        Thread current = worker;
+        if (current != null) {
+            current.interrupt();
+            try {
+                // La lectura en curso termina como mucho tras pollTimeout
+                current.join(properties.getPollTimeout().toMillis() * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return true si la conexión de escucha está abierta
+     */
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    private void run() {
+        long delay = properties.getReconnectInitialDelay().toMillis();
+        while (running) {
+            try {
+                pollOnce();
+                delay = properties.getReconnectInitialDelay().toMillis();
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("❌ Bus de invalidación desconectado ({}), reintentando en {} ms", e.getMessage(), delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                delay = Math.min(delay * 2, properties.getReconnectMaxDelay().toMillis());
+            }
+        }
+        disconnect();
+    }
+
+    /**
+     * Una iteración del hilo de escucha: conecta si hace falta, escucha los
+     * canales nuevos y entrega las notificaciones recibidas.
+     *
+     * @throws SQLException si la conexión falla (queda cerrada y la siguiente llamada reconecta)
+     */
+    void pollOnce() throws SQLException {
+        try {
+            if (connection == null) {
+                connect();
+            }
+            listenNewChannels();
+            PGNotification[] notifications = connection.unwrap(PGConnection.class)
+                    .getNotifications((int) properties.getPollTimeout().toMillis());
+            if (notifications == null) {
+                return;
+            }
+            for (PGNotification notification : notifications) {
+                dispatch(notification.getName(), notification.getParameter());
+            }
+        } catch (SQLException | RuntimeException e) {
+            // La siguiente iteración abre una conexión nueva y recarga todo
+            disconnect();
+            throw e;
+        }
+    }
+
+    private void connect() throws SQLException {
+        connection = connectionFactory.connect();
+        connection.setAutoCommit(true);
+        listening.clear();
+        // Primero LISTEN y luego la recarga: ningún cambio cae entre ambos
+        listenNewChannels();
+        connected.set(true);
+        if (everConnected) {
+            reconnects.increment();
+        }
+        everConnected = true;
+        log.info("✅ Bus de invalidación escuchando canales {}", listening);
+        listeners.values().forEach(channelListeners -> channelListeners.forEach(listener -> {
+            try {
+                listener.onResync();
+            } catch (RuntimeException e) {
+                log.error("❌ Error recargando la caché del canal {}: {}", listener.channel(), e.getMessage(), e);
+            }
+        }));
+    }
+
+    private void listenNewChannels() throws SQLException {
+        for (String channel : listeners.keySet()) {
+            if (!listening.contains(channel)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                listening.add(channel);
+            }
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        List<CacheInvalidationListener> channelListeners = listeners.get(channel);
+        if (channelListeners == null) {
+            return;
+        }
+        Counter.builder("cache.invalidation.notifications")
+                .description("Notificaciones de invalidación recibidas")
+                .tag("channel", channel)
+                .register(meterRegistry)
+                .increment();
+        String key = payload == null || payload.isEmpty() ? null : payload;
+        for (CacheInvalidationListener listener : channelListeners) {
+            try {
+                listener.onInvalidation(key);
+            } catch (RuntimeException e) {
+                log.error("❌ Error invalidando la caché del canal {} (clave {}): {}", channel, key, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void disconnect() {
+        if (connection == null) {
+            return;
+        }
+        connected.set(false);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Error cerrando la conexión de escucha: {}", e.getMessage());
+        }
+        connection = null;
+        listening.clear();
+    }
+}
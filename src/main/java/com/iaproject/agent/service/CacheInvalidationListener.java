@@ -0,0 +1,32 @@
+package com.iaproject.agent.service;
+
+/**
+ * Suscriptor del bus de invalidación entre instancias (CacheInvalidationBus).
+ *
+ * Cada bean escucha un canal de Postgres; el trigger de la tabla cacheada
+ * (ver notify_cache_invalidation en V15) notifica en ese canal la clave de
+ * la fila modificada. Las notificaciones se entregan en el hilo del bus, una
+ * a una: el trabajo debe ser breve (descartar entradas, no recargarlas).
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * @return canal de Postgres (identificador en minúsculas, p. ej. "allowed_domain")
+     */
+    String channel();
+
+    /**
+     * Descarta lo cacheado para la clave notificada.
+     *
+     * @param key valor de la columna clave de la fila modificada, o null para descartar todo
+     */
+    void onInvalidation(String key);
+
+    /**
+     * Se invoca al (re)conectar: las notificaciones emitidas mientras no se
+     * escuchaba se perdieron, así que se descarta todo.
+     */
+    default void onResync() {
+        onInvalidation(null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.iaproject.agent.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.stereotype.Component;
+
+/**
+ * Implementación de ProfileInferenceModel sobre el ChatClient de Spring AI.
+ * Temperatura 0 para que la salida estructurada sea lo más estable posible.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatClientProfileInferenceModel implements ProfileInferenceModel {
+
+    private final ChatClient chatClient;
+
+    @Override
+    public Completion complete(String systemPrompt, String userPrompt, String model) {
+        ChatResponse response = chatClient.prompt()
+                .system(systemPrompt)
+                .user(userPrompt)
+                .options(OpenAiChatOptions.builder()
+                        .withModel(model)
+                        .withTemperature(0.0)
+                        .build())
+                .call()
+                .chatResponse();
+
+        String content = response.getResult().getOutput().getContent();
+        long promptTokens = 0;
+        long completionTokens = 0;
+        if (response.getMetadata() != null && response.getMetadata().getUsage() != null) {
+            var usage = response.getMetadata().getUsage();
+            promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+            completionTokens = usage.getGenerationTokens() != null ? usage.getGenerationTokens() : 0;
+        }
+        return new Completion(content, promptTokens, completionTokens);
+    }
+}
@@ -10,6 +10,7 @@ import com.iaproject.agent.model.TokenUsage;
 import com.iaproject.agent.repository.ConversationHistoryRepository;
 import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
 import com.iaproject.agent.service.mapper.UserProfileMapper;
+import com.iaproject.agent.service.text.NormalizedText;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -20,9 +21,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 /**
  * Servicio orquestador central para el procesamiento de mensajes de chat.
@@ -36,7 +41,7 @@ import java.util.UUID;
  * 6. Si ALLOW: construir prompt con System + Profile + Context + History
  * 7. Llamar a Spring AI
  * 8. Generar quick replies
- * 9. Persistir conversación con metadatos completos
+ * 9. Persistir conversación con metadatos completos (escritura diferida en lotes)
  * 10. Inferir y actualizar perfil (si aplica)
  * 11. Devolver respuesta
  * 
@@ -53,9 +58,8 @@ public class ChatOrchestratorService {
     private final ProfileInferenceService profileInferenceService;
     private final QuickReplyService quickReplyService;
     private final ConversationHistoryRepository conversationHistoryRepository;
-
-    // Configuración de memoria corta (últimos N mensajes)
-    private static final int MAX_HISTORY_MESSAGES = 5;
+    private final ConversationWindowCache conversationWindowCache;
+    private final ConversationHistoryWriteBuffer conversationHistoryWriteBuffer;
 
     /**
      * Procesa un mensaje completo: guardrails, perfil, IA, persistencia.
@@ -71,8 +75,10 @@ public class ChatOrchestratorService {
         String userId = extractOrGenerateUserId(request);
         log.debug("UserId: {}", userId);
 
-        // 2. Cargar perfil del usuario
-        UserProfile profile = userProfileService.getOrCreate(userId);
+        // 2. Cargar perfil del usuario (efímero si el userId se acaba de generar)
+        UserProfile profile = isProvidedUserId(request)
+                ? userProfileService.getOrCreate(userId)
+                : userProfileService.createEphemeral(userId);
         log.debug("Perfil cargado: tone={}, verbosity={}, emoji={}", 
                 profile.getTone(), profile.getVerbosity(), profile.getEmojiPreference());
 
@@ -84,9 +90,11 @@ public class ChatOrchestratorService {
         List<ConversationHistory> history = loadConversationHistory(conversationId);
         log.debug("Historial cargado: {} mensajes", history.size());
 
-        // 4. Evaluar guardrails (pre-IA)
+        // 4. Evaluar guardrails (pre-IA) sobre el mensaje normalizado una sola vez
+        // (lo comparten guardrails, validación de alcance y comandos de perfil)
+        NormalizedText normalizedMessage = NormalizedText.of(request.getMessage());
         GuardrailEvaluationResult guardrailResult = guardrailPolicyService.evaluate(
-                request, profile, history);
+                request, normalizedMessage, profile, history);
 
         // 5. Si BLOCK o REDIRECT: responder sin llamar a la IA
         if (!guardrailResult.isAllowed()) {
@@ -144,7 +152,7 @@ public class ChatOrchestratorService {
 
         // 12. Inferir y actualizar perfil (si aplica)
         int messageCount = history.size() + 1; // +1 por el mensaje actual
-        profileInferenceService.inferAndUpdateProfile(userId, request.getMessage(), messageCount);
+        profileInferenceService.inferAndUpdateProfile(userId, normalizedMessage, messageCount);
 
         log.info("✅ Procesamiento completado exitosamente");
         return response;
@@ -154,19 +162,25 @@ public class ChatOrchestratorService {
      * Extrae o genera el userId desde el request.
      */
     private String extractOrGenerateUserId(ChatRequest request) {
-        if (request.getMetadata() != null && request.getMetadata().getUserId() != null) {
-            String userId = request.getMetadata().getUserId();
-            if (!userId.isBlank()) {
-                return userId;
-            }
+        if (isProvidedUserId(request)) {
+            return request.getMetadata().getUserId();
         }
-        
+
         // Generar userId anónimo
         String anonymousId = userProfileService.generateAnonymousUserId();
         log.info("userId no proporcionado, generando anónimo: {}", anonymousId);
         return anonymousId;
     }
 
+    /**
+     * Indica si el request trae un userId propio (no hay que generarlo).
+     */
+    private boolean isProvidedUserId(ChatRequest request) {
+        return request.getMetadata() != null
+                && request.getMetadata().getUserId() != null
+                && !request.getMetadata().getUserId().isBlank();
+    }
+
     private String extractDomainId(ChatRequest request) {
         if (request.getMetadata() != null) {
             return request.getMetadata().getDomainId();
@@ -183,16 +197,49 @@ public class ChatOrchestratorService {
 
     /**
      * Carga el historial de conversación (últimos N mensajes).
+     * Primero consulta la caché en memoria; si no está, lee de BD solo
+     * los últimos N turnos, los combina con los turnos aún pendientes de
+     * escritura (write-behind) y carga la ventana en la caché.
      */
     private List<ConversationHistory> loadConversationHistory(String conversationId) {
+        Optional<List<ConversationHistory>> cached = conversationWindowCache.get(conversationId);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        int windowSize = conversationWindowCache.getWindowSize();
+        // Antes de cualquier lectura: si un turno se agrega mientras tanto, put descarta esta carga
+        long loadGeneration = conversationWindowCache.generation();
+        // Leer pendientes antes que BD: una fila que se escriba entremedio aparece
+        // en ambos lados (se descarta por id) en lugar de perderse
+        List<ConversationHistory> pending = conversationHistoryWriteBuffer.pending(conversationId);
         List<ConversationHistory> history = conversationHistoryRepository
-                .findByConversationIdOrderByCreatedAtDesc(conversationId);
-        
-        // Limitar a los últimos MAX_HISTORY_MESSAGES
-        if (history.size() > MAX_HISTORY_MESSAGES) {
-            history = history.subList(0, MAX_HISTORY_MESSAGES);
+                .findRecentTurns(conversationId, windowSize)
+                .stream()
+                .map(turn -> ConversationHistory.builder()
+                        .id(turn.getId())
+                        .conversationId(turn.getConversationId())
+                        .userMessage(turn.getUserMessage())
+                        .aiResponse(turn.getAiResponse())
+                        .createdAt(turn.getCreatedAt())
+                        .build())
+                .collect(Collectors.toList());
+
+        if (!pending.isEmpty()) {
+            Set<Long> persistedIds = history.stream()
+                    .map(ConversationHistory::getId)
+                    .collect(Collectors.toSet());
+            for (ConversationHistory turn : pending) {
+                if (turn.getId() == null || !persistedIds.contains(turn.getId())) {
+                    history.add(0, turn);
+                }
+            }
+            if (history.size() > windowSize) {
+                history = new ArrayList<>(history.subList(0, windowSize));
+            }
         }
-        
+
+        conversationWindowCache.put(conversationId, history, loadGeneration);
         return history;
     }
 
@@ -434,10 +481,12 @@ public class ChatOrchestratorService {
                     .guardrailAction(guardrailAction)
                     .guardrailReason(guardrailReason)
                     .quickReplies(quickReplies)
+                    .createdAt(OffsetDateTime.now())
                     .build();
 
-            conversationHistoryRepository.save(history);
-            log.info("✅ Historial guardado: conversationId={}, userId={}, guardrail={}/{}", 
+            conversationHistoryWriteBuffer.write(history);
+            conversationWindowCache.append(history);
+            log.info("✅ Historial registrado: conversationId={}, userId={}, guardrail={}/{}", 
                     history.getConversationId(), userId, guardrailAction, guardrailReason);
         } catch (Exception e) {
             log.error("❌ Error al guardar historial: {}", e.getMessage(), e);
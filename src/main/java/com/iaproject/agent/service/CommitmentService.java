@@ -15,7 +15,8 @@ import java.time.OffsetDateTime;
  * Servicio para gestionar compromisos de regalos (reservas y aportes).
  * Responsabilidades:
  * - Consultar commitments por token
- * - Cancelar commitments
+ * - Cancelar commitments (descontando los contadores de financiamiento del regalo
+ *   y recalculando su estado)
  */
 @Slf4j
 @Service
@@ -23,6 +24,7 @@ import java.time.OffsetDateTime;
 public class CommitmentService {
 
     private final GiftCommitmentRepository commitmentRepository;
+    private final GiftService giftService;
     private final EventMapper eventMapper;
 
     /**
@@ -37,7 +39,8 @@ public class CommitmentService {
     }
 
     /**
-     * Cancela un commitment.
+     * Cancela un commitment y descuenta su aporte de los contadores del
+     * regalo en la misma transacción.
      */
     @Transactional
     public void cancelCommitment(String token) {
@@ -50,9 +53,11 @@ public class CommitmentService {
             throw new IllegalStateException("Este compromiso ya está cancelado");
         }
 
-        commitment.setIsActive(false);
-        commitment.setCancelledAt(OffsetDateTime.now());
-        commitmentRepository.save(commitment);
+        // Cancelación condicional: una cancelación concurrente no descuenta dos veces
+        if (commitmentRepository.cancelIfActive(commitment.getId(), OffsetDateTime.now()) == 0) {
+            throw new IllegalStateException("Este compromiso ya está cancelado");
+        }
+        giftService.releaseFunding(commitment.getGift(), commitment.getContributionAmount());
         
         log.info("✅ Commitment cancelado: id={}", commitment.getId());
     }
@@ -0,0 +1,197 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.domain.enums.GuardrailReason;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import com.iaproject.agent.service.text.LinearPatternSet;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Detecta intentos de prompt injection o manipulación del sistema y
+ * contenido inseguro o prohibido, en una sola pasada sobre el mensaje normalizado.
+ *
+ * Las reglas vigentes forman un Ruleset inmutable publicado por una referencia
+ * volatile: la ruta de la petición solo lee esa referencia, sin locks ni
+ * recompilar. Arranca con CONTENT_RULES y GuardrailPatternReloadService lo
+ * reemplaza con los patrones de la tabla guardrail_pattern.
+ */
+@Component
+public class ContentPatternGuardrailRule implements GuardrailRule {
+
+    /**
+     * Conjunto de reglas compilado. Cada publicación tiene una versión mayor
+     * que la anterior, que invalida los veredictos cacheados.
+     *
+     * @param version versión (0 = reglas por defecto del código)
+     * @param rules reglas en orden de prioridad
+     * @param source origen de las reglas ("default" o "database")
+     * @param loadedAt instante de publicación
+     * @param matcher conjunto RE2 con todas las reglas
+     * @param blockResults resultado de bloqueo por regla
+     */
+    record Ruleset(long version,
+                   List<ContentRule> rules,
+                   String source,
+                   Instant loadedAt,
+                   LinearPatternSet<ContentRule> matcher,
+                   Map<ContentRule, GuardrailEvaluationResult> blockResults) {
+    }
+
+    /**
+     * Regla de contenido: expresión regular con su categoría.
+     *
+     * @param id identificador estable de la regla (logs y métricas)
+     * @param regex expresión regular (sintaxis RE2, ver LinearPatternSet)
+     * @param flags flags de java.util.regex.Pattern
+     * @param reason categoría reportada al bloquear
+     */
+    record ContentRule(String id, String regex, int flags, GuardrailReason reason) {
+    }
+
+    private static final int CI = Pattern.CASE_INSENSITIVE;
+    private static final int CI_UNICODE = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    // Reglas de prompt injection y de contenido prohibido (unsafe), en orden de prioridad:
+    // ante varias coincidencias se reporta la primera de la lista (INJECTION antes que UNSAFE).
+    // Se evalúan sobre el mensaje normalizado (NormalizedText), por eso se escriben sin tildes:
+    // "actua\s+como" cubre también "ACTÚA como" y "4ctua como"
+    static final List<ContentRule> CONTENT_RULES = List.of(
+            new ContentRule("injection.ignore-instruction", "ignore.*instruction", CI, GuardrailReason.INJECTION),
+            new ContentRule("injection.system-prompt", "system\\s+prompt", CI, GuardrailReason.INJECTION),
+            new ContentRule("injection.act-as", "act\\s+as", CI_UNICODE, GuardrailReason.INJECTION),
+            new ContentRule("injection.actua-como", "actua\\s+como", CI_UNICODE, GuardrailReason.INJECTION),
+            new ContentRule("injection.revela-prompt", "revela.*prompt", CI_UNICODE, GuardrailReason.INJECTION),
+            new ContentRule("injection.developer-message", "developer\\s+message", CI, GuardrailReason.INJECTION),
+            new ContentRule("injection.mensaje-desarrollador", "mensaje\\s+del\\s+desarrollador", CI_UNICODE,
+                    GuardrailReason.INJECTION),
+            new ContentRule("injection.api-key", "api\\s+key", CI, GuardrailReason.INJECTION),
+            new ContentRule("injection.token", "\\btoken\\b", CI, GuardrailReason.INJECTION),
+            new ContentRule("injection.credenciales", "credenciales", CI_UNICODE, GuardrailReason.INJECTION),
+            new ContentRule("injection.forget-previous", "forget.*previous", CI, GuardrailReason.INJECTION),
+            new ContentRule("injection.olvida-anterior", "olvida.*anterior", CI_UNICODE, GuardrailReason.INJECTION),
+            new ContentRule("injection.override-instructions", "override\\s+instructions", CI,
+                    GuardrailReason.INJECTION),
+            new ContentRule("injection.bypass-rules", "bypass\\s+rules", CI, GuardrailReason.INJECTION),
+            new ContentRule("unsafe.hacking", "\\b(hack|exploit|vulnerability)\\b", CI, GuardrailReason.UNSAFE),
+            new ContentRule("unsafe.fraud", "\\b(spam|phishing|scam)\\b", CI, GuardrailReason.UNSAFE)
+            // Agregar más según políticas específicas
+    );
+
+    // Todas las reglas compiladas con RE2/J: tiempo lineal por mensaje, sin backtracking
+    private volatile Ruleset ruleset = compile(CONTENT_RULES, 0L, "default");
+
+    @Override
+    public String id() {
+        return "content-patterns";
+    }
+
+    @Override
+    public long estimatedCostNanos() {
+        return 20_000L;
+    }
+
+    @Override
+    public GuardrailAction rejectAction() {
+        return GuardrailAction.BLOCK;
+    }
+
+    /**
+     * Los patrones cambian en caliente: su versión invalida los veredictos cacheados.
+     */
+    @Override
+    public long version() {
+        return ruleset.version();
+    }
+
+    @Override
+    public GuardrailEvaluationResult evaluate(GuardrailContext context) {
+        Ruleset current = ruleset;
+        Optional<LinearPatternSet.Match<ContentRule>> match = current.matcher().findFirst(context.message().text());
+        if (match.isEmpty()) {
+            return GuardrailEvaluationResult.ALLOWED;
+        }
+        return current.blockResults().get(match.get().value());
+    }
+
+    /**
+     * @return conjunto de reglas en uso
+     */
+    Ruleset currentRuleset() {
+        return ruleset;
+    }
+
+    /**
+     * Compila y publica un nuevo conjunto de reglas. Si alguna regla no compila
+     * no se publica nada y se conserva el conjunto en uso.
+     *
+     * @param rules reglas en orden de prioridad
+     * @param source origen de las reglas
+     * @return conjunto publicado
+     * @throws IllegalArgumentException si alguna regla no es válida (con todas las inválidas)
+     */
+    synchronized Ruleset publish(List<ContentRule> rules, String source) {
+        Ruleset compiled = compile(rules, ruleset.version() + 1, source);
+        ruleset = compiled;
+        return compiled;
+    }
+
+    private static GuardrailEvaluationResult blockResult(ContentRule rule) {
+        if (rule.reason() == GuardrailReason.INJECTION) {
+            return GuardrailEvaluationResult.builder()
+                    .action(GuardrailAction.BLOCK)
+                    .reason(GuardrailReason.INJECTION)
+                    .ruleId(rule.id())
+                    .predefinedResponse(
+                            "No puedo procesar tu solicitud. " +
+                            "Por favor, reformula tu pregunta de manera natural.")
+                    .quickReplies(List.of(
+                            "¿Cómo puedo ayudarte?",
+                            "Ver opciones",
+                            "Hablar con soporte"
+                    ))
+                    .build();
+        }
+        return GuardrailEvaluationResult.builder()
+                .action(GuardrailAction.BLOCK)
+                .reason(rule.reason())
+                .ruleId(rule.id())
+                .predefinedResponse(
+                        "Tu mensaje contiene contenido que no puedo procesar. " +
+                        "Por favor, reformula tu pregunta.")
+                .quickReplies(List.of(
+                        "Ver temas disponibles",
+                        "Ayuda",
+                        "Contactar soporte"
+                ))
+                .build();
+    }
+
+    private static Ruleset compile(List<ContentRule> rules, long version, String source) {
+        LinearPatternSet.Builder<ContentRule> builder = LinearPatternSet.builder();
+        // El resultado de bloqueo solo depende de la regla: se construye una vez por regla
+        Map<ContentRule, GuardrailEvaluationResult> blockResults = new IdentityHashMap<>();
+        List<String> errors = new ArrayList<>();
+        for (ContentRule rule : rules) {
+            try {
+                builder.add(rule.regex(), rule.flags(), rule);
+                blockResults.put(rule, blockResult(rule));
+            } catch (IllegalArgumentException e) {
+                errors.add(rule.id() + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Patrones de guardrails inválidos: " + String.join("; ", errors));
+        }
+        return new Ruleset(version, List.copyOf(rules), source, Instant.now(), builder.build(),
+                Collections.unmodifiableMap(blockResults));
+    }
+}
@@ -0,0 +1,311 @@
+package com.iaproject.agent.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Servicio de exportación del historial de conversaciones.
+ *
+ * Lee las filas con un cursor de servidor (fetch size dentro de una transacción
+ * de solo lectura) y las escribe directamente al OutputStream en NDJSON o CSV.
+ * Ninguna lista de resultados se materializa en memoria: el consumo es constante
+ * sin importar el tamaño de la exportación.
+ */
+@Slf4j
+@Service
+public class ConversationExportService {
+
+    /**
+     * Filas que el driver trae por viaje. Con autocommit desactivado el driver de
+     * Postgres usa un cursor y nunca mantiene más de este número de filas.
+     */
+    static final int FETCH_SIZE = 1000;
+
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] COLUMNS = {
+            "id", "conversationId", "userId", "domainId", "eventId", "intent",
+            "userMessage", "aiResponse", "modelUsed", "promptTokens", "completionTokens",
+            "totalTokens", "guardrailAction", "guardrailReason", "quickReplies", "createdAt"
+    };
+
+    private static final String SELECT_SQL =
+            "SELECT id, conversation_id, user_id, domain_id, event_id, intent, user_message, ai_response, " +
+            "model_used, prompt_tokens, completion_tokens, total_tokens, guardrail_action, guardrail_reason, " +
+            "quick_replies::text AS quick_replies, created_at FROM conversation_history";
+
+    /**
+     * Formatos de exportación soportados.
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final MeterRegistry meterRegistry;
+
+    public ConversationExportService(DataSource dataSource,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Exporta el historial que cumple los filtros, en orden cronológico.
+     * Al menos eventId o un extremo del rango de fechas es obligatorio.
+     *
+     * @param eventId ID del evento (opcional)
+     * @param domainId ID del dominio (opcional)
+     * @param from fecha de inicio incluida (opcional)
+     * @param to fecha de fin excluida (opcional)
+     * @param format formato de salida
+     * @param out stream de destino (no se cierra)
+     * @return número de filas exportadas
+     */
+    public long export(String eventId, String domainId, OffsetDateTime from, OffsetDateTime to,
+                       Format format, OutputStream out) {
+        if (eventId == null && from == null && to == null) {
+            throw new IllegalArgumentException("Se requiere eventId o un rango de fechas para exportar");
+        }
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append(" WHERE 1 = 1");
+        if (eventId != null) {
+            sql.append(" AND event_id = ?");
+            args.add(eventId);
+        }
+        if (domainId != null) {
+            sql.append(" AND domain_id = ?");
+            args.add(domainId);
+        }
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(to);
+        }
+        sql.append(" ORDER BY created_at, id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITER_BUFFER_SIZE);
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+
+        long rows;
+        try {
+            rowWriter.start();
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.query(sql.toString(), rowWriter, args.toArray()));
+            rowWriter.finish();
+            writer.flush();
+            rows = rowWriter.rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Counter.builder("conversation.export.rows")
+                .tag("format", format.name().toLowerCase(Locale.ROOT))
+                .description("Filas de historial exportadas")
+                .register(meterRegistry)
+                .increment(rows);
+        log.info("✅ Exportación de historial completada: filas={}, formato={}, eventId={}, domainId={}",
+                rows, format, eventId, domainId);
+        return rows;
+    }
+
+    /**
+     * Escribe cada fila del cursor en cuanto llega.
+     */
+    private abstract static class RowWriter implements RowCallbackHandler {
+
+        protected long rows;
+
+        abstract void start() throws IOException;
+
+        abstract void write(ResultSet rs) throws SQLException, IOException;
+
+        abstract void finish() throws IOException;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                write(rs);
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Un objeto JSON por línea (NDJSON).
+     */
+    private final class NdjsonRowWriter extends RowWriter {
+
+        private final Writer writer;
+        private JsonGenerator generator;
+
+        private NdjsonRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void start() throws IOException {
+            generator = jsonFactory.createGenerator(writer);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            writeString("conversationId", rs.getString("conversation_id"));
+            writeString("userId", rs.getString("user_id"));
+            writeString("domainId", rs.getString("domain_id"));
+            writeString("eventId", rs.getString("event_id"));
+            writeString("intent", rs.getString("intent"));
+            writeString("userMessage", rs.getString("user_message"));
+            writeString("aiResponse", rs.getString("ai_response"));
+            writeString("modelUsed", rs.getString("model_used"));
+            writeInteger("promptTokens", rs, "prompt_tokens");
+            writeInteger("completionTokens", rs, "completion_tokens");
+            writeInteger("totalTokens", rs, "total_tokens");
+            writeString("guardrailAction", rs.getString("guardrail_action"));
+            writeString("guardrailReason", rs.getString("guardrail_reason"));
+            String quickReplies = rs.getString("quick_replies");
+            generator.writeFieldName("quickReplies");
+            if (quickReplies != null) {
+                generator.writeRawValue(quickReplies);
+            } else {
+                generator.writeNull();
+            }
+            writeString("createdAt", String.valueOf(rs.getObject("created_at", OffsetDateTime.class)));
+            generator.writeEndObject();
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (rows > 0) {
+                generator.writeRaw('\n');
+            }
+            generator.flush();
+        }
+
+        private void writeString(String field, String value) throws IOException {
+            generator.writeStringField(field, value);
+        }
+
+        private void writeInteger(String field, ResultSet rs, String column) throws SQLException, IOException {
+            int value = rs.getInt(column);
+            if (rs.wasNull()) {
+                generator.writeNullField(field);
+            } else {
+                generator.writeNumberField(field, value);
+            }
+        }
+    }
+
+    /**
+     * CSV según RFC 4180 con cabecera.
+     */
+    private static final class CsvRowWriter extends RowWriter {
+
+        private static final String[] SQL_COLUMNS = {
+                "id", "conversation_id", "user_id", "domain_id", "event_id", "intent",
+                "user_message", "ai_response", "model_used", "prompt_tokens", "completion_tokens",
+                "total_tokens", "guardrail_action", "guardrail_reason", "quick_replies", "created_at"
+        };
+
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        void start() throws IOException {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < SQL_COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = "created_at".equals(SQL_COLUMNS[i])
+                        ? rs.getObject(SQL_COLUMNS[i], OffsetDateTime.class)
+                        : rs.getString(SQL_COLUMNS[i]);
+                if (value != null) {
+                    writeField(value.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        void finish() {
+            // Sin pie
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.ConversationWriteBehindProperties;
+import com.iaproject.agent.domain.ConversationHistory;
+import com.iaproject.agent.repository.ConversationHistoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffer de escritura diferida (write-behind) para el historial de conversación.
+ *
+ * Acumula filas en memoria y las escribe en lotes JDBC reales cuando:
+ * - se alcanza el tamaño de lote configurado, o
+ * - pasa el tiempo máximo de espera (max-staleness).
+ *
+ * Garantías:
+ * - Las filas se encolan solo tras el commit de la transacción del chat
+ * - Si el buffer está lleno, la fila se guarda de forma síncrona (sin pérdida)
+ * - Al apagar la aplicación se vacía el buffer completo antes de cerrar la BD
+ *
+ * Requiere IDs por secuencia (pooled) en ConversationHistory: con IDENTITY
+ * Hibernate no puede agrupar los INSERT en lotes.
+ */
+@Slf4j
+@Component
+public class ConversationHistoryWriteBuffer {
+
+    private final ConversationHistoryRepository conversationHistoryRepository;
+    private final ConversationWriteBehindProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<ConversationHistory> queue;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile List<ConversationHistory> inFlight = List.of();
+
+    private final Counter persistedRows;
+    private final Counter synchronousRows;
+    private final Counter failedRows;
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+
+    public ConversationHistoryWriteBuffer(ConversationHistoryRepository conversationHistoryRepository,
+                                          ConversationWriteBehindProperties properties,
+                                          PlatformTransactionManager transactionManager,
+                                          MeterRegistry meterRegistry) {
+        this.conversationHistoryRepository = conversationHistoryRepository;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversation-history-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.persistedRows = Counter.builder("conversation.history.persisted")
+                .description("Filas de historial escritas en BD")
+                .register(meterRegistry);
+        this.synchronousRows = Counter.builder("conversation.history.persisted.sync")
+                .description("Filas escritas de forma síncrona (buffer deshabilitado o lleno)")
+                .register(meterRegistry);
+        this.failedRows = Counter.builder("conversation.history.persist.failed")
+                .description("Filas de historial que no se pudieron escribir")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("conversation.history.flush.batch.size")
+                .description("Filas escritas por flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("conversation.history.flush")
+                .description("Duración de cada flush del buffer de historial")
+                .register(meterRegistry);
+        Gauge.builder("conversation.history.buffer.size", queue, BlockingQueue::size)
+                .description("Filas de historial pendientes de escritura")
+                .register(meterRegistry);
+
+        if (properties.isEnabled()) {
+            long stalenessMs = properties.getMaxStaleness().toMillis();
+            flusher.scheduleWithFixedDelay(this::flushQuietly, stalenessMs, stalenessMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Registra una fila de historial para escritura.
+     * Si hay una transacción activa, se encola solo tras el commit.
+     *
+     * @param history fila a persistir
+     */
+    public void write(ConversationHistory history) {
+        if (!properties.isEnabled()) {
+            conversationHistoryRepository.save(history);
+            synchronousRows.increment();
+            persistedRows.increment();
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(history);
+                }
+            });
+        } else {
+            enqueue(history);
+        }
+    }
+
+    /**
+     * Devuelve las filas pendientes (aún no escritas) de una conversación.
+     * Permite leer lo propio escrito aunque el flush no haya ocurrido.
+     *
+     * @param conversationId ID de la conversación
+     * @return filas pendientes en orden de llegada
+     */
+    public List<ConversationHistory> pending(String conversationId) {
+        // Cola antes que inFlight: flush publica inFlight antes de sacar filas
+        // de la cola, así una fila en tránsito se ve en uno de los dos lados
+        List<ConversationHistory> queued = new ArrayList<>();
+        for (ConversationHistory history : queue) {
+            if (conversationId.equals(history.getConversationId())) {
+                queued.add(history);
+            }
+        }
+
+        List<ConversationHistory> result = new ArrayList<>();
+        Set<ConversationHistory> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ConversationHistory history : inFlight) {
+            if (conversationId.equals(history.getConversationId()) && seen.add(history)) {
+                result.add(history);
+            }
+        }
+        for (ConversationHistory history : queued) {
+            if (seen.add(history)) {
+                result.add(history);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Escribe en BD todas las filas pendientes en lotes del tamaño configurado.
+     *
+     * @return número de filas escritas
+     */
+    public synchronized int flush() {
+        int written = 0;
+        List<ConversationHistory> batch = peekBatch();
+        while (!batch.isEmpty()) {
+            // Publicar el lote antes de sacarlo de la cola (ver pending)
+            inFlight = batch;
+            for (int i = 0; i < batch.size(); i++) {
+                queue.poll();
+            }
+            try {
+                written += writeBatch(batch);
+            } finally {
+                inFlight = List.of();
+            }
+            batch = peekBatch();
+        }
+        return written;
+    }
+
+    /**
+     * Copia las primeras filas de la cola sin sacarlas. Solo flush (sincronizado)
+     * saca filas, así que son exactamente las que luego devuelve poll.
+     */
+    private List<ConversationHistory> peekBatch() {
+        List<ConversationHistory> batch = new ArrayList<>(properties.getBatchSize());
+        Iterator<ConversationHistory> iterator = queue.iterator();
+        while (batch.size() < properties.getBatchSize() && iterator.hasNext()) {
+            batch.add(iterator.next());
+        }
+        return List.copyOf(batch);
+    }
+
+    /**
+     * Vacía el buffer al apagar la aplicación.
+     * Se ejecuta antes de cerrar el DataSource (dependencia de este bean).
+     */
+    @PreDestroy
+    public void drain() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(properties.getMaxStaleness().toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int written = flush();
+        log.info("✅ Buffer de historial vaciado al apagar: {} filas escritas", written);
+    }
+
+    private void enqueue(ConversationHistory history) {
+        if (flusher.isShutdown()) {
+            writeBatch(List.of(history));
+            synchronousRows.increment();
+            return;
+        }
+        if (!queue.offer(history)) {
+            log.warn("Buffer de historial lleno ({}), escribiendo de forma síncrona", properties.getQueueCapacity());
+            writeBatch(List.of(history));
+            synchronousRows.increment();
+            return;
+        }
+
+        if (queue.size() >= properties.getBatchSize() && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("❌ Error al vaciar buffer de historial: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Escribe un lote en una sola transacción (INSERT agrupados por JDBC batch).
+     * Si el lote falla, reintenta fila por fila para aislar la fila inválida.
+     */
+    private int writeBatch(List<ConversationHistory> batch) {
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> conversationHistoryRepository.saveAll(batch)));
+            batchSizes.record(batch.size());
+            persistedRows.increment(batch.size());
+            log.debug("Lote de historial escrito: {} filas", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            log.warn("Fallo al escribir lote de {} filas, reintentando individualmente: {}",
+                    batch.size(), e.getMessage());
+        }
+
+        int written = 0;
+        for (ConversationHistory history : batch) {
+            try {
+                history.setId(null);
+                transactionTemplate.executeWithoutResult(status -> conversationHistoryRepository.save(history));
+                persistedRows.increment();
+                written++;
+            } catch (Exception e) {
+                failedRows.increment();
+                log.error("❌ Error al guardar historial: conversationId={}, error={}",
+                        history.getConversationId(), e.getMessage(), e);
+            }
+        }
+        return written;
+    }
+}
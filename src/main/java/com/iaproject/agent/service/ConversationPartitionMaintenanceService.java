@@ -0,0 +1,181 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.ConversationPartitionProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Job de mantenimiento de las particiones mensuales de conversation_history.
+ *
+ * Responsabilidades:
+ * - Crear por adelantado las particiones de los próximos N meses
+ * - Desacoplar (DETACH) o eliminar (DROP) particiones fuera de la retención
+ * - Publicar el tamaño de índices por partición para vigilar que quepan en memoria
+ *
+ * Las particiones siguen el formato conversation_history_pYYYY_MM (ver V9).
+ */
+@Slf4j
+@Service
+public class ConversationPartitionMaintenanceService {
+
+    private static final String PARENT_TABLE = "conversation_history";
+    private static final Pattern PARTITION_NAME = Pattern.compile("^conversation_history_p(\\d{4})_(\\d{2})$");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConversationPartitionProperties properties;
+
+    private final AtomicLong partitionCount = new AtomicLong();
+    private final AtomicLong maxPartitionIndexBytes = new AtomicLong();
+
+    public ConversationPartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                                   ConversationPartitionProperties properties,
+                                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+
+        Gauge.builder("conversation.history.partitions", partitionCount, AtomicLong::get)
+                .description("Particiones mensuales adjuntas a conversation_history")
+                .register(meterRegistry);
+        Gauge.builder("conversation.history.partition.index.max", maxPartitionIndexBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .description("Tamaño total de índices de la partición más grande")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Asegura las particiones futuras al arrancar (sin esperar al cron).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        runMaintenance();
+    }
+
+    /**
+     * Ejecución diaria del mantenimiento de particiones.
+     */
+    @Scheduled(cron = "${app.conversation.partitions.cron:0 15 3 * * *}", zone = "UTC")
+    public void runMaintenance() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        try {
+            YearMonth current = YearMonth.now(ZoneOffset.UTC);
+            List<String> created = createUpcomingPartitions(current);
+            List<String> expired = applyRetention(current);
+            refreshIndexSizes();
+            log.info("✅ Mantenimiento de particiones: creadas/aseguradas={}, expiradas={} ({})",
+                    created.size(), expired, properties.getRetentionAction());
+        } catch (Exception e) {
+            log.error("❌ Error en mantenimiento de particiones de conversation_history: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Crea (si no existen) las particiones del mes actual y los próximos N meses.
+     *
+     * @param current mes actual (UTC)
+     * @return nombres de las particiones aseguradas
+     */
+    List<String> createUpcomingPartitions(YearMonth current) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i <= properties.getPremakeMonths(); i++) {
+            LocalDate month = current.plusMonths(i).atDay(1);
+            names.add(jdbcTemplate.queryForObject(
+                    "SELECT create_conversation_history_partition(?)", String.class, month));
+        }
+        return names;
+    }
+
+    /**
+     * Desacopla o elimina las particiones anteriores a la ventana de retención.
+     *
+     * @param current mes actual (UTC)
+     * @return nombres de las particiones expiradas procesadas
+     */
+    List<String> applyRetention(YearMonth current) {
+        YearMonth oldestKept = current.minusMonths(properties.getRetentionMonths());
+        List<String> expired = new ArrayList<>();
+
+        for (String partition : listPartitions()) {
+            Optional<YearMonth> month = parseMonth(partition);
+            if (month.isEmpty() || !month.get().isBefore(oldestKept)) {
+                continue;
+            }
+
+            jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+            if (properties.getRetentionAction() == ConversationPartitionProperties.RetentionAction.DROP) {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            expired.add(partition);
+            log.info("Partición expirada procesada: {} ({})", partition, properties.getRetentionAction());
+        }
+        return expired;
+    }
+
+    /**
+     * Lista las particiones mensuales adjuntas a conversation_history.
+     */
+    List<String> listPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ? ORDER BY c.relname",
+                String.class, PARENT_TABLE);
+    }
+
+    /**
+     * Calcula el tamaño total de índices de cada partición.
+     *
+     * @return partición → bytes de índices
+     */
+    List<Map<String, Object>> indexSizesByPartition() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname AS partition, COALESCE(SUM(pg_relation_size(ix.indexrelid)), 0) AS index_bytes " +
+                "FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "LEFT JOIN pg_index ix ON ix.indrelid = c.oid " +
+                "WHERE p.relname = ? GROUP BY c.relname",
+                PARENT_TABLE);
+    }
+
+    private void refreshIndexSizes() {
+        long max = 0;
+        int count = 0;
+        for (Map<String, Object> row : indexSizesByPartition()) {
+            long bytes = ((Number) row.get("index_bytes")).longValue();
+            log.debug("Partición {}: índices={} bytes", row.get("partition"), bytes);
+            max = Math.max(max, bytes);
+            count++;
+        }
+        partitionCount.set(count);
+        maxPartitionIndexBytes.set(max);
+    }
+
+    static Optional<YearMonth> parseMonth(String partition) {
+        Matcher matcher = PARTITION_NAME.matcher(partition);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+    }
+}
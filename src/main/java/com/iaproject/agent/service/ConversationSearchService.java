@@ -0,0 +1,178 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.service.dto.ConversationSearchResponse;
+import com.iaproject.agent.service.dto.ConversationSearchResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Servicio de búsqueda de texto completo sobre el historial de conversaciones.
+ *
+ * Usa la columna generada search_vector (tsvector 'spanish', ver V11) y su
+ * índice GIN: search_vector @@ websearch_to_tsquery(...). Nunca LIKE.
+ *
+ * Orden: relevancia (ts_rank) descendente, luego fecha e ID descendentes.
+ * Paginación keyset: el cursor codifica (rank, createdAt, id) de la última
+ * fila devuelta, por lo que las páginas siguientes no usan OFFSET.
+ */
+@Slf4j
+@Service
+public class ConversationSearchService {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Timer searchTimer;
+
+    public ConversationSearchService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchTimer = Timer.builder("conversation.search")
+                .description("Duración de las búsquedas de texto completo en el historial")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Busca conversaciones por texto con filtros opcionales.
+     *
+     * @param query texto a buscar (sintaxis websearch: "frase", OR, -palabra)
+     * @param eventId ID del evento (opcional)
+     * @param domainId ID del dominio (opcional)
+     * @param from fecha de inicio incluida, UTC (opcional)
+     * @param to fecha de fin excluida, UTC (opcional)
+     * @param cursor cursor de la página anterior (opcional)
+     * @param limit tamaño de página (1..100, por defecto 20)
+     * @return página de resultados y cursor de la siguiente
+     */
+    public ConversationSearchResponse search(String query, String eventId, String domainId,
+                                             LocalDateTime from, LocalDateTime to,
+                                             String cursor, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("El texto de búsqueda es obligatorio");
+        }
+        int pageSize = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, conversation_id, user_id, domain_id, event_id, user_message, ai_response, " +
+                "created_at, rank FROM (" +
+                "SELECT ch.id, ch.conversation_id, ch.user_id, ch.domain_id, ch.event_id, ch.user_message, " +
+                "ch.ai_response, ch.created_at, ts_rank(ch.search_vector, q.query) AS rank " +
+                "FROM conversation_history ch, websearch_to_tsquery('spanish', ?) AS q(query) " +
+                "WHERE ch.search_vector @@ q.query");
+        args.add(query.trim());
+
+        if (eventId != null) {
+            sql.append(" AND ch.event_id = ?");
+            args.add(eventId);
+        }
+        if (domainId != null) {
+            sql.append(" AND ch.domain_id = ?");
+            args.add(domainId);
+        }
+        if (from != null) {
+            sql.append(" AND ch.created_at >= ?");
+            args.add(from.atOffset(ZoneOffset.UTC));
+        }
+        if (to != null) {
+            sql.append(" AND ch.created_at < ?");
+            args.add(to.atOffset(ZoneOffset.UTC));
+        }
+        sql.append(") r");
+
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor position = Cursor.decode(cursor);
+            sql.append(" WHERE (r.rank, r.created_at, r.id) < (?::real, ?, ?)");
+            args.add(position.rank());
+            args.add(position.createdAt());
+            args.add(position.id());
+        }
+        sql.append(" ORDER BY r.rank DESC, r.created_at DESC, r.id DESC LIMIT ?");
+        args.add(pageSize + 1);
+
+        Timer.Sample sample = Timer.start();
+        List<Row> rows = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new Row(
+                rs.getLong("id"),
+                rs.getString("conversation_id"),
+                rs.getString("user_id"),
+                rs.getString("domain_id"),
+                rs.getString("event_id"),
+                rs.getString("user_message"),
+                rs.getString("ai_response"),
+                rs.getObject("created_at", OffsetDateTime.class),
+                rs.getFloat("rank")), args.toArray());
+        sample.stop(searchTimer);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Row> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Row last = page.get(page.size() - 1);
+            nextCursor = new Cursor(last.rank(), last.createdAt(), last.id()).encode();
+        }
+
+        log.debug("Búsqueda en historial: resultados={}, hayMas={}, eventId={}, domainId={}",
+                page.size(), hasMore, eventId, domainId);
+
+        return ConversationSearchResponse.builder()
+                .results(page.stream().map(ConversationSearchService::toResult).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static ConversationSearchResult toResult(Row row) {
+        return ConversationSearchResult.builder()
+                .id(row.id())
+                .conversationId(row.conversationId())
+                .userId(row.userId())
+                .domainId(row.domainId())
+                .eventId(row.eventId())
+                .userMessage(row.userMessage())
+                .aiResponse(row.aiResponse())
+                .rank(row.rank())
+                .createdAt(row.createdAt().withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime())
+                .build();
+    }
+
+    private record Row(long id, String conversationId, String userId, String domainId, String eventId,
+                       String userMessage, String aiResponse, OffsetDateTime createdAt, float rank) {
+    }
+
+    /**
+     * Posición keyset de la última fila devuelta.
+     * Se codifica en Base64 URL como "rank|createdAt|id".
+     */
+    record Cursor(float rank, OffsetDateTime createdAt, long id) {
+
+        String encode() {
+            String raw = Float.toString(rank) + CURSOR_SEPARATOR + createdAt + CURSOR_SEPARATOR + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\|", -1);
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Cursor de búsqueda inválido");
+                }
+                return new Cursor(Float.parseFloat(parts[0]), OffsetDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor de búsqueda inválido", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.ConversationWindowCacheProperties;
+import com.iaproject.agent.domain.ConversationHistory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché en memoria de la ventana de memoria corta de cada conversación.
+ *
+ * Mantiene, por conversationId, un ring buffer con los últimos N turnos
+ * (más reciente primero) para evitar leer el historial completo en cada mensaje.
+ *
+ * Políticas de expulsión:
+ * - Tamaño: máximo de conversaciones en memoria (LRU por acceso)
+ * - TTL: expira tras un tiempo sin escrituras (protege contra otras instancias)
+ *
+ * Solo guarda los campos necesarios para el prompt (mensaje, respuesta y fecha).
+ *
+ * Carga tras un miss: quien lee de BD toma antes generation() y la pasa a
+ * put. Cada append incrementa la generación y, si la conversación no estaba
+ * en memoria, la anota; put descarta una carga iniciada antes de un append a
+ * su conversación (le faltaría ese turno) y nunca reemplaza una ventana ya
+ * cargada, que recibe los appends desde su carga.
+ */
+@Slf4j
+@Component
+public class ConversationWindowCache {
+
+    private final ConversationWindowCacheProperties properties;
+    private final LongSupplier clock;
+    private final Map<String, Window> windows;
+    // Generación del último append a conversaciones sin ventana; acotado como windows
+    private final Map<String, Long> uncachedAppends;
+    private long generation;
+    private long evictedAppendGeneration;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final DistributionSummary rowsFetched;
+    private final DistributionSummary bytesFetched;
+
+    public ConversationWindowCache(ConversationWindowCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    ConversationWindowCache(ConversationWindowCacheProperties properties,
+                            MeterRegistry meterRegistry,
+                            LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+        int maxConversations = properties.getMaxConversations();
+        this.windows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > maxConversations;
+            }
+        };
+        this.uncachedAppends = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maxConversations) {
+                    // Sin el registro exacto, se asume que cualquier carga anterior quedó desactualizada
+                    evictedAppendGeneration = Math.max(evictedAppendGeneration, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("conversation.window.cache")
+                .tag("result", "hit")
+                .description("Lecturas de ventana de conversación servidas desde memoria")
+                .register(meterRegistry);
+        this.misses = Counter.builder("conversation.window.cache")
+                .tag("result", "miss")
+                .description("Lecturas de ventana de conversación que requirieron BD")
+                .register(meterRegistry);
+        Gauge.builder("conversation.window.cache.hit.ratio", this, ConversationWindowCache::hitRatio)
+                .description("Proporción de aciertos de la caché de ventana de conversación")
+                .register(meterRegistry);
+        Gauge.builder("conversation.window.cache.size", this, ConversationWindowCache::size)
+                .description("Conversaciones mantenidas en memoria")
+                .register(meterRegistry);
+        this.rowsFetched = DistributionSummary.builder("conversation.window.rows.fetched")
+                .description("Filas de historial leídas de BD por turno")
+                .register(meterRegistry);
+        this.bytesFetched = DistributionSummary.builder("conversation.window.bytes.fetched")
+                .baseUnit("bytes")
+                .description("Bytes de texto de historial leídos de BD por turno")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tamaño de la ventana de memoria corta.
+     */
+    public int getWindowSize() {
+        return properties.getWindowSize();
+    }
+
+    /**
+     * Obtiene la ventana cacheada de una conversación.
+     *
+     * @param conversationId ID de la conversación
+     * @return turnos más recientes primero, o vacío si no está en memoria o expiró
+     */
+    public Optional<List<ConversationHistory>> get(String conversationId) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+
+        List<ConversationHistory> snapshot = null;
+        synchronized (windows) {
+            Window window = windows.get(conversationId);
+            if (window != null) {
+                if (window.isExpired(clock.getAsLong())) {
+                    windows.remove(conversationId);
+                } else {
+                    snapshot = window.snapshot();
+                }
+            }
+        }
+
+        if (snapshot == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Generación actual de la caché. Se lee antes de leer de BD y se pasa a put.
+     *
+     * @return generación a pasar a put
+     */
+    public long generation() {
+        synchronized (windows) {
+            return generation;
+        }
+    }
+
+    /**
+     * Carga en memoria la ventana leída de BD (más reciente primero).
+     * Registra las métricas de filas y bytes leídos para este turno.
+     *
+     * No hace nada si la conversación ya tiene ventana, o si recibió un
+     * append después de loadGeneration: la lectura no incluye ese turno y la
+     * próxima lectura la cargará de nuevo.
+     *
+     * @param conversationId ID de la conversación
+     * @param newestFirst turnos leídos de BD, ya limitados al tamaño de ventana
+     * @param loadGeneration generation() leída antes de leer de BD
+     * @return true si la ventana quedó cargada
+     */
+    public boolean put(String conversationId, List<ConversationHistory> newestFirst, long loadGeneration) {
+        recordFetch(newestFirst);
+        if (!properties.isEnabled()) {
+            return false;
+        }
+
+        Window window = new Window(properties.getWindowSize(), expiry());
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            window.push(toSnapshot(newestFirst.get(i)));
+        }
+        synchronized (windows) {
+            Window current = windows.get(conversationId);
+            if (current != null && !current.isExpired(clock.getAsLong())) {
+                return false;
+            }
+            Long lastAppend = uncachedAppends.get(conversationId);
+            long appendedAt = lastAppend != null ? lastAppend : evictedAppendGeneration;
+            if (appendedAt > loadGeneration) {
+                return false;
+            }
+            uncachedAppends.remove(conversationId);
+            windows.put(conversationId, window);
+            return true;
+        }
+    }
+
+    /**
+     * Agrega un turno recién persistido a la ventana de su conversación.
+     * Si hay una transacción activa, se aplica solo tras el commit.
+     * Si la conversación no está en memoria solo se anota el append: la
+     * próxima lectura la cargará completa desde BD y descartará cargas
+     * iniciadas antes.
+     *
+     * @param turn turno persistido
+     */
+    public void append(ConversationHistory turn) {
+        if (!properties.isEnabled() || turn.getConversationId() == null) {
+            return;
+        }
+
+        ConversationHistory snapshot = toSnapshot(turn);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doAppend(snapshot);
+                }
+            });
+        } else {
+            doAppend(snapshot);
+        }
+    }
+
+    /**
+     * Elimina una conversación de la caché.
+     *
+     * @param conversationId ID de la conversación
+     */
+    public void evict(String conversationId) {
+        synchronized (windows) {
+            windows.remove(conversationId);
+        }
+    }
+
+    int size() {
+        synchronized (windows) {
+            return windows.size();
+        }
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private void doAppend(ConversationHistory snapshot) {
+        synchronized (windows) {
+            generation++;
+            Window window = windows.get(snapshot.getConversationId());
+            if (window != null && window.isExpired(clock.getAsLong())) {
+                windows.remove(snapshot.getConversationId());
+                window = null;
+            }
+            if (window == null) {
+                uncachedAppends.put(snapshot.getConversationId(), generation);
+                return;
+            }
+            window.push(snapshot);
+            window.expiresAt = expiry();
+        }
+    }
+
+    private void recordFetch(List<ConversationHistory> rows) {
+        long bytes = 0;
+        for (ConversationHistory row : rows) {
+            bytes += utf8Length(row.getUserMessage()) + utf8Length(row.getAiResponse());
+        }
+        rowsFetched.record(rows.size());
+        bytesFetched.record(bytes);
+    }
+
+    private long expiry() {
+        return clock.getAsLong() + properties.getTtl().toMillis();
+    }
+
+    private static long utf8Length(String text) {
+        return text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static ConversationHistory toSnapshot(ConversationHistory source) {
+        return ConversationHistory.builder()
+                .conversationId(source.getConversationId())
+                .userMessage(source.getUserMessage())
+                .aiResponse(source.getAiResponse())
+                .createdAt(source.getCreatedAt() != null ? source.getCreatedAt() : OffsetDateTime.now())
+                .build();
+    }
+
+    /**
+     * Ring buffer de tamaño fijo con los últimos turnos de una conversación.
+     * Se accede siempre bajo el lock del mapa de ventanas.
+     */
+    private static final class Window {
+
+        private final int capacity;
+        private final Deque<ConversationHistory> turns;
+        private long expiresAt;
+
+        private Window(int capacity, long expiresAt) {
+            this.capacity = capacity;
+            this.turns = new ArrayDeque<>(capacity);
+            this.expiresAt = expiresAt;
+        }
+
+        private void push(ConversationHistory turn) {
+            if (turns.size() == capacity) {
+                turns.removeLast();
+            }
+            turns.addFirst(turn);
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        private List<ConversationHistory> snapshot() {
+            return new ArrayList<>(turns);
+        }
+    }
+}
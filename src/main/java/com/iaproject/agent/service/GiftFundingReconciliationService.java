@@ -0,0 +1,149 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.GiftFundingReconciliationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Job de conciliación de los contadores de financiamiento de regalos
+ * (gifts.current_funding y gifts.active_commitment_count, ver V16).
+ *
+ * Los contadores se mantienen con UPDATE relativos junto a cada compromiso;
+ * este job es la red de seguridad ante escrituras que no pasen por
+ * GiftService/CommitmentService (SQL manual, bugs). Busca regalos cuyos
+ * contadores no coinciden con los compromisos activos, o cuyo estado no
+ * coincide con los contadores, y los recalcula uno a uno con la fila del
+ * regalo bloqueada: un aporte concurrente espera a la corrección (o la
+ * corrección a él) y ninguno pisa al otro. El estado se deriva en el mismo
+ * UPDATE con las reglas de GiftService.updateGiftStatus.
+ *
+ * La corrección es idempotente, por lo que varias instancias pueden
+ * ejecutarla a la vez sin coordinarse.
+ */
+@Slf4j
+@Service
+public class GiftFundingReconciliationService {
+
+    private static final String FIND_DRIFTED_SQL =
+            "SELECT g.id FROM gifts g " +
+            "LEFT JOIN (SELECT gift_id, SUM(contribution_amount) AS funding, COUNT(*) AS commitments " +
+            "           FROM gift_commitments WHERE is_active = TRUE GROUP BY gift_id) a ON a.gift_id = g.id " +
+            "WHERE g.current_funding <> COALESCE(a.funding, 0) " +
+            "OR g.active_commitment_count <> COALESCE(a.commitments, 0) " +
+            "OR g.status <> " + derivedStatus("COALESCE(a.funding, 0)", "COALESCE(a.commitments, 0)") + " " +
+            "ORDER BY g.id LIMIT ?";
+
+    private static final String LOCK_GIFT_SQL = "SELECT id FROM gifts WHERE id = ? FOR UPDATE";
+
+    // Sentencia posterior al lock: su snapshot ya incluye los compromisos confirmados mientras se esperaba
+    private static final String REPAIR_GIFT_SQL =
+            "UPDATE gifts g SET current_funding = a.funding, active_commitment_count = a.commitments, " +
+            "status = " + derivedStatus("a.funding", "a.commitments") + " " +
+            "FROM (SELECT COALESCE(SUM(contribution_amount), 0) AS funding, COUNT(*) AS commitments " +
+            "      FROM gift_commitments WHERE gift_id = ? AND is_active = TRUE) a " +
+            "WHERE g.id = ? AND (g.current_funding <> a.funding OR g.active_commitment_count <> a.commitments " +
+            "OR g.status <> " + derivedStatus("a.funding", "a.commitments") + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GiftFundingReconciliationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter giftsRepaired;
+    private final Timer reconciliationTimer;
+
+    public GiftFundingReconciliationService(JdbcTemplate jdbcTemplate,
+                                            GiftFundingReconciliationProperties properties,
+                                            PlatformTransactionManager transactionManager,
+                                            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.giftsRepaired = Counter.builder("gift.funding.reconciliation.repaired")
+                .description("Regalos con contadores de financiamiento desviados y corregidos")
+                .register(meterRegistry);
+        this.reconciliationTimer = Timer.builder("gift.funding.reconciliation")
+                .description("Duración de cada ejecución de la conciliación de contadores de regalos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecución periódica de la conciliación.
+     */
+    @Scheduled(fixedDelayString = "${app.gifts.funding-reconciliation.interval:PT1H}",
+               initialDelayString = "${app.gifts.funding-reconciliation.interval:PT1H}")
+    public void runReconciliation() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        try {
+            Timer.Sample sample = Timer.start();
+            int repaired = reconcile();
+            sample.stop(reconciliationTimer);
+            log.debug("Conciliación de contadores de regalos: {} corregidos", repaired);
+        } catch (Exception e) {
+            log.error("❌ Error en conciliación de contadores de regalos: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Corrige hasta batchSize regalos cuyos contadores no coinciden con sus
+     * compromisos activos.
+     *
+     * @return regalos corregidos
+     */
+    public int reconcile() {
+        List<Long> candidates = jdbcTemplate.queryForList(FIND_DRIFTED_SQL, Long.class, properties.getBatchSize());
+
+        int repaired = 0;
+        for (Long giftId : candidates) {
+            if (repair(giftId)) {
+                repaired++;
+            }
+        }
+
+        if (repaired > 0) {
+            log.info("✅ Contadores de financiamiento corregidos en {} regalos", repaired);
+        }
+        giftsRepaired.increment(repaired);
+        return repaired;
+    }
+
+    /**
+     * Estado que corresponde a los contadores, con las reglas de GiftService.updateGiftStatus.
+     */
+    private static String derivedStatus(String funding, String commitments) {
+        return "(CASE WHEN NOT g.is_active THEN 'INACTIVE' " +
+               "WHEN " + commitments + " = 0 THEN 'AVAILABLE' " +
+               "WHEN NOT g.allow_split THEN 'RESERVED' " +
+               "WHEN " + funding + " >= g.price THEN 'FULLY_FUNDED' " +
+               "ELSE 'PARTIALLY_FUNDED' END)";
+    }
+
+    /**
+     * Recalcula los contadores y el estado de un regalo con su fila bloqueada.
+     *
+     * @return false si ya coincidían (el candidato era un compromiso en curso)
+     */
+    private boolean repair(Long giftId) {
+        Integer updated = transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForList(LOCK_GIFT_SQL, Long.class, giftId);
+            return jdbcTemplate.update(REPAIR_GIFT_SQL, giftId, giftId);
+        });
+        boolean repaired = updated != null && updated > 0;
+        if (repaired) {
+            log.warn("⚠️ Contadores de financiamiento o estado desviados en el regalo {}, recalculados", giftId);
+        }
+        return repaired;
+    }
+}
@@ -41,14 +41,16 @@ public class GiftService {
 
     /**
      * Obtiene todos los regalos activos de un evento.
+     * Regalos (con sus contadores de financiamiento) y último compromiso salen
+     * de una sola consulta, sin importar cuántos regalos tenga el evento.
      */
     @Transactional(readOnly = true)
     public List<GiftResponse> getGiftsByEvent(Long eventId) {
         Event event = eventService.getEventById(eventId);
-        List<Gift> gifts = giftRepository.findByEventAndIsActiveTrueOrderByPriorityAsc(event);
-        
+        List<GiftRepository.GiftWithFunding> gifts = giftRepository.findActiveWithFundingByEventId(event.getId());
+
         return gifts.stream()
-                .map(this::toGiftResponseWithCalculations)
+                .map(this::toGiftResponseWithFunding)
                 .collect(Collectors.toList());
     }
 
@@ -184,6 +186,7 @@ public class GiftService {
                 .build();
 
         GiftCommitment saved = commitmentRepository.save(commitment);
+        applyFundingDelta(gift, saved.getContributionAmount(), 1, false);
         updateGiftStatus(gift);
         
         log.info("✅ Regalo reservado: commitmentId={}, token={}", saved.getId(), saved.getToken());
@@ -204,10 +207,8 @@ public class GiftService {
             throw new IllegalStateException("Este regalo no permite aportes compartidos");
         }
         
-        BigDecimal currentFunding = commitmentRepository.sumActiveContributions(giftId);
-        BigDecimal newTotal = currentFunding.add(request.getContributionAmount());
-        
-        if (newTotal.compareTo(gift.getPrice()) > 0) {
+        // Suma y comprobación del precio en un solo UPDATE: dos aportes concurrentes no pueden exceder el precio
+        if (!applyFundingDelta(gift, request.getContributionAmount(), 1, true)) {
             throw new IllegalStateException("El aporte excede el precio del regalo");
         }
 
@@ -306,13 +307,51 @@ public class GiftService {
     }
 
     /**
-     * Actualiza el estado de un regalo según sus commitments.
+     * Descuenta un compromiso cancelado de los contadores de financiamiento
+     * del regalo y recalcula su estado con los valores resultantes.
+     *
+     * @param gift regalo del compromiso
+     * @param amount monto del compromiso cancelado
+     */
+    @Transactional
+    public void releaseFunding(Gift gift, BigDecimal amount) {
+        BigDecimal delta = amount != null ? amount.negate() : BigDecimal.ZERO;
+        if (applyFundingDelta(gift, delta, -1, false)) {
+            updateGiftStatus(gift);
+        }
+    }
+
+    /**
+     * Aplica un compromiso nuevo o cancelado a los contadores de financiamiento
+     * del regalo (UPDATE relativo en la transacción actual) y copia los valores
+     * resultantes a la entidad.
+     *
+     * @param countDelta 1 al agregar un compromiso, -1 al cancelarlo
+     * @param enforcePrice si el financiamiento resultante no puede superar el precio
+     * @return false si no se aplicó porque superaría el precio
+     */
+    private boolean applyFundingDelta(Gift gift, BigDecimal amount, int countDelta, boolean enforcePrice) {
+        BigDecimal delta = amount != null ? amount : BigDecimal.ZERO;
+        return giftRepository.applyFundingDelta(gift.getId(), delta, countDelta, enforcePrice)
+                .map(counters -> {
+                    gift.setCurrentFunding(counters.getCurrentFunding());
+                    gift.setActiveCommitmentCount(counters.getActiveCommitmentCount());
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Actualiza el estado de un regalo según sus contadores de financiamiento.
+     * GiftFundingReconciliationService aplica las mismas reglas en SQL.
      */
     private void updateGiftStatus(Gift gift) {
-        BigDecimal currentFunding = commitmentRepository.sumActiveContributions(gift.getId());
-        long commitmentCount = commitmentRepository.countByGiftAndIsActiveTrue(gift);
+        BigDecimal currentFunding = gift.getCurrentFunding();
+        int commitmentCount = gift.getActiveCommitmentCount();
 
-        if (commitmentCount == 0) {
+        if (!Boolean.TRUE.equals(gift.getIsActive())) {
+            gift.setStatus(GiftStatus.INACTIVE);
+        } else if (commitmentCount == 0) {
             gift.setStatus(GiftStatus.AVAILABLE);
         } else if (gift.getAllowSplit()) {
             if (currentFunding.compareTo(gift.getPrice()) >= 0) {
@@ -329,10 +368,11 @@ public class GiftService {
 
     /**
      * Convierte un Gift a GiftResponse con cálculos de financiamiento.
+     * Financiamiento y compromisos salen de los contadores del regalo.
      */
     private GiftResponse toGiftResponseWithCalculations(Gift gift) {
-        BigDecimal currentFunding = commitmentRepository.sumActiveContributions(gift.getId());
-        Integer commitmentCount = (int) commitmentRepository.countByGiftAndIsActiveTrue(gift);
+        BigDecimal currentFunding = gift.getCurrentFunding();
+        Integer commitmentCount = gift.getActiveCommitmentCount();
         GiftCommitment latestCommitment = null;
         if (gift.getStatus() == GiftStatus.RESERVED
                 || gift.getStatus() == GiftStatus.PARTIALLY_FUNDED
@@ -345,6 +385,22 @@ public class GiftService {
         return eventMapper.toGiftResponse(gift, currentFunding, commitmentCount, latestCommitment);
     }
 
+    /**
+     * Convierte un regalo con su último compromiso ya consultado a GiftResponse.
+     * Como en toGiftResponseWithCalculations, el último compromiso solo se
+     * informa si el regalo está reservado o financiado.
+     */
+    private GiftResponse toGiftResponseWithFunding(GiftRepository.GiftWithFunding row) {
+        Gift gift = row.getGift();
+        boolean committed = gift.getStatus() == GiftStatus.RESERVED
+                || gift.getStatus() == GiftStatus.PARTIALLY_FUNDED
+                || gift.getStatus() == GiftStatus.FULLY_FUNDED;
+
+        return eventMapper.toGiftResponse(gift, gift.getCurrentFunding(), gift.getActiveCommitmentCount(),
+                committed ? row.getLatestGuestName() : null,
+                committed ? row.getLatestCreatedAt() : null);
+    }
+
     private GiftReservationReportItem toReservationReportItem(GiftCommitment commitment) {
         return GiftReservationReportItem.builder()
                 .giftId(commitment.getGift().getId())
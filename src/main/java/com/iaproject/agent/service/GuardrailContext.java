@@ -0,0 +1,36 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.model.ChatRequest;
+import com.iaproject.agent.model.ChatRequestMetadata;
+import com.iaproject.agent.service.text.NormalizedText;
+
+/**
+ * Datos de una solicitud que ven las reglas de guardrails.
+ *
+ * @param request solicitud original
+ * @param message mensaje normalizado (una sola vez por petición)
+ */
+public record GuardrailContext(ChatRequest request, NormalizedText message) {
+
+    /**
+     * @return modo de la conversación, o null
+     */
+    public String mode() {
+        ChatRequestMetadata metadata = request.getMetadata();
+        return metadata != null && metadata.getMode() != null ? metadata.getMode().toString() : null;
+    }
+
+    /**
+     * @return dominio de la conversación, o null
+     */
+    public String domainId() {
+        return request.getMetadata() != null ? request.getMetadata().getDomainId() : null;
+    }
+
+    /**
+     * @return evento de la conversación, o null
+     */
+    public String eventId() {
+        return request.getMetadata() != null ? request.getMetadata().getEventId() : null;
+    }
+}
@@ -0,0 +1,218 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.GuardrailPatternReloadProperties;
+import com.iaproject.agent.domain.GuardrailPattern;
+import com.iaproject.agent.domain.enums.GuardrailReason;
+import com.iaproject.agent.repository.GuardrailPatternRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Recarga en caliente los patrones de contenido de guardrails desde la tabla
+ * guardrail_pattern.
+ *
+ * En cada ejecución lee los patrones activos y, si cambiaron, los compila en
+ * este hilo y publica el nuevo conjunto en ContentPatternGuardrailRule. Si algún
+ * patrón no es válido la recarga se rechaza completa y se conserva el conjunto
+ * en uso: un patrón inválido nunca deja al servicio sin reglas.
+ *
+ * Los patrones con shadow = true se publican aparte en GuardrailShadowEvaluator
+ * (modo sombra): un candidato inválido no afecta a los patrones activos.
+ *
+ * Visibilidad (actuator):
+ * - /actuator/metrics/guardrail.patterns.reload (latencia, tag result)
+ * - /actuator/metrics/guardrail.patterns.version y guardrail.patterns.count
+ * - /actuator/info → guardrailPatterns (versión en uso, origen, última recarga)
+ */
+@Slf4j
+@Service
+public class GuardrailPatternReloadService implements InfoContributor {
+
+    static final String SOURCE = "database";
+
+    private final GuardrailPatternRepository guardrailPatternRepository;
+    private final ContentPatternGuardrailRule contentRule;
+    private final GuardrailShadowEvaluator shadowEvaluator;
+    private final GuardrailPatternReloadProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    // Última recarga (solo informativo; lo escribe únicamente el hilo del job)
+    private volatile ReloadStatus lastReload;
+
+    /**
+     * Resultado de una recarga.
+     *
+     * @param result applied, unchanged, rejected o failed
+     * @param at instante de la recarga
+     * @param durationMillis duración de lectura y compilación
+     * @param error motivo del rechazo o fallo (null si no hubo)
+     */
+    record ReloadStatus(String result, Instant at, double durationMillis, String error) {
+    }
+
+    public GuardrailPatternReloadService(GuardrailPatternRepository guardrailPatternRepository,
+                                         ContentPatternGuardrailRule contentRule,
+                                         GuardrailShadowEvaluator shadowEvaluator,
+                                         GuardrailPatternReloadProperties properties,
+                                         MeterRegistry meterRegistry) {
+        this.guardrailPatternRepository = guardrailPatternRepository;
+        this.contentRule = contentRule;
+        this.shadowEvaluator = shadowEvaluator;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("guardrail.patterns.version", contentRule, ContentPatternGuardrailRule::version)
+                .description("Versión del conjunto de patrones de contenido en uso")
+                .register(meterRegistry);
+        Gauge.builder("guardrail.patterns.count", contentRule, rule -> rule.currentRuleset().rules().size())
+                .description("Patrones de contenido en uso")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Lee los patrones activos y publica un nuevo conjunto si cambiaron.
+     * La primera ejecución es inmediata; hasta entonces rigen las reglas por defecto.
+     */
+    @Scheduled(fixedDelayString = "${app.guardrails.patterns.reload-interval:PT30S}")
+    public void reload() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        String result;
+        String error = null;
+        try {
+            List<ContentPatternGuardrailRule.ContentRule> rules = toRules(
+                    guardrailPatternRepository.findByActiveTrueAndShadowFalseOrderByPriorityAscIdAsc());
+            if (rules.isEmpty()) {
+                throw new IllegalArgumentException("No hay patrones activos en guardrail_pattern");
+            }
+            ContentPatternGuardrailRule.Ruleset current = contentRule.currentRuleset();
+            if (SOURCE.equals(current.source()) && rules.equals(current.rules())) {
+                result = "unchanged";
+            } else {
+                ContentPatternGuardrailRule.Ruleset published = contentRule.publish(rules, SOURCE);
+                result = "applied";
+                log.info("✅ Patrones de guardrails publicados: versión={}, patrones={}",
+                        published.version(), published.rules().size());
+            }
+        } catch (IllegalArgumentException e) {
+            result = "rejected";
+            error = e.getMessage();
+            // Se registra una vez por motivo, no en cada ejecución del job
+            if (lastReload == null || !error.equals(lastReload.error())) {
+                log.error("❌ Recarga de patrones de guardrails rechazada, se conserva la versión {}: {}",
+                        contentRule.version(), error);
+            }
+        } catch (Exception e) {
+            result = "failed";
+            error = e.getMessage();
+            log.error("❌ Error recargando patrones de guardrails: {}", e.getMessage(), e);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("guardrail.patterns.reload")
+                .description("Lectura y compilación de patrones de guardrails")
+                .tag("result", result)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        lastReload = new ReloadStatus(result, Instant.now(), elapsed / 1_000_000.0, error);
+
+        reloadShadow();
+    }
+
+    /**
+     * Publica los patrones en modo sombra si cambiaron.
+     */
+    private void reloadShadow() {
+        try {
+            List<ContentPatternGuardrailRule.ContentRule> candidates = toRules(
+                    guardrailPatternRepository.findByActiveTrueAndShadowTrueOrderByPriorityAscIdAsc());
+            if (!candidates.equals(shadowEvaluator.currentRules())) {
+                shadowEvaluator.publish(candidates);
+                log.info("✅ Patrones de guardrails en sombra publicados: {}", candidates.size());
+            }
+        } catch (Exception e) {
+            log.error("❌ Recarga de patrones de guardrails en sombra rechazada: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        ContentPatternGuardrailRule.Ruleset current = contentRule.currentRuleset();
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("version", current.version());
+        details.put("source", current.source());
+        details.put("patterns", current.rules().size());
+        details.put("loadedAt", current.loadedAt().toString());
+        ReloadStatus reload = lastReload;
+        if (reload != null) {
+            Map<String, Object> last = new LinkedHashMap<>();
+            last.put("result", reload.result());
+            last.put("at", reload.at().toString());
+            last.put("durationMillis", reload.durationMillis());
+            if (reload.error() != null) {
+                last.put("error", reload.error());
+            }
+            details.put("lastReload", last);
+        }
+        builder.withDetail("guardrailPatterns", details);
+    }
+
+    /**
+     * @return estado de la última recarga (null si aún no se ejecutó)
+     */
+    ReloadStatus getLastReload() {
+        return lastReload;
+    }
+
+    /**
+     * Convierte las filas en reglas, validando lo que la BD no valida.
+     *
+     * @throws IllegalArgumentException con todas las filas inválidas
+     */
+    private List<ContentPatternGuardrailRule.ContentRule> toRules(List<GuardrailPattern> patterns) {
+        List<ContentPatternGuardrailRule.ContentRule> rules = new ArrayList<>(patterns.size());
+        List<String> errors = new ArrayList<>();
+        for (GuardrailPattern pattern : patterns) {
+            GuardrailReason reason = parseReason(pattern.getReason());
+            if (reason == null) {
+                errors.add(pattern.getRuleId() + ": razón no admitida '" + pattern.getReason() + "'");
+                continue;
+            }
+            int flags = (Boolean.TRUE.equals(pattern.getCaseInsensitive()) ? Pattern.CASE_INSENSITIVE : 0)
+                    | (Boolean.TRUE.equals(pattern.getUnicodeCase()) ? Pattern.UNICODE_CASE : 0);
+            rules.add(new ContentPatternGuardrailRule.ContentRule(pattern.getRuleId(), pattern.getPattern(), flags,
+                    reason));
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Patrones de guardrails inválidos: " + String.join("; ", errors));
+        }
+        return rules;
+    }
+
+    private static GuardrailReason parseReason(String reason) {
+        if ("INJECTION".equals(reason)) {
+            return GuardrailReason.INJECTION;
+        }
+        if ("UNSAFE".equals(reason)) {
+            return GuardrailReason.UNSAFE;
+        }
+        return null;
+    }
+}
@@ -1,62 +1,88 @@
 package com.iaproject.agent.service;
 
+import com.iaproject.agent.config.properties.GuardrailPipelineProperties;
 import com.iaproject.agent.domain.ConversationHistory;
 import com.iaproject.agent.domain.UserProfile;
 import com.iaproject.agent.domain.enums.GuardrailAction;
-import com.iaproject.agent.domain.enums.GuardrailReason;
 import com.iaproject.agent.model.ChatRequest;
 import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
-import lombok.RequiredArgsConstructor;
+import com.iaproject.agent.service.text.NormalizedText;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 /**
  * Servicio de evaluación de guardrails (reglas de seguridad y límites).
  * Implementa validaciones pre-IA para proteger el sistema de:
- * - Mensajes excesivamente largos
- * - Intentos de prompt injection
- * - Solicitudes fuera de alcance (validación contra dominios en BD)
- * - Contenido inseguro
- * 
+ * - Mensajes excesivamente largos (MessageLengthGuardrailRule)
+ * - Intentos de prompt injection y contenido inseguro (ContentPatternGuardrailRule)
+ * - Solicitudes fuera de alcance, validadas contra dominios en BD (ScopeGuardrailRule)
+ *
  * Principio: Las validaciones son reglas duras que se ejecutan ANTES de llamar a la IA.
+ *
+ * Las reglas son beans GuardrailRule evaluados como pipeline con corte en el
+ * primer rechazo. Se evalúan en dos fases: primero las que dependen del mensaje
+ * original (no cacheables) y luego, si no hay veredicto en GuardrailVerdictCache,
+ * las que dependen solo del mensaje normalizado y del contexto. Dentro de cada
+ * fase, las reglas BLOCK van antes que las REDIRECT y, entre ellas, por costo
+ * por rechazo (costo medio / tasa de rechazos), reordenadas periódicamente con
+ * las métricas de producción.
+ *
+ * Cada veredicto se entrega además a GuardrailShadowEvaluator, que evalúa los
+ * patrones candidatos fuera de la petición.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class GuardrailPolicyService {
 
-    private final AllowedDomainService allowedDomainService;
+    private final GuardrailVerdictCache verdictCache;
+    private final GuardrailShadowEvaluator shadowEvaluator;
+    private final GuardrailPipelineProperties properties;
+    private final LongSupplier nanoClock;
+    private final List<RuleStats> rules;
 
-    // Límites configurables
-    private static final int MAX_MESSAGE_LENGTH = 800;
+    // Orden vigente de cada fase; se reemplaza completo al reordenar
+    private volatile RuleStats[] rawPhase;
+    private volatile RuleStats[] cacheablePhase;
 
-    // Patrones para detección de prompt injection
-    private static final List<Pattern> INJECTION_PATTERNS = List.of(
-            Pattern.compile("ignore.*instruction", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("system\\s+prompt", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("act\\s+as", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
-            Pattern.compile("actúa\\s+como", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
-            Pattern.compile("revela.*prompt", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
-            Pattern.compile("developer\\s+message", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("mensaje\\s+del\\s+desarrollador", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
-            Pattern.compile("api\\s+key", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("\\btoken\\b", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("credenciales", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
-            Pattern.compile("forget.*previous", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("olvida.*anterior", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
-            Pattern.compile("override\\s+instructions", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("bypass\\s+rules", Pattern.CASE_INSENSITIVE)
-    );
+    @Autowired
+    public GuardrailPolicyService(
+            List<GuardrailRule> rules,
+            GuardrailVerdictCache verdictCache,
+            GuardrailShadowEvaluator shadowEvaluator,
+            MeterRegistry meterRegistry,
+            GuardrailPipelineProperties properties) {
+        this(rules, verdictCache, shadowEvaluator, meterRegistry, properties, System::nanoTime);
+    }
 
-    // Palabras clave de contenido prohibido (unsafe)
-    private static final List<Pattern> UNSAFE_PATTERNS = List.of(
-            Pattern.compile("\\b(hack|exploit|vulnerability)\\b", Pattern.CASE_INSENSITIVE),
-            Pattern.compile("\\b(spam|phishing|scam)\\b", Pattern.CASE_INSENSITIVE)
-            // Agregar más según políticas específicas
-    );
+    GuardrailPolicyService(
+            List<GuardrailRule> rules,
+            GuardrailVerdictCache verdictCache,
+            GuardrailShadowEvaluator shadowEvaluator,
+            MeterRegistry meterRegistry,
+            GuardrailPipelineProperties properties,
+            LongSupplier nanoClock) {
+        this.verdictCache = verdictCache;
+        this.shadowEvaluator = shadowEvaluator;
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.rules = rules.stream()
+                .map(rule -> new RuleStats(rule, meterRegistry))
+                .toList();
+        rerank();
+    }
 
     /**
      * Evalúa una solicitud contra todas las políticas de guardrails.
@@ -70,209 +96,186 @@ public class GuardrailPolicyService {
             ChatRequest request,
             UserProfile profile,
             List<ConversationHistory> history) {
+        return evaluate(request, NormalizedText.of(request.getMessage()), profile, history);
+    }
 
-        String message = request.getMessage();
-        log.debug("Evaluando guardrails para mensaje de longitud: {}", message.length());
-
-        // 1. Validar longitud del mensaje
-        GuardrailEvaluationResult lengthCheck = checkMessageLength(message);
-        if (!lengthCheck.isAllowed()) {
-            log.warn("Mensaje bloqueado: TOO_LONG ({} caracteres)", message.length());
-            return lengthCheck;
-        }
+    /**
+     * Evalúa una solicitud usando el mensaje ya normalizado por el orquestador
+     * (se normaliza una sola vez por petición).
+     *
+     * @param request solicitud del usuario
+     * @param normalized mensaje normalizado
+     * @param profile perfil del usuario (puede ser null)
+     * @param history historial de conversación (puede ser vacío)
+     * @return resultado de la evaluación con acción y razón
+     */
+    public GuardrailEvaluationResult evaluate(
+            ChatRequest request,
+            NormalizedText normalized,
+            UserProfile profile,
+            List<ConversationHistory> history) {
 
-        // 2. Detectar prompt injection
-        GuardrailEvaluationResult injectionCheck = checkInjectionAttempts(message);
-        if (!injectionCheck.isAllowed()) {
-            log.warn("Mensaje bloqueado: INJECTION detectado");
-            return injectionCheck;
-        }
+        log.debug("Evaluando guardrails para mensaje de longitud: {}", request.getMessage().length());
+        GuardrailEvaluationResult result = evaluateLive(new GuardrailContext(request, normalized));
+        // Patrones candidatos: fuera de la petición, sin afectar el veredicto
+        shadowEvaluator.submit(normalized.text(), result);
+        return result;
+    }
 
-        // 3. Detectar contenido inseguro
-        GuardrailEvaluationResult unsafeCheck = checkUnsafeContent(message);
-        if (!unsafeCheck.isAllowed()) {
-            log.warn("Mensaje bloqueado: UNSAFE contenido detectado");
-            return unsafeCheck;
+    /**
+     * Evalúa las reglas activas: primero las de mensaje original y luego, si no
+     * hay veredicto en caché, las cacheables.
+     */
+    private GuardrailEvaluationResult evaluateLive(GuardrailContext context) {
+        // 1. Reglas sobre el mensaje original (longitud): siempre se evalúan
+        GuardrailEvaluationResult rawCheck = run(rawPhase, context);
+        if (!rawCheck.isAllowed()) {
+            return rawCheck;
         }
 
-        // 4. Validar alcance (solo si mode=EVENT o domainId/eventId presente)
-        GuardrailEvaluationResult scopeCheck = checkScope(request, message);
-        if (!scopeCheck.isAllowed()) {
-            log.warn("Mensaje redirigido: OUT_OF_SCOPE");
-            return scopeCheck;
+        // Veredicto ya calculado para el mismo mensaje normalizado, contexto y versión de reglas
+        RuleStats[] phase = cacheablePhase;
+        GuardrailVerdictCache.Key cacheKey = verdictKey(phase, context);
+        GuardrailEvaluationResult cached = verdictCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Guardrails: veredicto en caché (action={}, reason={})", cached.getAction(), cached.getReason());
+            return cached;
         }
 
-        // Todas las validaciones pasaron
-        log.debug("Guardrails: mensaje permitido");
-        return GuardrailEvaluationResult.builder()
-                .action(GuardrailAction.ALLOW)
-                .reason(GuardrailReason.NONE)
-                .build();
+        // 2. Reglas sobre el mensaje normalizado (contenido, alcance)
+        GuardrailEvaluationResult result = run(phase, context);
+        verdictCache.put(cacheKey, result);
+        return result;
     }
 
     /**
-     * Valida que el mensaje no exceda el límite de longitud.
+     * Evalúa las reglas de una fase en orden hasta el primer rechazo. Si todas
+     * permiten, devuelve el primer ALLOW con detalles (p. ej. la keyword de
+     * alcance) o GuardrailEvaluationResult.ALLOWED.
      */
-    private GuardrailEvaluationResult checkMessageLength(String message) {
-        if (message.length() > MAX_MESSAGE_LENGTH) {
-            return GuardrailEvaluationResult.builder()
-                    .action(GuardrailAction.BLOCK)
-                    .reason(GuardrailReason.TOO_LONG)
-                    .predefinedResponse(String.format(
-                            "Tu mensaje es demasiado largo (%d caracteres). " +
-                            "Por favor, envía un mensaje de máximo %d caracteres.",
-                            message.length(), MAX_MESSAGE_LENGTH))
-                    .quickReplies(List.of(
-                            "Resumir mi pregunta",
-                            "Dividir en partes",
-                            "Ayuda"
-                    ))
-                    .build();
+    private GuardrailEvaluationResult run(RuleStats[] phase, GuardrailContext context) {
+        GuardrailEvaluationResult allowed = GuardrailEvaluationResult.ALLOWED;
+        for (RuleStats stats : phase) {
+            GuardrailEvaluationResult result = stats.evaluate(context);
+            if (!result.isAllowed()) {
+                log.warn("Mensaje {} por regla {}: {} (ruleId={})",
+                        result.getAction(), stats.rule.id(), result.getReason(), result.getRuleId());
+                return result;
+            }
+            if (allowed == GuardrailEvaluationResult.ALLOWED) {
+                allowed = result;
+            }
         }
-        return GuardrailEvaluationResult.builder()
-                .action(GuardrailAction.ALLOW)
-                .reason(GuardrailReason.NONE)
-                .build();
+        log.debug("Guardrails: mensaje permitido");
+        return allowed;
     }
 
     /**
-     * Detecta intentos de prompt injection o manipulación del sistema.
+     * Clave del veredicto. La versión se lee antes de evaluar: si los datos de
+     * alguna regla cambian durante la evaluación, el veredicto queda bajo la
+     * versión anterior y no se vuelve a servir. Las versiones solo crecen, así
+     * que su suma también.
      */
-    private GuardrailEvaluationResult checkInjectionAttempts(String message) {
-        for (Pattern pattern : INJECTION_PATTERNS) {
-            if (pattern.matcher(message).find()) {
-                return GuardrailEvaluationResult.builder()
-                        .action(GuardrailAction.BLOCK)
-                        .reason(GuardrailReason.INJECTION)
-                        .predefinedResponse(
-                                "No puedo procesar tu solicitud. " +
-                                "Por favor, reformula tu pregunta de manera natural.")
-                        .quickReplies(List.of(
-                                "¿Cómo puedo ayudarte?",
-                                "Ver opciones",
-                                "Hablar con soporte"
-                        ))
-                        .build();
-            }
+    private GuardrailVerdictCache.Key verdictKey(RuleStats[] phase, GuardrailContext context) {
+        long version = 0L;
+        for (RuleStats stats : phase) {
+            version += stats.rule.version();
         }
-        return GuardrailEvaluationResult.builder()
-                .action(GuardrailAction.ALLOW)
-                .reason(GuardrailReason.NONE)
-                .build();
+        return GuardrailVerdictCache.key(context.message().text(), context.mode(), context.domainId(),
+                context.eventId(), version);
     }
 
     /**
-     * Detecta contenido inseguro o prohibido.
+     * Reordena las reglas de cada fase: BLOCK antes que REDIRECT (el veredicto
+     * no depende del orden) y, dentro de cada acción, menor costo por rechazo
+     * primero. El costo es el medio medido cuando hay muestras suficientes y el
+     * estimado por la regla mientras tanto.
      */
-    private GuardrailEvaluationResult checkUnsafeContent(String message) {
-        for (Pattern pattern : UNSAFE_PATTERNS) {
-            if (pattern.matcher(message).find()) {
-                return GuardrailEvaluationResult.builder()
-                        .action(GuardrailAction.BLOCK)
-                        .reason(GuardrailReason.UNSAFE)
-                        .predefinedResponse(
-                                "Tu mensaje contiene contenido que no puedo procesar. " +
-                                "Por favor, reformula tu pregunta.")
-                        .quickReplies(List.of(
-                                "Ver temas disponibles",
-                                "Ayuda",
-                                "Contactar soporte"
-                        ))
-                        .build();
-            }
+    @Scheduled(fixedDelayString = "${app.guardrails.pipeline.rerank-interval:PT1M}",
+            initialDelayString = "${app.guardrails.pipeline.rerank-interval:PT1M}")
+    public synchronized void rerank() {
+        long minSamples = properties.getMinSamples();
+        Comparator<RuleStats> order = Comparator
+                .comparingInt((RuleStats stats) -> stats.rule.rejectAction() == GuardrailAction.BLOCK ? 0 : 1)
+                .thenComparingDouble(stats -> stats.costPerRejection(minSamples));
+
+        RuleStats[] raw = rules.stream().filter(stats -> stats.rule.usesRawMessage())
+                .sorted(order).toArray(RuleStats[]::new);
+        RuleStats[] cacheable = rules.stream().filter(stats -> !stats.rule.usesRawMessage())
+                .sorted(order).toArray(RuleStats[]::new);
+
+        if (!Arrays.equals(raw, rawPhase) || !Arrays.equals(cacheable, cacheablePhase)) {
+            rawPhase = raw;
+            cacheablePhase = cacheable;
+            log.info("Guardrails: orden de reglas {}", ruleOrder());
         }
-        return GuardrailEvaluationResult.builder()
-                .action(GuardrailAction.ALLOW)
-                .reason(GuardrailReason.NONE)
-                .build();
     }
 
     /**
-     * Valida que la solicitud esté dentro del alcance permitido.
-     * Solo se aplica si el request tiene mode=EVENT o domainId/eventId.
-     * Los dominios permitidos se cargan dinámicamente desde la base de datos.
+     * @return ids de las reglas en el orden de evaluación vigente
      */
-    private GuardrailEvaluationResult checkScope(ChatRequest request, String message) {
-        // Verificar si el contexto requiere validación de alcance
-        boolean requiresScopeValidation = false;
-        String domainContext = null;
-        
-        if (request.getMetadata() != null) {
-            String mode = request.getMetadata().getMode() != null ? request.getMetadata().getMode().toString() : null;
-            String domainId = request.getMetadata().getDomainId();
-            String eventId = request.getMetadata().getEventId();
-            
-            requiresScopeValidation = "EVENT".equals(mode) || domainId != null || eventId != null;
-            domainContext = domainId;
+    List<String> ruleOrder() {
+        List<String> ids = new ArrayList<>();
+        for (RuleStats stats : rawPhase) {
+            ids.add(stats.rule.id());
         }
-
-        if (!requiresScopeValidation) {
-            // No se requiere validación de alcance
-            return GuardrailEvaluationResult.builder()
-                    .action(GuardrailAction.ALLOW)
-                    .reason(GuardrailReason.NONE)
-                    .build();
+        for (RuleStats stats : cacheablePhase) {
+            ids.add(stats.rule.id());
         }
+        return ids;
+    }
 
-        // Cargar dominios permitidos desde BD (cacheados)
-        List<String> allowedKeywords = allowedDomainService.getAllowedKeywords();
-        
-        if (allowedKeywords.isEmpty()) {
-            log.warn("⚠️ No hay dominios permitidos configurados en BD, permitiendo mensaje");
-            return GuardrailEvaluationResult.builder()
-                    .action(GuardrailAction.ALLOW)
-                    .reason(GuardrailReason.NONE)
-                    .build();
-        }
+    /**
+     * Regla con sus mediciones: tiempo y rechazos por evaluación.
+     */
+    private final class RuleStats {
 
-        // Verificar si el mensaje menciona algún dominio permitido
-        String messageLower = message.toLowerCase();
-        boolean inScope = allowedKeywords.stream()
-                .anyMatch(messageLower::contains);
+        private final GuardrailRule rule;
+        private final Timer timer;
+        private final Counter rejections;
+        private final LongAdder evaluatedCount = new LongAdder();
+        private final LongAdder evaluatedNanos = new LongAdder();
+        private final LongAdder rejectedCount = new LongAdder();
 
-        if (!inScope) {
-            // Generar mensaje y quick replies dinámicos basados en el contexto
-            String redirectMessage = buildRedirectMessage(domainContext, allowedKeywords);
-            List<String> quickReplies = buildRedirectQuickReplies(domainContext);
-            
-            return GuardrailEvaluationResult.builder()
-                    .action(GuardrailAction.REDIRECT)
-                    .reason(GuardrailReason.OUT_OF_SCOPE)
-                    .predefinedResponse(redirectMessage)
-                    .quickReplies(quickReplies)
-                    .build();
+        private RuleStats(GuardrailRule rule, MeterRegistry meterRegistry) {
+            this.rule = rule;
+            this.timer = Timer.builder("guardrail.rule")
+                    .description("Tiempo de evaluación de cada regla de guardrails")
+                    .tag("rule", rule.id())
+                    .register(meterRegistry);
+            this.rejections = Counter.builder("guardrail.rule.rejections")
+                    .description("Solicitudes rechazadas por cada regla de guardrails")
+                    .tag("rule", rule.id())
+                    .tag("action", rule.rejectAction().name())
+                    .register(meterRegistry);
         }
 
-        return GuardrailEvaluationResult.builder()
-                .action(GuardrailAction.ALLOW)
-                .reason(GuardrailReason.NONE)
-                .build();
-    }
+        private GuardrailEvaluationResult evaluate(GuardrailContext context) {
+            long start = nanoClock.getAsLong();
+            GuardrailEvaluationResult result = rule.evaluate(context);
+            long elapsed = nanoClock.getAsLong() - start;
 
-    /**
-     * Construye mensaje de redirección dinámico según el contexto.
-     */
-    private String buildRedirectMessage(String domainContext, List<String> allowedKeywords) {
-        if (domainContext != null && !domainContext.isBlank()) {
-            return String.format(
-                    "Estoy aquí para ayudarte con temas relacionados a %s. " +
-                    "¿Tienes alguna pregunta relacionada?", domainContext);
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+            evaluatedCount.increment();
+            evaluatedNanos.add(elapsed);
+            if (!result.isAllowed()) {
+                rejections.increment();
+                rejectedCount.increment();
+            }
+            return result;
         }
-        
-        // Mensaje genérico si no hay contexto específico
-        return "Estoy aquí para ayudarte con los temas permitidos. " +
-               "¿En qué puedo asistirte?";
-    }
 
-    /**
-     * Construye quick replies dinámicos según el dominio.
-     */
-    private List<String> buildRedirectQuickReplies(String domainContext) {
-        // Quick replies genéricos para redirección
-        return List.of(
-                "Ver temas disponibles",
-                "¿Qué puedes hacer?",
-                "Ayuda"
-        );
+        /**
+         * Costo esperado por rechazo. La tasa de rechazos se suaviza (Laplace)
+         * para que una regla sin rechazos aún no medidos no tenga costo infinito.
+         */
+        private double costPerRejection(long minSamples) {
+            long evaluated = evaluatedCount.sum();
+            double cost = evaluated >= minSamples && evaluated > 0
+                    ? (double) evaluatedNanos.sum() / evaluated
+                    : rule.estimatedCostNanos();
+            double rejectionRate = (rejectedCount.sum() + 1.0) / (evaluated + 2.0);
+            return cost / rejectionRate;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+
+/**
+ * Regla de guardrails evaluada por GuardrailPolicyService.
+ *
+ * Cada regla es un bean: para agregar una nueva basta con declararla como
+ * componente. El motor las ordena por costo por rechazo (costo medio /
+ * proporción de rechazos, medidos en producción) y se detiene en el primer
+ * rechazo; las reglas que bloquean (BLOCK) siempre se evalúan antes que las
+ * que redirigen (REDIRECT), para que el veredicto no dependa del orden.
+ *
+ * Las implementaciones deben ser seguras entre hilos y no tener efectos
+ * secundarios: su veredicto se cachea (GuardrailVerdictCache).
+ */
+public interface GuardrailRule {
+
+    /**
+     * @return identificador estable (tag de métricas y logs)
+     */
+    String id();
+
+    /**
+     * Costo estimado de una evaluación, usado hasta tener suficientes mediciones.
+     *
+     * @return nanosegundos por evaluación
+     */
+    long estimatedCostNanos();
+
+    /**
+     * @return acción que produce la regla al rechazar (BLOCK o REDIRECT)
+     */
+    GuardrailAction rejectAction();
+
+    /**
+     * Indica si la regla depende del mensaje original (p. ej. su longitud) y
+     * no solo del normalizado. Estas reglas se evalúan siempre, antes de
+     * consultar la caché de veredictos.
+     *
+     * @return true si la regla no es cacheable
+     */
+    default boolean usesRawMessage() {
+        return false;
+    }
+
+    /**
+     * Versión de los datos de la regla (dominios, patrones...). Debe crecer
+     * cada vez que cambian para invalidar los veredictos cacheados.
+     *
+     * @return versión actual
+     */
+    default long version() {
+        return 0L;
+    }
+
+    /**
+     * Evalúa la solicitud.
+     *
+     * @param context mensaje original, normalizado y metadata
+     * @return GuardrailEvaluationResult.ALLOWED (u otro ALLOW con detalles) si
+     *         la solicitud pasa; el resultado de rechazo en caso contrario
+     */
+    GuardrailEvaluationResult evaluate(GuardrailContext context);
+}
@@ -0,0 +1,288 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.GuardrailShadowProperties;
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import com.iaproject.agent.service.text.LinearPatternSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Evalúa en modo sombra los patrones candidatos (guardrail_pattern.shadow = true).
+ *
+ * GuardrailPolicyService entrega cada veredicto real junto con el texto
+ * normalizado (un String inmutable, no se comparte nada mutable con la
+ * petición). La evaluación corre en un executor acotado: si la cola está llena
+ * la evaluación se descarta y se cuenta, nunca se frena al chat.
+ *
+ * Por cada patrón se compara su veredicto (BLOCK si coincide) con el real:
+ * - Métricas guardrail.shadow.verdicts y guardrail.shadow.disagreements
+ * - Conteos por hora en guardrail_shadow_stats (ver V14), escritos en lote
+ *
+ * Los conteos pendientes viven en un mapa que flush reemplaza entero por uno
+ * vacío y luego escribe: ningún incremento se pierde entre la lectura y el
+ * reinicio de un contador. Los evaluadores suman bajo el lock de lectura y el
+ * reemplazo toma el de escritura, así que al escribir el mapa anterior nadie
+ * sigue sumando en él.
+ */
+@Slf4j
+@Service
+public class GuardrailShadowEvaluator {
+
+    private static final String UPSERT_STATS_SQL =
+            "INSERT INTO guardrail_shadow_stats (bucket_start, rule_id, live_action, shadow_action, " +
+            "evaluation_count, updated_at) VALUES (?, ?, ?, ?, ?, now()) " +
+            "ON CONFLICT (bucket_start, rule_id, live_action, shadow_action) DO UPDATE SET " +
+            "evaluation_count = guardrail_shadow_stats.evaluation_count + EXCLUDED.evaluation_count, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    /**
+     * Patrón candidato compilado por separado: se necesita el veredicto de cada uno.
+     */
+    record ShadowRule(ContentPatternGuardrailRule.ContentRule rule,
+                      LinearPatternSet<ContentPatternGuardrailRule.ContentRule> matcher) {
+    }
+
+    /**
+     * Fila de guardrail_shadow_stats pendiente de escribir.
+     */
+    record StatsKey(Instant bucketStart, String ruleId, GuardrailAction liveAction, GuardrailAction shadowAction) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GuardrailShadowProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor executor;
+    private final Counter dropped;
+
+    private final AtomicReference<ConcurrentHashMap<StatsKey, LongAdder>> pendingStats =
+            new AtomicReference<>(new ConcurrentHashMap<>());
+    private final ReadWriteLock statsLock = new ReentrantReadWriteLock();
+    private volatile List<ShadowRule> rules = List.of();
+
+    @Autowired
+    public GuardrailShadowEvaluator(JdbcTemplate jdbcTemplate,
+                                    GuardrailShadowProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this(jdbcTemplate, properties, meterRegistry, newExecutor(properties));
+    }
+
+    GuardrailShadowEvaluator(JdbcTemplate jdbcTemplate,
+                             GuardrailShadowProperties properties,
+                             MeterRegistry meterRegistry,
+                             ThreadPoolExecutor executor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.executor = executor;
+
+        this.dropped = Counter.builder("guardrail.shadow.dropped")
+                .description("Evaluaciones en sombra descartadas por cola llena")
+                .register(meterRegistry);
+        Gauge.builder("guardrail.shadow.queue", executor, pool -> pool.getQueue().size())
+                .description("Evaluaciones en sombra pendientes")
+                .register(meterRegistry);
+        Gauge.builder("guardrail.shadow.rules", this, evaluator -> evaluator.rules.size())
+                .description("Patrones evaluados en modo sombra")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Encola la evaluación en sombra del mensaje. No bloquea ni lanza: con la
+     * cola llena la evaluación se descarta.
+     *
+     * @param normalizedText texto normalizado del mensaje
+     * @param live veredicto real servido
+     */
+    public void submit(String normalizedText, GuardrailEvaluationResult live) {
+        if (!properties.isEnabled() || rules.isEmpty()) {
+            return;
+        }
+        GuardrailAction liveAction = live.getAction();
+        try {
+            executor.execute(() -> evaluate(normalizedText, liveAction));
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Evalúa cada patrón candidato y registra su veredicto frente al real.
+     *
+     * @param normalizedText texto normalizado del mensaje
+     * @param liveAction acción del veredicto real
+     */
+    void evaluate(String normalizedText, GuardrailAction liveAction) {
+        Instant bucket = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        List<StatsKey> keys = new ArrayList<>();
+        for (ShadowRule shadow : rules) {
+            String ruleId = shadow.rule().id();
+            GuardrailAction shadowAction = shadow.matcher().findFirst(normalizedText).isPresent()
+                    ? GuardrailAction.BLOCK
+                    : GuardrailAction.ALLOW;
+
+            Counter.builder("guardrail.shadow.verdicts")
+                    .description("Veredictos de patrones en modo sombra")
+                    .tag("rule", ruleId)
+                    .tag("shadow_action", shadowAction.name())
+                    .tag("live_action", liveAction.name())
+                    .register(meterRegistry)
+                    .increment();
+            boolean shadowBlocks = shadowAction == GuardrailAction.BLOCK;
+            if (shadowBlocks != (liveAction == GuardrailAction.BLOCK)) {
+                // shadow_only: el candidato bloquearía un mensaje que hoy pasa (posible falso positivo)
+                Counter.builder("guardrail.shadow.disagreements")
+                        .description("Mensajes en los que el patrón en sombra y el veredicto real difieren")
+                        .tag("rule", ruleId)
+                        .tag("type", shadowBlocks ? "shadow_only" : "live_only")
+                        .register(meterRegistry)
+                        .increment();
+            }
+            keys.add(new StatsKey(bucket, ruleId, liveAction, shadowAction));
+        }
+
+        statsLock.readLock().lock();
+        try {
+            ConcurrentHashMap<StatsKey, LongAdder> stats = pendingStats.get();
+            for (StatsKey key : keys) {
+                stats.computeIfAbsent(key, k -> new LongAdder()).increment();
+            }
+        } finally {
+            statsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Escritura periódica de los conteos agregados.
+     */
+    @Scheduled(fixedDelayString = "${app.guardrails.shadow.flush-interval:PT1M}",
+               initialDelayString = "${app.guardrails.shadow.flush-interval:PT1M}")
+    public void flushStats() {
+        try {
+            int rows = flush();
+            if (rows > 0) {
+                log.debug("Conteos de guardrails en sombra escritos: {} filas", rows);
+            }
+        } catch (Exception e) {
+            log.error("❌ Error escribiendo conteos de guardrails en sombra: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Escribe los conteos pendientes (UPSERT que suma). Si la escritura falla
+     * los conteos se devuelven a memoria para el siguiente intento.
+     *
+     * @return filas escritas
+     */
+    int flush() {
+        ConcurrentHashMap<StatsKey, LongAdder> flushed;
+        statsLock.writeLock().lock();
+        try {
+            flushed = pendingStats.getAndSet(new ConcurrentHashMap<>());
+        } finally {
+            statsLock.writeLock().unlock();
+        }
+        if (flushed.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> rows = new ArrayList<>(flushed.size());
+        flushed.forEach((key, count) -> rows.add(new Object[]{Timestamp.from(key.bucketStart()), key.ruleId(),
+                key.liveAction().name(), key.shadowAction().name(), count.sum()}));
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_STATS_SQL, rows);
+        } catch (RuntimeException e) {
+            statsLock.readLock().lock();
+            try {
+                ConcurrentHashMap<StatsKey, LongAdder> stats = pendingStats.get();
+                flushed.forEach((key, count) -> stats.computeIfAbsent(key, k -> new LongAdder()).add(count.sum()));
+            } finally {
+                statsLock.readLock().unlock();
+            }
+            throw e;
+        }
+        return rows.size();
+    }
+
+    /**
+     * @return patrones en modo sombra vigentes
+     */
+    List<ContentPatternGuardrailRule.ContentRule> currentRules() {
+        return rules.stream().map(ShadowRule::rule).toList();
+    }
+
+    /**
+     * Compila y publica los patrones candidatos. Si alguno no compila no se
+     * publica nada y se conservan los vigentes.
+     *
+     * @param candidates patrones en modo sombra
+     * @throws IllegalArgumentException con todos los patrones inválidos
+     */
+    void publish(List<ContentPatternGuardrailRule.ContentRule> candidates) {
+        List<ShadowRule> compiled = new ArrayList<>(candidates.size());
+        List<String> errors = new ArrayList<>();
+        for (ContentPatternGuardrailRule.ContentRule rule : candidates) {
+            try {
+                compiled.add(new ShadowRule(rule, LinearPatternSet.<ContentPatternGuardrailRule.ContentRule>builder()
+                        .add(rule.regex(), rule.flags(), rule)
+                        .build()));
+            } catch (IllegalArgumentException e) {
+                errors.add(rule.id() + ": " + e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Patrones en sombra inválidos: " + String.join("; ", errors));
+        }
+        rules = List.copyOf(compiled);
+    }
+
+    /**
+     * Al apagar: descarta lo pendiente en la cola (es solo medición) y escribe
+     * los conteos acumulados.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushStats();
+    }
+
+    private static ThreadPoolExecutor newExecutor(GuardrailShadowProperties properties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(properties.getThreads(), properties.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "guardrail-shadow-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,164 @@
+package com.iaproject.agent.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iaproject.agent.config.properties.GuardrailVerdictCacheProperties;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caché local de veredictos de guardrails.
+ *
+ * Los mensajes frecuentes ("hola", "gracias", los propios quick replies) dan
+ * siempre el mismo veredicto; aquí se guarda el GuardrailEvaluationResult ya
+ * construido y se devuelve la misma instancia, sin volver a evaluar reglas
+ * ni asignar objetos.
+ *
+ * Clave: mensaje normalizado + contexto de alcance (mode/domainId/eventId)
+ * y la versión del conjunto de reglas. La huella de 64 bits de esos campos
+ * solo sirve de hash; la igualdad compara el texto y el contexto completos,
+ * así que una colisión de huellas nunca devuelve el veredicto de otro
+ * mensaje. Cualquier cambio de dominios permitidos o de patrones cambia la
+ * versión, así que los veredictos anteriores dejan de encontrarse y salen
+ * por la política de expulsión de Caffeine.
+ */
+@Component
+public class GuardrailVerdictCache {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final GuardrailVerdictCacheProperties properties;
+    private final Cache<Key, GuardrailEvaluationResult> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public GuardrailVerdictCache(GuardrailVerdictCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        // Mantenimiento en el hilo que escribe: sin tareas en el ForkJoinPool común
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxEntries())
+                .executor(Runnable::run)
+                .build();
+
+        this.hits = Counter.builder("guardrail.verdict.cache")
+                .tag("result", "hit")
+                .description("Evaluaciones de guardrails servidas desde memoria")
+                .register(meterRegistry);
+        this.misses = Counter.builder("guardrail.verdict.cache")
+                .tag("result", "miss")
+                .description("Evaluaciones de guardrails que ejecutaron las reglas")
+                .register(meterRegistry);
+        Gauge.builder("guardrail.verdict.cache.hit.ratio", this, GuardrailVerdictCache::hitRatio)
+                .description("Proporción de aciertos de la caché de veredictos")
+                .register(meterRegistry);
+        Gauge.builder("guardrail.verdict.cache.size", this, GuardrailVerdictCache::size)
+                .description("Veredictos mantenidos en memoria")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Clave de un veredicto.
+     *
+     * @param fingerprint huella del mensaje normalizado y del contexto de alcance
+     * @param rulesetVersion versión de reglas y dominios con la que se evaluó
+     * @param normalizedMessage mensaje normalizado
+     * @param mode modo de la conversación (puede ser null)
+     * @param domainId dominio (puede ser null)
+     * @param eventId evento (puede ser null)
+     */
+    public record Key(long fingerprint, long rulesetVersion, String normalizedMessage,
+                      String mode, String domainId, String eventId) {
+
+        /**
+         * Solo la huella y la versión: evita recorrer el mensaje en cada búsqueda.
+         * equals sigue comparando todos los campos.
+         */
+        @Override
+        public int hashCode() {
+            return Long.hashCode(fingerprint * 31 + rulesetVersion);
+        }
+    }
+
+    /**
+     * Construye la clave de un mensaje.
+     *
+     * @param normalizedMessage mensaje normalizado
+     * @param mode modo de la conversación (puede ser null)
+     * @param domainId dominio (puede ser null)
+     * @param eventId evento (puede ser null)
+     * @param rulesetVersion versión de reglas leída antes de evaluar
+     * @return clave para get/put
+     */
+    public static Key key(String normalizedMessage, String mode, String domainId, String eventId,
+                          long rulesetVersion) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, normalizedMessage);
+        hash = mix(hash, mode);
+        hash = mix(hash, domainId);
+        hash = mix(hash, eventId);
+        return new Key(hash, rulesetVersion, normalizedMessage, mode, domainId, eventId);
+    }
+
+    /**
+     * Obtiene el veredicto cacheado (la misma instancia que se guardó).
+     *
+     * @param key clave del mensaje
+     * @return veredicto, o null si no está en memoria
+     */
+    public GuardrailEvaluationResult get(Key key) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+
+        GuardrailEvaluationResult result = entries.getIfPresent(key);
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Guarda un veredicto.
+     *
+     * @param key clave del mensaje
+     * @param result veredicto (no debe modificarse después)
+     */
+    public void put(Key key, GuardrailEvaluationResult result) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        entries.put(key, result);
+    }
+
+    long size() {
+        entries.cleanUp();
+        return entries.estimatedSize();
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    /**
+     * FNV-1a de 64 bits por carácter. Cada campo termina con un separador
+     * (y null se distingue de la cadena vacía) para que campos contiguos no
+     * se confundan.
+     */
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return (hash ^ 0xFFFF) * FNV_PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0xFFFE) * FNV_PRIME;
+    }
+}
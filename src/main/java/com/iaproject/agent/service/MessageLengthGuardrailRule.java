@@ -0,0 +1,62 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.domain.enums.GuardrailReason;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Bloquea mensajes excesivamente largos (TOO_LONG).
+ * Depende de la longitud del mensaje original, por lo que no se cachea.
+ */
+@Component
+public class MessageLengthGuardrailRule implements GuardrailRule {
+
+    // Límites configurables
+    static final int MAX_MESSAGE_LENGTH = 800;
+
+    private static final List<String> QUICK_REPLIES = List.of(
+            "Resumir mi pregunta",
+            "Dividir en partes",
+            "Ayuda"
+    );
+
+    @Override
+    public String id() {
+        return "message-length";
+    }
+
+    @Override
+    public long estimatedCostNanos() {
+        return 10L;
+    }
+
+    @Override
+    public GuardrailAction rejectAction() {
+        return GuardrailAction.BLOCK;
+    }
+
+    @Override
+    public boolean usesRawMessage() {
+        return true;
+    }
+
+    @Override
+    public GuardrailEvaluationResult evaluate(GuardrailContext context) {
+        int length = context.message().original().length();
+        if (length <= MAX_MESSAGE_LENGTH) {
+            return GuardrailEvaluationResult.ALLOWED;
+        }
+        return GuardrailEvaluationResult.builder()
+                .action(GuardrailAction.BLOCK)
+                .reason(GuardrailReason.TOO_LONG)
+                .predefinedResponse(String.format(
+                        "Tu mensaje es demasiado largo (%d caracteres). " +
+                        "Por favor, envía un mensaje de máximo %d caracteres.",
+                        length, MAX_MESSAGE_LENGTH))
+                .quickReplies(QUICK_REPLIES)
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.iaproject.agent.service;
+
+/**
+ * Modelo de lenguaje usado por la inferencia de perfil en lotes.
+ *
+ * Abstrae la llamada al proveedor para que el job se pueda probar con un
+ * modelo local determinista.
+ */
+public interface ProfileInferenceModel {
+
+    /**
+     * Ejecuta una llamada al modelo.
+     *
+     * @param systemPrompt instrucciones y esquema de salida
+     * @param userPrompt datos a analizar (JSON)
+     * @param model nombre del modelo
+     * @return texto de la respuesta y tokens consumidos
+     */
+    Completion complete(String systemPrompt, String userPrompt, String model);
+
+    /**
+     * Respuesta del modelo con su uso de tokens.
+     */
+    record Completion(String content, long promptTokens, long completionTokens) {
+    }
+}
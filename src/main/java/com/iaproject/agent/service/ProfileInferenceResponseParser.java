@@ -0,0 +1,229 @@
+package com.iaproject.agent.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iaproject.agent.domain.enums.EmojiPreference;
+import com.iaproject.agent.domain.enums.Tone;
+import com.iaproject.agent.domain.enums.Verbosity;
+import com.iaproject.agent.service.dto.UserProfilePatch;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Valida la respuesta del modelo de inferencia de perfil contra un esquema
+ * estricto.
+ *
+ * Formato esperado:
+ * {"profiles":[{"userId":"...","confidence":0.9,"evidence":"...","patch":{"verbosity":"SHORT"}}]}
+ *
+ * "userId" es el alias opaco que el prompt asignó al usuario en este lote,
+ * nunca su ID real.
+ *
+ * - JSON inválido o raíz con otra forma: se rechaza el lote completo.
+ * - Entrada con claves desconocidas, usuario no solicitado, confianza fuera
+ *   de [0,1] o cualquier valor de patch no permitido: se rechaza esa entrada.
+ * - Entrada con cambios cuya "evidence" no es un fragmento literal de los
+ *   mensajes de ese mismo usuario: se rechaza. Así un mensaje de otro
+ *   usuario del lote no puede justificar cambios ajenos.
+ *
+ * Nada que no pase la validación llega a UserProfileService.
+ */
+class ProfileInferenceResponseParser {
+
+    private static final Set<String> ROOT_KEYS = Set.of("profiles");
+    private static final Set<String> ENTRY_KEYS = Set.of("userId", "confidence", "evidence", "patch");
+    private static final Set<String> FORMATS = Set.of("STEPS", "LIST", "DIRECT");
+    private static final Set<String> SPEEDS = Set.of("QUICK", "EXPLAINED");
+    private static final Pattern LANGUAGE = Pattern.compile("^[a-z]{2}(-[A-Z]{2})?$");
+    private static final int MAX_OBJECTIVE_LENGTH = 200;
+    private static final int MIN_EVIDENCE_LENGTH = 10;
+
+    private final ObjectMapper objectMapper;
+
+    ProfileInferenceResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Propuesta validada para un usuario (identificado por su alias del lote).
+     */
+    record Proposal(String alias, double confidence, UserProfilePatch patch) {
+    }
+
+    /**
+     * Resultado del parseo: propuestas válidas y alias cuya entrada se rechazó.
+     */
+    record Result(List<Proposal> proposals, List<String> rejectedAliases) {
+    }
+
+    /**
+     * Parsea y valida la respuesta del modelo.
+     *
+     * @param content texto devuelto por el modelo
+     * @param messagesByAlias mensajes enviados en el prompt, por alias de usuario
+     * @return propuestas válidas y entradas rechazadas
+     * @throws IllegalArgumentException si la respuesta no es JSON o no respeta la raíz del esquema
+     */
+    Result parse(String content, Map<String, List<String>> messagesByAlias) {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(stripCodeFence(content));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Respuesta del modelo no es JSON válido", e);
+        }
+        if (root == null || !root.isObject() || !hasOnlyKeys(root, ROOT_KEYS) || !root.path("profiles").isArray()) {
+            throw new IllegalArgumentException("Respuesta del modelo no respeta el esquema {\"profiles\":[...]}");
+        }
+
+        List<Proposal> proposals = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        for (JsonNode entry : root.get("profiles")) {
+            String alias = entry.path("userId").isTextual() ? entry.get("userId").asText() : null;
+            if (alias == null || !messagesByAlias.containsKey(alias)) {
+                continue;
+            }
+            Proposal proposal = parseEntry(alias, entry);
+            if (proposal != null && (!proposal.patch().hasChanges()
+                    || isSupportedBy(entry.path("evidence"), messagesByAlias.get(alias)))) {
+                proposals.add(proposal);
+            } else {
+                rejected.add(alias);
+            }
+        }
+        return new Result(proposals, rejected);
+    }
+
+    private Proposal parseEntry(String alias, JsonNode entry) {
+        if (!entry.isObject() || !hasOnlyKeys(entry, ENTRY_KEYS)) {
+            return null;
+        }
+        JsonNode confidence = entry.path("confidence");
+        if (!confidence.isNumber() || confidence.asDouble() < 0.0 || confidence.asDouble() > 1.0) {
+            return null;
+        }
+        JsonNode patchNode = entry.path("patch");
+        if (!patchNode.isObject()) {
+            return null;
+        }
+
+        UserProfilePatch.UserProfilePatchBuilder patch = UserProfilePatch.builder();
+        Iterator<Map.Entry<String, JsonNode>> fields = patchNode.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isNull()) {
+                continue;
+            }
+            if (!value.isTextual()) {
+                return null;
+            }
+            String text = value.asText();
+            switch (field.getKey()) {
+                case "tone" -> {
+                    Tone tone = enumValue(Tone.class, text);
+                    if (tone == null) {
+                        return null;
+                    }
+                    patch.tone(tone);
+                }
+                case "verbosity" -> {
+                    Verbosity verbosity = enumValue(Verbosity.class, text);
+                    if (verbosity == null) {
+                        return null;
+                    }
+                    patch.verbosity(verbosity);
+                }
+                case "emojiPreference" -> {
+                    EmojiPreference emojiPreference = enumValue(EmojiPreference.class, text);
+                    if (emojiPreference == null) {
+                        return null;
+                    }
+                    patch.emojiPreference(emojiPreference);
+                }
+                case "preferredFormat" -> {
+                    if (!FORMATS.contains(text)) {
+                        return null;
+                    }
+                    patch.preferredFormat(text);
+                }
+                case "responseSpeed" -> {
+                    if (!SPEEDS.contains(text)) {
+                        return null;
+                    }
+                    patch.responseSpeed(text);
+                }
+                case "preferredLanguage" -> {
+                    if (!LANGUAGE.matcher(text).matches()) {
+                        return null;
+                    }
+                    patch.preferredLanguage(text);
+                }
+                case "currentObjective" -> {
+                    if (text.isBlank() || text.length() > MAX_OBJECTIVE_LENGTH) {
+                        return null;
+                    }
+                    patch.currentObjective(text.strip());
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return new Proposal(alias, confidence.asDouble(), patch.build());
+    }
+
+    /**
+     * La evidencia debe ser un fragmento literal de algún mensaje del propio
+     * usuario: de al menos MIN_EVIDENCE_LENGTH caracteres o el mensaje completo.
+     */
+    private static boolean isSupportedBy(JsonNode evidence, List<String> messages) {
+        if (!evidence.isTextual() || evidence.asText().isBlank()) {
+            return false;
+        }
+        String text = evidence.asText().strip();
+        return messages.stream().anyMatch(message -> message.contains(text)
+                && (text.length() >= MIN_EVIDENCE_LENGTH || text.equals(message.strip())));
+    }
+
+    private static boolean hasOnlyKeys(JsonNode node, Set<String> allowed) {
+        Iterator<String> names = node.fieldNames();
+        while (names.hasNext()) {
+            if (!allowed.contains(names.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <E extends Enum<E>> E enumValue(Class<E> type, String name) {
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equals(name)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Algunos modelos envuelven el JSON en un bloque ```json ... ```.
+     */
+    private static String stripCodeFence(String content) {
+        if (content == null) {
+            return "";
+        }
+        String trimmed = content.strip();
+        if (trimmed.startsWith("```") && trimmed.endsWith("```") && trimmed.length() >= 6) {
+            int firstLine = trimmed.indexOf('\n');
+            if (firstLine > 0) {
+                return trimmed.substring(firstLine + 1, trimmed.length() - 3).strip();
+            }
+        }
+        return trimmed;
+    }
+}
@@ -5,11 +5,13 @@ import com.iaproject.agent.domain.enums.EmojiPreference;
 import com.iaproject.agent.domain.enums.Tone;
 import com.iaproject.agent.domain.enums.Verbosity;
 import com.iaproject.agent.service.dto.UserProfilePatch;
+import com.iaproject.agent.service.text.AhoCorasickMatcher;
+import com.iaproject.agent.service.text.NormalizedText;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 /**
  * Servicio para inferir y actualizar automáticamente el perfil del usuario
@@ -17,7 +19,8 @@ import java.util.regex.Pattern;
  * 
  * Principio: Actualizaciones conservadoras.
  * - Modo 1 (prioridad): Detectar comandos explícitos del usuario
- * - Modo 2 (futuro): Inferencia con IA controlada y validada
+ * - Modo 2: Inferencia con IA controlada y validada, en lotes y fuera de la
+ *   petición (ProfileInferenceBatchService)
  * 
  * Solo se actualiza el perfil cuando hay señales claras, nunca por frases ambiguas.
  */
@@ -28,60 +31,87 @@ public class ProfileInferenceService {
 
     private final UserProfileService userProfileService;
 
-    // Patrones para comandos explícitos de preferencias
-    private static final Pattern CMD_SHORT = Pattern.compile(
-            "\\b(más\\s+corto|respuestas\\s+cortas|sé\\s+breve|brevemente|responde\\s+corto)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_DETAILED = Pattern.compile(
-            "\\b(más\\s+detalle|detallado|explicación\\s+completa|profundiza|extiendet)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_NO_EMOJI = Pattern.compile(
-            "\\b(sin\\s+emojis?|no\\s+uses?\\s+emojis?|evita\\s+emojis?)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_WITH_EMOJI = Pattern.compile(
-            "\\b(usa\\s+emojis?|con\\s+emojis?|agrega\\s+emojis?|más\\s+emojis?)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_FORMAL = Pattern.compile(
-            "\\b(háblame\\s+formal|más\\s+formal|tono\\s+formal|profesional)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_WARM = Pattern.compile(
-            "\\b(háblame\\s+cálido|más\\s+cercano|tono\\s+cálido|amigable|amistoso)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_FUNNY = Pattern.compile(
-            "\\b(háblame\\s+divertido|con\\s+humor|gracioso|tono\\s+relajado)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    private static final Pattern CMD_NEUTRAL = Pattern.compile(
-            "\\b(háblame\\s+neutral|tono\\s+neutral|objetivo|sin\\s+emociones?)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-
-    // Patrones para formato de respuesta
-    private static final Pattern CMD_FORMAT_STEPS = Pattern.compile(
-            "\\b(en\\s+pasos|paso\\s+a\\s+paso|numerado|enumera)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    /**
+     * Comandos explícitos de preferencias y sus frases.
+     *
+     * Dentro de cada grupo, el orden de declaración es la precedencia: si un
+     * mensaje contiene varios comandos del mismo grupo gana el primero
+     * (SHORT sobre DETAILED, FORMAL sobre WARM, etc.).
+     */
+    private enum Command {
+        // Verbosity
+        SHORT(Group.VERBOSITY, "verbosity=SHORT", b -> b.verbosity(Verbosity.SHORT),
+                "más corto", "respuestas cortas", "sé breve", "brevemente", "responde corto"),
+        DETAILED(Group.VERBOSITY, "verbosity=DETAILED", b -> b.verbosity(Verbosity.DETAILED),
+                "más detalle", "detallado", "explicación completa", "profundiza", "extiendet"),
 
-    private static final Pattern CMD_FORMAT_LIST = Pattern.compile(
-            "\\b(en\\s+lista|listado|bullets|viñetas)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        // Emoji preference
+        NO_EMOJI(Group.EMOJI, "emojiPreference=NONE", b -> b.emojiPreference(EmojiPreference.NONE),
+                "sin emoji", "sin emojis", "no use emoji", "no use emojis", "no uses emoji", "no uses emojis",
+                "evita emoji", "evita emojis"),
+        WITH_EMOJI(Group.EMOJI, "emojiPreference=HEAVY", b -> b.emojiPreference(EmojiPreference.HEAVY),
+                "usa emoji", "usa emojis", "con emoji", "con emojis", "agrega emoji", "agrega emojis",
+                "más emoji", "más emojis"),
 
-    private static final Pattern CMD_FORMAT_DIRECT = Pattern.compile(
-            "\\b(directo|sin\\s+formato|al\\s+grano|vamos\\s+al\\s+grano)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        // Tone
+        FORMAL(Group.TONE, "tone=FORMAL", b -> b.tone(Tone.FORMAL),
+                "háblame formal", "más formal", "tono formal", "profesional"),
+        WARM(Group.TONE, "tone=WARM", b -> b.tone(Tone.WARM),
+                "háblame cálido", "más cercano", "tono cálido", "amigable", "amistoso"),
+        FUNNY(Group.TONE, "tone=FUNNY", b -> b.tone(Tone.FUNNY),
+                "háblame divertido", "con humor", "gracioso", "tono relajado"),
+        NEUTRAL(Group.TONE, "tone=NEUTRAL", b -> b.tone(Tone.NEUTRAL),
+                "háblame neutral", "tono neutral", "objetivo", "sin emociones"),
+
+        // Formato de respuesta
+        FORMAT_STEPS(Group.FORMAT, "preferredFormat=STEPS", b -> b.preferredFormat("STEPS"),
+                "en pasos", "paso a paso", "numerado", "enumera"),
+        FORMAT_LIST(Group.FORMAT, "preferredFormat=LIST", b -> b.preferredFormat("LIST"),
+                "en lista", "listado", "bullets", "viñetas"),
+        FORMAT_DIRECT(Group.FORMAT, "preferredFormat=DIRECT", b -> b.preferredFormat("DIRECT"),
+                "directo", "sin formato", "al grano", "vamos al grano"),
+
+        // Ritmo de respuesta
+        SPEED_QUICK(Group.SPEED, "responseSpeed=QUICK", b -> b.responseSpeed("QUICK"),
+                "rápido", "responde rápido", "conciso", "sin explicaciones"),
+        SPEED_EXPLAINED(Group.SPEED, "responseSpeed=EXPLAINED", b -> b.responseSpeed("EXPLAINED"),
+                "explicado", "explícame", "con ejemplos", "detalla");
+
+        private final Group group;
+        private final String description;
+        private final Consumer<UserProfilePatch.UserProfilePatchBuilder> apply;
+        private final String[] phrases;
+
+        Command(Group group, String description, Consumer<UserProfilePatch.UserProfilePatchBuilder> apply,
+                String... phrases) {
+            this.group = group;
+            this.description = description;
+            this.apply = apply;
+            this.phrases = phrases;
+        }
+    }
 
-    // Patrones para ritmo de respuesta
-    private static final Pattern CMD_SPEED_QUICK = Pattern.compile(
-            "\\b(rápido|responde\\s+rápido|conciso|sin\\s+explicaciones)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private enum Group {
+        VERBOSITY, EMOJI, TONE, FORMAT, SPEED
+    }
 
-    private static final Pattern CMD_SPEED_EXPLAINED = Pattern.compile(
-            "\\b(explicado|explícame|con\\s+ejemplos|detalla)\\b",
-            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    /**
+     * Un solo autómata con las frases de todos los comandos: el mensaje se
+     * recorre una vez, sin importar cuántos comandos existan. Las frases se
+     * guardan normalizadas (sin tildes) y se comparan contra el mensaje
+     * normalizado, con \s+ entre palabras y \b en los extremos.
+     */
+    private static final AhoCorasickMatcher<Command> COMMAND_MATCHER = buildCommandMatcher();
+
+    private static AhoCorasickMatcher<Command> buildCommandMatcher() {
+        AhoCorasickMatcher.Builder<Command> builder = AhoCorasickMatcher.<Command>builder().wholeWords(true);
+        for (Command command : Command.values()) {
+            for (String phrase : command.phrases) {
+                builder.add(NormalizedText.normalize(phrase), command);
+            }
+        }
+        return builder.build();
+    }
 
     /**
      * Analiza el mensaje del usuario en busca de comandos explícitos
@@ -94,6 +124,19 @@ public class ProfileInferenceService {
      * @return true si se actualizó el perfil
      */
     public boolean inferAndUpdateProfile(String userId, String userMessage, int messageCount) {
+        return inferAndUpdateProfile(userId, NormalizedText.of(userMessage), messageCount);
+    }
+
+    /**
+     * Igual que {@link #inferAndUpdateProfile(String, String, int)}, con el
+     * mensaje ya normalizado por el orquestador.
+     *
+     * @param userId identificador del usuario
+     * @param userMessage mensaje normalizado
+     * @param messageCount número total de mensajes del usuario (para decidir si inferir)
+     * @return true si se actualizó el perfil
+     */
+    public boolean inferAndUpdateProfile(String userId, NormalizedText userMessage, int messageCount) {
         log.debug("Analizando mensaje para inferencia de perfil: userId={}, messageCount={}", 
                 userId, messageCount);
 
@@ -101,92 +144,44 @@ public class ProfileInferenceService {
 
         if (patch.hasChanges()) {
             log.info("Comandos explícitos detectados en el mensaje, actualizando perfil: userId={}", userId);
-            userProfileService.updateProfile(userId, patch);
+            userProfileService.updateProfileDeferred(userId, patch);
             return true;
         }
 
-        // Futuro: Modo 2 - Inferencia con IA (solo cada N mensajes para ser conservador)
-        // Ejemplo: cada 10 mensajes, usar Spring AI para resumir preferencias y proponer cambios
-        // con validación estricta de schema
+        // Modo 2 (inferencia con IA cada N mensajes) lo ejecuta ProfileInferenceBatchService
+        // en segundo plano, con validación estricta de esquema y confianza mínima
 
         return false;
     }
 
     /**
      * Detecta comandos explícitos del usuario para cambiar preferencias.
+     * Una sola pasada sobre el mensaje; por grupo se aplica el comando de
+     * mayor precedencia encontrado.
      *
      * @param message mensaje del usuario
      * @return patch con cambios detectados (puede estar vacío)
      */
-    private UserProfilePatch detectExplicitCommands(String message) {
-        UserProfilePatch.UserProfilePatchBuilder patchBuilder = UserProfilePatch.builder();
-        boolean hasChanges = false;
-
-        // Detectar verbosity
-        if (CMD_SHORT.matcher(message).find()) {
-            patchBuilder.verbosity(Verbosity.SHORT);
-            hasChanges = true;
-            log.debug("Comando detectado: verbosity=SHORT");
-        } else if (CMD_DETAILED.matcher(message).find()) {
-            patchBuilder.verbosity(Verbosity.DETAILED);
-            hasChanges = true;
-            log.debug("Comando detectado: verbosity=DETAILED");
-        }
-
-        // Detectar emoji preference
-        if (CMD_NO_EMOJI.matcher(message).find()) {
-            patchBuilder.emojiPreference(EmojiPreference.NONE);
-            hasChanges = true;
-            log.debug("Comando detectado: emojiPreference=NONE");
-        } else if (CMD_WITH_EMOJI.matcher(message).find()) {
-            patchBuilder.emojiPreference(EmojiPreference.HEAVY);
-            hasChanges = true;
-            log.debug("Comando detectado: emojiPreference=HEAVY");
-        }
-
-        // Detectar tone
-        if (CMD_FORMAL.matcher(message).find()) {
-            patchBuilder.tone(Tone.FORMAL);
-            hasChanges = true;
-            log.debug("Comando detectado: tone=FORMAL");
-        } else if (CMD_WARM.matcher(message).find()) {
-            patchBuilder.tone(Tone.WARM);
-            hasChanges = true;
-            log.debug("Comando detectado: tone=WARM");
-        } else if (CMD_FUNNY.matcher(message).find()) {
-            patchBuilder.tone(Tone.FUNNY);
-            hasChanges = true;
-            log.debug("Comando detectado: tone=FUNNY");
-        } else if (CMD_NEUTRAL.matcher(message).find()) {
-            patchBuilder.tone(Tone.NEUTRAL);
-            hasChanges = true;
-            log.debug("Comando detectado: tone=NEUTRAL");
-        }
+    UserProfilePatch detectExplicitCommands(String message) {
+        return detectExplicitCommands(NormalizedText.of(message));
+    }
 
-        // Detectar formato preferido
-        if (CMD_FORMAT_STEPS.matcher(message).find()) {
-            patchBuilder.preferredFormat("STEPS");
-            hasChanges = true;
-            log.debug("Comando detectado: preferredFormat=STEPS");
-        } else if (CMD_FORMAT_LIST.matcher(message).find()) {
-            patchBuilder.preferredFormat("LIST");
-            hasChanges = true;
-            log.debug("Comando detectado: preferredFormat=LIST");
-        } else if (CMD_FORMAT_DIRECT.matcher(message).find()) {
-            patchBuilder.preferredFormat("DIRECT");
-            hasChanges = true;
-            log.debug("Comando detectado: preferredFormat=DIRECT");
-        }
+    UserProfilePatch detectExplicitCommands(NormalizedText message) {
+        Command[] selected = new Command[Group.values().length];
+        COMMAND_MATCHER.search(message.text(), (start, end, command) -> {
+            int group = command.group.ordinal();
+            if (selected[group] == null || command.ordinal() < selected[group].ordinal()) {
+                selected[group] = command;
+            }
+            return true;
+        });
 
-        // Detectar ritmo de respuesta
-        if (CMD_SPEED_QUICK.matcher(message).find()) {
-            patchBuilder.responseSpeed("QUICK");
-            hasChanges = true;
-            log.debug("Comando detectado: responseSpeed=QUICK");
-        } else if (CMD_SPEED_EXPLAINED.matcher(message).find()) {
-            patchBuilder.responseSpeed("EXPLAINED");
-            hasChanges = true;
-            log.debug("Comando detectado: responseSpeed=EXPLAINED");
+        UserProfilePatch.UserProfilePatchBuilder patchBuilder = UserProfilePatch.builder();
+        for (Command command : selected) {
+            if (command != null) {
+                command.apply.accept(patchBuilder);
+                log.debug("Comando detectado: {}", command.description);
+            }
         }
 
         return patchBuilder.build();
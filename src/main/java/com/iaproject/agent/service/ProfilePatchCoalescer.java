@@ -0,0 +1,237 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.service.dto.UserProfilePatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Combina los patches de perfil de cada usuario durante una ventana corta y
+ * los escribe en una sola actualización, fuera del hilo de la petición.
+ *
+ * "Más corto", "sin emojis" y "en lista" en tres mensajes seguidos producen
+ * una única escritura versionada en lugar de tres (y sin conflictos entre ellas).
+ *
+ * El patch pendiente de un usuario sigue visible (pending) hasta que su
+ * escritura termina; UserProfileService lo superpone al perfil leído para que
+ * el siguiente mensaje ya refleje las preferencias nuevas.
+ *
+ * Si la escritura falla, el patch sigue pendiente y se reintenta (con espera
+ * creciente) hasta maxAttempts veces antes de descartarlo.
+ */
+@Slf4j
+class ProfilePatchCoalescer {
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final BiConsumer<String, UserProfilePatch> writer;
+    private final Duration window;
+    private final int maxAttempts;
+    private final ScheduledExecutorService scheduler;
+
+    private final Counter coalesced;
+    private final Counter writes;
+    private final Counter failures;
+    private final Counter dropped;
+
+    /**
+     * @param writer escritura real del patch combinado (con sus propios reintentos)
+     * @param window ventana de combinación por usuario
+     * @param maxAttempts intentos de escritura antes de descartar un patch
+     */
+    ProfilePatchCoalescer(BiConsumer<String, UserProfilePatch> writer, Duration window, int maxAttempts,
+                          MeterRegistry meterRegistry) {
+        this.writer = writer;
+        this.window = window;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "profile-update-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Al apagar no se espera a que venza cada ventana: drain() escribe lo pendiente
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.scheduler = executor;
+
+        this.coalesced = Counter.builder("user.profile.update.coalesced")
+                .description("Patches de perfil combinados con otro pendiente del mismo usuario")
+                .register(meterRegistry);
+        this.writes = Counter.builder("user.profile.update.deferred")
+                .description("Escrituras de perfil diferidas ejecutadas")
+                .register(meterRegistry);
+        this.failures = Counter.builder("user.profile.update.deferred.failed")
+                .description("Escrituras de perfil diferidas que fallaron")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("user.profile.update.deferred.dropped")
+                .description("Patches de perfil descartados tras agotar los reintentos")
+                .register(meterRegistry);
+        Gauge.builder("user.profile.update.pending", pending, Map::size)
+                .description("Usuarios con actualizaciones de perfil pendientes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registra un patch. El primero de un usuario programa la escritura al
+     * cerrar la ventana; los siguientes se combinan con él (gana el más reciente).
+     *
+     * @param userId identificador del usuario
+     * @param patch cambios a aplicar
+     */
+    void submit(String userId, UserProfilePatch patch) {
+        boolean[] created = new boolean[1];
+        pending.compute(userId, (id, current) -> {
+            if (current == null) {
+                created[0] = true;
+                return new Pending(patch);
+            }
+            coalesced.increment();
+            return new Pending(merge(current.patch, patch), current.failedAttempts);
+        });
+        if (created[0]) {
+            schedule(userId);
+        }
+    }
+
+    /**
+     * Patch pendiente (aún no escrito o en escritura) de un usuario.
+     *
+     * @param userId identificador del usuario
+     * @return patch combinado, o vacío si no hay nada pendiente
+     */
+    Optional<UserProfilePatch> pending(String userId) {
+        Pending entry = pending.get(userId);
+        return entry != null ? Optional.of(entry.patch) : Optional.empty();
+    }
+
+    /**
+     * Escribe el patch pendiente de un usuario. Si llegaron patches nuevos
+     * mientras se escribía, se programa otra escritura con el combinado.
+     *
+     * @param userId identificador del usuario
+     */
+    void flush(String userId) {
+        Pending entry = pending.get(userId);
+        if (entry == null) {
+            return;
+        }
+
+        try {
+            writer.accept(userId, entry.patch);
+            writes.increment();
+        } catch (Exception e) {
+            failures.increment();
+            retryOrDrop(userId, e);
+            return;
+        }
+
+        // Solo se retira si nadie lo reemplazó durante la escritura
+        if (!pending.remove(userId, entry)) {
+            schedule(userId);
+        }
+    }
+
+    /**
+     * Tras un fallo, conserva el patch pendiente (combinado con lo que haya
+     * llegado mientras tanto) y lo reprograma, o lo descarta si agotó los intentos.
+     */
+    private void retryOrDrop(String userId, Exception error) {
+        Pending failed = pending.computeIfPresent(userId,
+                (id, current) -> new Pending(current.patch, current.failedAttempts + 1));
+        if (failed == null) {
+            return;
+        }
+        if (failed.failedAttempts >= maxAttempts) {
+            pending.remove(userId, failed);
+            dropped.increment();
+            log.error("❌ Actualización diferida de perfil descartada tras {} intentos: userId={}, error={}",
+                    failed.failedAttempts, userId, error.getMessage(), error);
+            return;
+        }
+        log.warn("Error en actualización diferida de perfil, reintentando: userId={}, intento={}, error={}",
+                userId, failed.failedAttempts, error.getMessage());
+        schedule(userId, window.multipliedBy(failed.failedAttempts + 1));
+    }
+
+    /**
+     * Detiene el programador y escribe todo lo pendiente (apagado ordenado).
+     *
+     * @return número de usuarios escritos
+     */
+    int drain() {
+        scheduler.shutdown();
+        try {
+            // Solo espera a la escritura que esté en curso
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int flushed = 0;
+        for (String userId : pending.keySet()) {
+            flush(userId);
+            flushed++;
+        }
+        return flushed;
+    }
+
+    private void schedule(String userId) {
+        schedule(userId, window);
+    }
+
+    private void schedule(String userId, Duration delay) {
+        try {
+            scheduler.schedule(() -> flush(userId), delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Apagando: se escribe en el hilo actual
+            flush(userId);
+        }
+    }
+
+    /**
+     * Combina dos patches: los campos no nulos del más reciente prevalecen.
+     */
+    static UserProfilePatch merge(UserProfilePatch older, UserProfilePatch newer) {
+        return UserProfilePatch.builder()
+                .preferredLanguage(pick(newer.getPreferredLanguage(), older.getPreferredLanguage()))
+                .tone(pick(newer.getTone(), older.getTone()))
+                .verbosity(pick(newer.getVerbosity(), older.getVerbosity()))
+                .emojiPreference(pick(newer.getEmojiPreference(), older.getEmojiPreference()))
+                .styleNotes(pick(newer.getStyleNotes(), older.getStyleNotes()))
+                .currentObjective(pick(newer.getCurrentObjective(), older.getCurrentObjective()))
+                .preferredFormat(pick(newer.getPreferredFormat(), older.getPreferredFormat()))
+                .responseSpeed(pick(newer.getResponseSpeed(), older.getResponseSpeed()))
+                .pastDecisions(pick(newer.getPastDecisions(), older.getPastDecisions()))
+                .build();
+    }
+
+    private static <T> T pick(T newer, T older) {
+        return newer != null ? newer : older;
+    }
+
+    /**
+     * Entrada pendiente; se compara por identidad para detectar reemplazos.
+     */
+    private static final class Pending {
+
+        private final UserProfilePatch patch;
+        private final int failedAttempts;
+
+        private Pending(UserProfilePatch patch) {
+            this(patch, 0);
+        }
+
+        private Pending(UserProfilePatch patch, int failedAttempts) {
+            this.patch = patch;
+            this.failedAttempts = failedAttempts;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.iaproject.agent.service;
 import com.iaproject.agent.domain.ConversationHistory;
 import com.iaproject.agent.domain.UserProfile;
 import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.service.text.NormalizedText;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -88,9 +89,10 @@ public class QuickReplyService {
         if (domainId == null) {
             return false;
         }
-        String lower = domainId.toLowerCase();
-        return lower.contains("baby") 
-                || lower.contains("shower") 
-                || lower.contains("evento");
+        // Misma normalización que los mensajes (mayúsculas, tildes, separadores)
+        String normalized = NormalizedText.normalize(domainId);
+        return normalized.contains("baby")
+                || normalized.contains("shower")
+                || normalized.contains("evento");
     }
 }
@@ -0,0 +1,159 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.domain.enums.GuardrailReason;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Valida que la solicitud esté dentro del alcance permitido.
+ * Solo se aplica si el request tiene mode=EVENT o domainId/eventId.
+ * Los dominios permitidos se cargan dinámicamente desde la base de datos.
+ *
+ * El mensaje se valida contra las keywords de la categoría del contexto
+ * (allowed_domain.category): domainId es la categoría y, si no viene, se
+ * deduce del eventId ("baby-shower-123" → "baby-shower"). Si el contexto no
+ * corresponde a ninguna categoría con keywords se usan todas las categorías.
+ *
+ * Si ninguna keyword aparece tal cual se prueba la búsqueda tolerante a
+ * errores de tipeo ("babyshawer" → "baby shower") antes de redirigir.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ScopeGuardrailRule implements GuardrailRule {
+
+    private final AllowedDomainService allowedDomainService;
+
+    @Override
+    public String id() {
+        return "scope";
+    }
+
+    @Override
+    public long estimatedCostNanos() {
+        return 5_000L;
+    }
+
+    @Override
+    public GuardrailAction rejectAction() {
+        return GuardrailAction.REDIRECT;
+    }
+
+    /**
+     * Los dominios cambian en caliente: su versión invalida los veredictos cacheados.
+     */
+    @Override
+    public long version() {
+        return allowedDomainService.getScopeVersion();
+    }
+
+    @Override
+    public GuardrailEvaluationResult evaluate(GuardrailContext context) {
+        // Verificar si el contexto requiere validación de alcance
+        String domainContext = context.domainId();
+        boolean requiresScopeValidation = "EVENT".equals(context.mode())
+                || domainContext != null || context.eventId() != null;
+
+        if (!requiresScopeValidation) {
+            // No se requiere validación de alcance
+            return GuardrailEvaluationResult.ALLOWED;
+        }
+
+        // Índice de dominios permitidos de la categoría (construido desde BD y cacheado)
+        String category = resolveCategory(domainContext, context.eventId());
+        AllowedDomainScopeMatcher scopeMatcher = category != null
+                ? allowedDomainService.getScopeMatcher(category)
+                : allowedDomainService.getScopeMatcher();
+
+        if (scopeMatcher.isEmpty()) {
+            log.warn("⚠️ No hay dominios permitidos configurados en BD, permitiendo mensaje");
+            return GuardrailEvaluationResult.ALLOWED;
+        }
+
+        // Verificar si el mensaje menciona algún dominio permitido (una sola pasada)
+        Optional<AllowedDomainScopeMatcher.Match> match = scopeMatcher.findFirst(context.message());
+        if (match.isEmpty()) {
+            // Solo si el autómata exacto no encontró nada: keywords con errores de tipeo
+            match = scopeMatcher.findFuzzy(context.message());
+        }
+
+        if (match.isEmpty()) {
+            // Generar mensaje y quick replies dinámicos basados en el contexto
+            return GuardrailEvaluationResult.builder()
+                    .action(GuardrailAction.REDIRECT)
+                    .reason(GuardrailReason.OUT_OF_SCOPE)
+                    .predefinedResponse(buildRedirectMessage(domainContext))
+                    .quickReplies(buildRedirectQuickReplies(domainContext))
+                    .build();
+        }
+
+        log.debug("Alcance validado por keyword '{}' (categoría {}, distancia {})",
+                match.get().keyword(), match.get().category(), match.get().distance());
+        return GuardrailEvaluationResult.builder()
+                .action(GuardrailAction.ALLOW)
+                .reason(GuardrailReason.NONE)
+                .matchedKeyword(match.get().keyword())
+                .matchedCategory(match.get().category())
+                .build();
+    }
+
+    /**
+     * Categoría de dominios del contexto: el domainId si es una categoría con
+     * keywords activas; si no, la categoría más larga que sea prefijo del
+     * eventId seguida de '-' (o el eventId completo).
+     *
+     * @return categoría, o null si el contexto no indica ninguna conocida
+     */
+    String resolveCategory(String domainId, String eventId) {
+        Set<String> categories = allowedDomainService.getScopeCategories();
+        if (domainId != null && categories.contains(domainId)) {
+            return domainId;
+        }
+        if (eventId == null) {
+            return null;
+        }
+        String resolved = null;
+        for (String category : categories) {
+            boolean matches = eventId.equals(category)
+                    || (eventId.startsWith(category) && eventId.charAt(category.length()) == '-');
+            if (matches && (resolved == null || category.length() > resolved.length())) {
+                resolved = category;
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Construye mensaje de redirección dinámico según el contexto.
+     */
+    private String buildRedirectMessage(String domainContext) {
+        if (domainContext != null && !domainContext.isBlank()) {
+            return String.format(
+                    "Estoy aquí para ayudarte con temas relacionados a %s. " +
+                    "¿Tienes alguna pregunta relacionada?", domainContext);
+        }
+
+        // Mensaje genérico si no hay contexto específico
+        return "Estoy aquí para ayudarte con los temas permitidos. " +
+               "¿En qué puedo asistirte?";
+    }
+
+    /**
+     * Construye quick replies dinámicos según el dominio.
+     */
+    private List<String> buildRedirectQuickReplies(String domainContext) {
+        // Quick replies genéricos para redirección
+        return List.of(
+                "Ver temas disponibles",
+                "¿Qué puedes hacer?",
+                "Ayuda"
+        );
+    }
+}
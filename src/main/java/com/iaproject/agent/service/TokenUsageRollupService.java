@@ -0,0 +1,153 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.TokenUsageRollupProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Job de agregación horaria del uso de tokens (token_usage_hourly).
+ *
+ * En cada ejecución recalcula las horas cerradas desde
+ * (marca de agua - ventana de reproceso) hasta la hora actual y avanza la
+ * marca de agua. El recálculo reemplaza los valores de cada bucket
+ * (UPSERT), por lo que repetir una ejecución no duplica totales.
+ *
+ * Solo una instancia ejecuta la agregación a la vez (advisory lock de Postgres).
+ */
+@Slf4j
+@Service
+public class TokenUsageRollupService {
+
+    private static final String ROLLUP_NAME = "token_usage_hourly";
+    private static final long ADVISORY_LOCK_KEY = 0x746F6B656E5FL; // "token_"
+
+    private static final String UPSERT_BUCKETS_SQL =
+            "INSERT INTO token_usage_hourly (bucket_start, model_used, domain_id, event_id, guardrail_action, " +
+            "request_count, prompt_tokens, completion_tokens, total_tokens, updated_at) " +
+            "SELECT date_trunc('hour', created_at AT TIME ZONE 'UTC') AT TIME ZONE 'UTC', " +
+            "COALESCE(model_used, ''), COALESCE(domain_id, ''), COALESCE(event_id, ''), " +
+            "COALESCE(guardrail_action, ''), COUNT(*), COALESCE(SUM(prompt_tokens), 0), " +
+            "COALESCE(SUM(completion_tokens), 0), COALESCE(SUM(total_tokens), 0), now() " +
+            "FROM conversation_history WHERE created_at >= ? AND created_at < ? " +
+            "GROUP BY 1, 2, 3, 4, 5 " +
+            "ON CONFLICT (bucket_start, model_used, domain_id, event_id, guardrail_action) DO UPDATE SET " +
+            "request_count = EXCLUDED.request_count, prompt_tokens = EXCLUDED.prompt_tokens, " +
+            "completion_tokens = EXCLUDED.completion_tokens, total_tokens = EXCLUDED.total_tokens, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TokenUsageRollupProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicReference<OffsetDateTime> lastWatermark = new AtomicReference<>();
+    private final Counter bucketsUpserted;
+    private final Timer rollupTimer;
+
+    public TokenUsageRollupService(JdbcTemplate jdbcTemplate,
+                                   TokenUsageRollupProperties properties,
+                                   PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.bucketsUpserted = Counter.builder("token.usage.rollup.buckets")
+                .description("Buckets horarios recalculados en token_usage_hourly")
+                .register(meterRegistry);
+        this.rollupTimer = Timer.builder("token.usage.rollup")
+                .description("Duración de cada ejecución de la agregación horaria de tokens")
+                .register(meterRegistry);
+        Gauge.builder("token.usage.rollup.lag", this, TokenUsageRollupService::lagSeconds)
+                .baseUnit("seconds")
+                .description("Segundos entre la marca de agua del agregado y el instante actual")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecución periódica de la agregación.
+     */
+    @Scheduled(fixedDelayString = "${app.token-usage.rollup.interval:PT5M}",
+               initialDelayString = "${app.token-usage.rollup.interval:PT5M}")
+    public void runRollup() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        try {
+            Timer.Sample sample = Timer.start();
+            int buckets = catchUp(OffsetDateTime.now(ZoneOffset.UTC));
+            sample.stop(rollupTimer);
+            log.debug("Agregado de tokens actualizado: {} buckets (marca de agua={})", buckets, lastWatermark.get());
+        } catch (Exception e) {
+            log.error("❌ Error en agregación horaria de tokens: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Recalcula las horas cerradas pendientes y avanza la marca de agua.
+     *
+     * @param now instante actual
+     * @return buckets recalculados (0 si otra instancia tiene el lock)
+     */
+    public int catchUp(OffsetDateTime now) {
+        Integer buckets = transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ADVISORY_LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked)) {
+                return 0;
+            }
+
+            List<OffsetDateTime> rows = jdbcTemplate.queryForList(
+                    "SELECT processed_until FROM rollup_watermark WHERE name = ? FOR UPDATE",
+                    OffsetDateTime.class, ROLLUP_NAME);
+            if (rows.isEmpty()) {
+                log.warn("Marca de agua {} no encontrada, se omite la agregación", ROLLUP_NAME);
+                return 0;
+            }
+
+            OffsetDateTime watermark = rows.get(0);
+            OffsetDateTime from = floorHour(watermark.minus(properties.getReprocessWindow()));
+            OffsetDateTime to = floorHour(now);
+            if (!from.isBefore(to)) {
+                lastWatermark.set(watermark);
+                return 0;
+            }
+
+            int upserted = jdbcTemplate.update(UPSERT_BUCKETS_SQL, from, to);
+            OffsetDateTime advanced = to.isAfter(watermark) ? to : watermark;
+            jdbcTemplate.update(
+                    "UPDATE rollup_watermark SET processed_until = ?, updated_at = now() WHERE name = ?",
+                    advanced, ROLLUP_NAME);
+            lastWatermark.set(advanced);
+            return upserted;
+        });
+
+        int result = buckets != null ? buckets : 0;
+        bucketsUpserted.increment(result);
+        return result;
+    }
+
+    double lagSeconds() {
+        OffsetDateTime watermark = lastWatermark.get();
+        return watermark == null ? 0.0
+                : ChronoUnit.SECONDS.between(watermark, OffsetDateTime.now(ZoneOffset.UTC));
+    }
+
+    private static OffsetDateTime floorHour(OffsetDateTime value) {
+        return value.withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+    }
+}
@@ -0,0 +1,192 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.UserProfileCacheProperties;
+import com.iaproject.agent.domain.UserProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché local de perfiles de usuario (snapshots desacoplados de JPA).
+ *
+ * Cada entrada es una copia del perfil con su versión (@Version). Los
+ * llamadores reciben siempre una copia nueva, nunca la instancia cacheada.
+ *
+ * Consistencia:
+ * - Las cargas dentro de una transacción se publican solo tras el commit
+ * - Una entrada solo se reemplaza por otra de versión igual o mayor, por lo
+ *   que commits concurrentes que llegan desordenados no retroceden el perfil
+ * - El TTL acota cuánto tarda esta instancia en ver cambios de otra; al
+ *   escribir, la versión detecta cualquier snapshot obsoleto
+ */
+@Slf4j
+@Component
+public class UserProfileCache {
+
+    private final UserProfileCacheProperties properties;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public UserProfileCache(UserProfileCacheProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::currentTimeMillis);
+    }
+
+    UserProfileCache(UserProfileCacheProperties properties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.properties = properties;
+        this.clock = clock;
+        int maxEntries = properties.getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        this.hits = Counter.builder("user.profile.cache")
+                .tag("result", "hit")
+                .description("Lecturas de perfil servidas desde memoria")
+                .register(meterRegistry);
+        this.misses = Counter.builder("user.profile.cache")
+                .tag("result", "miss")
+                .description("Lecturas de perfil que requirieron BD")
+                .register(meterRegistry);
+        Gauge.builder("user.profile.cache.hit.ratio", this, UserProfileCache::hitRatio)
+                .description("Proporción de aciertos de la caché de perfiles")
+                .register(meterRegistry);
+        Gauge.builder("user.profile.cache.size", this, UserProfileCache::size)
+                .description("Perfiles mantenidos en memoria")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Obtiene una copia del perfil cacheado.
+     *
+     * @param userId identificador del usuario
+     * @return copia del perfil, o vacío si no está en memoria o expiró
+     */
+    public Optional<UserProfile> get(String userId) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+
+        UserProfile snapshot = null;
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                if (clock.getAsLong() >= entry.expiresAt) {
+                    entries.remove(userId);
+                } else {
+                    snapshot = entry.profile;
+                }
+            }
+        }
+
+        if (snapshot == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(copy(snapshot));
+    }
+
+    /**
+     * Guarda una copia del perfil. Se ignora si ya hay una versión más reciente.
+     *
+     * Si hay una transacción activa, la copia se toma tras el commit: así
+     * incluye la versión incrementada por Hibernate al hacer flush.
+     *
+     * @param profile perfil leído o escrito en BD
+     */
+    public void put(UserProfile profile) {
+        if (!properties.isEnabled() || profile == null || profile.getUserId() == null) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doPut(copy(profile));
+                }
+            });
+        } else {
+            doPut(copy(profile));
+        }
+    }
+
+    /**
+     * Elimina un perfil de la caché.
+     *
+     * @param userId identificador del usuario
+     */
+    public void evict(String userId) {
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0.0 : hits.count() / total;
+    }
+
+    private void doPut(UserProfile snapshot) {
+        long expiresAt = clock.getAsLong() + properties.getTtl().toMillis();
+        synchronized (entries) {
+            Entry current = entries.get(snapshot.getUserId());
+            if (current != null && version(current.profile) > version(snapshot)) {
+                log.debug("Snapshot de perfil descartado por versión antigua: userId={}", snapshot.getUserId());
+                return;
+            }
+            entries.put(snapshot.getUserId(), new Entry(snapshot, expiresAt));
+        }
+    }
+
+    private static long version(UserProfile profile) {
+        return profile.getVersion() != null ? profile.getVersion() : -1L;
+    }
+
+    /**
+     * Copia desacoplada del perfil (incluye id y versión para detectar conflictos al escribir).
+     */
+    static UserProfile copy(UserProfile source) {
+        return UserProfile.builder()
+                .id(source.getId())
+                .userId(source.getUserId())
+                .preferredLanguage(source.getPreferredLanguage())
+                .tone(source.getTone())
+                .verbosity(source.getVerbosity())
+                .emojiPreference(source.getEmojiPreference())
+                .styleNotes(source.getStyleNotes())
+                .currentObjective(source.getCurrentObjective())
+                .preferredFormat(source.getPreferredFormat())
+                .responseSpeed(source.getResponseSpeed())
+                .pastDecisions(source.getPastDecisions() != null ? new ArrayList<>(source.getPastDecisions()) : null)
+                .lastUpdatedAt(source.getLastUpdatedAt())
+                .version(source.getVersion())
+                .createdAt(source.getCreatedAt())
+                .build();
+    }
+
+    private record Entry(UserProfile profile, long expiresAt) {
+    }
+}
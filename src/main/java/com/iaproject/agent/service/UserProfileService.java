@@ -1,17 +1,30 @@
 package com.iaproject.agent.service;
 
+import com.iaproject.agent.config.properties.ProfileUpdateCoalescingProperties;
+import com.iaproject.agent.config.properties.UserProfileCacheProperties;
 import com.iaproject.agent.domain.UserProfile;
 import com.iaproject.agent.domain.enums.EmojiPreference;
 import com.iaproject.agent.domain.enums.Tone;
 import com.iaproject.agent.domain.enums.Verbosity;
 import com.iaproject.agent.repository.UserProfileRepository;
 import com.iaproject.agent.service.dto.UserProfilePatch;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.OptimisticLockException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Servicio para gestionar perfiles de usuario.
@@ -22,36 +35,146 @@ import java.util.UUID;
  * 
  * Principio: Los perfiles solo se actualizan con señales claras (comandos explícitos
  * o patrones consistentes), nunca por una sola interacción ambigua.
+ *
+ * Las lecturas se sirven desde UserProfileCache. Las escrituras usan la
+ * versión (@Version) del perfil para detectar snapshots obsoletos y, ante
+ * un conflicto, reintentan sobre el perfil fresco de BD (reaplicando el patch).
+ *
+ * Los userId anónimos generados en el servidor reciben un perfil efímero
+ * (AnonymousProfileStore) que solo se persiste si el cliente reutiliza el ID
+ * o si un comando de preferencia lo modifica.
+ *
+ * Las actualizaciones inferidas (updateProfileDeferred) se combinan por usuario
+ * en ProfilePatchCoalescer y se escriben en segundo plano; mientras tanto,
+ * getOrCreate devuelve el perfil con los cambios pendientes ya aplicados.
+ *
+ * Las escrituras pedidas dentro de una transacción (la del chat) se ejecutan
+ * tras su commit: en el primer contacto la fila del perfil aún no está
+ * confirmada y escribirla desde otra conexión esperaría un lock que retiene
+ * este mismo hilo.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class UserProfileService {
 
     private final UserProfileRepository userProfileRepository;
+    private final UserProfileCache userProfileCache;
+    private final AnonymousProfileStore anonymousProfileStore;
+    private final UserProfileCacheProperties cacheProperties;
+    private final TransactionTemplate writeTransaction;
+    private final ProfileUpdateCoalescingProperties coalescingProperties;
+    private final ProfilePatchCoalescer coalescer;
+
+    private final Counter updateConflicts;
+    private final Counter updatesExhausted;
+
+    public UserProfileService(UserProfileRepository userProfileRepository,
+                              UserProfileCache userProfileCache,
+                              AnonymousProfileStore anonymousProfileStore,
+                              UserProfileCacheProperties cacheProperties,
+                              ProfileUpdateCoalescingProperties coalescingProperties,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.userProfileRepository = userProfileRepository;
+        this.userProfileCache = userProfileCache;
+        this.anonymousProfileStore = anonymousProfileStore;
+        this.cacheProperties = cacheProperties;
+        // Cada intento en su propia transacción: un conflicto no marca
+        // como rollback-only la transacción del chat
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.coalescingProperties = coalescingProperties;
+        this.coalescer = new ProfilePatchCoalescer(this::updateProfile, coalescingProperties.getWindow(),
+                coalescingProperties.getMaxAttempts(), meterRegistry);
+
+        this.updateConflicts = Counter.builder("user.profile.update.conflicts")
+                .description("Conflictos de versión al actualizar perfiles (reintentados)")
+                .register(meterRegistry);
+        this.updatesExhausted = Counter.builder("user.profile.update.exhausted")
+                .description("Actualizaciones de perfil abandonadas tras agotar los reintentos")
+                .register(meterRegistry);
+    }
 
     /**
      * Obtiene el perfil de un usuario o lo crea si no existe.
+     * Consulta primero la caché local; si no está, lee o inserta en BD con
+     * una sola sentencia (ver findOrCreate) y la carga. Incluye los cambios
+     * pendientes de updateProfileDeferred.
      *
      * @param userId identificador del usuario
      * @return perfil del usuario (existente o recién creado)
      */
     @Transactional
     public UserProfile getOrCreate(String userId) {
-        return userProfileRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultProfile(userId));
+        Optional<UserProfile> cached = userProfileCache.get(userId);
+        if (cached.isPresent()) {
+            return withPendingUpdates(cached.get());
+        }
+
+        UserProfile profile = findOrCreate(userId);
+        userProfileCache.put(profile);
+        return withPendingUpdates(profile);
+    }
+
+    /**
+     * Superpone los cambios aún no escritos del usuario (lee lo propio escrito).
+     * Se aplica sobre una copia: nunca se modifica la entidad gestionada por JPA.
+     */
+    private UserProfile withPendingUpdates(UserProfile profile) {
+        Optional<UserProfilePatch> pending = coalescer.pending(profile.getUserId());
+        if (pending.isEmpty()) {
+            return profile;
+        }
+        UserProfile view = UserProfileCache.copy(profile);
+        applyPatch(view, pending.get());
+        return view;
+    }
+
+    /**
+     * Crea un perfil efímero (solo en memoria) para un userId anónimo recién
+     * generado. No escribe en BD: la mayoría de estos IDs no se reutilizan.
+     *
+     * @param anonymousId userId anónimo generado por el servidor
+     * @return perfil por defecto no persistido
+     */
+    public UserProfile createEphemeral(String anonymousId) {
+        log.debug("Creando perfil efímero para userId anónimo: {}", anonymousId);
+        return anonymousProfileStore.put(buildDefaultProfile(anonymousId));
     }
 
     /**
-     * Crea un perfil con valores por defecto.
+     * Lee el perfil o lo inserta si no existe, en un único round trip.
+     * Si el userId tenía un perfil efímero, este se promueve a BD; si no,
+     * se usan los valores por defecto.
+     *
+     * Mensajes simultáneos del mismo usuario nuevo no fallan por la unicidad
+     * de user_id: el perdedor de la carrera relee la fila del ganador.
      *
      * @param userId identificador del usuario
-     * @return perfil creado y guardado
+     * @return perfil existente o recién creado
      */
-    private UserProfile createDefaultProfile(String userId) {
-        log.info("Creando perfil por defecto para userId: {}", userId);
-        
-        UserProfile profile = UserProfile.builder()
+    private UserProfile findOrCreate(String userId) {
+        UserProfile base = anonymousProfileStore.take(userId)
+                .orElseGet(() -> buildDefaultProfile(userId));
+
+        Optional<UserProfile> profile = userProfileRepository.insertIfAbsent(
+                userId,
+                base.getPreferredLanguage(),
+                base.getTone().name(),
+                base.getVerbosity().name(),
+                base.getEmojiPreference().name());
+        if (profile.isPresent()) {
+            return profile.get();
+        }
+
+        // Otra transacción insertó el mismo userId durante esta sentencia
+        log.debug("Perfil insertado concurrentemente, releyendo: userId={}", userId);
+        return userProfileRepository.findByUserId(userId)
+                .orElseThrow(() -> new IllegalStateException("Perfil no encontrado tras insertar: " + userId));
+    }
+
+    private static UserProfile buildDefaultProfile(String userId) {
+        return UserProfile.builder()
                 .userId(userId)
                 .preferredLanguage("es-EC")
                 .tone(Tone.WARM)
@@ -59,38 +182,144 @@ public class UserProfileService {
                 .emojiPreference(EmojiPreference.LIGHT)
                 .styleNotes(null)
                 .build();
-
-        UserProfile saved = userProfileRepository.save(profile);
-        log.info("✅ Perfil creado: userId={}, id={}", saved.getUserId(), saved.getId());
-        return saved;
     }
 
     /**
      * Actualiza el perfil de un usuario de manera parcial (patch).
      * Solo actualiza los campos presentes en el patch.
      *
+     * El primer intento parte del snapshot cacheado; si su versión quedó
+     * obsoleta (otra escritura ganó), se invalida la caché y se reintenta
+     * sobre el perfil actual de BD, hasta max-update-attempts intentos.
+     *
+     * Dentro de una transacción activa la escritura se registra para después
+     * del commit y se devuelve el perfil con el patch aplicado (sin persistir).
+     *
      * @param userId identificador del usuario
      * @param patch campos a actualizar
      * @return perfil actualizado
      */
-    @Transactional
     public UserProfile updateProfile(String userId, UserProfilePatch patch) {
         if (!patch.hasChanges()) {
             log.debug("Patch vacío, no se actualiza el perfil para userId: {}", userId);
             return getOrCreate(userId);
         }
 
-        UserProfile profile = getOrCreate(userId);
-        boolean hasChanges = applyPatch(profile, patch);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            UserProfile preview = UserProfileCache.copy(getOrCreate(userId));
+            applyPatch(preview, patch);
+            afterCommit(userId, () -> write(userId, patch));
+            return preview;
+        }
+        return write(userId, patch);
+    }
 
-        if (hasChanges) {
-            UserProfile saved = userProfileRepository.save(profile);
-            log.info("✅ Perfil actualizado: userId={}, cambios={}", userId, patch);
-            return saved;
-        } else {
+    /**
+     * Escritura versionada con reintentos, cada intento en su propia transacción.
+     */
+    private UserProfile write(String userId, UserProfilePatch patch) {
+        int maxAttempts = Math.max(1, cacheProperties.getMaxUpdateAttempts());
+        for (int attempt = 1; ; attempt++) {
+            boolean fromCache = attempt == 1;
+            try {
+                return writeTransaction.execute(status -> applyAndSave(userId, patch, fromCache));
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                userProfileCache.evict(userId);
+                updateConflicts.increment();
+                if (attempt >= maxAttempts) {
+                    updatesExhausted.increment();
+                    log.error("❌ Conflicto de versión persistente al actualizar perfil: userId={}, intentos={}",
+                            userId, attempt);
+                    throw new IllegalStateException(
+                            "No se pudo actualizar el perfil tras " + attempt + " intentos: " + userId, e);
+                }
+                log.warn("Conflicto de versión al actualizar perfil, reintentando: userId={}, intento={}",
+                        userId, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Registra una actualización inferida de la conversación. Los patches del
+     * mismo usuario se combinan durante la ventana configurada y se escriben en
+     * una sola actualización en segundo plano. La siguiente lectura (getOrCreate)
+     * ya los refleja aunque la escritura no haya ocurrido.
+     *
+     * @param userId identificador del usuario
+     * @param patch campos a actualizar
+     */
+    public void updateProfileDeferred(String userId, UserProfilePatch patch) {
+        if (!patch.hasChanges()) {
+            return;
+        }
+        if (!coalescingProperties.isEnabled()) {
+            updateProfile(userId, patch);
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // El coalescer no debe escribir un perfil cuya creación aún no se confirmó
+            afterCommit(userId, () -> coalescer.submit(userId, patch));
+            return;
+        }
+        coalescer.submit(userId, patch);
+    }
+
+    /**
+     * Ejecuta una escritura de perfil tras el commit de la transacción actual.
+     * Si la transacción se revierte, la escritura se descarta con ella. Un
+     * fallo se registra sin propagarse: la transacción ya está confirmada.
+     */
+    private void afterCommit(String userId, Runnable write) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    write.run();
+                } catch (RuntimeException e) {
+                    log.error("❌ Error en actualización de perfil tras el commit: userId={}, error={}",
+                            userId, e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Escribe las actualizaciones pendientes al apagar la aplicación.
+     */
+    @PreDestroy
+    public void drainPendingUpdates() {
+        int flushed = coalescer.drain();
+        log.info("✅ Actualizaciones de perfil pendientes escritas al apagar: {}", flushed);
+    }
+
+    /**
+     * Un intento de actualización dentro de su propia transacción.
+     */
+    private UserProfile applyAndSave(String userId, UserProfilePatch patch, boolean fromCache) {
+        UserProfile profile = fromCache ? userProfileCache.get(userId).orElse(null) : null;
+        if (profile == null) {
+            profile = findOrCreate(userId);
+        }
+
+        if (!applyPatch(profile, patch)) {
             log.debug("No hubo cambios reales en el perfil para userId: {}", userId);
             return profile;
         }
+
+        // save sobre un snapshot desacoplado hace merge: Hibernate compara la versión
+        UserProfile saved = userProfileRepository.save(profile);
+        userProfileCache.put(saved);
+        log.info("✅ Perfil actualizado: userId={}, cambios={}", userId, patch);
+        return saved;
+    }
+
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
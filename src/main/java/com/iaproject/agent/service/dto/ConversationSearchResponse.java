@@ -0,0 +1,21 @@
+package com.iaproject.agent.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO de respuesta paginada de búsqueda en el historial.
+ * nextCursor es null cuando no hay más resultados.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSearchResponse {
+    private List<ConversationSearchResult> results;
+    private String nextCursor;
+}
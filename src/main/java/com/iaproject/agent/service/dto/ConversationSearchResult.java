@@ -0,0 +1,28 @@
+package com.iaproject.agent.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO de un resultado de búsqueda en el historial de conversaciones.
+ * Usado en endpoint GET /api/v1/conversations/search.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSearchResult {
+    private Long id;
+    private String conversationId;
+    private String userId;
+    private String domainId;
+    private String eventId;
+    private String userMessage;
+    private String aiResponse;
+    private Float rank;
+    private LocalDateTime createdAt;
+}
@@ -2,23 +2,33 @@ package com.iaproject.agent.service.dto;
 
 import com.iaproject.agent.domain.enums.GuardrailAction;
 import com.iaproject.agent.domain.enums.GuardrailReason;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.util.List;
 
 /**
  * Resultado de la evaluación de guardrails.
  * Contiene la decisión tomada y los datos necesarios para responder al usuario.
+ *
+ * Las instancias pueden venir de GuardrailVerdictCache (o ser ALLOWED) y
+ * compartirse entre peticiones, por eso son inmutables: para derivar un
+ * resultado distinto se usa toBuilder(). quickReplies debe ser una lista
+ * inmutable (List.of).
  */
-@Data
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
+@Value
+@Builder(toBuilder = true)
 public class GuardrailEvaluationResult {
 
+    /**
+     * Resultado compartido para solicitudes permitidas sin detalles de alcance
+     * (evita construir uno nuevo por regla y por petición).
+     */
+    public static final GuardrailEvaluationResult ALLOWED = GuardrailEvaluationResult.builder()
+            .action(GuardrailAction.ALLOW)
+            .reason(GuardrailReason.NONE)
+            .build();
+
     /**
      * Acción determinada por el sistema de guardrails.
      */
@@ -29,6 +39,11 @@ public class GuardrailEvaluationResult {
      */
     private GuardrailReason reason;
 
+    /**
+     * Regla que bloqueó la solicitud (solo si action == BLOCK por contenido).
+     */
+    private String ruleId;
+
     /**
      * Mensaje predefinido para responder al usuario (solo si action != ALLOW).
      */
@@ -40,6 +55,16 @@ public class GuardrailEvaluationResult {
     @Builder.Default
     private List<String> quickReplies = List.of();
 
+    /**
+     * Keyword de dominio permitido que validó el alcance (solo si se validó).
+     */
+    private String matchedKeyword;
+
+    /**
+     * Categoría de la keyword que validó el alcance (solo si se validó).
+     */
+    private String matchedCategory;
+
     /**
      * Indica si la solicitud fue permitida (sin necesidad de bloqueo/redirección).
      *
@@ -58,6 +58,13 @@ public class EventMapper {
 
     public GiftResponse toGiftResponse(Gift gift, java.math.BigDecimal currentFunding, Integer commitmentCount,
                                        GiftCommitment latestCommitment) {
+        return toGiftResponse(gift, currentFunding, commitmentCount,
+                latestCommitment != null ? latestCommitment.getGuestName() : null,
+                latestCommitment != null ? latestCommitment.getCreatedAt() : null);
+    }
+
+    public GiftResponse toGiftResponse(Gift gift, java.math.BigDecimal currentFunding, Integer commitmentCount,
+                                       String reserverName, java.time.OffsetDateTime reservedAt) {
         java.math.BigDecimal fundingPercentage = null;
         if (gift.getPrice() != null && gift.getPrice().compareTo(java.math.BigDecimal.ZERO) > 0) {
             fundingPercentage = currentFunding
@@ -83,8 +90,8 @@ public class EventMapper {
                 .commitmentCount(commitmentCount)
                 .createdAt(toLocalDateTime(gift.getCreatedAt()))
                 .updatedAt(toLocalDateTime(gift.getUpdatedAt()))
-                .reserverName(latestCommitment != null ? latestCommitment.getGuestName() : null)
-                .reservedAt(latestCommitment != null ? toLocalDateTime(latestCommitment.getCreatedAt()) : null)
+                .reserverName(reserverName)
+                .reservedAt(reservedAt != null ? toLocalDateTime(reservedAt) : null)
                 .build();
     }
 
@@ -400,4 +400,32 @@ public class ModelToDtoMapper {
         if (dtos == null) return null;
         return dtos.stream().map(this::toModel).collect(Collectors.toList());
     }
+
+    // ============================================================================
+    // HISTORIAL DE CONVERSACIONES
+    // ============================================================================
+
+    public com.iaproject.agent.model.ConversationSearchResult toModel(com.iaproject.agent.service.dto.ConversationSearchResult dto) {
+        if (dto == null) return null;
+        com.iaproject.agent.model.ConversationSearchResult model = new com.iaproject.agent.model.ConversationSearchResult();
+        model.setId(dto.getId());
+        model.setConversationId(dto.getConversationId());
+        model.setUserId(dto.getUserId());
+        model.setDomainId(dto.getDomainId());
+        model.setEventId(dto.getEventId());
+        model.setUserMessage(dto.getUserMessage());
+        model.setAiResponse(dto.getAiResponse());
+        model.setRank(dto.getRank());
+        model.setCreatedAt(dto.getCreatedAt());
+        return model;
+    }
+
+    public com.iaproject.agent.model.ConversationSearchResponse toModel(com.iaproject.agent.service.dto.ConversationSearchResponse dto) {
+        if (dto == null) return null;
+        com.iaproject.agent.model.ConversationSearchResponse model = new com.iaproject.agent.model.ConversationSearchResponse();
+        model.setResults(dto.getResults() == null ? null
+                : dto.getResults().stream().map(this::toModel).collect(Collectors.toList()));
+        model.setNextCursor(dto.getNextCursor());
+        return model;
+    }
 }
@@ -0,0 +1,299 @@
+package com.iaproject.agent.service.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Autómata Aho-Corasick: busca todas las frases de un diccionario en una sola
+ * pasada lineal sobre el texto, sin importar cuántas frases haya.
+ *
+ * Comparación:
+ * - Sin distinguir mayúsculas/minúsculas (equivalente a CASE_INSENSITIVE | UNICODE_CASE)
+ * - Cualquier secuencia de espacios del texto equivale a un espacio de la frase
+ *   (equivalente a \s+ entre palabras)
+ * - Opcionalmente, solo palabras completas (equivalente a \b ... \b)
+ *
+ * Las posiciones reportadas son índices del texto original. La instancia es
+ * inmutable y segura entre hilos.
+ *
+ * @param <T> valor asociado a cada frase
+ */
+public final class AhoCorasickMatcher<T> {
+
+    /**
+     * Receptor de coincidencias.
+     */
+    @FunctionalInterface
+    public interface MatchHandler<T> {
+
+        /**
+         * @param start índice inicial (inclusive) en el texto original
+         * @param end índice final (exclusivo) en el texto original
+         * @param value valor asociado a la frase encontrada
+         * @return false para detener la búsqueda
+         */
+        boolean onMatch(int start, int end, T value);
+    }
+
+    private static final int ROOT = 0;
+
+    private final boolean wholeWords;
+    private final int maxLength;
+
+    // Transiciones por nodo: caracteres ordenados + nodo destino (búsqueda binaria)
+    private final char[][] transitionChars;
+    private final int[][] transitionTargets;
+    private final int[] failure;
+    // Frases que terminan en cada nodo (incluye las heredadas por enlaces de fallo)
+    private final int[][] outputs;
+
+    private final int[] phraseLengths;
+    private final List<T> values;
+
+    private AhoCorasickMatcher(Builder<T> builder) {
+        this.wholeWords = builder.wholeWords;
+        this.values = List.copyOf(builder.values);
+        this.phraseLengths = builder.phrases.stream().mapToInt(String::length).toArray();
+        this.maxLength = Math.max(1, Arrays.stream(phraseLengths).max().orElse(1));
+
+        // 1. Trie
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+        for (int phrase = 0; phrase < builder.phrases.size(); phrase++) {
+            int node = ROOT;
+            for (char c : builder.phrases.get(phrase).toCharArray()) {
+                Integer child = trie.get(node).get(c);
+                if (child == null) {
+                    child = trie.size();
+                    trie.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                    trie.get(node).put(c, child);
+                }
+                node = child;
+            }
+            nodeOutputs.get(node).add(phrase);
+        }
+
+        int nodes = trie.size();
+        this.transitionChars = new char[nodes][];
+        this.transitionTargets = new int[nodes][];
+        for (int node = 0; node < nodes; node++) {
+            TreeMap<Character, Integer> children = trie.get(node);
+            transitionChars[node] = new char[children.size()];
+            transitionTargets[node] = new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                transitionChars[node][i] = child.getKey();
+                transitionTargets[node][i] = child.getValue();
+                i++;
+            }
+        }
+
+        // 2. Enlaces de fallo en anchura (BFS)
+        this.failure = new int[nodes];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : transitionTargets[ROOT]) {
+            failure[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < transitionChars[node].length; i++) {
+                char c = transitionChars[node][i];
+                int child = transitionTargets[node][i];
+                int fallback = failure[node];
+                while (fallback != ROOT && transition(fallback, c) < 0) {
+                    fallback = failure[fallback];
+                }
+                int target = transition(fallback, c);
+                failure[child] = target >= 0 && target != child ? target : ROOT;
+                nodeOutputs.get(child).addAll(nodeOutputs.get(failure[child]));
+                queue.add(child);
+            }
+        }
+
+        this.outputs = new int[nodes][];
+        for (int node = 0; node < nodes; node++) {
+            outputs[node] = nodeOutputs.get(node).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Recorre el texto una sola vez y reporta cada coincidencia en orden de
+     * posición final.
+     *
+     * @param text texto a analizar
+     * @param handler receptor de coincidencias
+     */
+    public void search(CharSequence text, MatchHandler<T> handler) {
+        if (text == null || values.isEmpty()) {
+            return;
+        }
+
+        // Índice original de los últimos maxLength caracteres normalizados
+        int[] window = new int[maxLength];
+        int position = 0;
+        int state = ROOT;
+        boolean previousSpace = true;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isSpace(c)) {
+                if (previousSpace) {
+                    continue;
+                }
+                previousSpace = true;
+                c = ' ';
+            } else {
+                previousSpace = false;
+                c = fold(c);
+            }
+
+            window[position % maxLength] = i;
+            state = next(state, c);
+            for (int phrase : outputs[state]) {
+                int start = window[(position - phraseLengths[phrase] + 1) % maxLength];
+                int end = i + 1;
+                if (wholeWords && !isWholeWord(text, start, end)) {
+                    continue;
+                }
+                if (!handler.onMatch(start, end, values.get(phrase))) {
+                    return;
+                }
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Indica si el texto contiene alguna de las frases.
+     *
+     * @param text texto a analizar
+     * @return true si hay al menos una coincidencia
+     */
+    public boolean containsAny(CharSequence text) {
+        boolean[] found = new boolean[1];
+        search(text, (start, end, value) -> {
+            found[0] = true;
+            return false;
+        });
+        return found[0];
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            int target = transition(state, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(transitionChars[node], c);
+        return index >= 0 ? transitionTargets[node][index] : -1;
+    }
+
+    private static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    /**
+     * Carácter de palabra según \b de java.util.regex (Java 17).
+     */
+    static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Espacio según \s de java.util.regex (sin UNICODE_CHARACTER_CLASS).
+     */
+    static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Normaliza una frase del diccionario igual que el texto analizado.
+     */
+    static String normalize(String phrase) {
+        StringBuilder normalized = new StringBuilder(phrase.length());
+        boolean previousSpace = true;
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = phrase.charAt(i);
+            if (isSpace(c)) {
+                if (!previousSpace) {
+                    normalized.append(' ');
+                }
+                previousSpace = true;
+            } else {
+                normalized.append(fold(c));
+                previousSpace = false;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Constructor del autómata.
+     */
+    public static final class Builder<T> {
+
+        private final List<String> phrases = new ArrayList<>();
+        private final List<T> values = new ArrayList<>();
+        private boolean wholeWords;
+
+        private Builder() {
+        }
+
+        /**
+         * Solo reporta coincidencias delimitadas como palabras completas.
+         */
+        public Builder<T> wholeWords(boolean wholeWords) {
+            this.wholeWords = wholeWords;
+            return this;
+        }
+
+        /**
+         * Agrega una frase al diccionario. Las frases vacías se ignoran.
+         *
+         * @param phrase frase a buscar
+         * @param value valor reportado al encontrarla
+         */
+        public Builder<T> add(String phrase, T value) {
+            String normalized = normalize(phrase);
+            if (!normalized.isEmpty()) {
+                phrases.add(normalized);
+                values.add(value);
+            }
+            return this;
+        }
+
+        public AhoCorasickMatcher<T> build() {
+            return new AhoCorasickMatcher<>(this);
+        }
+    }
+}
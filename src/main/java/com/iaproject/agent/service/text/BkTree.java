@@ -0,0 +1,207 @@
+package com.iaproject.agent.service.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Árbol BK (Burkhard-Keller) sobre la distancia de Levenshtein: encuentra la
+ * palabra del diccionario más cercana a una consulta dentro de una distancia
+ * máxima sin comparar contra todo el diccionario.
+ *
+ * Cada hijo de un nodo cuelga de su distancia al nodo; por la desigualdad
+ * triangular, para una consulta a distancia d del nodo solo pueden estar a
+ * distancia ≤ k los hijos colgados en [d - k, d + k]. Con k = 1 o 2 se visita
+ * una fracción pequeña y casi constante del árbol.
+ *
+ * Las claves se comparan tal cual (sin normalizar). La instancia es inmutable
+ * y segura entre hilos.
+ *
+ * @param <T> valor asociado a cada clave
+ */
+public final class BkTree<T> {
+
+    private static final BkTree<Object> EMPTY = new BkTree<>(null, 0);
+
+    /**
+     * Clave encontrada.
+     *
+     * @param key clave del diccionario
+     * @param value valor asociado
+     * @param distance distancia de Levenshtein a la consulta
+     */
+    public record Match<T>(String key, T value, int distance) {
+    }
+
+    private static final class Node<T> {
+
+        private final String key;
+        private final T value;
+        private final int order;
+        // Hijos indexados por su distancia a este nodo (null si no hay)
+        private Node<T>[] children;
+
+        private Node(String key, T value, int order) {
+            this.key = key;
+            this.value = value;
+            this.order = order;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addChild(int distance, Node<T> child) {
+            if (children == null) {
+                children = (Node<T>[]) new Node[distance + 1];
+            } else if (children.length <= distance) {
+                children = Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+
+        private Node<T> child(int distance) {
+            return children != null && distance < children.length ? children[distance] : null;
+        }
+    }
+
+    private final Node<T> root;
+    private final int size;
+
+    private BkTree(Node<T> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> BkTree<T> empty() {
+        return (BkTree<T>) EMPTY;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return número de claves distintas
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Busca la clave más cercana a la consulta. Ante empate gana la que se
+     * agregó primero.
+     *
+     * @param query palabra a buscar
+     * @param maxDistance distancia máxima admitida
+     * @return clave más cercana, o vacío si ninguna está a distancia ≤ maxDistance
+     */
+    public Optional<Match<T>> findNearest(CharSequence query, int maxDistance) {
+        if (root == null || maxDistance < 0) {
+            return Optional.empty();
+        }
+        Node<T> best = null;
+        int bestDistance = maxDistance + 1;
+        Deque<Node<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = distance(query, node.key);
+            if (distance < bestDistance || (distance == bestDistance && best != null && node.order < best.order)) {
+                best = node;
+                bestDistance = distance;
+            }
+            if (node.children == null) {
+                continue;
+            }
+            // Solo se mantiene el radio original: una mejor distancia no amplía la búsqueda
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance + maxDistance);
+            for (int childDistance = from; childDistance <= to; childDistance++) {
+                Node<T> child = node.children[childDistance];
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+        return best != null ? Optional.of(new Match<>(best.key, best.value, bestDistance)) : Optional.empty();
+    }
+
+    /**
+     * Distancia de Levenshtein (inserción, borrado y sustitución de un carácter).
+     *
+     * @return número mínimo de ediciones para transformar a en b
+     */
+    static int distance(CharSequence a, CharSequence b) {
+        int n = a.length();
+        int m = b.length();
+        if (n == 0) {
+            return m;
+        }
+        if (m == 0) {
+            return n;
+        }
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int substitution = previous[j - 1] + (ca == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    /**
+     * Constructor del árbol. Las claves repetidas conservan el primer valor.
+     */
+    public static final class Builder<T> {
+
+        private final List<String> keys = new ArrayList<>();
+        private final List<T> values = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder<T> add(String key, T value) {
+            keys.add(key);
+            values.add(value);
+            return this;
+        }
+
+        public BkTree<T> build() {
+            if (keys.isEmpty()) {
+                return empty();
+            }
+            Node<T> root = new Node<>(keys.get(0), values.get(0), 0);
+            int size = 1;
+            for (int i = 1; i < keys.size(); i++) {
+                String key = keys.get(i);
+                Node<T> node = root;
+                while (true) {
+                    int distance = distance(key, node.key);
+                    if (distance == 0) {
+                        break;
+                    }
+                    Node<T> child = node.child(distance);
+                    if (child == null) {
+                        node.addChild(distance, new Node<>(key, values.get(i), i));
+                        size++;
+                        break;
+                    }
+                    node = child;
+                }
+            }
+            return new BkTree<>(root, size);
+        }
+    }
+}
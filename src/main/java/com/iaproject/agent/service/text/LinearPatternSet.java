@@ -0,0 +1,158 @@
+package com.iaproject.agent.service.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * Conjunto de expresiones regulares evaluadas en tiempo lineal.
+ *
+ * Las expresiones se compilan con RE2/J (com.google.re2j), un motor sin
+ * backtracking: el costo es O(longitud del texto × tamaño de la expresión)
+ * para cualquier entrada, incluso las diseñadas para provocar backtracking en
+ * java.util.regex (p. ej. "ignore ignore ignore..." contra ignore.*instruction).
+ *
+ * Devuelve la expresión de menor índice que aparece en el texto, es decir,
+ * el mismo resultado que recorrer la lista en orden con Matcher.find(). Una
+ * alternativa con todas las expresiones descarta en una sola pasada los
+ * textos sin coincidencias (el caso normal); solo si hay alguna se prueban
+ * en orden.
+ *
+ * Sintaxis: la de RE2, que coincide con java.util.regex salvo lookaround,
+ * referencias, cuantificadores posesivos e intersección de clases (se
+ * rechazan con IllegalArgumentException). Diferencias de semántica:
+ * - \b, \w, \s son ASCII (en Java 17 \b usa letras Unicode)
+ * - . solo excluye \n (Java excluye también \r y los fines de línea Unicode)
+ * - CASE_INSENSITIVE siempre compara con plegado Unicode, haya o no
+ *   UNICODE_CASE
+ * Las reglas se evalúan sobre texto normalizado (NormalizedText), donde estas
+ * diferencias no aparecen en la práctica.
+ *
+ * La instancia es inmutable y segura entre hilos.
+ *
+ * @param <T> valor asociado a cada expresión
+ */
+public final class LinearPatternSet<T> {
+
+    /**
+     * Expresión encontrada en el texto.
+     *
+     * @param index posición de la expresión en el conjunto (prioridad)
+     * @param value valor asociado
+     */
+    public record Match<T>(int index, T value) {
+    }
+
+    private static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL;
+
+    private final List<com.google.re2j.Pattern> patterns;
+    private final com.google.re2j.Pattern any;
+    private final List<T> values;
+
+    private LinearPatternSet(Builder<T> builder) {
+        this.patterns = List.copyOf(builder.patterns);
+        this.values = List.copyOf(builder.values);
+        this.any = patterns.size() > 1 ? union(builder.sources) : null;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return número de expresiones del conjunto
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Busca la expresión de menor índice que aparece en el texto.
+     *
+     * @param text texto a analizar
+     * @return expresión encontrada, o vacío si ninguna aparece
+     */
+    public Optional<Match<T>> findFirst(CharSequence text) {
+        if (text == null || patterns.isEmpty()) {
+            return Optional.empty();
+        }
+        if (any != null && !any.matcher(text).find()) {
+            return Optional.empty();
+        }
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matcher(text).find()) {
+                return Optional.of(new Match<>(i, values.get(i)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Alternativa de todas las expresiones, cada una con sus flags embebidos.
+     * Si no compila (p. ej. nombres de grupo repetidos) se prueban siempre en orden.
+     */
+    private static com.google.re2j.Pattern union(List<String> sources) {
+        StringJoiner union = new StringJoiner("|");
+        sources.forEach(union::add);
+        try {
+            return com.google.re2j.Pattern.compile(union.toString());
+        } catch (com.google.re2j.PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Constructor del conjunto.
+     */
+    public static final class Builder<T> {
+
+        private final List<com.google.re2j.Pattern> patterns = new ArrayList<>();
+        private final List<String> sources = new ArrayList<>();
+        private final List<T> values = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Agrega una expresión. El orden de inserción es la prioridad.
+         *
+         * @param regex expresión regular (sintaxis RE2)
+         * @param flags combinación de Pattern.CASE_INSENSITIVE, UNICODE_CASE y DOTALL
+         * @param value valor reportado al encontrarla
+         * @throws IllegalArgumentException si la expresión no compila o usa sintaxis no admitida
+         */
+        public Builder<T> add(String regex, int flags, T value) {
+            if ((flags & ~SUPPORTED_FLAGS) != 0) {
+                throw new IllegalArgumentException("Flags no soportados en '" + regex + "': " + flags);
+            }
+            // RE2 leería la intersección de clases de Java ([a-z&&[^b]]) como caracteres literales
+            if (regex.contains("&&")) {
+                throw new IllegalArgumentException("Intersección de clases no soportada en '" + regex + "'");
+            }
+            int re2Flags = 0;
+            String embedded = "";
+            if ((flags & Pattern.CASE_INSENSITIVE) != 0) {
+                re2Flags |= com.google.re2j.Pattern.CASE_INSENSITIVE;
+                embedded += "i";
+            }
+            if ((flags & Pattern.DOTALL) != 0) {
+                re2Flags |= com.google.re2j.Pattern.DOTALL;
+                embedded += "s";
+            }
+            try {
+                patterns.add(com.google.re2j.Pattern.compile(regex, re2Flags));
+            } catch (com.google.re2j.PatternSyntaxException e) {
+                throw new IllegalArgumentException("Expresión inválida '" + regex + "': " + e.getMessage(), e);
+            }
+            sources.add(embedded.isEmpty() ? "(?:" + regex + ")" : "(?" + embedded + ":" + regex + ")");
+            values.add(value);
+            return this;
+        }
+
+        public LinearPatternSet<T> build() {
+            return new LinearPatternSet<>(this);
+        }
+    }
+}
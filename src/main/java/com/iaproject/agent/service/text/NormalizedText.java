@@ -0,0 +1,236 @@
+package com.iaproject.agent.service.text;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Vista normalizada e inmutable de un mensaje, calculada una sola vez por
+ * petición y compartida por todos los analizadores (guardrails, alcance,
+ * comandos de perfil).
+ *
+ * Pasos, en una sola pasada por code point:
+ * 1. Descomposición de compatibilidad (NFKD): "ﬁ" → "fi", "Ａ" → "A", "²" → "2"
+ * 2. Eliminación de tildes y marcas combinantes: "actúa" → "actua", "ñ" → "n"
+ * 3. Case folding: "ACTÚA" → "actua", "İ" → "i", "ſ" → "s"
+ * 4. Espacios (incluidos los Unicode) colapsados a uno solo y recortados en
+ *    los extremos; caracteres invisibles (U+200B, U+00AD...) eliminados
+ * 5. Leetspeak común (0→o, 1→i, 3→e, 4→a, 5→s, 7→t, @→a, $→s), solo en
+ *    secuencias pegadas a una letra: "1gn0re" → "ignore", pero "30 invitados"
+ *    y "$100" no cambian
+ *
+ * Descomponer y quitar las marcas por code point equivale a NFKC + quitar
+ * tildes sobre el texto completo, y permite conservar un mapa exacto de
+ * posiciones: originalStart/originalEnd traducen índices del texto
+ * normalizado al mensaje original.
+ *
+ * Las frases y expresiones que se comparan contra text() deben estar en la
+ * misma forma (ver normalize).
+ */
+public final class NormalizedText {
+
+    private static final String LEET_FROM = "013457@$";
+    private static final String LEET_TO = "oieastas";
+
+    private final String original;
+    private final String text;
+    // Rango original [starts[i], ends[i]) del que proviene cada carácter normalizado (null = identidad)
+    private final int[] starts;
+    private final int[] ends;
+
+    private NormalizedText(String original, String text, int[] starts, int[] ends) {
+        this.original = original;
+        this.text = text;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Normaliza un mensaje.
+     *
+     * @param original mensaje tal como llegó (null se trata como vacío)
+     * @return vista normalizada
+     */
+    public static NormalizedText of(String original) {
+        String source = original != null ? original : "";
+        Output output = new Output(source.length());
+        boolean pendingSpace = false;
+
+        int i = 0;
+        while (i < source.length()) {
+            int codePoint = source.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+
+            if (codePoint < 0x80 && !isSpace(codePoint)) {
+                // Camino rápido ASCII: solo case folding
+                if (pendingSpace) {
+                    output.append(' ', i, i);
+                    pendingSpace = false;
+                }
+                output.append(codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint, i, next);
+            } else {
+                String decomposed = codePoint < 0x80
+                        ? source.substring(i, next)
+                        : Normalizer.normalize(source.substring(i, next), Normalizer.Form.NFKD);
+                for (int j = 0; j < decomposed.length(); ) {
+                    int part = decomposed.codePointAt(j);
+                    j += Character.charCount(part);
+                    if (isSpace(part)) {
+                        pendingSpace = output.length() > 0;
+                    } else if (!isIgnorable(part)) {
+                        if (pendingSpace) {
+                            output.append(' ', i, i);
+                            pendingSpace = false;
+                        }
+                        output.append(Character.toLowerCase(Character.toUpperCase(part)), i, next);
+                    }
+                }
+            }
+            i = next;
+        }
+
+        mapLeetspeak(output.text);
+
+        String normalized = output.text.toString();
+        if (normalized.equals(source)) {
+            return new NormalizedText(source, source, null, null);
+        }
+        return new NormalizedText(source, normalized, output.starts, output.ends);
+    }
+
+    /**
+     * Normaliza una frase o keyword para compararla contra text().
+     *
+     * @param phrase frase del diccionario
+     * @return frase normalizada
+     */
+    public static String normalize(String phrase) {
+        return of(phrase).text();
+    }
+
+    /**
+     * @return mensaje original
+     */
+    public String original() {
+        return original;
+    }
+
+    /**
+     * @return texto normalizado
+     */
+    public String text() {
+        return text;
+    }
+
+    /**
+     * @return longitud del texto normalizado
+     */
+    public int length() {
+        return text.length();
+    }
+
+    /**
+     * Traduce el inicio de un rango del texto normalizado al mensaje original.
+     *
+     * @param index índice inicial (inclusive) en text()
+     * @return índice inicial (inclusive) en original()
+     */
+    public int originalStart(int index) {
+        if (starts == null) {
+            return index;
+        }
+        return index < text.length() ? starts[index] : original.length();
+    }
+
+    /**
+     * Traduce el fin de un rango del texto normalizado al mensaje original.
+     *
+     * @param index índice final (exclusivo) en text()
+     * @return índice final (exclusivo) en original()
+     */
+    public int originalEnd(int index) {
+        if (starts == null) {
+            return index;
+        }
+        return index > 0 ? ends[index - 1] : 0;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Reemplaza los caracteres leetspeak de cada secuencia contigua que toca
+     * una letra. La sustitución es 1 a 1, por lo que el mapa de posiciones no cambia.
+     */
+    private static void mapLeetspeak(StringBuilder text) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (LEET_FROM.indexOf(text.charAt(i)) < 0) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < length && LEET_FROM.indexOf(text.charAt(end)) >= 0) {
+                end++;
+            }
+            boolean touchesLetter = (i > 0 && Character.isLetter(text.charAt(i - 1)))
+                    || (end < length && Character.isLetter(text.charAt(end)));
+            if (touchesLetter) {
+                for (int j = i; j < end; j++) {
+                    text.setCharAt(j, LEET_TO.charAt(LEET_FROM.indexOf(text.charAt(j))));
+                }
+            }
+            i = end;
+        }
+    }
+
+    private static boolean isSpace(int codePoint) {
+        return Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint)
+                || codePoint == '\u0085';
+    }
+
+    /**
+     * Marcas combinantes (tildes, diéresis...) y caracteres de formato invisibles.
+     */
+    private static boolean isIgnorable(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.ENCLOSING_MARK
+                || type == Character.FORMAT;
+    }
+
+    /**
+     * Texto normalizado en construcción con su mapa de posiciones.
+     */
+    private static final class Output {
+
+        private final StringBuilder text;
+        private int[] starts;
+        private int[] ends;
+
+        private Output(int capacity) {
+            this.text = new StringBuilder(capacity);
+            this.starts = new int[Math.max(16, capacity)];
+            this.ends = new int[starts.length];
+        }
+
+        private int length() {
+            return text.length();
+        }
+
+        private void append(int codePoint, int start, int end) {
+            for (char c : Character.toChars(codePoint)) {
+                // Una descomposición de compatibilidad puede producir más caracteres que el original ("ﬃ" → "ffi")
+                if (text.length() == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                    ends = Arrays.copyOf(ends, ends.length * 2);
+                }
+                starts[text.length()] = start;
+                ends[text.length()] = end;
+                text.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+-- ============================================================================
+-- Migration V10__add_token_usage_hourly_rollup.sql
+-- ============================================================================
+-- Descripción: Agregado horario de uso de tokens para consultas de
+--              administración y facturación.
+--
+-- calculateTotalTokensUsed y countByModelUsed se sirven desde esta tabla
+-- (O(buckets)) en lugar de recorrer conversation_history (O(filas)).
+--
+-- Mantenimiento: TokenUsageRollupService recalcula periódicamente las horas
+-- posteriores a la marca de agua (rollup_watermark) con un UPSERT idempotente.
+-- Las columnas de dimensión usan '' en lugar de NULL para que la clave única
+-- funcione con valores ausentes.
+-- ============================================================================
+
+-- ============================================================================
+-- 1. TABLA: token_usage_hourly
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS token_usage_hourly (
+    -- Inicio de la hora (UTC)
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    -- Dimensiones ('' = sin valor)
+    model_used VARCHAR(50) NOT NULL DEFAULT '',
+    domain_id VARCHAR(100) NOT NULL DEFAULT '',
+    event_id VARCHAR(100) NOT NULL DEFAULT '',
+    guardrail_action VARCHAR(20) NOT NULL DEFAULT '',
+
+    -- Métricas agregadas
+    request_count BIGINT NOT NULL DEFAULT 0,
+    prompt_tokens BIGINT NOT NULL DEFAULT 0,
+    completion_tokens BIGINT NOT NULL DEFAULT 0,
+    total_tokens BIGINT NOT NULL DEFAULT 0,
+
+    -- Auditoría
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT pk_token_usage_hourly
+        PRIMARY KEY (bucket_start, model_used, domain_id, event_id, guardrail_action)
+);
+
+CREATE INDEX IF NOT EXISTS idx_token_usage_hourly_model
+ON token_usage_hourly(model_used, bucket_start);
+
+COMMENT ON TABLE token_usage_hourly IS 'Uso de tokens agregado por hora, modelo, dominio, evento y acción de guardrail';
+COMMENT ON COLUMN token_usage_hourly.bucket_start IS 'Inicio de la hora agregada (UTC)';
+COMMENT ON COLUMN token_usage_hourly.request_count IS 'Número de mensajes en el bucket';
+
+-- ============================================================================
+-- 2. TABLA: rollup_watermark
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS rollup_watermark (
+    -- Nombre del agregado (ej: token_usage_hourly)
+    name VARCHAR(50) PRIMARY KEY,
+
+    -- Horas anteriores a este instante ya están agregadas
+    processed_until TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE rollup_watermark IS 'Marcas de agua (high-water mark) de los jobs de agregación';
+
+-- ============================================================================
+-- 3. CARGA INICIAL (horas cerradas hasta ahora)
+-- ============================================================================
+
+INSERT INTO token_usage_hourly (
+    bucket_start, model_used, domain_id, event_id, guardrail_action,
+    request_count, prompt_tokens, completion_tokens, total_tokens)
+SELECT
+    date_trunc('hour', created_at AT TIME ZONE 'UTC') AT TIME ZONE 'UTC',
+    COALESCE(model_used, ''),
+    COALESCE(domain_id, ''),
+    COALESCE(event_id, ''),
+    COALESCE(guardrail_action, ''),
+    COUNT(*),
+    COALESCE(SUM(prompt_tokens), 0),
+    COALESCE(SUM(completion_tokens), 0),
+    COALESCE(SUM(total_tokens), 0)
+FROM conversation_history
+WHERE created_at < date_trunc('hour', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+GROUP BY 1, 2, 3, 4, 5;
+
+INSERT INTO rollup_watermark (name, processed_until)
+VALUES ('token_usage_hourly', date_trunc('hour', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC')
+ON CONFLICT (name) DO NOTHING;
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
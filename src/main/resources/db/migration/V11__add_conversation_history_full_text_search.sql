@@ -0,0 +1,31 @@
+-- ============================================================================
+-- Migration V11__add_conversation_history_full_text_search.sql
+-- ============================================================================
+-- Descripción: Búsqueda de texto completo sobre el historial de conversaciones.
+--
+-- - search_vector: tsvector generado (configuración 'spanish') a partir de
+--   user_message (peso A) y ai_response (peso B)
+-- - Índice GIN sobre search_vector (se propaga a cada partición mensual)
+--
+-- Las búsquedas usan search_vector @@ websearch_to_tsquery('spanish', ...)
+-- (ver ConversationSearchService), nunca LIKE.
+--
+-- Nota: agregar una columna generada STORED reescribe cada partición;
+-- en tablas grandes ejecutar en ventana de mantenimiento.
+-- ============================================================================
+
+ALTER TABLE conversation_history
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('spanish', coalesce(user_message, '')), 'A') ||
+        setweight(to_tsvector('spanish', coalesce(ai_response, '')), 'B')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_search_vector
+ON conversation_history USING GIN (search_vector);
+
+COMMENT ON COLUMN conversation_history.search_vector IS 'tsvector (spanish) de user_message y ai_response para búsqueda de texto completo';
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
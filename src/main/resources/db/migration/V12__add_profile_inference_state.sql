@@ -0,0 +1,28 @@
+-- ============================================================================
+-- Migration V12__add_profile_inference_state.sql
+-- ============================================================================
+-- Descripción: Estado de la inferencia de perfil por IA en segundo plano
+--              ("Modo 2", ProfileInferenceBatchService).
+--
+-- Un usuario es candidato cuando acumula N mensajes en conversation_history
+-- posteriores a last_inferred_at. El job reclama a los candidatos
+-- actualizando last_inferred_at antes de llamar al modelo, por lo que cada
+-- tramo de N mensajes se analiza una sola vez (también con varias instancias).
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS profile_inference_state (
+    -- Usuario analizado (vincula con user_profile / conversation_history)
+    user_id VARCHAR(100) PRIMARY KEY,
+
+    -- Instante hasta el que ya se analizaron sus mensajes
+    last_inferred_at TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    -- Resultado del último análisis: APPLIED, LOW_CONFIDENCE, NO_CHANGES, INVALID, FAILED
+    last_outcome VARCHAR(20),
+
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+COMMENT ON TABLE profile_inference_state IS 'Estado de la inferencia de perfil por IA en lotes (Modo 2)';
+COMMENT ON COLUMN profile_inference_state.last_inferred_at IS 'Mensajes anteriores a este instante ya fueron analizados';
+COMMENT ON COLUMN profile_inference_state.last_outcome IS 'Resultado del último análisis del usuario';
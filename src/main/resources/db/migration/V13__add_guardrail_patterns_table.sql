@@ -0,0 +1,78 @@
+-- ============================================================================
+-- Migration V13__add_guardrail_patterns_table.sql
+-- ============================================================================
+-- Descripción: Patrones de contenido de guardrails (INJECTION / UNSAFE)
+--              configurables sin redeploy.
+--
+-- GuardrailPatternReloadService lee los patrones activos periódicamente, los
+-- compila en segundo plano (LinearPatternSet) y publica el nuevo conjunto
+-- solo si todos son válidos. Si alguno no compila se conserva el conjunto en
+-- uso. Los patrones se evalúan sobre el mensaje normalizado (NormalizedText):
+-- se escriben en minúsculas y sin tildes.
+-- ============================================================================
+
+-- ============================================================================
+-- 1. TABLA: guardrail_pattern
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS guardrail_pattern (
+    id BIGSERIAL PRIMARY KEY,
+
+    -- Identificador estable de la regla (ruleId en respuestas, logs y métricas)
+    rule_id VARCHAR(100) NOT NULL UNIQUE,
+
+    -- Expresión regular (subconjunto admitido por LinearPatternSet)
+    pattern TEXT NOT NULL,
+
+    -- Categoría reportada al bloquear
+    reason VARCHAR(20) NOT NULL,
+
+    -- Flags de la expresión
+    case_insensitive BOOLEAN NOT NULL DEFAULT true,
+    unicode_case BOOLEAN NOT NULL DEFAULT false,
+
+    -- Prioridad: ante varias coincidencias se reporta la de menor valor
+    priority INTEGER NOT NULL DEFAULT 0,
+
+    description TEXT,
+
+    active BOOLEAN NOT NULL DEFAULT true,
+
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT chk_guardrail_pattern_reason CHECK (reason IN ('INJECTION', 'UNSAFE'))
+);
+
+CREATE INDEX idx_guardrail_pattern_active ON guardrail_pattern(active, priority);
+
+COMMENT ON TABLE guardrail_pattern IS 'Patrones de contenido de guardrails, recargados en caliente';
+COMMENT ON COLUMN guardrail_pattern.pattern IS 'Expresión regular sobre el mensaje normalizado (sin tildes, minúsculas)';
+COMMENT ON COLUMN guardrail_pattern.priority IS 'Menor valor = mayor prioridad ante varias coincidencias';
+
+-- ============================================================================
+-- 2. DATOS INICIALES: mismas reglas que ContentPatternGuardrailRule.CONTENT_RULES
+-- ============================================================================
+
+INSERT INTO guardrail_pattern (rule_id, pattern, reason, case_insensitive, unicode_case, priority) VALUES
+    ('injection.ignore-instruction', 'ignore.*instruction', 'INJECTION', true, false, 10),
+    ('injection.system-prompt', 'system\s+prompt', 'INJECTION', true, false, 20),
+    ('injection.act-as', 'act\s+as', 'INJECTION', true, true, 30),
+    ('injection.actua-como', 'actua\s+como', 'INJECTION', true, true, 40),
+    ('injection.revela-prompt', 'revela.*prompt', 'INJECTION', true, true, 50),
+    ('injection.developer-message', 'developer\s+message', 'INJECTION', true, false, 60),
+    ('injection.mensaje-desarrollador', 'mensaje\s+del\s+desarrollador', 'INJECTION', true, true, 70),
+    ('injection.api-key', 'api\s+key', 'INJECTION', true, false, 80),
+    ('injection.token', '\btoken\b', 'INJECTION', true, false, 90),
+    ('injection.credenciales', 'credenciales', 'INJECTION', true, true, 100),
+    ('injection.forget-previous', 'forget.*previous', 'INJECTION', true, false, 110),
+    ('injection.olvida-anterior', 'olvida.*anterior', 'INJECTION', true, true, 120),
+    ('injection.override-instructions', 'override\s+instructions', 'INJECTION', true, false, 130),
+    ('injection.bypass-rules', 'bypass\s+rules', 'INJECTION', true, false, 140),
+    ('unsafe.hacking', '\b(hack|exploit|vulnerability)\b', 'UNSAFE', true, false, 150),
+    ('unsafe.fraud', '\b(spam|phishing|scam)\b', 'UNSAFE', true, false, 160)
+ON CONFLICT (rule_id) DO NOTHING;
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
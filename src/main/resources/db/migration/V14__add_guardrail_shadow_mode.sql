@@ -0,0 +1,50 @@
+-- ============================================================================
+-- Migration V14__add_guardrail_shadow_mode.sql
+-- ============================================================================
+-- Descripción: Modo sombra (shadow) para patrones candidatos de guardrails.
+--
+-- Un patrón con shadow = true no bloquea: GuardrailShadowEvaluator lo evalúa
+-- fuera de la petición sobre el mensaje normalizado y compara su veredicto
+-- con el veredicto real. Los conteos se agregan por hora en
+-- guardrail_shadow_stats (una fila por regla y combinación de acciones), lo
+-- que permite medir la tasa de falsos positivos antes de activarlo.
+-- ============================================================================
+
+-- ============================================================================
+-- 1. PATRONES EN MODO SOMBRA
+-- ============================================================================
+
+ALTER TABLE guardrail_pattern ADD COLUMN IF NOT EXISTS shadow BOOLEAN NOT NULL DEFAULT false;
+
+COMMENT ON COLUMN guardrail_pattern.shadow IS 'Si true, el patrón solo se evalúa en modo sombra (no bloquea)';
+
+-- ============================================================================
+-- 2. TABLA: guardrail_shadow_stats
+-- ============================================================================
+
+CREATE TABLE IF NOT EXISTS guardrail_shadow_stats (
+    -- Hora (UTC) del bucket
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+
+    -- Patrón en modo sombra (guardrail_pattern.rule_id)
+    rule_id VARCHAR(100) NOT NULL,
+
+    -- Veredicto real servido (ALLOW, BLOCK, REDIRECT)
+    live_action VARCHAR(20) NOT NULL,
+
+    -- Veredicto del patrón en sombra (ALLOW o BLOCK)
+    shadow_action VARCHAR(20) NOT NULL,
+
+    evaluation_count BIGINT NOT NULL DEFAULT 0,
+
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (bucket_start, rule_id, live_action, shadow_action)
+);
+
+COMMENT ON TABLE guardrail_shadow_stats IS 'Veredictos de patrones en modo sombra frente al veredicto real, por hora';
+COMMENT ON COLUMN guardrail_shadow_stats.evaluation_count IS 'Mensajes evaluados con esa combinación de veredictos';
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
@@ -0,0 +1,59 @@
+-- ============================================================================
+-- Migration V15__add_cache_invalidation_notify.sql
+-- ============================================================================
+-- Descripción: Invalidación de cachés entre instancias con LISTEN/NOTIFY.
+--
+-- notify_cache_invalidation() es genérica: cada tabla cacheada crea su
+-- trigger indicando el canal (TG_ARGV[0]) y la columna cuyo valor viaja como
+-- payload (TG_ARGV[1]), p. ej. la categoría o el ID modificado. Cada
+-- instancia escucha el canal (CacheInvalidationBus) y descarta solo lo
+-- afectado. TRUNCATE notifica con payload vacío (invalidar todo).
+--
+-- pg_notify se entrega al confirmar la transacción y se descarta si hace
+-- rollback; notificaciones idénticas en la misma transacción se envían una
+-- sola vez.
+-- ============================================================================
+
+-- ============================================================================
+-- 1. FUNCIÓN GENÉRICA DE NOTIFICACIÓN
+-- ============================================================================
+
+CREATE OR REPLACE FUNCTION notify_cache_invalidation() RETURNS TRIGGER AS $$
+DECLARE
+    channel TEXT := TG_ARGV[0];
+    key_column TEXT := TG_ARGV[1];
+BEGIN
+    IF TG_LEVEL = 'STATEMENT' THEN
+        PERFORM pg_notify(channel, '');
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM pg_notify(channel, COALESCE(to_jsonb(OLD) ->> key_column, ''));
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM pg_notify(channel, COALESCE(to_jsonb(NEW) ->> key_column, ''));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON FUNCTION notify_cache_invalidation() IS 'Notifica (pg_notify) el valor de la columna clave de la fila modificada. Argumentos: canal, columna';
+
+-- ============================================================================
+-- 2. TRIGGERS: allowed_domain (canal allowed_domain, payload = categoría)
+-- ============================================================================
+
+DROP TRIGGER IF EXISTS trg_allowed_domain_notify ON allowed_domain;
+CREATE TRIGGER trg_allowed_domain_notify
+    AFTER INSERT OR UPDATE OR DELETE ON allowed_domain
+    FOR EACH ROW EXECUTE FUNCTION notify_cache_invalidation('allowed_domain', 'category');
+
+DROP TRIGGER IF EXISTS trg_allowed_domain_notify_truncate ON allowed_domain;
+CREATE TRIGGER trg_allowed_domain_notify_truncate
+    AFTER TRUNCATE ON allowed_domain
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_cache_invalidation('allowed_domain', 'category');
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
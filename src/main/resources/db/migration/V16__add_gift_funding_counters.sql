@@ -0,0 +1,33 @@
+-- ============================================================================
+-- Migration V16__add_gift_funding_counters.sql
+-- ============================================================================
+-- Descripción: Contadores desnormalizados de financiamiento en gifts.
+--
+-- current_funding y active_commitment_count reflejan la suma y la cantidad
+-- de compromisos activos del regalo. Se mantienen con UPDATE relativos
+-- (x = x + delta) en la misma transacción que crea o cancela el compromiso,
+-- así las lecturas no agregan gift_commitments. El job
+-- GiftFundingReconciliationService detecta y corrige desvíos.
+-- ============================================================================
+
+ALTER TABLE gifts
+    ADD COLUMN IF NOT EXISTS current_funding NUMERIC(12, 2) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS active_commitment_count INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE gifts
+    ADD CONSTRAINT chk_gift_active_commitment_count CHECK (active_commitment_count >= 0);
+
+-- Valores iniciales desde los compromisos existentes
+UPDATE gifts g
+SET current_funding = a.funding,
+    active_commitment_count = a.commitments
+FROM (
+    SELECT gift_id, COALESCE(SUM(contribution_amount), 0) AS funding, COUNT(*) AS commitments
+    FROM gift_commitments
+    WHERE is_active = TRUE
+    GROUP BY gift_id
+) a
+WHERE g.id = a.gift_id;
+
+COMMENT ON COLUMN gifts.current_funding IS 'Suma de aportes activos (contador mantenido por la aplicación)';
+COMMENT ON COLUMN gifts.active_commitment_count IS 'Cantidad de compromisos activos (contador mantenido por la aplicación)';
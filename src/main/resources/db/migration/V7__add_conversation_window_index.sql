@@ -0,0 +1,17 @@
+-- ============================================================================
+-- Migration V7__add_conversation_window_index.sql
+-- ============================================================================
+-- Descripción: Índice compuesto para leer la ventana de memoria corta
+--              (últimos N turnos de una conversación) con LIMIT en BD.
+-- 
+-- La consulta findRecentTurns filtra por conversation_id y ordena por
+-- created_at DESC; con este índice Postgres lee solo N entradas del índice
+-- en lugar de ordenar toda la conversación.
+-- ============================================================================
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_conversation_created
+ON conversation_history(conversation_id, created_at DESC);
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
@@ -0,0 +1,18 @@
+-- ============================================================================
+-- Migration V8__conversation_history_pooled_sequence.sql
+-- ============================================================================
+-- Descripción: Prepara conversation_history para inserciones en lote.
+-- 
+-- ConversationHistory pasa de GenerationType.IDENTITY a SEQUENCE con
+-- optimizador pooled (allocationSize = 50). Hibernate reserva 50 IDs por
+-- cada nextval(), por lo que el incremento de la secuencia debe coincidir.
+-- 
+-- Los IDs existentes no cambian: el siguiente nextval() devuelve
+-- (último valor + 50) y Hibernate usa el rango (último valor, último valor + 50].
+-- ============================================================================
+
+ALTER SEQUENCE conversation_history_id_seq INCREMENT BY 50;
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
@@ -0,0 +1,180 @@
+-- ============================================================================
+-- Migration V9__partition_conversation_history_by_month.sql
+-- ============================================================================
+-- Descripción: Convierte conversation_history en una tabla particionada
+--              declarativamente por rango mensual de created_at.
+--
+-- Beneficios:
+-- - Las consultas filtradas por created_at (findByCreatedAtAfter,
+--   calculateTotalTokensUsed, findRecentConversations) solo leen las
+--   particiones del rango (partition pruning)
+-- - Los índices de cada partición son pequeños y caben en memoria
+-- - La retención se aplica con DETACH/DROP de particiones completas,
+--   sin DELETE masivos ni VACUUM
+--
+-- Pasos:
+-- 1. Renombrar la tabla actual a conversation_history_legacy
+-- 2. Crear la tabla particionada con la misma estructura
+-- 3. Crear particiones mensuales (desde el dato más antiguo hasta +3 meses)
+-- 4. Copiar los datos existentes
+-- 5. Transferir la secuencia de IDs y eliminar la tabla anterior
+-- 6. Recrear índices (particionados) y trigger de updated_at
+--
+-- Nota: la PK pasa a ser (id, created_at) porque Postgres exige incluir la
+-- clave de partición. Los IDs siguen siendo únicos (secuencia compartida).
+-- Las particiones futuras las crea ConversationPartitionMaintenanceService.
+-- ============================================================================
+
+-- ============================================================================
+-- 1. RENOMBRAR TABLA ACTUAL
+-- ============================================================================
+
+ALTER TABLE conversation_history RENAME TO conversation_history_legacy;
+
+DROP TRIGGER IF EXISTS update_conversation_history_updated_at ON conversation_history_legacy;
+
+-- ============================================================================
+-- 2. TABLA PARTICIONADA: conversation_history
+-- ============================================================================
+
+CREATE TABLE conversation_history (
+    id BIGINT NOT NULL DEFAULT nextval('conversation_history_id_seq'),
+    conversation_id VARCHAR(100) NOT NULL,
+    user_message TEXT NOT NULL,
+    ai_response TEXT NOT NULL,
+    model_used VARCHAR(50),
+    temperature DOUBLE PRECISION,
+    prompt_tokens INTEGER,
+    completion_tokens INTEGER,
+    total_tokens INTEGER,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    user_id VARCHAR(100),
+    domain_id VARCHAR(100),
+    event_id VARCHAR(100),
+    intent VARCHAR(50),
+    guardrail_action VARCHAR(20),
+    guardrail_reason VARCHAR(20),
+    quick_replies JSONB,
+
+    CONSTRAINT pk_conversation_history PRIMARY KEY (id, created_at),
+    CONSTRAINT chk_temperature CHECK (temperature IS NULL OR (temperature >= 0 AND temperature <= 2)),
+    CONSTRAINT chk_prompt_tokens CHECK (prompt_tokens IS NULL OR prompt_tokens >= 0),
+    CONSTRAINT chk_completion_tokens CHECK (completion_tokens IS NULL OR completion_tokens >= 0),
+    CONSTRAINT chk_total_tokens CHECK (total_tokens IS NULL OR total_tokens >= 0),
+    CONSTRAINT chk_guardrail_action CHECK (guardrail_action IN ('ALLOW', 'BLOCK', 'REDIRECT')),
+    CONSTRAINT chk_guardrail_reason CHECK (guardrail_reason IN ('NONE', 'TOO_LONG', 'INJECTION', 'OUT_OF_SCOPE', 'UNSAFE'))
+) PARTITION BY RANGE (created_at);
+
+COMMENT ON TABLE conversation_history IS 'Historial de conversaciones con modelos de IA (particionado por mes)';
+
+-- ============================================================================
+-- 3. PARTICIONES MENSUALES
+-- ============================================================================
+
+-- Crea (si no existe) la partición del mes que contiene p_month.
+-- Límites en UTC: [primer día del mes, primer día del mes siguiente).
+-- Devuelve el nombre de la partición (ej: conversation_history_p2025_01).
+CREATE OR REPLACE FUNCTION create_conversation_history_partition(p_month DATE)
+RETURNS TEXT AS $$
+DECLARE
+    v_start TIMESTAMP := date_trunc('month', p_month);
+    v_end TIMESTAMP := date_trunc('month', p_month) + INTERVAL '1 month';
+    v_name TEXT := format('conversation_history_p%s', to_char(v_start, 'YYYY_MM'));
+BEGIN
+    IF to_regclass(v_name) IS NULL THEN
+        EXECUTE format(
+            'CREATE TABLE %I PARTITION OF conversation_history FOR VALUES FROM (%L) TO (%L)',
+            v_name,
+            v_start AT TIME ZONE 'UTC',
+            v_end AT TIME ZONE 'UTC');
+    END IF;
+    RETURN v_name;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON FUNCTION create_conversation_history_partition(DATE) IS 'Crea la partición mensual de conversation_history si no existe';
+
+-- Partición por defecto: recibe filas fuera de las particiones creadas
+-- (red de seguridad para no perder historial). Debe permanecer vacía.
+CREATE TABLE IF NOT EXISTS conversation_history_default
+    PARTITION OF conversation_history DEFAULT;
+
+DO $$
+DECLARE
+    v_first DATE;
+    v_month DATE;
+BEGIN
+    SELECT COALESCE(date_trunc('month', MIN(created_at) AT TIME ZONE 'UTC')::date,
+                    date_trunc('month', now() AT TIME ZONE 'UTC')::date)
+      INTO v_first
+      FROM conversation_history_legacy;
+
+    FOR v_month IN
+        SELECT generate_series(v_first,
+                               date_trunc('month', now() AT TIME ZONE 'UTC')::date + INTERVAL '3 months',
+                               INTERVAL '1 month')::date
+    LOOP
+        PERFORM create_conversation_history_partition(v_month);
+    END LOOP;
+END;
+$$;
+
+-- ============================================================================
+-- 4. COPIAR DATOS EXISTENTES
+-- ============================================================================
+
+INSERT INTO conversation_history (
+    id, conversation_id, user_message, ai_response, model_used, temperature,
+    prompt_tokens, completion_tokens, total_tokens, created_at, updated_at,
+    user_id, domain_id, event_id, intent, guardrail_action, guardrail_reason, quick_replies)
+SELECT
+    id, conversation_id, user_message, ai_response, model_used, temperature,
+    prompt_tokens, completion_tokens, total_tokens, created_at, updated_at,
+    user_id, domain_id, event_id, intent, guardrail_action, guardrail_reason, quick_replies
+FROM conversation_history_legacy;
+
+-- ============================================================================
+-- 5. SECUENCIA Y LIMPIEZA
+-- ============================================================================
+
+-- La secuencia pertenecía a la columna de la tabla anterior: transferirla
+-- antes del DROP para no eliminarla
+ALTER SEQUENCE conversation_history_id_seq OWNED BY conversation_history.id;
+
+DROP TABLE conversation_history_legacy;
+
+-- ============================================================================
+-- 6. ÍNDICES (se propagan a cada partición) Y TRIGGER
+-- ============================================================================
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_conversation_created
+ON conversation_history(conversation_id, created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_user_created
+ON conversation_history(user_id, created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_domain_created
+ON conversation_history(domain_id, created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_created_at
+ON conversation_history(created_at DESC);
+
+CREATE INDEX IF NOT EXISTS idx_model_used
+ON conversation_history(model_used);
+
+CREATE INDEX IF NOT EXISTS idx_created_tokens
+ON conversation_history(created_at, total_tokens);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_history_guardrail_action
+ON conversation_history(guardrail_action)
+WHERE guardrail_action IS NOT NULL;
+
+CREATE TRIGGER update_conversation_history_updated_at
+    BEFORE UPDATE ON conversation_history
+    FOR EACH ROW
+    EXECUTE FUNCTION update_updated_at_column();
+
+-- ============================================================================
+-- FIN DE LA MIGRACIÓN
+-- ============================================================================
@@ -0,0 +1,157 @@
+package com.iaproject.agent.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.iaproject.agent.config.properties.CacheSpecProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para las cachés Caffeine de CacheConfig.
+ * Valida el desalojo por tamaño, la expiración y la recarga anticipada con acceso concurrente.
+ */
+@DisplayName("CacheConfig Tests")
+class CacheConfigTest {
+
+    private static final int THREADS = 8;
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    @DisplayName("Debe acotar la caché al tamaño máximo con escrituras concurrentes y contar los desalojos")
+    void shouldEvictBeyondMaximumSizeUnderConcurrentWrites() throws InterruptedException {
+        // Given: refresh-after-write sin loader se ignora en lugar de fallar
+        AsyncCache<Object, Object> nativeCache = CacheConfig.buildCache("test",
+                spec(100, Duration.ofMinutes(10), Duration.ofMinutes(1)), null, nanos::get, Runnable::run);
+        CaffeineCache cache = new CaffeineCache("test", nativeCache, true);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        for (int thread = 0; thread < THREADS; thread++) {
+            int id = thread;
+            pool.execute(() -> {
+                await(start);
+                for (int i = 0; i < 1_000; i++) {
+                    cache.put(id + "-" + i, i);
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        nativeCache.synchronous().cleanUp();
+
+        // Then
+        long size = nativeCache.synchronous().estimatedSize();
+        assertThat(size).isLessThanOrEqualTo(100);
+        assertThat(nativeCache.synchronous().stats().evictionCount()).isEqualTo(THREADS * 1_000 - size);
+    }
+
+    @Test
+    @DisplayName("Debe servir el valor vigente mientras recarga en segundo plano, con una sola recarga por clave")
+    void shouldRefreshAheadOnceWhileServingCurrentValue() throws InterruptedException {
+        // Given: la recarga (segunda carga) queda bloqueada hasta liberarla
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CacheRefreshLoader loader = loader(key -> {
+            int load = loads.incrementAndGet();
+            if (load > 1) {
+                refreshStarted.countDown();
+                await(release);
+            }
+            return "v" + load;
+        });
+        ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+        CaffeineCache cache = new CaffeineCache("allowedDomains", CacheConfig.buildCache("allowedDomains",
+                spec(100, Duration.ofMinutes(10), Duration.ofMinutes(1)), loader, nanos::get, refreshExecutor), true);
+        assertThat(cache.get("all").get()).isEqualTo("v1");
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        // When: lecturas concurrentes de una entrada que ya debe recargarse
+        List<Object> values = new CopyOnWriteArrayList<>();
+        ExecutorService readers = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int thread = 0; thread < THREADS; thread++) {
+            readers.execute(() -> {
+                await(start);
+                values.add(cache.get("all").get());
+            });
+        }
+        start.countDown();
+        readers.shutdown();
+        assertThat(readers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(refreshStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Then: nadie esperó a la recarga y solo hubo una
+        assertThat(values).hasSize(THREADS).containsOnly("v1");
+        assertThat(loads.get()).isEqualTo(2);
+
+        release.countDown();
+        refreshExecutor.shutdown();
+        assertThat(refreshExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(cache.get("all").get()).isEqualTo("v2");
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Debe recargar de forma síncrona una entrada expirada en lugar de servirla")
+    void shouldReloadExpiredEntries() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CaffeineCache cache = new CaffeineCache("allowedDomains", CacheConfig.buildCache("allowedDomains",
+                spec(100, Duration.ofMinutes(10), null), loader(key -> "v" + loads.incrementAndGet()),
+                nanos::get, Runnable::run), true);
+        assertThat(cache.get("all").get()).isEqualTo("v1");
+
+        // When
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        // Then
+        assertThat(cache.get("all").get()).isEqualTo("v2");
+    }
+
+    private static CacheSpecProperties.Spec spec(long maximumSize, Duration expireAfterWrite, Duration refreshAfterWrite) {
+        CacheSpecProperties.Spec spec = new CacheSpecProperties.Spec();
+        spec.setMaximumSize(maximumSize);
+        spec.setExpireAfterWrite(expireAfterWrite);
+        spec.setRefreshAfterWrite(refreshAfterWrite);
+        return spec;
+    }
+
+    private static CacheRefreshLoader loader(Function<Object, Object> load) {
+        return new CacheRefreshLoader() {
+            @Override
+            public String cacheName() {
+                return "allowedDomains";
+            }
+
+            @Override
+            public Object load(Object key) {
+                return load.apply(key);
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
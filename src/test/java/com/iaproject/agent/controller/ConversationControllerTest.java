@@ -0,0 +1,60 @@
+package com.iaproject.agent.controller;
+
+import com.iaproject.agent.service.ConversationSearchService;
+import com.iaproject.agent.service.mapper.ModelToDtoMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests del controlador de búsqueda de conversaciones.
+ * Valida que los parámetros inválidos se responden con 400 y no llegan a BD.
+ */
+@WebMvcTest(ConversationController.class)
+@Import({ConversationSearchService.class, ModelToDtoMapper.class, ConversationControllerTest.Metrics.class})
+@DisplayName("ConversationController Tests")
+class ConversationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DisplayName("Debe responder 400 con cuerpo de error ante un cursor mal formado")
+    void shouldRejectMalformedCursor() throws Exception {
+        // When / Then
+        mockMvc.perform(get("/api/v1/conversations/search")
+                        .param("q", "cuna")
+                        .param("cursor", "no-es-un-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.message").value("Cursor de búsqueda inválido"))
+                .andExpect(jsonPath("$.timestamp").exists());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
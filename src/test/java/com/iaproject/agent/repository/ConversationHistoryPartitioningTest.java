@@ -0,0 +1,140 @@
+package com.iaproject.agent.repository;
+
+import com.iaproject.agent.config.properties.ConversationPartitionProperties;
+import com.iaproject.agent.service.ConversationPartitionMaintenanceService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests de integración del particionado mensual de conversation_history (V9).
+ * Valida partition pruning con EXPLAIN, retención y tamaño de índices por partición.
+ * 
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("ConversationHistory Partitioning Tests")
+class ConversationHistoryPartitioningTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+    }
+
+    @Test
+    @DisplayName("Debe leer solo la partición del mes consultado (partition pruning)")
+    void shouldPruneToSingleMonthPartition() {
+        // Given
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        YearMonth previous = current.minusMonths(1);
+        jdbcTemplate.queryForObject("SELECT create_conversation_history_partition(?)", String.class,
+                previous.atDay(1));
+        insertRows(current, 10);
+        insertRows(previous, 10);
+
+        // When
+        String plan = explain(
+                "SELECT COALESCE(SUM(total_tokens), 0) FROM conversation_history " +
+                "WHERE created_at BETWEEN '" + current.atDay(2) + "T00:00:00Z' AND '" + current.atDay(3) + "T00:00:00Z'");
+
+        // Then
+        assertThat(plan).contains(partitionName(current));
+        assertThat(plan).doesNotContain(partitionName(previous));
+        assertThat(plan).doesNotContain("conversation_history_default");
+    }
+
+    @Test
+    @DisplayName("Debe crear particiones futuras y eliminar las expiradas según la retención")
+    void shouldCreateUpcomingAndDropExpiredPartitions() {
+        // Given
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        YearMonth expired = current.minusMonths(24);
+        jdbcTemplate.queryForObject("SELECT create_conversation_history_partition(?)", String.class,
+                expired.atDay(1));
+
+        ConversationPartitionProperties properties = new ConversationPartitionProperties();
+        properties.setPremakeMonths(4);
+        properties.setRetentionMonths(12);
+        properties.setRetentionAction(ConversationPartitionProperties.RetentionAction.DROP);
+        ConversationPartitionMaintenanceService service = new ConversationPartitionMaintenanceService(
+                jdbcTemplate, properties, new SimpleMeterRegistry());
+
+        // When
+        service.runMaintenance();
+
+        // Then
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = 'conversation_history'",
+                String.class);
+        assertThat(partitions).contains(partitionName(current.plusMonths(4)));
+        assertThat(partitions).doesNotContain(partitionName(expired));
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class,
+                partitionName(expired))).isNull();
+    }
+
+    @Test
+    @DisplayName("Los índices de cada partición deben caber en shared_buffers")
+    void partitionIndexesShouldFitInSharedBuffers() {
+        // Given
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        insertRows(current, 20_000);
+        jdbcTemplate.execute("ANALYZE conversation_history");
+
+        // When
+        Long maxIndexBytes = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(index_bytes), 0) FROM (" +
+                "  SELECT SUM(pg_relation_size(ix.indexrelid)) AS index_bytes FROM pg_inherits i " +
+                "  JOIN pg_class p ON p.oid = i.inhparent JOIN pg_index ix ON ix.indrelid = i.inhrelid " +
+                "  WHERE p.relname = 'conversation_history' GROUP BY i.inhrelid) sizes",
+                Long.class);
+        Long sharedBufferBytes = jdbcTemplate.queryForObject(
+                "SELECT setting::bigint * 8192 FROM pg_settings WHERE name = 'shared_buffers'", Long.class);
+
+        // Then
+        assertThat(maxIndexBytes).isPositive();
+        assertThat(maxIndexBytes).isLessThan(sharedBufferBytes);
+    }
+
+    private void insertRows(YearMonth month, int count) {
+        jdbcTemplate.update(
+                "INSERT INTO conversation_history (conversation_id, user_message, ai_response, model_used, " +
+                "total_tokens, created_at) " +
+                "SELECT 'conv-' || (g % 100), 'mensaje ' || g, 'respuesta ' || g, 'gpt-4o-mini', 10, " +
+                "(?::date + (g % 27) * INTERVAL '1 day')::timestamp AT TIME ZONE 'UTC' " +
+                "FROM generate_series(1, ?) g",
+                month.atDay(1), count);
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("conversation_history_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+}
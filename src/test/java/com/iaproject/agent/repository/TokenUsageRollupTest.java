@@ -0,0 +1,143 @@
+package com.iaproject.agent.repository;
+
+import com.iaproject.agent.config.properties.TokenUsageRollupProperties;
+import com.iaproject.agent.service.TokenUsageRollupService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests de integración del agregado horario de tokens (V10).
+ * Valida que las consultas servidas desde token_usage_hourly coinciden con
+ * el cálculo sobre filas crudas y que el job de agregación es idempotente.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("Token Usage Rollup Tests")
+class TokenUsageRollupTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DataSourceTransactionManager transactionManager;
+
+    private ConversationHistoryRepositoryImpl repository;
+    private TokenUsageRollupService rollupService;
+    private OffsetDateTime now;
+    private OffsetDateTime base;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE conversation_history, token_usage_hourly");
+
+        now = OffsetDateTime.now(ZoneOffset.UTC);
+        base = now.truncatedTo(ChronoUnit.HOURS).minusHours(5);
+        jdbcTemplate.update("UPDATE rollup_watermark SET processed_until = ? WHERE name = 'token_usage_hourly'",
+                base.minusHours(1));
+
+        repository = new ConversationHistoryRepositoryImpl(jdbcTemplate);
+        rollupService = new TokenUsageRollupService(jdbcTemplate, new TokenUsageRollupProperties(),
+                transactionManager, new SimpleMeterRegistry());
+
+        // 40 mensajes cada 7 minutos desde base (≈ 4,5 horas), alternando modelo
+        for (int i = 0; i < 40; i++) {
+            insertRow(base.plusMinutes(7L * i), i % 2 == 0 ? "gpt-4o-mini" : "gpt-4o", i + 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Debe devolver los mismos totales que el cálculo sobre filas crudas")
+    void shouldMatchRawAggregates() {
+        // When
+        rollupService.catchUp(now);
+
+        // Then
+        assertThat(repository.calculateTotalTokensUsed(base, now))
+                .isEqualTo(rawTokens(base, now));
+        assertThat(repository.calculateTotalTokensUsed(base.plusMinutes(13), base.plusHours(3).plusMinutes(29)))
+                .isEqualTo(rawTokens(base.plusMinutes(13), base.plusHours(3).plusMinutes(29)));
+        assertThat(repository.calculateTotalTokensUsed(base.plusMinutes(10), base.plusMinutes(20)))
+                .isEqualTo(rawTokens(base.plusMinutes(10), base.plusMinutes(20)));
+        assertThat(repository.calculateTotalTokensUsed(base.plusHours(1), base.plusHours(2)))
+                .isEqualTo(rawTokens(base.plusHours(1), base.plusHours(2)));
+        assertThat(repository.countByModelUsed("gpt-4o-mini")).isEqualTo(20L);
+        assertThat(repository.countByModelUsed("gpt-4o")).isEqualTo(20L);
+    }
+
+    @Test
+    @DisplayName("Debe incluir filas posteriores a la marca de agua sin esperar al job")
+    void shouldIncludeRowsAfterWatermark() {
+        // Given
+        rollupService.catchUp(now);
+        OffsetDateTime recent = now.truncatedTo(ChronoUnit.HOURS).plusSeconds(1);
+        insertRow(recent, "gpt-4o", 1000);
+
+        // When
+        Long total = repository.calculateTotalTokensUsed(base, recent.plusSeconds(1));
+
+        // Then
+        assertThat(total).isEqualTo(rawTokens(base, recent.plusSeconds(1)));
+        assertThat(repository.countByModelUsed("gpt-4o")).isEqualTo(21L);
+    }
+
+    @Test
+    @DisplayName("Repetir la agregación no debe duplicar totales")
+    void shouldBeIdempotent() {
+        // When
+        rollupService.catchUp(now);
+        Long first = rollupTotal();
+        rollupService.catchUp(now);
+        rollupService.catchUp(now);
+
+        // Then
+        assertThat(rollupTotal()).isEqualTo(first);
+        assertThat(first).isEqualTo(rawTokens(base, now.truncatedTo(ChronoUnit.HOURS).minusNanos(1)));
+    }
+
+    private void insertRow(OffsetDateTime createdAt, String model, int tokens) {
+        jdbcTemplate.update(
+                "INSERT INTO conversation_history (conversation_id, user_message, ai_response, model_used, " +
+                "total_tokens, guardrail_action, created_at) VALUES ('conv-1', 'hola', 'respuesta', ?, ?, 'ALLOW', ?)",
+                model, tokens, createdAt);
+    }
+
+    private Long rawTokens(OffsetDateTime start, OffsetDateTime end) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(total_tokens), 0) FROM conversation_history WHERE created_at BETWEEN ? AND ?",
+                Long.class, start, end);
+    }
+
+    private Long rollupTotal() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(total_tokens), 0) FROM token_usage_hourly", Long.class);
+    }
+}
@@ -0,0 +1,180 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.AllowedDomain;
+import com.iaproject.agent.service.text.NormalizedText;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para AllowedDomainScopeMatcher.
+ * Compara el autómata con una búsqueda de subcadenas sobre el texto normalizado.
+ */
+@DisplayName("AllowedDomainScopeMatcher Tests")
+class AllowedDomainScopeMatcherTest {
+
+    private static final String ALPHABET = "abcñáÁBÑ -";
+
+    @Test
+    @DisplayName("Debe reportar la keyword y categoría encontradas")
+    void shouldReportKeywordAndCategory() {
+        // Given
+        AllowedDomainScopeMatcher matcher = AllowedDomainScopeMatcher.of(List.of(
+                domain("baby shower", "baby-shower"),
+                domain("decoración", "baby-shower"),
+                domain("autos", "automotive")));
+
+        // When / Then
+        assertThat(matcher.findFirst("Ideas de DECORACIÓN para la mesa")).hasValueSatisfying(match -> {
+            assertThat(match.keyword()).isEqualTo("decoración");
+            assertThat(match.category()).isEqualTo("baby-shower");
+            assertThat(match.start()).isEqualTo(9);
+            assertThat(match.end()).isEqualTo(19);
+        });
+        assertThat(matcher.findFirst("¿Cuál es la capital de Francia?")).isEmpty();
+        assertThat(matcher.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Debe ignorar tildes y leetspeak en keywords y mensajes")
+    void shouldIgnoreAccentsAndLeetspeak() {
+        // Given
+        AllowedDomainScopeMatcher matcher = AllowedDomainScopeMatcher.of(List.of(
+                domain("decoracion", "baby-shower"),
+                domain("baby shower", "baby-shower")));
+
+        // When / Then
+        assertThat(matcher.findFirst("Ideas de DECORACIÓN")).hasValueSatisfying(match ->
+                assertThat(match.keyword()).isEqualTo("decoracion"));
+        assertThat(matcher.findFirst("el b4by  sh0wer de Ana")).hasValueSatisfying(match -> {
+            assertThat(match.start()).isEqualTo(3);
+            assertThat(match.end()).isEqualTo(15);
+        });
+    }
+
+    @Test
+    @DisplayName("Debe tolerar errores de tipeo en keywords y rechazar palabras cortas o ajenas")
+    void shouldFindKeywordsWithTypos() {
+        // Given
+        AllowedDomainScopeMatcher matcher = AllowedDomainScopeMatcher.of(List.of(
+                domain("baby shower", "baby-shower"),
+                domain("regalos", "baby-shower"),
+                domain("invitados", "baby-shower"),
+                domain("sol", "clima")));
+
+        // When / Then
+        assertThat(matcher.findFuzzy(NormalizedText.of("ideas para el babyshawer"))).hasValueSatisfying(match -> {
+            assertThat(match.keyword()).isEqualTo("baby shower");
+            assertThat(match.start()).isEqualTo(14);
+            assertThat(match.end()).isEqualTo(24);
+            assertThat(match.distance()).isEqualTo(1);
+        });
+        assertThat(matcher.findFuzzy(NormalizedText.of("el Baby Shawer de Ana"))).hasValueSatisfying(match -> {
+            assertThat(match.keyword()).isEqualTo("baby shower");
+            assertThat(match.start()).isEqualTo(3);
+            assertThat(match.end()).isEqualTo(14);
+        });
+        assertThat(matcher.findFuzzy(NormalizedText.of("¿qué regalo falta?"))).hasValueSatisfying(match ->
+                assertThat(match.keyword()).isEqualTo("regalos"));
+        assertThat(matcher.findFuzzy(NormalizedText.of("¿cuántos invitdos vienen?"))).hasValueSatisfying(match ->
+                assertThat(match.keyword()).isEqualTo("invitados"));
+        assertThat(matcher.findFuzzy(NormalizedText.of("la sal del mar"))).isEmpty();
+        assertThat(matcher.findFuzzy(NormalizedText.of("¿Cuál es la capital de Francia?"))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("No debe aceptar por aproximación palabras comunes cercanas a las keywords semilla")
+    void shouldNotFuzzyMatchCommonWordsNearSeedKeywords() {
+        // Given: keywords semilla de V3 (baby shower)
+        AllowedDomainScopeMatcher matcher = AllowedDomainScopeMatcher.of(List.of(
+                domain("baby shower", "baby-shower"),
+                domain("evento", "baby-shower"),
+                domain("celebración", "baby-shower"),
+                domain("fiesta", "baby-shower"),
+                domain("invitados", "baby-shower"),
+                domain("regalos", "baby-shower"),
+                domain("juegos", "baby-shower"),
+                domain("decoración", "baby-shower"),
+                domain("planificación", "baby-shower"),
+                domain("bebé", "baby-shower"),
+                domain("mamá", "baby-shower"),
+                domain("embarazo", "baby-shower")));
+
+        // When / Then: a una o dos ediciones de "bebé", "mamá", "fiesta", "juegos" o "embarazo"
+        for (String message : List.of(
+                "¿Qué debe llevar una pizza?",
+                "Dame un mapa de Europa",
+                "¿Qué cama me recomiendas?",
+                "¿Quién tiene más fama?",
+                "¿Es buena hora para la siesta?",
+                "Tengo ruegos y preguntas",
+                "¿El banco tiene embargado mi sueldo?")) {
+            NormalizedText text = NormalizedText.of(message);
+            assertThat(matcher.findFirst(text)).as(message).isEmpty();
+            assertThat(matcher.findFuzzy(text)).as(message).isEmpty();
+        }
+        assertThat(matcher.findFuzzy(NormalizedText.of("¿Qué juegoz hacemos?"))).hasValueSatisfying(match ->
+                assertThat(match.keyword()).isEqualTo("juegos"));
+        assertThat(matcher.findFuzzy(NormalizedText.of("ideas para la selebracion"))).isEmpty();
+        assertThat(matcher.findFuzzy(NormalizedText.of("ideas para la celebrasion"))).hasValueSatisfying(match ->
+                assertThat(match.keyword()).isEqualTo("celebración"));
+        assertThat(matcher.findFuzzy(NormalizedText.of("la planifikacion del dia"))).hasValueSatisfying(match ->
+                assertThat(match.keyword()).isEqualTo("planificación"));
+    }
+
+    @Test
+    @DisplayName("Debe coincidir con la búsqueda de subcadenas normalizadas en mensajes aleatorios")
+    void shouldMatchNormalizedSubstringSearch() {
+        // Given: alfabeto reducido para provocar coincidencias parciales y solapadas
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<AllowedDomain> domains = new ArrayList<>();
+            List<String> keywords = new ArrayList<>();
+            int keywordCount = 1 + random.nextInt(30);
+            for (int i = 0; i < keywordCount; i++) {
+                String keyword = randomText(random, 1 + random.nextInt(5)).toLowerCase();
+                domains.add(domain(keyword, "cat-" + i));
+                keywords.add(keyword);
+            }
+            AllowedDomainScopeMatcher matcher = AllowedDomainScopeMatcher.of(domains);
+
+            for (int message = 0; message < 50; message++) {
+                String text = randomText(random, random.nextInt(40));
+
+                // When
+                String normalized = NormalizedText.normalize(text);
+                boolean expected = keywords.stream().map(NormalizedText::normalize).anyMatch(normalized::contains);
+                boolean current = matcher.findFirst(text).isPresent();
+
+                // Then
+                assertThat(current).as("keywords=%s, mensaje='%s'", keywords, text).isEqualTo(expected);
+            }
+        }
+    }
+
+    /**
+     * Texto aleatorio sin espacios al inicio/final ni espacios repetidos
+     * (las keywords se guardan así y el autómata colapsa espacios).
+     */
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            boolean space = c == ' ';
+            if (space && (text.length() == 0 || text.charAt(text.length() - 1) == ' ' || i == length - 1)) {
+                c = 'a';
+            }
+            text.append(c);
+        }
+        return text.toString();
+    }
+
+    private static AllowedDomain domain(String keyword, String category) {
+        return AllowedDomain.builder().keyword(keyword).category(category).active(true).build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.AllowedDomain;
+import com.iaproject.agent.repository.AllowedDomainRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitarios para AllowedDomainService.
+ * Valida la reconstrucción de los índices de alcance (global y por categoría) al invalidar la caché.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AllowedDomainService Tests")
+class AllowedDomainServiceTest {
+
+    @InjectMocks
+    private AllowedDomainService allowedDomainService;
+
+    @Mock
+    private AllowedDomainRepository allowedDomainRepository;
+
+    @Test
+    @DisplayName("Debe reutilizar el índice hasta que se invalide la caché")
+    void shouldReuseScopeMatcherUntilEviction() {
+        // Given
+        when(allowedDomainRepository.findByActiveTrue())
+                .thenReturn(List.of(domain("baby shower")))
+                .thenReturn(List.of(domain("baby shower"), domain("autos")));
+
+        // When
+        AllowedDomainScopeMatcher first = allowedDomainService.getScopeMatcher();
+        AllowedDomainScopeMatcher cached = allowedDomainService.getScopeMatcher();
+        allowedDomainService.clearCache();
+        AllowedDomainScopeMatcher rebuilt = allowedDomainService.getScopeMatcher();
+
+        // Then
+        assertThat(cached).isSameAs(first);
+        assertThat(first.findFirst("venta de autos")).isEmpty();
+        assertThat(rebuilt.findFirst("venta de autos")).isPresent();
+        verify(allowedDomainRepository, times(2)).findByActiveTrue();
+    }
+
+    @Test
+    @DisplayName("Debe invalidar solo el índice de la categoría modificada")
+    void shouldInvalidateOnlyModifiedCategoryMatcher() {
+        // Given
+        when(allowedDomainRepository.findByCategoryAndActiveTrue("wedding"))
+                .thenReturn(List.of(domain("boda", "wedding")));
+        when(allowedDomainRepository.findByCategoryAndActiveTrue("baby-shower"))
+                .thenReturn(List.of(domain("baby shower", "baby-shower")))
+                .thenReturn(List.of(domain("baby shower", "baby-shower"), domain("cuna", "baby-shower")));
+        when(allowedDomainRepository.save(any(AllowedDomain.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        AllowedDomainScopeMatcher wedding = allowedDomainService.getScopeMatcher("wedding");
+        AllowedDomainScopeMatcher babyShower = allowedDomainService.getScopeMatcher("baby-shower");
+        long version = allowedDomainService.getScopeVersion();
+
+        // When: fuera de transacción se invalida de inmediato
+        allowedDomainService.create("cuna", "baby-shower", null);
+
+        // Then
+        assertThat(allowedDomainService.getScopeMatcher("wedding")).isSameAs(wedding);
+        assertThat(allowedDomainService.getScopeMatcher("baby-shower")).isNotSameAs(babyShower);
+        assertThat(allowedDomainService.getScopeMatcher("baby-shower").findFirst("una cuna")).isPresent();
+        assertThat(allowedDomainService.getScopeVersion()).isGreaterThan(version);
+        verify(allowedDomainRepository, times(1)).findByCategoryAndActiveTrue("wedding");
+    }
+
+    private static AllowedDomain domain(String keyword, String category) {
+        return AllowedDomain.builder().keyword(keyword).category(category).active(true).build();
+    }
+
+    private static AllowedDomain domain(String keyword) {
+        return AllowedDomain.builder().keyword(keyword).category("test").active(true).build();
+    }
+}
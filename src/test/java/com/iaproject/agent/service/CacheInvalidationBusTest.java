@@ -0,0 +1,152 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.CacheInvalidationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitarios para CacheInvalidationBus.
+ * Valida la entrega por canal y la recarga completa al reconectar.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CacheInvalidationBus Tests")
+class CacheInvalidationBusTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private Statement statement;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecordingListener domains = new RecordingListener("allowed_domain");
+    private final RecordingListener events = new RecordingListener("events");
+
+    @Test
+    @DisplayName("Debe escuchar cada canal, recargar al conectar y entregar cada notificación a su canal")
+    void shouldDispatchNotificationsByChannel() throws SQLException {
+        // Given
+        PGNotification[] notifications = {
+                notification("allowed_domain", "baby-shower"),
+                notification("allowed_domain", "")};
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getNotifications(anyInt())).thenReturn(notifications);
+        CacheInvalidationBus bus = bus(() -> connection);
+
+        // When
+        bus.pollOnce();
+
+        // Then
+        verify(statement).execute("LISTEN allowed_domain");
+        verify(statement).execute("LISTEN events");
+        assertThat(domains.received).containsExactly("resync", "baby-shower", "*");
+        assertThat(events.received).containsExactly("resync");
+        assertThat(bus.isConnected()).isTrue();
+        assertThat(meterRegistry.get("cache.invalidation.notifications")
+                .tag("channel", "allowed_domain").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Debe cerrar la conexión caída y reconectar con una recarga completa")
+    void shouldReconnectWithFullRefresh() throws SQLException {
+        // Given: la primera lectura falla y la segunda no trae notificaciones
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getNotifications(anyInt()))
+                .thenThrow(new SQLException("An I/O error occurred while sending to the backend."))
+                .thenReturn(null);
+        int[] connects = new int[1];
+        CacheInvalidationBus bus = bus(() -> {
+            connects[0]++;
+            return connection;
+        });
+
+        // When
+        assertThatThrownBy(bus::pollOnce).isInstanceOf(SQLException.class);
+        boolean connectedAfterFailure = bus.isConnected();
+        bus.pollOnce();
+
+        // Then
+        assertThat(connectedAfterFailure).isFalse();
+        assertThat(connects[0]).isEqualTo(2);
+        verify(connection).close();
+        verify(statement, times(2)).execute("LISTEN allowed_domain");
+        assertThat(domains.received).containsExactly("resync", "resync");
+        assertThat(meterRegistry.get("cache.invalidation.reconnects").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar canales que no sean identificadores simples")
+    void shouldRejectInvalidChannelNames() {
+        // Given
+        CacheInvalidationBus bus = bus(() -> connection);
+
+        // When / Then
+        assertThatThrownBy(() -> bus.subscribe(new RecordingListener("x; DROP TABLE allowed_domain")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CacheInvalidationBus bus(CacheInvalidationBus.ConnectionFactory connectionFactory) {
+        return new CacheInvalidationBus(connectionFactory, List.of(domains, events),
+                new CacheInvalidationProperties(), meterRegistry);
+    }
+
+    private static PGNotification notification(String channel, String payload) {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getName()).thenReturn(channel);
+        when(notification.getParameter()).thenReturn(payload);
+        return notification;
+    }
+
+    /**
+     * Suscriptor que anota lo recibido ("*" = invalidar todo).
+     */
+    private static final class RecordingListener implements CacheInvalidationListener {
+
+        private final String channel;
+        private final List<String> received = new ArrayList<>();
+
+        private RecordingListener(String channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public String channel() {
+            return channel;
+        }
+
+        @Override
+        public void onInvalidation(String key) {
+            received.add(key != null ? key : "*");
+        }
+
+        @Override
+        public void onResync() {
+            received.add("resync");
+        }
+    }
+}
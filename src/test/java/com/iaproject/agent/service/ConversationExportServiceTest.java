@@ -0,0 +1,182 @@
+package com.iaproject.agent.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests de integración de ConversationExportService.
+ * La exportación masiva (1M filas) se ejecuta con heap reducido mediante
+ * la tarea Gradle largeExportTest (opcional, fuera de check).
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("ConversationExportService Tests")
+class ConversationExportServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static ConversationExportService exportService;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        exportService = new ConversationExportService(dataSource,
+                new DataSourceTransactionManager(dataSource), new SimpleMeterRegistry());
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE conversation_history");
+    }
+
+    @Test
+    @DisplayName("Debe exportar NDJSON con un objeto por línea filtrado por evento")
+    void shouldExportNdjsonFilteredByEvent() throws Exception {
+        // Given
+        insertRow("evento-1", "Hola, \"amigos\"", "[\"Opción 1\"]");
+        insertRow("evento-1", "¿Qué regalo?", null);
+        insertRow("evento-2", "Otro evento", null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = exportService.export("evento-1", null, null, null, ConversationExportService.Format.NDJSON, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(rows).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        assertThat(first.get("eventId").asText()).isEqualTo("evento-1");
+        assertThat(first.get("userMessage").asText()).isEqualTo("Hola, \"amigos\"");
+        assertThat(first.get("quickReplies").get(0).asText()).isEqualTo("Opción 1");
+        assertThat(new ObjectMapper().readTree(lines[1]).get("quickReplies").isNull()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Debe exportar CSV con cabecera y campos escapados")
+    void shouldExportEscapedCsv() {
+        // Given
+        insertRow("evento-1", "Hola, \"amigos\"\nsegunda línea", null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        exportService.export("evento-1", null, null, null, ConversationExportService.Format.CSV, out);
+
+        // Then
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(csv).startsWith("id,conversationId,userId,domainId,eventId,intent,userMessage,");
+        assertThat(csv).contains("\"Hola, \"\"amigos\"\"\nsegunda línea\"");
+    }
+
+    @Test
+    @DisplayName("Debe rechazar exportaciones sin evento ni rango de fechas")
+    void shouldRejectUnboundedExport() {
+        assertThatThrownBy(() -> exportService.export(null, "baby-shower", null, null,
+                ConversationExportService.Format.NDJSON, new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Tag("large-export")
+    @DisplayName("Debe exportar un millón de filas con memoria constante")
+    void shouldStreamMillionRowsWithSmallHeap() throws Exception {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        assumeTrue(maxHeap <= 256L * 1024 * 1024, "Ejecutar con ./gradlew largeExportTest (heap reducido)");
+
+        // Given
+        OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC).minusDays(1);
+        jdbcTemplate.update(
+                "INSERT INTO conversation_history (conversation_id, user_message, ai_response, model_used, " +
+                "total_tokens, event_id, created_at) " +
+                "SELECT 'conv-' || (g % 1000), 'Mensaje de prueba número ' || g || ' sobre la lista de regalos', " +
+                "'Respuesta sintética número ' || g || ' con sugerencias para el evento', 'gpt-4o-mini', 42, " +
+                "'evento-masivo', ?::timestamptz + g * INTERVAL '1 millisecond' " +
+                "FROM generate_series(1, 1000000) g",
+                from);
+        CountingOutputStream counter = new CountingOutputStream();
+
+        // When
+        long rows;
+        try (GZIPOutputStream gzip = new GZIPOutputStream(counter)) {
+            CountingOutputStream raw = new CountingOutputStream(gzip);
+            rows = exportService.export("evento-masivo", null, from, null,
+                    ConversationExportService.Format.NDJSON, raw);
+            gzip.finish();
+
+            // Then: el volumen exportado supera el heap disponible
+            assertThat(raw.bytes).isGreaterThan(maxHeap);
+        }
+        assertThat(rows).isEqualTo(1_000_000L);
+        assertThat(counter.bytes).isPositive();
+    }
+
+    private void insertRow(String eventId, String userMessage, String quickReplies) {
+        jdbcTemplate.update(
+                "INSERT INTO conversation_history (conversation_id, user_message, ai_response, event_id, " +
+                "quick_replies) VALUES ('conv-1', ?, 'respuesta', ?, ?::jsonb)",
+                userMessage, eventId, quickReplies);
+    }
+
+    /**
+     * Cuenta bytes y los reenvía (o descarta) sin retenerlos.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+        private long bytes;
+
+        private CountingOutputStream() {
+            this(OutputStream.nullOutputStream());
+        }
+
+        private CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws java.io.IOException {
+            delegate.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws java.io.IOException {
+            delegate.write(b, off, len);
+            bytes += len;
+        }
+    }
+}
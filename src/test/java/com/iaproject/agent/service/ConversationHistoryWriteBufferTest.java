@@ -0,0 +1,194 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.ConversationWriteBehindProperties;
+import com.iaproject.agent.domain.ConversationHistory;
+import com.iaproject.agent.repository.ConversationHistoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests unitarios para ConversationHistoryWriteBuffer.
+ * Valida flush por tamaño, vaciado al apagar, lectura de pendientes y fallback.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ConversationHistoryWriteBuffer Tests")
+class ConversationHistoryWriteBufferTest {
+
+    @Mock
+    private ConversationHistoryRepository conversationHistoryRepository;
+
+    @Mock(lenient = true)
+    private PlatformTransactionManager transactionManager;
+
+    private ConversationWriteBehindProperties properties;
+    private ConversationHistoryWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ConversationWriteBehindProperties();
+        properties.setBatchSize(3);
+        properties.setMaxStaleness(Duration.ofHours(1));
+        properties.setQueueCapacity(10);
+        buffer = new ConversationHistoryWriteBuffer(
+                conversationHistoryRepository, properties, transactionManager, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.drain();
+    }
+
+    @Test
+    @DisplayName("Debe acumular filas y escribirlas en lotes del tamaño configurado")
+    void shouldWriteInBatches() {
+        // Given
+        for (int i = 0; i < 7; i++) {
+            buffer.write(history("conv-1", "m" + i));
+        }
+
+        // When
+        buffer.drain();
+
+        // Then
+        ArgumentCaptor<List<ConversationHistory>> batches = ArgumentCaptor.forClass(List.class);
+        verify(conversationHistoryRepository, atLeast(3)).saveAll(batches.capture());
+        assertThat(batches.getAllValues()).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(3));
+        assertThat(batches.getAllValues().stream().mapToInt(List::size).sum()).isEqualTo(7);
+        verify(conversationHistoryRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Debe exponer filas pendientes de una conversación antes del flush")
+    void shouldExposePendingRows() {
+        // Given
+        buffer.write(history("conv-1", "hola"));
+        buffer.write(history("conv-2", "otra"));
+
+        // When
+        List<ConversationHistory> pending = buffer.pending("conv-1");
+
+        // Then
+        assertThat(pending).extracting(ConversationHistory::getUserMessage).containsExactly("hola");
+    }
+
+    @Test
+    @DisplayName("Una fila encolada debe verse como pendiente o escrita mientras se vacía el buffer en paralelo")
+    void shouldNeverHideRowsDuringConcurrentFlush() throws InterruptedException {
+        // Given: saveAll "confirma" las filas al volver
+        buffer.drain();
+        properties.setQueueCapacity(10_000);
+        buffer = new ConversationHistoryWriteBuffer(
+                conversationHistoryRepository, properties, transactionManager, new SimpleMeterRegistry());
+        Set<ConversationHistory> persisted = ConcurrentHashMap.newKeySet();
+        when(conversationHistoryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ConversationHistory> batch = invocation.getArgument(0);
+            persisted.addAll(batch);
+            return batch;
+        });
+        List<ConversationHistory> enqueued = new CopyOnWriteArrayList<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> missing = new CopyOnWriteArrayList<>();
+
+        // When: un hilo escribe (flush por tamaño en el hilo del buffer) y otro lee pendientes
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 3_000; i++) {
+                ConversationHistory row = history("conv-1", "m" + i);
+                buffer.write(row);
+                enqueued.add(row);
+            }
+            writing.set(false);
+        });
+        Thread reader = new Thread(() -> {
+            while (writing.get() && missing.isEmpty()) {
+                List<ConversationHistory> expected = List.copyOf(enqueued);
+                Set<ConversationHistory> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+                visible.addAll(buffer.pending("conv-1"));
+                visible.addAll(persisted);
+                expected.stream()
+                        .filter(row -> !visible.contains(row))
+                        .forEach(row -> missing.add(row.getUserMessage()));
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join(10_000);
+        reader.join(10_000);
+
+        // Then
+        assertThat(missing).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Debe vaciar el buffer al apagar")
+    void shouldDrainOnShutdown() {
+        // Given
+        buffer.write(history("conv-1", "hola"));
+
+        // When
+        buffer.drain();
+
+        // Then
+        verify(conversationHistoryRepository).saveAll(anyList());
+        assertThat(buffer.pending("conv-1")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Debe reintentar fila por fila si el lote falla")
+    void shouldFallbackToSingleRowsWhenBatchFails() {
+        // Given
+        when(conversationHistoryRepository.saveAll(anyList())).thenThrow(new RuntimeException("batch error"));
+        buffer.write(history("conv-1", "a"));
+        buffer.write(history("conv-1", "b"));
+
+        // When
+        int written = buffer.flush();
+
+        // Then
+        assertThat(written).isEqualTo(2);
+        verify(conversationHistoryRepository, times(2)).save(any(ConversationHistory.class));
+    }
+
+    @Test
+    @DisplayName("Debe guardar de forma síncrona si write-behind está deshabilitado")
+    void shouldSaveSynchronouslyWhenDisabled() {
+        // Given
+        properties.setEnabled(false);
+
+        // When
+        buffer.write(history("conv-1", "hola"));
+
+        // Then
+        verify(conversationHistoryRepository).save(any(ConversationHistory.class));
+        assertThat(buffer.pending("conv-1")).isEmpty();
+    }
+
+    private ConversationHistory history(String conversationId, String message) {
+        return ConversationHistory.builder()
+                .conversationId(conversationId)
+                .userMessage(message)
+                .aiResponse("ok")
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.service.dto.ConversationSearchResponse;
+import com.iaproject.agent.service.dto.ConversationSearchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests de integración de la búsqueda de texto completo (V11).
+ * Valida relevancia, filtros, paginación keyset y uso del índice GIN.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("ConversationSearchService Tests")
+class ConversationSearchServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static ConversationSearchService searchService;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword()));
+        searchService = new ConversationSearchService(jdbcTemplate, new SimpleMeterRegistry());
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE conversation_history");
+    }
+
+    @Test
+    @DisplayName("Debe ordenar por relevancia y aplicar el filtro de evento")
+    void shouldRankAndFilterByEvent() {
+        // Given
+        insertRow("evento-1", "Hola", "Puedes regalar pañales de tela");
+        insertRow("evento-1", "¿Qué pañales regalo? Pañales ecológicos", "Los pañales son útiles");
+        insertRow("evento-2", "Busco pañales", "Claro");
+        insertRow("evento-1", "¿A qué hora empieza?", "A las 5 pm");
+
+        // When
+        ConversationSearchResponse response = searchService.search("pañal", "evento-1", null,
+                null, null, null, 10);
+
+        // Then
+        assertThat(response.getResults()).hasSize(2);
+        assertThat(response.getResults()).allMatch(result -> "evento-1".equals(result.getEventId()));
+        assertThat(response.getResults().get(0).getUserMessage()).contains("ecológicos");
+        assertThat(response.getResults().get(0).getRank())
+                .isGreaterThan(response.getResults().get(1).getRank());
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Debe paginar con cursor keyset sin duplicados ni omisiones")
+    void shouldPaginateWithKeysetCursor() {
+        // Given
+        for (int i = 0; i < 25; i++) {
+            insertRow("evento-1", "Mensaje " + i + " sobre la cuna del bebé", "Respuesta " + i);
+        }
+
+        // When
+        List<ConversationSearchResult> all = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            ConversationSearchResponse page = searchService.search("cuna", null, null, null, null, cursor, 10);
+            pageSizes.add(page.getResults().size());
+            all.addAll(page.getResults());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Then
+        Set<Long> ids = new HashSet<>();
+        all.forEach(result -> ids.add(result.getId()));
+        assertThat(pageSizes).containsExactly(10, 10, 5);
+        assertThat(ids).hasSize(25);
+    }
+
+    @Test
+    @DisplayName("Debe usar el índice GIN en lugar de recorrer la tabla")
+    void shouldUseGinIndex() {
+        // Given
+        jdbcTemplate.update(
+                "INSERT INTO conversation_history (conversation_id, user_message, ai_response) " +
+                "SELECT 'conv-' || g, 'Mensaje genérico número ' || g, 'Respuesta sobre la fiesta' " +
+                "FROM generate_series(1, 20000) g");
+        insertRow("evento-1", "¿Dónde compro el moisés?", "En la tienda del centro");
+        jdbcTemplate.execute("ANALYZE conversation_history");
+
+        // When
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT id FROM conversation_history " +
+                "WHERE search_vector @@ websearch_to_tsquery('spanish', 'moisés')", String.class));
+
+        // Then
+        assertThat(plan).contains("Bitmap Index Scan");
+        assertThat(plan).contains("search_vector");
+        assertThat(searchService.search("moisés", null, null, null, null, null, 10).getResults()).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un cursor inválido")
+    void shouldRejectInvalidCursor() {
+        assertThatThrownBy(() -> searchService.search("cuna", null, null, null, null, "no-es-un-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void insertRow(String eventId, String userMessage, String aiResponse) {
+        jdbcTemplate.update(
+                "INSERT INTO conversation_history (conversation_id, user_message, ai_response, event_id) " +
+                "VALUES ('conv-1', ?, ?, ?)",
+                userMessage, aiResponse, eventId);
+    }
+}
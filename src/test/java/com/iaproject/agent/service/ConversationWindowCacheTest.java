@@ -0,0 +1,162 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.ConversationWindowCacheProperties;
+import com.iaproject.agent.domain.ConversationHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para ConversationWindowCache.
+ * Valida ring buffer, expulsión por tamaño/TTL, descarte de cargas desactualizadas y métricas de aciertos.
+ */
+@DisplayName("ConversationWindowCache Tests")
+class ConversationWindowCacheTest {
+
+    private ConversationWindowCacheProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong now;
+    private ConversationWindowCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ConversationWindowCacheProperties();
+        properties.setWindowSize(3);
+        properties.setMaxConversations(2);
+        properties.setTtl(Duration.ofMinutes(10));
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(1_000L);
+        cache = new ConversationWindowCache(properties, meterRegistry, now::get);
+    }
+
+    @Test
+    @DisplayName("Debe registrar miss si la conversación no está en memoria")
+    void shouldMissWhenNotCached() {
+        assertThat(cache.get("conv-1")).isEmpty();
+        assertThat(meterRegistry.counter("conversation.window.cache", "result", "miss").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debe servir la ventana cargada desde BD y registrar filas leídas")
+    void shouldServeLoadedWindow() {
+        // Given
+        cache.put("conv-1", List.of(turn("conv-1", "m2"), turn("conv-1", "m1")), cache.generation());
+
+        // When
+        List<ConversationHistory> window = cache.get("conv-1").orElseThrow();
+
+        // Then
+        assertThat(window).extracting(ConversationHistory::getUserMessage).containsExactly("m2", "m1");
+        assertThat(cache.hitRatio()).isEqualTo(1.0);
+        assertThat(meterRegistry.summary("conversation.window.rows.fetched").totalAmount()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Debe mantener solo los últimos N turnos al agregar")
+    void shouldKeepLastTurnsOnAppend() {
+        // Given
+        cache.put("conv-1", List.of(turn("conv-1", "m3"), turn("conv-1", "m2"), turn("conv-1", "m1")),
+                cache.generation());
+
+        // When
+        cache.append(turn("conv-1", "m4"));
+
+        // Then
+        assertThat(cache.get("conv-1").orElseThrow())
+                .extracting(ConversationHistory::getUserMessage)
+                .containsExactly("m4", "m3", "m2");
+    }
+
+    @Test
+    @DisplayName("No debe crear ventana parcial al agregar a una conversación no cacheada")
+    void shouldIgnoreAppendForUnknownConversation() {
+        cache.append(turn("conv-1", "m1"));
+
+        assertThat(cache.get("conv-1")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Debe expirar ventanas tras el TTL")
+    void shouldExpireAfterTtl() {
+        // Given
+        cache.put("conv-1", List.of(turn("conv-1", "m1")), cache.generation());
+
+        // When
+        now.addAndGet(Duration.ofMinutes(11).toMillis());
+
+        // Then
+        assertThat(cache.get("conv-1")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Debe expulsar la conversación menos usada al superar el tamaño máximo")
+    void shouldEvictLeastRecentlyUsed() {
+        // Given
+        cache.put("conv-1", List.of(turn("conv-1", "a")), cache.generation());
+        cache.put("conv-2", List.of(turn("conv-2", "b")), cache.generation());
+        cache.get("conv-1");
+
+        // When
+        cache.put("conv-3", List.of(turn("conv-3", "c")), cache.generation());
+
+        // Then
+        assertThat(cache.get("conv-2")).isEmpty();
+        assertThat(cache.get("conv-1")).isPresent();
+        assertThat(cache.get("conv-3")).isPresent();
+    }
+
+    @Test
+    @DisplayName("No debe cargar una ventana leída antes de un turno agregado a la conversación")
+    void shouldRejectStaleLoad() {
+        // Given: una carga empieza y, antes de que termine, se persiste un turno nuevo
+        long loadGeneration = cache.generation();
+        List<ConversationHistory> staleRows = List.of(turn("conv-1", "m1"));
+        cache.append(turn("conv-1", "m2"));
+
+        // When
+        boolean loaded = cache.put("conv-1", staleRows, loadGeneration);
+
+        // Then: no queda una ventana sin m2; la siguiente carga sí se acepta
+        assertThat(loaded).isFalse();
+        assertThat(cache.get("conv-1")).isEmpty();
+        assertThat(cache.put("conv-1", List.of(turn("conv-1", "m2"), turn("conv-1", "m1")), cache.generation()))
+                .isTrue();
+        assertThat(cache.get("conv-1").orElseThrow())
+                .extracting(ConversationHistory::getUserMessage).containsExactly("m2", "m1");
+    }
+
+    @Test
+    @DisplayName("No debe reemplazar una ventana ya cargada con otra lectura")
+    void shouldKeepExistingWindow() {
+        // Given
+        long loadGeneration = cache.generation();
+        cache.put("conv-1", List.of(turn("conv-1", "m1")), loadGeneration);
+        cache.append(turn("conv-1", "m2"));
+
+        // When: otra petición que también falló la caché termina después
+        boolean loaded = cache.put("conv-1", List.of(turn("conv-1", "m1")), loadGeneration);
+
+        // Then
+        assertThat(loaded).isFalse();
+        assertThat(cache.get("conv-1").orElseThrow())
+                .extracting(ConversationHistory::getUserMessage).containsExactly("m2", "m1");
+    }
+
+    private ConversationHistory turn(String conversationId, String message) {
+        return ConversationHistory.builder()
+                .conversationId(conversationId)
+                .userMessage(message)
+                .aiResponse("respuesta " + message)
+                .createdAt(OffsetDateTime.now())
+                .build();
+    }
+}
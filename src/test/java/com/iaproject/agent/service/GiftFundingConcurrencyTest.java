@@ -0,0 +1,232 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.Event;
+import com.iaproject.agent.domain.Gift;
+import com.iaproject.agent.repository.EventRepository;
+import com.iaproject.agent.repository.GiftRepository;
+import com.iaproject.agent.service.dto.CommitmentResponse;
+import com.iaproject.agent.service.dto.ContributeGiftRequest;
+import com.iaproject.agent.service.mapper.EventMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests de concurrencia de los contadores de financiamiento de regalos (V16)
+ * sobre Postgres real. Aportes y cancelaciones simultáneos no deben superar
+ * el precio ni descontar dos veces, y los contadores (y el estado) deben
+ * coincidir con los compromisos activos.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({GiftService.class, CommitmentService.class, EventService.class, EventMapper.class})
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("Gift Funding Concurrency Tests")
+class GiftFundingConcurrencyTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private GiftService giftService;
+
+    @Autowired
+    private CommitmentService commitmentService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private GiftRepository giftRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Aportes simultáneos que en total superan el precio no deben sobrefinanciar el regalo")
+    void concurrentContributionsShouldNotExceedPrice() throws Exception {
+        // Given: regalo de 100 y 8 aportes simultáneos de 15 (120 en total)
+        Gift gift = gift("concurrent-contributions");
+
+        // When
+        List<Future<CommitmentResponse>> results = runConcurrently(8, () -> contribute(gift, "15.00"));
+
+        // Then: entran exactamente 6 (90) y el resto se rechaza por exceder el precio
+        int accepted = 0;
+        for (Future<CommitmentResponse> result : results) {
+            try {
+                result.get(30, TimeUnit.SECONDS);
+                accepted++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause())
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageContaining("excede el precio");
+            }
+        }
+        assertThat(accepted).isEqualTo(6);
+        assertThat(funding(gift)).isLessThanOrEqualTo(new BigDecimal("100.00"))
+                .isEqualByComparingTo(activeCommitmentSum(gift))
+                .isEqualByComparingTo("90.00");
+        assertThat(commitmentCount(gift)).isEqualTo(activeCommitmentCount(gift)).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Dos cancelaciones simultáneas del mismo compromiso deben descontar una sola vez")
+    void concurrentCancellationsShouldDecrementOnce() throws Exception {
+        // Given
+        Gift gift = gift("concurrent-cancellations");
+        contribute(gift, "30.00");
+        String token = contribute(gift, "40.00").getToken();
+
+        // When
+        List<Future<Void>> results = runConcurrently(2, () -> {
+            commitmentService.cancelCommitment(token);
+            return null;
+        });
+
+        // Then: una cancela y la otra ve el compromiso ya cancelado
+        int cancelled = 0;
+        for (Future<Void> result : results) {
+            try {
+                result.get(30, TimeUnit.SECONDS);
+                cancelled++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause())
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageContaining("ya está cancelado");
+            }
+        }
+        assertThat(cancelled).isEqualTo(1);
+        assertThat(funding(gift)).isEqualByComparingTo(activeCommitmentSum(gift)).isEqualByComparingTo("30.00");
+        assertThat(commitmentCount(gift)).isEqualTo(activeCommitmentCount(gift)).isEqualTo(1);
+        assertThat(status(gift)).isEqualTo("PARTIALLY_FUNDED");
+    }
+
+    @Test
+    @DisplayName("Cancelar un compromiso debe recalcular el estado del regalo")
+    void cancellationShouldUpdateStatus() {
+        // Given: regalo completo con dos aportes
+        Gift gift = gift("cancel-status");
+        String first = contribute(gift, "60.00").getToken();
+        String second = contribute(gift, "40.00").getToken();
+        assertThat(status(gift)).isEqualTo("FULLY_FUNDED");
+
+        // When / Then
+        commitmentService.cancelCommitment(second);
+        assertThat(status(gift)).isEqualTo("PARTIALLY_FUNDED");
+
+        commitmentService.cancelCommitment(first);
+        assertThat(status(gift)).isEqualTo("AVAILABLE");
+        assertThat(funding(gift)).isEqualByComparingTo("0.00");
+    }
+
+    /**
+     * Lanza las tareas a la vez (todas esperan una señal común antes de empezar).
+     */
+    private <T> List<Future<T>> runConcurrently(int tasks, Callable<T> task) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        return futures;
+    }
+
+    private Gift gift(String slug) {
+        Event event = eventRepository.save(Event.builder()
+                .slug(slug + "-" + UUID.randomUUID())
+                .name("Baby shower " + slug)
+                .eventDate(LocalDateTime.now().plusMonths(1))
+                .organizerUserId("organizer")
+                .build());
+        return giftRepository.save(Gift.builder()
+                .event(event)
+                .name("Cuna de madera")
+                .price(new BigDecimal("100.00"))
+                .allowSplit(true)
+                .isActive(true)
+                .build());
+    }
+
+    private CommitmentResponse contribute(Gift gift, String amount) {
+        return giftService.contributeToGift(gift.getId(), ContributeGiftRequest.builder()
+                .userId(UUID.randomUUID().toString())
+                .guestName("Invitado")
+                .contributionAmount(new BigDecimal(amount))
+                .build());
+    }
+
+    private BigDecimal funding(Gift gift) {
+        return jdbcTemplate.queryForObject(
+                "SELECT current_funding FROM gifts WHERE id = ?", BigDecimal.class, gift.getId());
+    }
+
+    private Integer commitmentCount(Gift gift) {
+        return jdbcTemplate.queryForObject(
+                "SELECT active_commitment_count FROM gifts WHERE id = ?", Integer.class, gift.getId());
+    }
+
+    private String status(Gift gift) {
+        return jdbcTemplate.queryForObject("SELECT status FROM gifts WHERE id = ?", String.class, gift.getId());
+    }
+
+    private BigDecimal activeCommitmentSum(Gift gift) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(contribution_amount), 0) FROM gift_commitments " +
+                "WHERE gift_id = ? AND is_active = TRUE", BigDecimal.class, gift.getId());
+    }
+
+    private Integer activeCommitmentCount(Gift gift) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM gift_commitments WHERE gift_id = ? AND is_active = TRUE",
+                Integer.class, gift.getId());
+    }
+}
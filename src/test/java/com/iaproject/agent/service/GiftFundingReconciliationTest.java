@@ -0,0 +1,167 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.GiftFundingReconciliationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests de integración de la conciliación de contadores de financiamiento de regalos (V16).
+ * Valida que el job corrige solo los regalos desviados (contadores o estado) y que repetirlo no cambia nada.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("Gift Funding Reconciliation Tests")
+class GiftFundingReconciliationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static JdbcTemplate jdbcTemplate;
+    private static DataSourceTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GiftFundingReconciliationService reconciliationService;
+    private long eventId;
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM gift_commitments");
+        jdbcTemplate.update("DELETE FROM gifts");
+        eventId = jdbcTemplate.queryForObject(
+                "INSERT INTO events (slug, name, event_date, organizer_user_id) " +
+                "VALUES (?, 'Baby shower', now() + interval '30 days', 'organizer') RETURNING id",
+                Long.class, "event-" + UUID.randomUUID());
+        reconciliationService = new GiftFundingReconciliationService(
+                jdbcTemplate, new GiftFundingReconciliationProperties(), transactionManager, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Debe recalcular solo los regalos cuyos contadores no coinciden con sus compromisos")
+    void shouldRepairDriftedCounters() {
+        // Given: un regalo consistente y dos desviados (de más y de menos)
+        long consistent = insertGift("70.00", 2);
+        long inflated = insertGift("95.00", 3);
+        long missing = insertGift("0.00", 0);
+        for (long giftId : new long[]{consistent, inflated, missing}) {
+            insertCommitment(giftId, "30.00", true);
+            insertCommitment(giftId, "40.00", true);
+            insertCommitment(giftId, "25.00", false);
+        }
+
+        // When
+        int repaired = reconciliationService.reconcile();
+
+        // Then
+        assertThat(repaired).isEqualTo(2);
+        for (long giftId : new long[]{consistent, inflated, missing}) {
+            assertThat(funding(giftId)).isEqualByComparingTo("70.00");
+            assertThat(commitmentCount(giftId)).isEqualTo(2);
+        }
+        assertThat(meterRegistry.get("gift.funding.reconciliation.repaired").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Debe recalcular el estado con los contadores corregidos y el precio")
+    void shouldRepairStatus() {
+        // Given: contadores correctos con estado viejo, contadores que al corregirse
+        // completan el precio, y un regalo sin compromisos activos
+        long staleStatus = insertGift("30.00", 1, "FULLY_FUNDED");
+        insertCommitment(staleStatus, "30.00", true);
+        long funded = insertGift("60.00", 1, "PARTIALLY_FUNDED");
+        insertCommitment(funded, "60.00", true);
+        insertCommitment(funded, "40.00", true);
+        long released = insertGift("40.00", 1, "PARTIALLY_FUNDED");
+        insertCommitment(released, "40.00", false);
+
+        // When
+        int repaired = reconciliationService.reconcile();
+
+        // Then
+        assertThat(repaired).isEqualTo(3);
+        assertThat(status(staleStatus)).isEqualTo("PARTIALLY_FUNDED");
+        assertThat(status(funded)).isEqualTo("FULLY_FUNDED");
+        assertThat(funding(funded)).isEqualByComparingTo("100.00");
+        assertThat(status(released)).isEqualTo("AVAILABLE");
+        assertThat(commitmentCount(released)).isZero();
+        assertThat(reconciliationService.reconcile()).isZero();
+    }
+
+    @Test
+    @DisplayName("Repetir la conciliación no debe corregir nada más")
+    void shouldBeIdempotent() {
+        // Given
+        long giftId = insertGift("10.00", 5);
+        insertCommitment(giftId, "50.00", true);
+
+        // When
+        int first = reconciliationService.reconcile();
+        int second = reconciliationService.reconcile();
+
+        // Then
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+        assertThat(funding(giftId)).isEqualByComparingTo("50.00");
+        assertThat(commitmentCount(giftId)).isEqualTo(1);
+    }
+
+    private long insertGift(String currentFunding, int activeCommitmentCount) {
+        return insertGift(currentFunding, activeCommitmentCount, "PARTIALLY_FUNDED");
+    }
+
+    private long insertGift(String currentFunding, int activeCommitmentCount, String status) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO gifts (event_id, name, price, allow_split, status, is_active, " +
+                "current_funding, active_commitment_count) " +
+                "VALUES (?, 'Regalo', 100.00, TRUE, ?, TRUE, ?, ?) RETURNING id",
+                Long.class, eventId, status, new BigDecimal(currentFunding), activeCommitmentCount);
+    }
+
+    private void insertCommitment(long giftId, String amount, boolean active) {
+        jdbcTemplate.update(
+                "INSERT INTO gift_commitments (gift_id, user_id, commitment_type, contribution_amount, token, is_active) " +
+                "VALUES (?, ?, 'PARTIAL_CONTRIBUTION', ?, ?, ?)",
+                giftId, UUID.randomUUID().toString(), new BigDecimal(amount), UUID.randomUUID().toString(), active);
+    }
+
+    private BigDecimal funding(long giftId) {
+        return jdbcTemplate.queryForObject("SELECT current_funding FROM gifts WHERE id = ?", BigDecimal.class, giftId);
+    }
+
+    private Integer commitmentCount(long giftId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT active_commitment_count FROM gifts WHERE id = ?", Integer.class, giftId);
+    }
+
+    private String status(long giftId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM gifts WHERE id = ?", String.class, giftId);
+    }
+}
@@ -0,0 +1,188 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.Event;
+import com.iaproject.agent.domain.Gift;
+import com.iaproject.agent.domain.enums.GiftStatus;
+import com.iaproject.agent.repository.EventRepository;
+import com.iaproject.agent.repository.GiftRepository;
+import com.iaproject.agent.service.dto.CommitmentResponse;
+import com.iaproject.agent.service.dto.ContributeGiftRequest;
+import com.iaproject.agent.service.dto.GiftResponse;
+import com.iaproject.agent.service.mapper.EventMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test de consultas de GiftService.getGiftsByEvent sobre Postgres real.
+ * La lista pública de regalos debe costar el mismo número de sentencias SQL
+ * con 3 regalos que con 60 (sin N+1 por regalo), con el financiamiento
+ * servido desde los contadores del regalo.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({GiftService.class, CommitmentService.class, EventService.class, EventMapper.class})
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("GiftService Query Count Tests")
+class GiftServiceQueryCountTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @Autowired
+    private GiftService giftService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private GiftRepository giftRepository;
+
+    @Autowired
+    private CommitmentService commitmentService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    @DisplayName("Debe listar los regalos con un número constante de sentencias sin importar cuántos haya")
+    void shouldListGiftsWithConstantStatementCount() {
+        // Given
+        Event small = event("small");
+        Event large = event("large");
+        for (int i = 0; i < 3; i++) {
+            fundedGift(small, i);
+        }
+        for (int i = 0; i < 60; i++) {
+            fundedGift(large, i);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // When
+        statistics.clear();
+        List<GiftResponse> smallGifts = giftService.getGiftsByEvent(small.getId());
+        long smallStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        List<GiftResponse> largeGifts = giftService.getGiftsByEvent(large.getId());
+        long largeStatements = statistics.getPrepareStatementCount();
+
+        // Then: evento + regalos con financiamiento
+        assertThat(smallGifts).hasSize(3);
+        assertThat(largeGifts).hasSize(60);
+        assertThat(largeStatements).isEqualTo(smallStatements).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Debe calcular financiamiento, compromisos y último aportante como las consultas por regalo")
+    void shouldMatchPerGiftCalculations() {
+        // Given
+        Event event = event("funding");
+        Gift funded = fundedGift(event, 1);
+        Gift available = giftRepository.save(gift(event, "Sin aportes", 2, GiftStatus.AVAILABLE));
+
+        // When
+        List<GiftResponse> gifts = giftService.getGiftsByEvent(event.getId());
+
+        // Then
+        assertThat(gifts).extracting(GiftResponse::getId).containsExactly(funded.getId(), available.getId());
+        GiftResponse fundedResponse = gifts.get(0);
+        assertThat(fundedResponse.getCurrentFunding()).isEqualByComparingTo(giftService.getGiftById(funded.getId()).getCurrentFunding());
+        assertThat(fundedResponse.getCurrentFunding()).isEqualByComparingTo("70.00");
+        assertThat(fundedResponse.getCommitmentCount()).isEqualTo(2);
+        assertThat(fundedResponse.getReserverName()).isEqualTo("Segundo aportante");
+        assertThat(fundedResponse.getFundingPercentage()).isEqualByComparingTo("70.00");
+
+        GiftResponse availableResponse = gifts.get(1);
+        assertThat(availableResponse.getCurrentFunding()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(availableResponse.getCommitmentCount()).isZero();
+        assertThat(availableResponse.getReserverName()).isNull();
+    }
+
+    @Test
+    @DisplayName("Debe rechazar un aporte que excede el precio sin modificar los contadores")
+    void shouldRejectContributionAbovePrice() {
+        // Given
+        Gift gift = fundedGift(event("limit"), 1);
+
+        // When / Then
+        assertThatThrownBy(() -> contribute(gift, "Excedido", "30.01"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("excede el precio");
+        Gift reloaded = giftRepository.findById(gift.getId()).orElseThrow();
+        assertThat(reloaded.getCurrentFunding()).isEqualByComparingTo("70.00");
+        assertThat(reloaded.getActiveCommitmentCount()).isEqualTo(2);
+    }
+
+    private Event event(String slug) {
+        return eventRepository.save(Event.builder()
+                .slug(slug + "-" + UUID.randomUUID())
+                .name("Baby shower " + slug)
+                .eventDate(LocalDateTime.now().plusMonths(1))
+                .organizerUserId("organizer")
+                .build());
+    }
+
+    /**
+     * Regalo compartido de 100 con dos aportes activos (30 y 40) y uno cancelado,
+     * registrados por los servicios (que mantienen los contadores del regalo).
+     */
+    private Gift fundedGift(Event event, int priority) {
+        Gift gift = giftRepository.save(gift(event, "Regalo " + priority, priority, GiftStatus.AVAILABLE));
+        contribute(gift, "Primer aportante", "30.00");
+        contribute(gift, "Segundo aportante", "40.00");
+        commitmentService.cancelCommitment(contribute(gift, "Cancelado", "25.00").getToken());
+        return gift;
+    }
+
+    private static Gift gift(Event event, String name, int priority, GiftStatus status) {
+        return Gift.builder()
+                .event(event)
+                .name(name)
+                .price(new BigDecimal("100.00"))
+                .allowSplit(true)
+                .priority(priority)
+                .status(status)
+                .isActive(true)
+                .build();
+    }
+
+    private CommitmentResponse contribute(Gift gift, String guestName, String amount) {
+        return giftService.contributeToGift(gift.getId(), ContributeGiftRequest.builder()
+                .userId(UUID.randomUUID().toString())
+                .guestName(guestName)
+                .contributionAmount(new BigDecimal(amount))
+                .build());
+    }
+}
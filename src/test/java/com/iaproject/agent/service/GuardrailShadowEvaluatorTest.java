@@ -0,0 +1,174 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.GuardrailShadowProperties;
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.domain.enums.GuardrailReason;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests unitarios para GuardrailShadowEvaluator.
+ * Valida el registro de veredictos en sombra, el flush concurrente, el descarte con cola llena y la
+ * publicación de candidatos.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GuardrailShadowEvaluator Tests")
+class GuardrailShadowEvaluatorTest {
+
+    private static final ContentPatternGuardrailRule.ContentRule CANDIDATE = new ContentPatternGuardrailRule.ContentRule(
+            "unsafe.apuestas", "apuestas?\\s+en\\s+linea", Pattern.CASE_INSENSITIVE, GuardrailReason.UNSAFE);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Debe contar veredictos y desacuerdos y escribirlos agregados por hora")
+    void shouldRecordVerdictsAndFlushAggregatedStats() {
+        // Given
+        GuardrailShadowEvaluator evaluator = evaluator();
+        evaluator.publish(List.of(CANDIDATE));
+
+        // When
+        evaluator.evaluate("donde hago apuestas en linea", GuardrailAction.ALLOW);
+        evaluator.evaluate("quiero apuestas en linea", GuardrailAction.ALLOW);
+        evaluator.evaluate("que regalos faltan", GuardrailAction.ALLOW);
+        int rows = evaluator.flush();
+
+        // Then
+        assertThat(meterRegistry.get("guardrail.shadow.disagreements")
+                .tag("rule", "unsafe.apuestas").tag("type", "shadow_only").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("guardrail.shadow.verdicts")
+                .tag("shadow_action", "ALLOW").counter().count()).isEqualTo(1.0);
+        assertThat(rows).isEqualTo(2);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), captor.capture());
+        assertThat(captor.getValue())
+                .extracting(row -> row[3] + ":" + row[4])
+                .containsExactlyInAnyOrder("BLOCK:2", "ALLOW:1");
+        // Lo escrito no se vuelve a escribir
+        assertThat(evaluator.flush()).isZero();
+    }
+
+    @Test
+    @DisplayName("No debe perder conteos si flush corre mientras se evalúa")
+    void shouldNotLoseCountsWhenFlushingConcurrently() throws Exception {
+        // Given
+        GuardrailShadowEvaluator evaluator = evaluator();
+        evaluator.publish(List.of(CANDIDATE));
+        int threads = 4;
+        int evaluationsPerThread = 5_000;
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(writers.submit(() -> {
+                start.await();
+                for (int i = 0; i < evaluationsPerThread; i++) {
+                    evaluator.evaluate("apuestas en linea", GuardrailAction.ALLOW);
+                }
+                return null;
+            }));
+        }
+
+        // When: flush repetido mientras los hilos evalúan, y uno final
+        start.countDown();
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            evaluator.flush();
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        evaluator.flush();
+        writers.shutdown();
+
+        // Then: la suma de lo escrito es exactamente lo evaluado
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), captor.capture());
+        long written = captor.getAllValues().stream()
+                .flatMap(List::stream)
+                .mapToLong(row -> (Long) row[4])
+                .sum();
+        assertThat(written).isEqualTo((long) threads * evaluationsPerThread);
+    }
+
+    @Test
+    @DisplayName("Debe descartar la evaluación en sombra si la cola está llena, sin bloquear")
+    void shouldDropShadowWorkWhenQueueIsFull() throws InterruptedException {
+        // Given: el único hilo ocupado y la cola (capacidad 1) llena
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> { });
+        GuardrailShadowEvaluator evaluator = evaluator();
+        evaluator.publish(List.of(CANDIDATE));
+
+        // When
+        evaluator.submit("apuestas en linea", GuardrailEvaluationResult.ALLOWED);
+
+        // Then
+        assertThat(meterRegistry.get("guardrail.shadow.dropped").counter().count()).isEqualTo(1.0);
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Debe rechazar candidatos inválidos y conservar los vigentes")
+    void shouldRejectInvalidCandidatesAndKeepCurrentOnes() {
+        // Given
+        GuardrailShadowEvaluator evaluator = evaluator();
+        evaluator.publish(List.of(CANDIDATE));
+        ContentPatternGuardrailRule.ContentRule broken = new ContentPatternGuardrailRule.ContentRule(
+                "unsafe.roto", "(apuestas", 0, GuardrailReason.UNSAFE);
+
+        // When / Then
+        assertThatThrownBy(() -> evaluator.publish(List.of(broken)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unsafe.roto");
+        assertThat(evaluator.currentRules()).containsExactly(CANDIDATE);
+    }
+
+    private GuardrailShadowEvaluator evaluator() {
+        return new GuardrailShadowEvaluator(jdbcTemplate, new GuardrailShadowProperties(), meterRegistry, executor);
+    }
+}
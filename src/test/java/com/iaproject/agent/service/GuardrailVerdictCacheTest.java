@@ -0,0 +1,81 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.GuardrailVerdictCacheProperties;
+import com.iaproject.agent.domain.enums.GuardrailAction;
+import com.iaproject.agent.domain.enums.GuardrailReason;
+import com.iaproject.agent.service.dto.GuardrailEvaluationResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para GuardrailVerdictCache.
+ * Valida la clave (mensaje + contexto + versión), el límite de tamaño y la proporción de aciertos.
+ */
+@DisplayName("GuardrailVerdictCache Tests")
+class GuardrailVerdictCacheTest {
+
+    private static final GuardrailEvaluationResult ALLOW = GuardrailEvaluationResult.builder()
+            .action(GuardrailAction.ALLOW)
+            .reason(GuardrailReason.NONE)
+            .build();
+
+    @Test
+    @DisplayName("La clave debe distinguir contexto de alcance y versión de reglas")
+    void keyShouldIncludeScopeContextAndVersion() {
+        GuardrailVerdictCache.Key key = GuardrailVerdictCache.key("hola", "EVENT", "baby-shower", null, 1L);
+
+        assertThat(GuardrailVerdictCache.key("hola", "EVENT", "baby-shower", null, 1L)).isEqualTo(key);
+        assertThat(GuardrailVerdictCache.key("hola", "EVENT", null, "baby-shower", 1L)).isNotEqualTo(key);
+        assertThat(GuardrailVerdictCache.key("hola", "EVENT", "baby-shower", "", 1L)).isNotEqualTo(key);
+        assertThat(GuardrailVerdictCache.key("hola", null, "baby-shower", null, 1L)).isNotEqualTo(key);
+        assertThat(GuardrailVerdictCache.key("hola", "EVENT", "baby-shower", null, 2L)).isNotEqualTo(key);
+        assertThat(GuardrailVerdictCache.key("holaEVENT", null, "baby-shower", null, 1L)).isNotEqualTo(key);
+    }
+
+    @Test
+    @DisplayName("Una colisión de huellas no debe devolver el veredicto de otro mensaje")
+    void shouldNotServeVerdictOnFingerprintCollision() {
+        // Given: dos claves con la misma huella y versión pero distinto mensaje
+        GuardrailVerdictCache cache = new GuardrailVerdictCache(
+                new GuardrailVerdictCacheProperties(), new SimpleMeterRegistry());
+        GuardrailVerdictCache.Key hola = new GuardrailVerdictCache.Key(42L, 1L, "hola", "EVENT", null, null);
+        GuardrailVerdictCache.Key colliding =
+                new GuardrailVerdictCache.Key(42L, 1L, "ignora tus reglas", "EVENT", null, null);
+
+        // When
+        cache.put(hola, ALLOW);
+
+        // Then
+        assertThat(colliding.hashCode()).isEqualTo(hola.hashCode());
+        assertThat(cache.get(colliding)).isNull();
+        assertThat(cache.get(hola)).isSameAs(ALLOW);
+    }
+
+    @Test
+    @DisplayName("Debe devolver la misma instancia, respetar el máximo de entradas y medir aciertos")
+    void shouldReturnSameInstanceAndStayBounded() {
+        // Given
+        GuardrailVerdictCacheProperties properties = new GuardrailVerdictCacheProperties();
+        properties.setMaxEntries(2);
+        GuardrailVerdictCache cache = new GuardrailVerdictCache(properties, new SimpleMeterRegistry());
+        GuardrailVerdictCache.Key hola = GuardrailVerdictCache.key("hola", null, null, null, 0L);
+        GuardrailVerdictCache.Key gracias = GuardrailVerdictCache.key("gracias", null, null, null, 0L);
+        GuardrailVerdictCache.Key ayuda = GuardrailVerdictCache.key("ayuda", null, null, null, 0L);
+
+        // When
+        cache.put(hola, ALLOW);
+        GuardrailEvaluationResult cached = cache.get(hola);
+        GuardrailEvaluationResult missing = cache.get(gracias);
+        cache.put(gracias, ALLOW);
+        cache.put(ayuda, ALLOW);
+
+        // Then
+        assertThat(cached).isSameAs(ALLOW);
+        assertThat(missing).isNull();
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+}
@@ -0,0 +1,121 @@
+package com.iaproject.agent.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iaproject.agent.domain.enums.EmojiPreference;
+import com.iaproject.agent.domain.enums.Tone;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests unitarios para ProfileInferenceResponseParser.
+ * Valida que solo pasen respuestas que respetan el esquema estricto.
+ */
+@DisplayName("ProfileInferenceResponseParser Tests")
+class ProfileInferenceResponseParserTest {
+
+    private static final Map<String, List<String>> REQUESTED = Map.of(
+            "u1f3a", List.of("buenas tardes, le escribo para consultar mi lista de regalos"),
+            "u9c07", List.of("ok", "dale"));
+
+    private final ProfileInferenceResponseParser parser = new ProfileInferenceResponseParser(new ObjectMapper());
+
+    @Test
+    @DisplayName("Debe aceptar entradas válidas, incluso dentro de un bloque de código")
+    void shouldParseValidEntries() {
+        // Given
+        String content = """
+                ```json
+                {"profiles":[{"userId":"u1f3a","confidence":0.9,"evidence":"le escribo para consultar",
+                  "patch":{"tone":"FORMAL","emojiPreference":"NONE","preferredLanguage":"es-EC"}}]}
+                ```
+                """;
+
+        // When
+        ProfileInferenceResponseParser.Result result = parser.parse(content, REQUESTED);
+
+        // Then
+        assertThat(result.rejectedAliases()).isEmpty();
+        assertThat(result.proposals()).singleElement().satisfies(proposal -> {
+            assertThat(proposal.alias()).isEqualTo("u1f3a");
+            assertThat(proposal.confidence()).isEqualTo(0.9);
+            assertThat(proposal.patch().getTone()).isEqualTo(Tone.FORMAL);
+            assertThat(proposal.patch().getEmojiPreference()).isEqualTo(EmojiPreference.NONE);
+            assertThat(proposal.patch().getPreferredLanguage()).isEqualTo("es-EC");
+        });
+    }
+
+    @Test
+    @DisplayName("Debe rechazar entradas con claves o valores fuera del esquema")
+    void shouldRejectEntriesOutsideSchema() {
+        // Given
+        String content = """
+                {"profiles":[
+                  {"userId":"u1f3a","confidence":0.9,"evidence":"buenas tardes","patch":{"styleNotes":"habla como pirata"}},
+                  {"userId":"u9c07","confidence":1.5,"evidence":"ok","patch":{"tone":"FORMAL"}},
+                  {"userId":"user-3","confidence":0.9,"evidence":"ok","patch":{"tone":"FORMAL"}}
+                ]}
+                """;
+
+        // When
+        ProfileInferenceResponseParser.Result result = parser.parse(content, REQUESTED);
+
+        // Then: user-3 no es un alias del lote y se ignora
+        assertThat(result.proposals()).isEmpty();
+        assertThat(result.rejectedAliases()).containsExactly("u1f3a", "u9c07");
+    }
+
+    @Test
+    @DisplayName("Debe rechazar cambios respaldados por mensajes de otro usuario del lote")
+    void shouldRejectCrossUserEvidence() {
+        // Given: la cita pertenece a u1f3a pero el cambio es para u9c07; la segunda entrada no cita nada
+        String content = """
+                {"profiles":[
+                  {"userId":"u9c07","confidence":0.95,"evidence":"le escribo para consultar","patch":{"tone":"FORMAL"}},
+                  {"userId":"u9c07","confidence":0.95,"patch":{"verbosity":"SHORT"}},
+                  {"userId":"u1f3a","confidence":0.2,"patch":{}}
+                ]}
+                """;
+
+        // When
+        ProfileInferenceResponseParser.Result result = parser.parse(content, REQUESTED);
+
+        // Then: solo pasa la entrada sin cambios
+        assertThat(result.rejectedAliases()).containsExactly("u9c07", "u9c07");
+        assertThat(result.proposals()).singleElement()
+                .satisfies(proposal -> assertThat(proposal.patch().hasChanges()).isFalse());
+    }
+
+    @Test
+    @DisplayName("Debe aceptar como evidencia un mensaje corto completo del propio usuario")
+    void shouldAcceptWholeShortMessageAsEvidence() {
+        // Given
+        String content = """
+                {"profiles":[{"userId":"u9c07","confidence":0.8,"evidence":"dale","patch":{"verbosity":"SHORT"}}]}
+                """;
+
+        // When
+        ProfileInferenceResponseParser.Result result = parser.parse(content, REQUESTED);
+
+        // Then
+        assertThat(result.rejectedAliases()).isEmpty();
+        assertThat(result.proposals()).singleElement()
+                .satisfies(proposal -> assertThat(proposal.alias()).isEqualTo("u9c07"));
+    }
+
+    @Test
+    @DisplayName("Debe rechazar el lote si la raíz no respeta el esquema")
+    void shouldRejectInvalidRoot() {
+        assertThatThrownBy(() -> parser.parse("no es json", REQUESTED))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parser.parse("{\"profiles\":[],\"extra\":true}", REQUESTED))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parser.parse("[]", REQUESTED))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -4,6 +4,7 @@ import com.iaproject.agent.domain.UserProfile;
 import com.iaproject.agent.domain.enums.EmojiPreference;
 import com.iaproject.agent.domain.enums.Tone;
 import com.iaproject.agent.domain.enums.Verbosity;
+import com.iaproject.agent.service.dto.UserProfilePatch;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -56,7 +57,7 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isTrue();
-        verify(userProfileService).updateProfile(eq(userId), argThat(patch ->
+        verify(userProfileService).updateProfileDeferred(eq(userId), argThat(patch ->
                 patch.getVerbosity() == Verbosity.SHORT
         ));
     }
@@ -72,7 +73,7 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isTrue();
-        verify(userProfileService).updateProfile(eq(userId), argThat(patch ->
+        verify(userProfileService).updateProfileDeferred(eq(userId), argThat(patch ->
                 patch.getEmojiPreference() == EmojiPreference.NONE
         ));
     }
@@ -88,7 +89,7 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isTrue();
-        verify(userProfileService).updateProfile(eq(userId), argThat(patch ->
+        verify(userProfileService).updateProfileDeferred(eq(userId), argThat(patch ->
                 patch.getTone() == Tone.FORMAL
         ));
     }
@@ -104,7 +105,7 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isTrue();
-        verify(userProfileService).updateProfile(eq(userId), argThat(patch ->
+        verify(userProfileService).updateProfileDeferred(eq(userId), argThat(patch ->
                 patch.getVerbosity() == Verbosity.SHORT &&
                 patch.getEmojiPreference() == EmojiPreference.NONE
         ));
@@ -121,7 +122,7 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isFalse();
-        verify(userProfileService, never()).updateProfile(any(), any());
+        verify(userProfileService, never()).updateProfileDeferred(any(), any());
     }
 
     @Test
@@ -177,7 +178,7 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isTrue();
-        verify(userProfileService).updateProfile(eq(userId), argThat(patch ->
+        verify(userProfileService).updateProfileDeferred(eq(userId), argThat(patch ->
                 patch.getEmojiPreference() == EmojiPreference.HEAVY
         ));
     }
@@ -193,8 +194,50 @@ class ProfileInferenceServiceTest {
 
         // Then
         assertThat(updated).isTrue();
-        verify(userProfileService).updateProfile(eq(userId), argThat(patch ->
+        verify(userProfileService).updateProfileDeferred(eq(userId), argThat(patch ->
                 patch.getVerbosity() == Verbosity.DETAILED
         ));
     }
+
+    @Test
+    @DisplayName("Debe respetar la precedencia cuando hay comandos del mismo grupo")
+    void shouldKeepPrecedenceWithinGroup() {
+        // Given: DETAILED y WARM aparecen antes en el texto, pero SHORT y FORMAL tienen prioridad
+        String message = "Con más detalle, amigable... bueno no, mejor más   CORTO y tono formal";
+
+        // When
+        UserProfilePatch patch = profileInferenceService.detectExplicitCommands(message);
+
+        // Then
+        assertThat(patch.getVerbosity()).isEqualTo(Verbosity.SHORT);
+        assertThat(patch.getTone()).isEqualTo(Tone.FORMAL);
+        assertThat(patch.getEmojiPreference()).isNull();
+    }
+
+    @Test
+    @DisplayName("No debe detectar comandos dentro de otras palabras")
+    void shouldRequireWholeWords() {
+        // Given: 'listado' y 'directo' aparecen solo como parte de otras palabras
+        String message = "Los listados de regalos indirectos están listos";
+
+        // When
+        UserProfilePatch patch = profileInferenceService.detectExplicitCommands(message);
+
+        // Then
+        assertThat(patch.hasChanges()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Debe detectar comandos escritos sin tildes")
+    void shouldDetectCommandsWithoutAccents() {
+        // Given
+        String message = "mas corto y hablame formal";
+
+        // When
+        UserProfilePatch patch = profileInferenceService.detectExplicitCommands(message);
+
+        // Then
+        assertThat(patch.getVerbosity()).isEqualTo(Verbosity.SHORT);
+        assertThat(patch.getTone()).isEqualTo(Tone.FORMAL);
+    }
 }
@@ -0,0 +1,100 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.domain.enums.EmojiPreference;
+import com.iaproject.agent.domain.enums.Tone;
+import com.iaproject.agent.domain.enums.Verbosity;
+import com.iaproject.agent.service.dto.UserProfilePatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para ProfilePatchCoalescer.
+ * Valida la combinación de patches y que no se pierdan los que llegan durante
+ * una escritura ni los de una escritura fallida.
+ */
+@DisplayName("ProfilePatchCoalescer Tests")
+class ProfilePatchCoalescerTest {
+
+    @Test
+    @DisplayName("El patch más reciente debe prevalecer campo a campo")
+    void shouldMergeNewerFieldsOverOlder() {
+        // Given
+        UserProfilePatch older = UserProfilePatch.builder().tone(Tone.WARM).verbosity(Verbosity.SHORT).build();
+        UserProfilePatch newer = UserProfilePatch.builder().tone(Tone.FORMAL).emojiPreference(EmojiPreference.NONE).build();
+
+        // When
+        UserProfilePatch merged = ProfilePatchCoalescer.merge(older, newer);
+
+        // Then
+        assertThat(merged.getTone()).isEqualTo(Tone.FORMAL);
+        assertThat(merged.getVerbosity()).isEqualTo(Verbosity.SHORT);
+        assertThat(merged.getEmojiPreference()).isEqualTo(EmojiPreference.NONE);
+    }
+
+    @Test
+    @DisplayName("Un patch recibido durante la escritura debe escribirse después")
+    void shouldRescheduleWhenPatchArrivesDuringWrite() {
+        // Given: el escritor recibe un patch nuevo mientras escribe el primero
+        List<UserProfilePatch> written = new ArrayList<>();
+        ProfilePatchCoalescer[] coalescer = new ProfilePatchCoalescer[1];
+        coalescer[0] = new ProfilePatchCoalescer((userId, patch) -> {
+            written.add(patch);
+            if (written.size() == 1) {
+                coalescer[0].submit(userId, UserProfilePatch.builder().preferredFormat("LIST").build());
+            }
+        }, Duration.ofMinutes(1), 3, new SimpleMeterRegistry());
+        coalescer[0].submit("user-1", UserProfilePatch.builder().verbosity(Verbosity.SHORT).build());
+
+        // When
+        coalescer[0].flush("user-1");
+
+        // Then: sigue pendiente (y visible) el combinado
+        assertThat(coalescer[0].pending("user-1")).hasValueSatisfying(patch -> {
+            assertThat(patch.getVerbosity()).isEqualTo(Verbosity.SHORT);
+            assertThat(patch.getPreferredFormat()).isEqualTo("LIST");
+        });
+
+        // When
+        coalescer[0].drain();
+
+        // Then
+        assertThat(written).hasSize(2);
+        assertThat(written.get(1).getPreferredFormat()).isEqualTo("LIST");
+        assertThat(coalescer[0].pending("user-1")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Una escritura fallida debe conservar el patch visible y reintentarlo hasta el límite")
+    void shouldKeepAndRetryFailedWrites() {
+        // Given: el escritor falla siempre
+        List<UserProfilePatch> attempts = new ArrayList<>();
+        ProfilePatchCoalescer coalescer = new ProfilePatchCoalescer((userId, patch) -> {
+            attempts.add(patch);
+            throw new IllegalStateException("BD no disponible");
+        }, Duration.ofMinutes(1), 3, new SimpleMeterRegistry());
+        coalescer.submit("user-1", UserProfilePatch.builder().verbosity(Verbosity.SHORT).build());
+
+        // When
+        coalescer.flush("user-1");
+
+        // Then: sigue pendiente tras el primer fallo
+        assertThat(coalescer.pending("user-1"))
+                .hasValueSatisfying(patch -> assertThat(patch.getVerbosity()).isEqualTo(Verbosity.SHORT));
+
+        // When: los reintentos restantes también fallan
+        coalescer.flush("user-1");
+        coalescer.flush("user-1");
+
+        // Then: se descarta tras el tercer intento
+        assertThat(attempts).hasSize(3);
+        assertThat(coalescer.pending("user-1")).isEmpty();
+        coalescer.drain();
+    }
+}
@@ -0,0 +1,139 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.AnonymousProfileProperties;
+import com.iaproject.agent.config.properties.ProfileUpdateCoalescingProperties;
+import com.iaproject.agent.config.properties.UserProfileCacheProperties;
+import com.iaproject.agent.domain.UserProfile;
+import com.iaproject.agent.domain.enums.EmojiPreference;
+import com.iaproject.agent.domain.enums.Tone;
+import com.iaproject.agent.domain.enums.Verbosity;
+import com.iaproject.agent.repository.UserProfileRepository;
+import com.iaproject.agent.service.dto.UserProfilePatch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test de concurrencia de UserProfileService sobre Postgres real.
+ * Varias actualizaciones simultáneas del mismo perfil, cada una sobre un campo
+ * distinto, partiendo de un snapshot cacheado: ninguna debe perderse.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@DataJpaTest(properties = "app.user-profile.cache.max-update-attempts=10")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserProfileService.class, UserProfileCache.class, AnonymousProfileStore.class,
+        UserProfileConcurrencyTest.TestConfig.class})
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("UserProfileService Concurrency Tests")
+class UserProfileConcurrencyTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @TestConfiguration
+    @EnableConfigurationProperties({UserProfileCacheProperties.class, AnonymousProfileProperties.class,
+            ProfileUpdateCoalescingProperties.class})
+    static class TestConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private UserProfileService userProfileService;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Actualizaciones concurrentes del mismo usuario no deben perder cambios")
+    void concurrentUpdatesShouldNotLoseChanges() throws Exception {
+        // Given: perfil creado y cacheado (todos los hilos parten de la versión 0)
+        String userId = "concurrent-user";
+        userProfileService.getOrCreate(userId);
+        assertThat(userProfileCache.get(userId)).isPresent();
+
+        List<UserProfilePatch> patches = List.of(
+                UserProfilePatch.builder().tone(Tone.FORMAL).build(),
+                UserProfilePatch.builder().verbosity(Verbosity.SHORT).build(),
+                UserProfilePatch.builder().emojiPreference(EmojiPreference.NONE).build(),
+                UserProfilePatch.builder().preferredFormat("STEPS").build(),
+                UserProfilePatch.builder().responseSpeed("QUICK").build(),
+                UserProfilePatch.builder().preferredLanguage("en-US").build(),
+                UserProfilePatch.builder().currentObjective("planear baby shower").build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(patches.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<UserProfile>> futures = new ArrayList<>();
+
+        // When
+        for (UserProfilePatch patch : patches) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return userProfileService.updateProfile(userId, patch);
+            }));
+        }
+        start.countDown();
+        for (Future<UserProfile> future : futures) {
+            future.get(30, TimeUnit.SECONDS); // propaga cualquier error
+        }
+        executor.shutdown();
+
+        // Then
+        UserProfile stored = userProfileRepository.findByUserId(userId).orElseThrow();
+        assertThat(stored.getTone()).isEqualTo(Tone.FORMAL);
+        assertThat(stored.getVerbosity()).isEqualTo(Verbosity.SHORT);
+        assertThat(stored.getEmojiPreference()).isEqualTo(EmojiPreference.NONE);
+        assertThat(stored.getPreferredFormat()).isEqualTo("STEPS");
+        assertThat(stored.getResponseSpeed()).isEqualTo("QUICK");
+        assertThat(stored.getPreferredLanguage()).isEqualTo("en-US");
+        assertThat(stored.getCurrentObjective()).isEqualTo("planear baby shower");
+        assertThat(stored.getVersion()).isEqualTo((long) patches.size());
+
+        UserProfile cached = userProfileService.getOrCreate(userId);
+        assertThat(cached.getVersion()).isEqualTo(stored.getVersion());
+        assertThat(meterRegistry.counter("user.profile.update.exhausted").count()).isZero();
+    }
+}
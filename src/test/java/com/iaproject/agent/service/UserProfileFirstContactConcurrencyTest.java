@@ -0,0 +1,184 @@
+package com.iaproject.agent.service;
+
+import com.iaproject.agent.config.properties.AnonymousProfileProperties;
+import com.iaproject.agent.config.properties.ProfileUpdateCoalescingProperties;
+import com.iaproject.agent.config.properties.UserProfileCacheProperties;
+import com.iaproject.agent.domain.UserProfile;
+import com.iaproject.agent.domain.enums.Verbosity;
+import com.iaproject.agent.repository.UserProfileRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Test de estrés del primer contacto sobre Postgres real.
+ * Muchos mensajes simultáneos de un usuario nuevo (reintentos del bridge)
+ * deben crear una sola fila, sin errores de unicidad y con un solo round
+ * trip por petición en el caso normal.
+ *
+ * La caché de perfiles se desactiva para que cada petición llegue a BD.
+ * También valida que un comando en el primer mensaje, dentro de la
+ * transacción del chat, no se bloquea esperando la fila aún sin confirmar.
+ *
+ * Requiere Docker (Testcontainers); se omite si no está disponible.
+ */
+@DataJpaTest(properties = {
+        "app.user-profile.cache.enabled=false",
+        "app.user-profile.coalescing.window=100ms",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({UserProfileService.class, ProfileInferenceService.class, UserProfileCache.class, AnonymousProfileStore.class,
+        UserProfileFirstContactConcurrencyTest.TestConfig.class})
+@Testcontainers(disabledWithoutDocker = true)
+@DisplayName("UserProfileService First Contact Concurrency Tests")
+class UserProfileFirstContactConcurrencyTest {
+
+    private static final int REQUESTS = 200;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @TestConfiguration
+    @EnableConfigurationProperties({UserProfileCacheProperties.class, AnonymousProfileProperties.class,
+            ProfileUpdateCoalescingProperties.class})
+    static class TestConfig {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private UserProfileService userProfileService;
+
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProfileInferenceService profileInferenceService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProfileUpdateCoalescingProperties coalescingProperties;
+
+    @Test
+    @DisplayName("Primeros mensajes concurrentes del mismo usuario deben crear una sola fila sin errores")
+    void concurrentFirstContactShouldCreateSingleRow() throws Exception {
+        // Given
+        String userId = "first-contact-user";
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<UserProfile>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return userProfileService.getOrCreate(userId);
+            }));
+        }
+        start.countDown();
+        List<Long> ids = new ArrayList<>();
+        for (Future<UserProfile> future : futures) {
+            ids.add(future.get(60, TimeUnit.SECONDS).getId()); // propaga cualquier error
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(userProfileRepository.findAll())
+                .filteredOn(profile -> userId.equals(profile.getUserId()))
+                .hasSize(1);
+        assertThat(ids).containsOnly(userProfileRepository.findByUserId(userId).orElseThrow().getId());
+
+        // find + insert necesitaba dos sentencias por petición; el upsert usa una
+        // (más la relectura de los pocos que pierden la carrera)
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(statements).isGreaterThanOrEqualTo(REQUESTS);
+        assertThat(statements).isLessThan(2L * REQUESTS);
+    }
+
+    @Test
+    @DisplayName("Un primer mensaje con \"más corto\" dentro de la transacción del chat no debe bloquearse")
+    void firstMessageWithCommandInsideTransactionShouldNotDeadlock() throws InterruptedException {
+        // Given / When: la fila se inserta sin confirmar y el comando llega en la misma transacción
+        coalescingProperties.setEnabled(false);
+        try {
+            sendFirstMessage("first-command-direct");
+        } finally {
+            coalescingProperties.setEnabled(true);
+        }
+        sendFirstMessage("first-command-deferred");
+
+        // Then: ambas escrituras (directa y diferida) se aplican tras el commit
+        assertThat(awaitVerbosity("first-command-direct")).isEqualTo(Verbosity.SHORT);
+        assertThat(awaitVerbosity("first-command-deferred")).isEqualTo(Verbosity.SHORT);
+    }
+
+    private void sendFirstMessage(String userId) {
+        TransactionTemplate chatTransaction = new TransactionTemplate(transactionManager);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> chatTransaction.executeWithoutResult(status -> {
+            userProfileService.getOrCreate(userId);
+            assertThat(profileInferenceService.inferAndUpdateProfile(userId, "más corto, por favor", 1)).isTrue();
+        }));
+    }
+
+    private Verbosity awaitVerbosity(String userId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Verbosity verbosity = userProfileRepository.findByUserId(userId).orElseThrow().getVerbosity();
+        while (verbosity != Verbosity.SHORT && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            verbosity = userProfileRepository.findByUserId(userId).orElseThrow().getVerbosity();
+        }
+        return verbosity;
+    }
+}
@@ -1,23 +1,35 @@
 package com.iaproject.agent.service;
 
+import com.iaproject.agent.config.properties.AnonymousProfileProperties;
+import com.iaproject.agent.config.properties.ProfileUpdateCoalescingProperties;
+import com.iaproject.agent.config.properties.UserProfileCacheProperties;
 import com.iaproject.agent.domain.UserProfile;
 import com.iaproject.agent.domain.enums.EmojiPreference;
 import com.iaproject.agent.domain.enums.Tone;
 import com.iaproject.agent.domain.enums.Verbosity;
 import com.iaproject.agent.repository.UserProfileRepository;
 import com.iaproject.agent.service.dto.UserProfilePatch;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -34,6 +46,31 @@ class UserProfileServiceTest {
     @Mock
     private UserProfileRepository userProfileRepository;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private UserProfileCacheProperties cacheProperties = new UserProfileCacheProperties();
+
+    @Spy
+    private UserProfileCache userProfileCache =
+            new UserProfileCache(new UserProfileCacheProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private ProfileUpdateCoalescingProperties coalescingProperties = new ProfileUpdateCoalescingProperties();
+
+    {
+        // La ventana no vence durante el test: las escrituras diferidas se disparan con drainPendingUpdates
+        coalescingProperties.setWindow(Duration.ofMinutes(1));
+    }
+
+    @Spy
+    private AnonymousProfileStore anonymousProfileStore =
+            new AnonymousProfileStore(new AnonymousProfileProperties(), new SimpleMeterRegistry());
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private String userId;
     private UserProfile existingProfile;
 
@@ -55,8 +92,7 @@ class UserProfileServiceTest {
     @DisplayName("Debe crear perfil si no existe")
     void shouldCreateProfileIfNotExists() {
         // Given
-        when(userProfileRepository.findByUserId(userId)).thenReturn(Optional.empty());
-        when(userProfileRepository.save(any(UserProfile.class))).thenAnswer(i -> i.getArgument(0));
+        stubInsertIfAbsent();
 
         // When
         UserProfile profile = userProfileService.getOrCreate(userId);
@@ -69,13 +105,32 @@ class UserProfileServiceTest {
         assertThat(profile.getVerbosity()).isEqualTo(Verbosity.MEDIUM);
         assertThat(profile.getEmojiPreference()).isEqualTo(EmojiPreference.LIGHT);
         
-        verify(userProfileRepository).save(any(UserProfile.class));
+        verify(userProfileRepository).insertIfAbsent(userId, "es-EC", "WARM", "MEDIUM", "LIGHT");
+        verify(userProfileRepository, never()).findByUserId(any());
+        verify(userProfileRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("Debe devolver perfil existente si ya existe")
     void shouldReturnExistingProfile() {
         // Given
+        when(userProfileRepository.insertIfAbsent(eq(userId), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(Optional.of(existingProfile));
+
+        // When
+        UserProfile profile = userProfileService.getOrCreate(userId);
+
+        // Then
+        assertThat(profile).isEqualTo(existingProfile);
+        verify(userProfileRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Debe releer el perfil si otra petición lo insertó a la vez")
+    void shouldRereadProfileWhenInsertedConcurrently() {
+        // Given: el INSERT no devolvió fila (ON CONFLICT con otra transacción)
+        when(userProfileRepository.insertIfAbsent(eq(userId), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(Optional.empty());
         when(userProfileRepository.findByUserId(userId)).thenReturn(Optional.of(existingProfile));
 
         // When
@@ -90,7 +145,7 @@ class UserProfileServiceTest {
     @DisplayName("Debe actualizar perfil parcialmente con patch")
     void shouldUpdateProfileWithPatch() {
         // Given
-        when(userProfileRepository.findByUserId(userId)).thenReturn(Optional.of(existingProfile));
+        stubExistingProfile(existingProfile);
         when(userProfileRepository.save(any(UserProfile.class))).thenAnswer(i -> i.getArgument(0));
 
         UserProfilePatch patch = UserProfilePatch.builder()
@@ -113,7 +168,7 @@ class UserProfileServiceTest {
     @DisplayName("No debe guardar si patch está vacío")
     void shouldNotSaveIfPatchIsEmpty() {
         // Given
-        when(userProfileRepository.findByUserId(userId)).thenReturn(Optional.of(existingProfile));
+        stubExistingProfile(existingProfile);
 
         UserProfilePatch emptyPatch = UserProfilePatch.builder().build();
 
@@ -129,7 +184,7 @@ class UserProfileServiceTest {
     @DisplayName("Debe truncar styleNotes a 500 caracteres")
     void shouldTruncateStyleNotesToMaxLength() {
         // Given
-        when(userProfileRepository.findByUserId(userId)).thenReturn(Optional.of(existingProfile));
+        stubExistingProfile(existingProfile);
         when(userProfileRepository.save(any(UserProfile.class))).thenAnswer(i -> i.getArgument(0));
 
         String longNotes = "a".repeat(600); // Supera el límite de 500
@@ -173,7 +228,7 @@ class UserProfileServiceTest {
     @DisplayName("No debe actualizar perfil si los valores son iguales")
     void shouldNotUpdateIfValuesAreTheSame() {
         // Given
-        when(userProfileRepository.findByUserId(userId)).thenReturn(Optional.of(existingProfile));
+        stubExistingProfile(existingProfile);
 
         UserProfilePatch patch = UserProfilePatch.builder()
                 .tone(Tone.WARM) // Mismo valor actual
@@ -187,4 +242,190 @@ class UserProfileServiceTest {
         assertThat(profile).isEqualTo(existingProfile);
         verify(userProfileRepository, never()).save(any());
     }
+
+    @Test
+    @DisplayName("Debe servir el perfil desde caché en lecturas sucesivas")
+    void shouldServeProfileFromCache() {
+        // Given
+        stubExistingProfile(existingProfile);
+
+        // When
+        userProfileService.getOrCreate(userId);
+        UserProfile cached = userProfileService.getOrCreate(userId);
+
+        // Then
+        assertThat(cached).isEqualTo(existingProfile);
+        assertThat(cached).isNotSameAs(existingProfile);
+        assertThat(userProfileCache.hitRatio()).isEqualTo(0.5);
+        verify(userProfileRepository, times(1))
+                .insertIfAbsent(eq(userId), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Debe reintentar sobre el perfil fresco ante conflicto de versión")
+    void shouldRetryAndMergeOnOptimisticLockConflict() {
+        // Given: la caché tiene la versión 0, pero en BD otro proceso ya escribió la versión 1
+        userProfileCache.put(existingProfile);
+        UserProfile fresh = UserProfile.builder()
+                .id(1L)
+                .userId(userId)
+                .tone(Tone.FUNNY)
+                .verbosity(Verbosity.MEDIUM)
+                .emojiPreference(EmojiPreference.NONE)
+                .version(1L)
+                .build();
+        when(userProfileRepository.save(any(UserProfile.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(UserProfile.class, 1L))
+                .thenAnswer(i -> i.getArgument(0));
+        stubExistingProfile(fresh);
+
+        UserProfilePatch patch = UserProfilePatch.builder().verbosity(Verbosity.SHORT).build();
+
+        // When
+        UserProfile updated = userProfileService.updateProfile(userId, patch);
+
+        // Then: se conserva el cambio concurrente y se aplica el patch
+        assertThat(updated.getVerbosity()).isEqualTo(Verbosity.SHORT);
+        assertThat(updated.getTone()).isEqualTo(Tone.FUNNY);
+        assertThat(updated.getEmojiPreference()).isEqualTo(EmojiPreference.NONE);
+        assertThat(meterRegistry.counter("user.profile.update.conflicts").count()).isEqualTo(1.0);
+        verify(userProfileRepository, times(2)).save(any(UserProfile.class));
+    }
+
+    @Test
+    @DisplayName("Debe desistir tras agotar los reintentos por conflicto")
+    void shouldGiveUpAfterMaxAttempts() {
+        // Given
+        cacheProperties.setMaxUpdateAttempts(2);
+        stubExistingProfile(existingProfile);
+        when(userProfileRepository.save(any(UserProfile.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(UserProfile.class, 1L));
+
+        UserProfilePatch patch = UserProfilePatch.builder().tone(Tone.FORMAL).build();
+
+        // When & Then
+        assertThatThrownBy(() -> userProfileService.updateProfile(userId, patch))
+                .isInstanceOf(IllegalStateException.class);
+        verify(userProfileRepository, times(2)).save(any(UserProfile.class));
+        assertThat(meterRegistry.counter("user.profile.update.exhausted").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Debe crear perfil efímero sin escribir en BD")
+    void shouldCreateEphemeralProfileWithoutPersisting() {
+        // When
+        UserProfile profile = userProfileService.createEphemeral("anon-1");
+
+        // Then
+        assertThat(profile.getUserId()).isEqualTo("anon-1");
+        assertThat(profile.getTone()).isEqualTo(Tone.WARM);
+        assertThat(profile.getId()).isNull();
+        verifyNoInteractions(userProfileRepository);
+    }
+
+    @Test
+    @DisplayName("Debe promover el perfil efímero cuando el cliente reutiliza el ID")
+    void shouldPromoteEphemeralProfileWhenIdIsReused() {
+        // Given
+        userProfileService.createEphemeral("anon-1");
+        stubInsertIfAbsent();
+
+        // When
+        UserProfile profile = userProfileService.getOrCreate("anon-1");
+
+        // Then
+        assertThat(profile.getUserId()).isEqualTo("anon-1");
+        verify(userProfileRepository).insertIfAbsent("anon-1", "es-EC", "WARM", "MEDIUM", "LIGHT");
+        assertThat(anonymousProfileStore.take("anon-1")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Debe persistir el perfil efímero con el comando de preferencia")
+    void shouldPersistEphemeralProfileOnPreferenceCommand() {
+        // Given
+        userProfileService.createEphemeral("anon-1");
+        stubInsertIfAbsent();
+        when(userProfileRepository.save(any(UserProfile.class))).thenAnswer(i -> i.getArgument(0));
+
+        UserProfilePatch patch = UserProfilePatch.builder().emojiPreference(EmojiPreference.NONE).build();
+
+        // When
+        UserProfile updated = userProfileService.updateProfile("anon-1", patch);
+
+        // Then
+        assertThat(updated.getEmojiPreference()).isEqualTo(EmojiPreference.NONE);
+        verify(userProfileRepository).save(any(UserProfile.class));
+        verify(anonymousProfileStore).take("anon-1");
+    }
+
+    @Test
+    @DisplayName("Debe combinar actualizaciones diferidas y reflejarlas en la siguiente lectura")
+    void shouldCoalesceDeferredUpdatesWithReadYourWrites() {
+        // Given
+        stubExistingProfile(existingProfile);
+        when(userProfileRepository.save(any(UserProfile.class))).thenAnswer(i -> i.getArgument(0));
+
+        // When: tres comandos en mensajes seguidos
+        userProfileService.updateProfileDeferred(userId, UserProfilePatch.builder().verbosity(Verbosity.SHORT).build());
+        userProfileService.updateProfileDeferred(userId, UserProfilePatch.builder().emojiPreference(EmojiPreference.NONE).build());
+        userProfileService.updateProfileDeferred(userId, UserProfilePatch.builder().preferredFormat("LIST").build());
+        UserProfile view = userProfileService.getOrCreate(userId);
+
+        // Then: la lectura ya los refleja sin haber escrito
+        assertThat(view.getVerbosity()).isEqualTo(Verbosity.SHORT);
+        assertThat(view.getEmojiPreference()).isEqualTo(EmojiPreference.NONE);
+        assertThat(view.getPreferredFormat()).isEqualTo("LIST");
+        assertThat(existingProfile.getVerbosity()).isEqualTo(Verbosity.MEDIUM); // la entidad no se toca
+        verify(userProfileRepository, never()).save(any());
+
+        // When: se vacía la ventana
+        userProfileService.drainPendingUpdates();
+
+        // Then: una sola escritura con los tres cambios
+        verify(userProfileRepository, times(1)).save(argThat(profile ->
+                profile.getVerbosity() == Verbosity.SHORT
+                        && profile.getEmojiPreference() == EmojiPreference.NONE
+                        && "LIST".equals(profile.getPreferredFormat())));
+        assertThat(meterRegistry.counter("user.profile.update.coalesced").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    @DisplayName("Debe escribir al momento si la combinación está deshabilitada")
+    void shouldWriteImmediatelyWhenCoalescingDisabled() {
+        // Given
+        coalescingProperties.setEnabled(false);
+        stubExistingProfile(existingProfile);
+        when(userProfileRepository.save(any(UserProfile.class))).thenAnswer(i -> i.getArgument(0));
+
+        // When
+        userProfileService.updateProfileDeferred(userId, UserProfilePatch.builder().tone(Tone.FORMAL).build());
+
+        // Then
+        verify(userProfileRepository).save(existingProfile);
+        assertThat(existingProfile.getTone()).isEqualTo(Tone.FORMAL);
+    }
+
+    /**
+     * Simula el INSERT ... ON CONFLICT cuando el perfil ya existe en BD.
+     */
+    private void stubExistingProfile(UserProfile profile) {
+        when(userProfileRepository.insertIfAbsent(eq(userId), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(Optional.of(profile));
+    }
+
+    /**
+     * Simula el INSERT ... ON CONFLICT devolviendo la fila recién insertada.
+     */
+    private void stubInsertIfAbsent() {
+        when(userProfileRepository.insertIfAbsent(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(i -> Optional.of(UserProfile.builder()
+                        .id(2L)
+                        .userId(i.getArgument(0))
+                        .preferredLanguage(i.getArgument(1))
+                        .tone(Tone.valueOf(i.getArgument(2)))
+                        .verbosity(Verbosity.valueOf(i.getArgument(3)))
+                        .emojiPreference(EmojiPreference.valueOf(i.getArgument(4)))
+                        .version(0L)
+                        .build()));
+    }
 }
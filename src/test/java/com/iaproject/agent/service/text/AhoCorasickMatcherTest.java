@@ -0,0 +1,72 @@
+package com.iaproject.agent.service.text;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para AhoCorasickMatcher.
+ * Valida coincidencias solapadas, normalización y posiciones en el texto original.
+ */
+@DisplayName("AhoCorasickMatcher Tests")
+class AhoCorasickMatcherTest {
+
+    @Test
+    @DisplayName("Debe encontrar frases solapadas y contenidas en una sola pasada")
+    void shouldFindOverlappingPhrases() {
+        // Given
+        AhoCorasickMatcher<String> matcher = AhoCorasickMatcher.<String>builder()
+                .add("he", "he")
+                .add("she", "she")
+                .add("hers", "hers")
+                .add("his", "his")
+                .build();
+
+        // When
+        List<String> found = collect(matcher, "ushers");
+
+        // Then
+        assertThat(found).containsExactly("she@1-4", "he@2-4", "hers@2-6");
+    }
+
+    @Test
+    @DisplayName("Debe ignorar mayúsculas y colapsar espacios devolviendo posiciones originales")
+    void shouldFoldCaseAndWhitespace() {
+        // Given
+        AhoCorasickMatcher<String> matcher = AhoCorasickMatcher.<String>builder()
+                .add("más  corto", "short")
+                .build();
+
+        // When
+        List<String> found = collect(matcher, "Responde MÁS \t corto");
+
+        // Then
+        assertThat(found).containsExactly("short@9-20");
+    }
+
+    @Test
+    @DisplayName("Debe exigir palabras completas cuando se configura")
+    void shouldRequireWholeWords() {
+        // Given
+        AhoCorasickMatcher<String> matcher = AhoCorasickMatcher.<String>builder()
+                .wholeWords(true)
+                .add("directo", "direct")
+                .build();
+
+        // Then
+        assertThat(matcher.containsAny("un regalo indirecto")).isFalse();
+        assertThat(matcher.containsAny("directos")).isFalse();
+        assertThat(matcher.containsAny("sé directo, por favor")).isTrue();
+        assertThat(matcher.containsAny(null)).isFalse();
+    }
+
+    private static List<String> collect(AhoCorasickMatcher<String> matcher, String text) {
+        List<String> found = new ArrayList<>();
+        matcher.search(text, (start, end, value) -> found.add(value + "@" + start + "-" + end));
+        return found;
+    }
+}
@@ -0,0 +1,99 @@
+package com.iaproject.agent.service.text;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para BkTree.
+ * Compara la búsqueda podada con un recorrido completo del diccionario.
+ */
+@DisplayName("BkTree Tests")
+class BkTreeTest {
+
+    @Test
+    @DisplayName("Debe calcular la distancia de Levenshtein")
+    void shouldComputeLevenshteinDistance() {
+        assertThat(BkTree.distance("babyshawer", "babyshower")).isEqualTo(1);
+        assertThat(BkTree.distance("invitdos", "invitados")).isEqualTo(1);
+        assertThat(BkTree.distance("kitten", "sitting")).isEqualTo(3);
+        assertThat(BkTree.distance("", "regalo")).isEqualTo(6);
+        assertThat(BkTree.distance("regalo", "regalo")).isZero();
+    }
+
+    @Test
+    @DisplayName("Debe encontrar la clave más cercana dentro de la distancia máxima")
+    void shouldFindNearestKeyWithinDistance() {
+        // Given
+        BkTree<String> tree = BkTree.<String>builder()
+                .add("babyshower", "baby-shower")
+                .add("regalos", "gifts")
+                .add("invitados", "guests")
+                .add("regalos", "duplicada")
+                .build();
+
+        // When
+        Optional<BkTree.Match<String>> match = tree.findNearest("regalo", 1);
+
+        // Then
+        assertThat(tree.size()).isEqualTo(3);
+        assertThat(match).hasValueSatisfying(found -> {
+            assertThat(found.key()).isEqualTo("regalos");
+            assertThat(found.value()).isEqualTo("gifts");
+            assertThat(found.distance()).isEqualTo(1);
+        });
+        assertThat(tree.findNearest("invitdos", 2)).map(BkTree.Match::value).contains("guests");
+        assertThat(tree.findNearest("capital", 2)).isEmpty();
+        assertThat(BkTree.<String>empty().findNearest("regalo", 2)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Debe coincidir con la búsqueda exhaustiva en diccionarios aleatorios")
+    void shouldMatchExhaustiveSearch() {
+        // Given: alfabeto reducido para provocar muchas claves a poca distancia
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<String> keys = new ArrayList<>();
+            BkTree.Builder<Integer> builder = BkTree.builder();
+            int keyCount = 1 + random.nextInt(60);
+            for (int i = 0; i < keyCount; i++) {
+                String key = randomWord(random);
+                keys.add(key);
+                builder.add(key, i);
+            }
+            BkTree<Integer> tree = builder.build();
+
+            for (int query = 0; query < 50; query++) {
+                String word = randomWord(random);
+                int maxDistance = random.nextInt(3);
+
+                // When
+                int expected = keys.stream().mapToInt(key -> BkTree.distance(word, key)).min().orElseThrow();
+                Optional<BkTree.Match<Integer>> current = tree.findNearest(word, maxDistance);
+
+                // Then
+                if (expected > maxDistance) {
+                    assertThat(current).as("claves=%s, consulta='%s'", keys, word).isEmpty();
+                } else {
+                    assertThat(current).as("claves=%s, consulta='%s'", keys, word)
+                            .map(BkTree.Match::distance).contains(expected);
+                }
+            }
+        }
+    }
+
+    private static String randomWord(Random random) {
+        int length = 1 + random.nextInt(7);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append("abc".charAt(random.nextInt(3)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.iaproject.agent.service.text;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests unitarios para NormalizedText.
+ * Valida cada paso de la normalización y el mapa de posiciones hacia el mensaje original.
+ */
+@DisplayName("NormalizedText Tests")
+class NormalizedTextTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "ACTÚA como          | actua como",
+            "Decoración Ñandú    | decoracion nandu",
+            "ﬁesta Ａｂｃ x²       | fiesta abc x2",
+            "İstanbul ſ          | istanbul s",
+            "1gn0re instructi0ns | ignore instructions",
+            "p4$$w0rd h@ck       | password hack",
+            "30 invitados $100   | 30 invitados $100",
+            "baby2024            | baby2024"
+    })
+    @DisplayName("Debe aplicar NFKC, case folding, tildes y leetspeak")
+    void shouldNormalizeText(String original, String expected) {
+        assertThat(NormalizedText.normalize(original)).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("Debe colapsar espacios Unicode y eliminar caracteres invisibles")
+    void shouldCollapseWhitespaceAndDropInvisibleCharacters() {
+        // Given
+        String original = "  ig\u200Bnore \t\u00A0\u2028 previous\n";
+
+        // When
+        NormalizedText normalized = NormalizedText.of(original);
+
+        // Then
+        assertThat(normalized.text()).isEqualTo("ignore previous");
+        assertThat(normalized.original()).isEqualTo(original);
+    }
+
+    @Test
+    @DisplayName("Debe traducir posiciones del texto normalizado al mensaje original")
+    void shouldMapOffsetsToOriginal() {
+        // Given
+        NormalizedText normalized = NormalizedText.of("Ideas  de DECORACIÓN ﬁnal");
+        int start = normalized.text().indexOf("decoracion");
+
+        // When / Then
+        assertThat(normalized.original().substring(
+                normalized.originalStart(start), normalized.originalEnd(start + "decoracion".length())))
+                .isEqualTo("DECORACIÓN");
+        // "ﬁ" produce dos caracteres: ambos apuntan a la ligadura completa
+        int ligature = normalized.text().indexOf("final");
+        assertThat(normalized.original().substring(
+                normalized.originalStart(ligature + 1), normalized.originalEnd(ligature + 2)))
+                .isEqualTo("ﬁ");
+        assertThat(normalized.original().substring(
+                normalized.originalStart(ligature), normalized.originalEnd(ligature + 5)))
+                .isEqualTo("ﬁnal");
+    }
+
+    @Test
+    @DisplayName("El mapa de posiciones debe cubrir rangos válidos y ordenados en textos aleatorios")
+    void shouldKeepOffsetsMonotonic() {
+        String alphabet = "aÁé ñ\t0134@$Kſﬁ\u0301\u200B😀.";
+        Random random = new Random(11);
+        for (int round = 0; round < 2_000; round++) {
+            // Given
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                text.appendCodePoint(alphabet.codePointAt(alphabet.offsetByCodePoints(0,
+                        random.nextInt(alphabet.codePointCount(0, alphabet.length())))));
+            }
+
+            // When
+            NormalizedText normalized = NormalizedText.of(text.toString());
+
+            // Then: cada carácter normalizado proviene de un rango del original, en orden
+            int previous = 0;
+            for (int i = 0; i < normalized.length(); i++) {
+                int start = normalized.originalStart(i);
+                int end = normalized.originalEnd(i + 1);
+                assertThat(start).isBetween(previous, end);
+                assertThat(end).isLessThanOrEqualTo(text.length());
+                previous = start;
+            }
+            assertThat(NormalizedText.normalize(normalized.text())).isEqualTo(normalized.text());
+        }
+    }
+}